@@ -1016,6 +1016,181 @@ call apply_change(50, $aa$
 
 $aa$);
 
+-- Org closure is a table maintained incrementally by triggers instead of a materialized view.
+call apply_change(51, $aa$
+DROP TRIGGER IF EXISTS m_ref_object_parent_mark_refresh_tr ON m_ref_object_parent_org;
+DROP TRIGGER IF EXISTS m_ref_object_parent_mark_refresh_trunc_tr ON m_ref_object_parent_org;
+DROP TRIGGER IF EXISTS m_org_mark_refresh_tr ON m_org;
+DROP TRIGGER IF EXISTS m_org_mark_refresh_trunc_tr ON m_org;
+DROP FUNCTION IF EXISTS mark_org_closure_for_refresh();
+DROP FUNCTION IF EXISTS mark_org_closure_for_refresh_org();
+DROP MATERIALIZED VIEW IF EXISTS m_org_closure;
+
+CREATE TABLE m_org_closure (
+    ancestor_oid UUID NOT NULL,
+    descendant_oid UUID NOT NULL,
+
+    PRIMARY KEY (ancestor_oid, descendant_oid)
+);
+
+CREATE INDEX m_org_closure_desc_asc_idx
+    ON m_org_closure (descendant_oid, ancestor_oid);
+
+-- Adds the closure rows for a new parent-org edge (parent => child):
+-- all ancestors of the parent (including itself) become ancestors of all descendants of the child (including itself).
+CREATE OR REPLACE FUNCTION m_org_closure_add_edge(parent_oid UUID, child_oid UUID)
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid)
+        SELECT anc.oid, des.oid
+            FROM (SELECT parent_oid AS oid
+                    UNION SELECT ancestor_oid FROM m_org_closure WHERE descendant_oid = parent_oid) anc,
+                (SELECT child_oid AS oid
+                    UNION SELECT descendant_oid FROM m_org_closure WHERE ancestor_oid = child_oid) des
+        ON CONFLICT DO NOTHING;
+END $$;
+
+-- Removes the closure rows after a parent-org edge (parent => child) was removed.
+-- Only the ancestors of the child and its descendants can change; these are derived again from the remaining edges.
+-- This is correct also for orgs with multiple parents, where the rows may still be valid thanks to another path.
+CREATE OR REPLACE FUNCTION m_org_closure_remove_edge(parent_oid UUID, child_oid UUID)
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    affected UUID[];
+BEGIN
+    SELECT array_agg(oid) INTO affected FROM (
+        SELECT child_oid AS oid
+        UNION SELECT descendant_oid FROM m_org_closure WHERE ancestor_oid = child_oid) des;
+
+    DELETE FROM m_org_closure
+        WHERE descendant_oid = ANY(affected) AND ancestor_oid <> descendant_oid;
+
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid)
+        WITH RECURSIVE org_h (ancestor_oid, descendant_oid) AS (
+            SELECT oid, oid FROM unnest(affected) AS oid
+            UNION
+            SELECT par.targetOid, chi.descendant_oid
+                FROM m_ref_object_parent_org par, org_h chi
+                WHERE par.ownerOid = chi.ancestor_oid
+        )
+        SELECT ancestor_oid, descendant_oid FROM org_h
+            WHERE ancestor_oid <> descendant_oid
+        ON CONFLICT DO NOTHING;
+END $$;
+
+-- Recomputes the whole closure from scratch.
+CREATE OR REPLACE FUNCTION m_org_closure_rebuild()
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    DELETE FROM m_org_closure;
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid)
+        WITH RECURSIVE org_h (
+            ancestor_oid, -- ref.targetoid
+            descendant_oid --ref.ownerOid
+        ) AS (
+            -- non-recursive term: identity lines (o => o) for all orgs
+            SELECT o.oid, o.oid FROM m_org o
+            UNION
+            -- recursive (iterative) term:
+            -- Generate their parents (anc => desc, that is target => owner), => means "is parent of".
+            SELECT par.targetoid, chi.descendant_oid -- leaving original child there generates closure
+                FROM m_ref_object_parent_org as par, org_h as chi
+                WHERE par.ownerOid = chi.ancestor_oid
+        )
+        SELECT * FROM org_h;
+END $$;
+
+-- The trigger for m_ref_object_parent_org that updates the closure.
+-- Changes of the org structure are serialized by transaction-level advisory lock,
+-- otherwise concurrent transactions could miss each other's edges when computing the closure rows.
+CREATE OR REPLACE FUNCTION update_org_closure()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_rebuild();
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.ownerType = 'ORG' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_remove_edge(OLD.targetOid, OLD.ownerOid);
+    END IF;
+    IF TG_OP IN ('UPDATE', 'INSERT') AND NEW.ownerType = 'ORG' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_add_edge(NEW.targetOid, NEW.ownerOid);
+    END IF;
+
+    -- after trigger returns null
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER m_ref_object_parent_org_closure_tr
+    AFTER INSERT OR UPDATE OR DELETE ON m_ref_object_parent_org
+    FOR EACH ROW EXECUTE FUNCTION update_org_closure();
+CREATE TRIGGER m_ref_object_parent_org_closure_trunc_tr
+    AFTER TRUNCATE ON m_ref_object_parent_org
+    FOR EACH STATEMENT EXECUTE FUNCTION update_org_closure();
+
+-- The trigger that maintains the identity lines (o => o) of the closure for m_org rows.
+CREATE OR REPLACE FUNCTION update_org_closure_org()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_rebuild();
+    ELSIF TG_OP = 'INSERT' THEN
+        INSERT INTO m_org_closure VALUES (NEW.oid, NEW.oid)
+            ON CONFLICT DO NOTHING;
+    ELSE -- DELETE, parent-org edges of the org are removed by their own trigger
+        DELETE FROM m_org_closure WHERE ancestor_oid = OLD.oid AND descendant_oid = OLD.oid;
+    END IF;
+
+    -- after trigger returns null
+    RETURN NULL;
+END $$;
+
+-- Update is not necessary, it does not change relations between orgs.
+-- If it does, it is handled by trigger on m_ref_object_parent_org.
+CREATE TRIGGER m_org_closure_tr
+    AFTER INSERT OR DELETE ON m_org
+    FOR EACH ROW EXECUTE FUNCTION update_org_closure_org();
+CREATE TRIGGER m_org_closure_trunc_tr
+    AFTER TRUNCATE ON m_org
+    FOR EACH STATEMENT EXECUTE FUNCTION update_org_closure_org();
+
+-- Rebuilds the closure; this is not needed for normal operation, the closure is always current.
+-- Without force the rebuild is done only if it was requested by orgClosureRefreshNeeded flag
+-- (e.g. set manually after changes with triggers off).
+CREATE OR REPLACE PROCEDURE m_refresh_org_closure(force boolean = false)
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    flag_val text;
+BEGIN
+    SELECT value INTO flag_val FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
+    IF flag_val = 'true' OR force THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_rebuild();
+        DELETE FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
+    END IF;
+END;
+$$;
+
+SELECT m_org_closure_rebuild();
+DELETE FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
+$aa$);
+
 ---
 -- WRITE CHANGES ABOVE ^^
 -- IMPORTANT: update apply_change number at the end of postgres-new.sql
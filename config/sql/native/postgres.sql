@@ -846,72 +846,144 @@ CREATE INDEX m_ref_object_parent_org_targetOidRelationId_idx
 
 -- region org-closure
 /*
-Trigger on m_ref_object_parent_org marks this view for refresh in one m_global_metadata row.
-Closure contains also identity (org = org) entries because:
-* It's easier to do optimized matrix-multiplication based refresh with them later.
+Org closure table contains (ancestor, descendant) pairs for the org hierarchy.
+It is maintained incrementally by the triggers on m_ref_object_parent_org and m_org in the same
+transaction as the change of the parent-org references - it is always current for queries.
+Closure contains also identity (org = org) entries for all orgs because:
 * It actually makes some query easier and requires AND instead of OR conditions.
 * While the table shows that o => o (=> means "is parent of"), this is not the semantics
 of isParent/ChildOf searches and they never return parameter OID as a result.
+Full rebuild is possible with m_refresh_org_closure(true), it is used only for repairs.
 */
-CREATE MATERIALIZED VIEW m_org_closure AS
-WITH RECURSIVE org_h (
-    ancestor_oid, -- ref.targetoid
-    descendant_oid --ref.ownerOid
-    -- paths -- number of different paths, not used for materialized view version
-    -- depth -- possible later, but cycle detected must be added to the recursive term
-) AS (
-    -- non-recursive term:
-    -- Gather all organization oids from parent-org refs and initialize identity lines (o => o).
-    -- We don't want the orgs not in org hierarchy, that would require org triggers too.
-    SELECT o.oid, o.oid FROM m_org o
-        WHERE EXISTS(
-            SELECT 1 FROM m_ref_object_parent_org r
-                WHERE r.targetOid = o.oid OR r.ownerOid = o.oid)
-    UNION
-    -- recursive (iterative) term:
-    -- Generate their parents (anc => desc, that is target => owner), => means "is parent of".
-    SELECT par.targetoid, chi.descendant_oid -- leaving original child there generates closure
-        FROM m_ref_object_parent_org as par, org_h as chi
-        WHERE par.ownerOid = chi.ancestor_oid
-)
-SELECT * FROM org_h;
+CREATE TABLE m_org_closure (
+    ancestor_oid UUID NOT NULL,
+    descendant_oid UUID NOT NULL,
+
+    PRIMARY KEY (ancestor_oid, descendant_oid)
+);
 
--- unique index is like PK if it was table
-CREATE UNIQUE INDEX m_org_closure_asc_desc_idx
-    ON m_org_closure (ancestor_oid, descendant_oid);
 CREATE INDEX m_org_closure_desc_asc_idx
     ON m_org_closure (descendant_oid, ancestor_oid);
 
--- The trigger for m_ref_object_parent_org that flags the view for refresh.
-CREATE OR REPLACE FUNCTION mark_org_closure_for_refresh()
+-- Adds the closure rows for a new parent-org edge (parent => child):
+-- all ancestors of the parent (including itself) become ancestors of all descendants of the child (including itself).
+CREATE OR REPLACE FUNCTION m_org_closure_add_edge(parent_oid UUID, child_oid UUID)
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid)
+        SELECT anc.oid, des.oid
+            FROM (SELECT parent_oid AS oid
+                    UNION SELECT ancestor_oid FROM m_org_closure WHERE descendant_oid = parent_oid) anc,
+                (SELECT child_oid AS oid
+                    UNION SELECT descendant_oid FROM m_org_closure WHERE ancestor_oid = child_oid) des
+        ON CONFLICT DO NOTHING;
+END $$;
+
+-- Removes the closure rows after a parent-org edge (parent => child) was removed.
+-- Only the ancestors of the child and its descendants can change; these are derived again from the remaining edges.
+-- This is correct also for orgs with multiple parents, where the rows may still be valid thanks to another path.
+CREATE OR REPLACE FUNCTION m_org_closure_remove_edge(parent_oid UUID, child_oid UUID)
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    affected UUID[];
+BEGIN
+    SELECT array_agg(oid) INTO affected FROM (
+        SELECT child_oid AS oid
+        UNION SELECT descendant_oid FROM m_org_closure WHERE ancestor_oid = child_oid) des;
+
+    DELETE FROM m_org_closure
+        WHERE descendant_oid = ANY(affected) AND ancestor_oid <> descendant_oid;
+
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid)
+        WITH RECURSIVE org_h (ancestor_oid, descendant_oid) AS (
+            SELECT oid, oid FROM unnest(affected) AS oid
+            UNION
+            SELECT par.targetOid, chi.descendant_oid
+                FROM m_ref_object_parent_org par, org_h chi
+                WHERE par.ownerOid = chi.ancestor_oid
+        )
+        SELECT ancestor_oid, descendant_oid FROM org_h
+            WHERE ancestor_oid <> descendant_oid
+        ON CONFLICT DO NOTHING;
+END $$;
+
+-- Recomputes the whole closure from scratch.
+CREATE OR REPLACE FUNCTION m_org_closure_rebuild()
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    DELETE FROM m_org_closure;
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid)
+        WITH RECURSIVE org_h (
+            ancestor_oid, -- ref.targetoid
+            descendant_oid --ref.ownerOid
+        ) AS (
+            -- non-recursive term: identity lines (o => o) for all orgs
+            SELECT o.oid, o.oid FROM m_org o
+            UNION
+            -- recursive (iterative) term:
+            -- Generate their parents (anc => desc, that is target => owner), => means "is parent of".
+            SELECT par.targetoid, chi.descendant_oid -- leaving original child there generates closure
+                FROM m_ref_object_parent_org as par, org_h as chi
+                WHERE par.ownerOid = chi.ancestor_oid
+        )
+        SELECT * FROM org_h;
+END $$;
+
+-- The trigger for m_ref_object_parent_org that updates the closure.
+-- Changes of the org structure are serialized by transaction-level advisory lock,
+-- otherwise concurrent transactions could miss each other's edges when computing the closure rows.
+CREATE OR REPLACE FUNCTION update_org_closure()
     RETURNS trigger
     LANGUAGE plpgsql
 AS $$
 BEGIN
-    IF TG_OP = 'TRUNCATE' OR OLD.ownerType = 'ORG' OR NEW.ownerType = 'ORG' THEN
-        INSERT INTO m_global_metadata VALUES ('orgClosureRefreshNeeded', 'true')
-            ON CONFLICT (name) DO UPDATE SET value = 'true';
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_rebuild();
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.ownerType = 'ORG' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_remove_edge(OLD.targetOid, OLD.ownerOid);
+    END IF;
+    IF TG_OP IN ('UPDATE', 'INSERT') AND NEW.ownerType = 'ORG' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_add_edge(NEW.targetOid, NEW.ownerOid);
     END IF;
 
     -- after trigger returns null
     RETURN NULL;
 END $$;
 
-CREATE TRIGGER m_ref_object_parent_mark_refresh_tr
+CREATE TRIGGER m_ref_object_parent_org_closure_tr
     AFTER INSERT OR UPDATE OR DELETE ON m_ref_object_parent_org
-    FOR EACH ROW EXECUTE FUNCTION mark_org_closure_for_refresh();
-CREATE TRIGGER m_ref_object_parent_mark_refresh_trunc_tr
+    FOR EACH ROW EXECUTE FUNCTION update_org_closure();
+CREATE TRIGGER m_ref_object_parent_org_closure_trunc_tr
     AFTER TRUNCATE ON m_ref_object_parent_org
-    FOR EACH STATEMENT EXECUTE FUNCTION mark_org_closure_for_refresh();
+    FOR EACH STATEMENT EXECUTE FUNCTION update_org_closure();
 
--- The trigger that flags the view for refresh after m_org changes.
-CREATE OR REPLACE FUNCTION mark_org_closure_for_refresh_org()
+-- The trigger that maintains the identity lines (o => o) of the closure for m_org rows.
+CREATE OR REPLACE FUNCTION update_org_closure_org()
     RETURNS trigger
     LANGUAGE plpgsql
 AS $$
 BEGIN
-    INSERT INTO m_global_metadata VALUES ('orgClosureRefreshNeeded', 'true')
-        ON CONFLICT (name) DO UPDATE SET value = 'true';
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_rebuild();
+    ELSIF TG_OP = 'INSERT' THEN
+        INSERT INTO m_org_closure VALUES (NEW.oid, NEW.oid)
+            ON CONFLICT DO NOTHING;
+    ELSE -- DELETE, parent-org edges of the org are removed by their own trigger
+        DELETE FROM m_org_closure WHERE ancestor_oid = OLD.oid AND descendant_oid = OLD.oid;
+    END IF;
 
     -- after trigger returns null
     RETURN NULL;
@@ -919,37 +991,28 @@ END $$;
 
 -- Update is not necessary, it does not change relations between orgs.
 -- If it does, it is handled by trigger on m_ref_object_parent_org.
-CREATE TRIGGER m_org_mark_refresh_tr
+CREATE TRIGGER m_org_closure_tr
     AFTER INSERT OR DELETE ON m_org
-    FOR EACH ROW EXECUTE FUNCTION mark_org_closure_for_refresh_org();
-CREATE TRIGGER m_org_mark_refresh_trunc_tr
+    FOR EACH ROW EXECUTE FUNCTION update_org_closure_org();
+CREATE TRIGGER m_org_closure_trunc_tr
     AFTER TRUNCATE ON m_org
-    FOR EACH STATEMENT EXECUTE FUNCTION mark_org_closure_for_refresh_org();
+    FOR EACH STATEMENT EXECUTE FUNCTION update_org_closure_org();
 
--- This procedure for conditional refresh when needed is called from the application code.
--- The refresh can be forced, e.g. after many changes with triggers off (or just to be sure).
+-- Rebuilds the closure; this is not needed for normal operation, the closure is always current.
+-- Without force the rebuild is done only if it was requested by orgClosureRefreshNeeded flag
+-- (e.g. set manually after changes with triggers off).
 CREATE OR REPLACE PROCEDURE m_refresh_org_closure(force boolean = false)
     LANGUAGE plpgsql
 AS $$
 DECLARE
     flag_val text;
 BEGIN
-    -- We use advisory session lock only for the check + refresh, then release it immediately.
-    -- This can still dead-lock two transactions in a single thread on the select/delete combo,
-    -- (I mean, who would do that?!) but works fine for parallel transactions.
-    PERFORM pg_advisory_lock(47);
-    BEGIN
-        SELECT value INTO flag_val FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
-        IF flag_val = 'true' OR force THEN
-            REFRESH MATERIALIZED VIEW m_org_closure;
-            DELETE FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
-        END IF;
-        PERFORM pg_advisory_unlock(47);
-    EXCEPTION WHEN OTHERS THEN
-        -- Whatever happens we definitely want to release the lock.
-        PERFORM pg_advisory_unlock(47);
-        RAISE;
-    END;
+    SELECT value INTO flag_val FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
+    IF flag_val = 'true' OR force THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_rebuild();
+        DELETE FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
+    END IF;
 END;
 $$;
 -- endregion
@@ -2643,4 +2706,4 @@ END $$;
 -- This is important to avoid applying any change more than once.
 -- Also update SqaleUtils.CURRENT_SCHEMA_CHANGE_NUMBER
 -- repo/repo-sqale/src/main/java/com/evolveum/midpoint/repo/sqale/SqaleUtils.java
-call apply_change(50, $$ SELECT 1 $$, true);
+call apply_change(51, $$ SELECT 1 $$, true);
@@ -19,6 +19,7 @@ import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvid
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.gui.api.page.PageBase;
 import com.evolveum.midpoint.gui.api.util.WebComponentUtil;
@@ -27,6 +28,7 @@ import com.evolveum.midpoint.model.api.ModelInteractionService;
 import com.evolveum.midpoint.model.api.ModelService;
 import com.evolveum.midpoint.model.api.authentication.CompiledGuiProfile;
 import com.evolveum.midpoint.model.api.authentication.CompiledObjectCollectionView;
+import com.evolveum.midpoint.prism.PrismConstants;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.query.ObjectOrdering;
 import com.evolveum.midpoint.prism.query.ObjectPaging;
@@ -60,6 +62,17 @@ public abstract class BaseSortableDataProvider<T extends Serializable> extends S
     private boolean exportSize = false;
     private long exportLimit = -1;
 
+    /**
+     * OIDs of the last objects before the page offsets, used as paging cookies, see {@link #createPaging(long, long, Serializable)}.
+     * Valid only for {@link #seekCursorsScope} and {@link #seekCursorsSort}.
+     */
+    private final Map<Long, String> seekCursors = new HashMap<>();
+    private Serializable seekCursorsScope;
+    private SortParam<String> seekCursorsSort;
+    /** Offset and size of the page for which the last paging was created, see {@link #rememberSeekCursor}. */
+    private long seekPageOffset = -1;
+    private long seekPageSize;
+
     public BaseSortableDataProvider(Component component) {
         this(component, false, true);
     }
@@ -221,6 +234,96 @@ public abstract class BaseSortableDataProvider<T extends Serializable> extends S
         return getPrismContext().queryFactory().createPaging(o, size, orderings);
     }
 
+    /**
+     * Creates paging like {@link #createPaging(long, long)}, but if the OID of the last object before the offset
+     * is known for the same search scope and sorting (see {@link #rememberSeekCursor}), it is used as a paging cookie
+     * instead of the offset.
+     * Repository then continues right after that object instead of reading and skipping all the preceding rows,
+     * which makes deep pages of big tables much faster.
+     * Ordering by OID is always added when the cookie is supported, so the offset and cookie pages are consistent.
+     *
+     * @param searchScope identification of the search, e.g. type and filter; remembered cursors are dropped when it changes
+     */
+    public ObjectPaging createPaging(long offset, long pageSize, Serializable searchScope) {
+        if (!isSeekPagingSupported()) {
+            return createPaging(offset, pageSize);
+        }
+
+        if (!Objects.equals(searchScope, seekCursorsScope) || !Objects.equals(getSort(), seekCursorsSort)) {
+            seekCursors.clear();
+            seekCursorsScope = searchScope;
+            seekCursorsSort = getSort();
+        }
+
+        List<ObjectOrdering> orderings = new ArrayList<>();
+        if (!isOrderingDisabled()) {
+            orderings.addAll(createObjectOrderings(getSort()));
+        }
+        OrderDirection oidDirection = !orderings.isEmpty()
+                && orderings.get(0).getDirection() == OrderDirection.DESCENDING
+                ? OrderDirection.DESCENDING : OrderDirection.ASCENDING;
+        orderings.add(getPrismContext().queryFactory().createOrdering(PrismConstants.T_ID, oidDirection));
+        ObjectPaging paging = getPrismContext().queryFactory().createPaging(
+                safeLongToInteger(offset), safeLongToInteger(pageSize), orderings);
+        seekPageOffset = offset;
+        seekPageSize = pageSize;
+
+        String cursor = seekCursors.get(offset);
+        // repository supports the cookie only with ordering by single item (and OID)
+        if (cursor != null && orderings.size() <= 2) {
+            LOGGER.trace("Using paging cookie {} instead of offset {}", cursor, offset);
+            paging.setOffset(null);
+            paging.setCookie(cursor);
+        }
+        return paging;
+    }
+
+    /**
+     * Remembers the OID of the last object of the page searched with the last paging created by
+     * {@link #createPaging(long, long, Serializable)}, which can be used as the paging cookie for the next page.
+     * Should be called only by the search using that paging in the repository, not by the searches
+     * that use the offset in other ways (e.g. for in-memory lists).
+     */
+    protected void rememberSeekCursor(int pageResultSize, String lastOid) {
+        if (isSeekPagingSupported() && seekPageOffset >= 0 && pageResultSize == seekPageSize && lastOid != null) {
+            seekCursors.put(seekPageOffset + seekPageSize, lastOid);
+        }
+        seekPageOffset = -1;
+    }
+
+    /**
+     * Checks the page searched with the paging created by {@link #createPaging(long, long, Serializable)}:
+     * if the paging cookie was used and the page is shorter than the page size, although there are more objects
+     * after the offset (e.g. the last object of the previous page was deleted or its order key was changed
+     * in the meantime), the cursors for this and the following pages are dropped, and the paging to search
+     * the page again by the offset is returned. Otherwise, returns null.
+     * Must be called before {@link #rememberSeekCursor(int, String)}.
+     */
+    protected @Nullable ObjectPaging createOffsetPagingIfCookiePageIsShort(
+            @Nullable ObjectPaging paging, int pageResultSize) {
+        if (paging == null || paging.getCookie() == null || seekPageOffset < 0
+                || pageResultSize >= seekPageSize || seekPageOffset + pageResultSize >= size()) {
+            return null;
+        }
+        LOGGER.debug("Page for paging cookie {} has only {} objects, searching again with offset {}",
+                paging.getCookie(), pageResultSize, seekPageOffset);
+        long offset = seekPageOffset;
+        seekCursors.keySet().removeIf(cursorOffset -> cursorOffset >= offset);
+        ObjectPaging offsetPaging = paging.clone();
+        offsetPaging.setCookie(null);
+        offsetPaging.setOffset(safeLongToInteger(offset));
+        return offsetPaging;
+    }
+
+    /**
+     * Returns true if the paging cookie can be used to get the page after the known last object,
+     * which is supported by the native repository for object searches.
+     * False by default, should be overridden in the providers of objects that use {@link #createPaging(long, long, Serializable)}.
+     */
+    protected boolean isSeekPagingSupported() {
+        return false;
+    }
+
     /**
      * Could be overridden in subclasses.
      */
@@ -238,6 +341,7 @@ public abstract class BaseSortableDataProvider<T extends Serializable> extends S
 
     public void clearCache() {
         cache.clear();
+        seekCursors.clear();
         getAvailableData().clear();
     }
 
@@ -91,7 +91,6 @@ public abstract class SelectableBeanDataProvider<T extends Serializable> extends
 
         OperationResult result = new OperationResult(OPERATION_SEARCH_OBJECTS);
         try {
-            ObjectPaging paging = createPaging(offset, pageSize);
             Task task = getPageBase().createSimpleTask(OPERATION_SEARCH_OBJECTS);
 
             ObjectQuery query = getQuery();
@@ -101,6 +100,8 @@ public abstract class SelectableBeanDataProvider<T extends Serializable> extends
                 }
                 query = PrismContext.get().queryFactory().createQuery();
             }
+            ObjectPaging paging = createPaging(offset, pageSize,
+                    (Serializable) Arrays.asList(getType(), query.getFilter()));
             query.setPaging(paging);
 
             if (LOGGER.isTraceEnabled()) {
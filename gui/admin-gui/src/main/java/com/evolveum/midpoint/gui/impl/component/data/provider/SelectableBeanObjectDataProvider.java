@@ -22,6 +22,7 @@ import com.evolveum.midpoint.gui.api.util.WebModelServiceUtils;
 import com.evolveum.midpoint.gui.impl.component.search.Search;
 import com.evolveum.midpoint.gui.impl.model.SelectableObjectModel;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.SelectorOptions;
@@ -33,6 +34,8 @@ import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.web.component.util.SelectableBean;
 import com.evolveum.midpoint.web.component.util.SelectableBeanImpl;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 
 /**
  * @author lazyman
@@ -93,6 +96,14 @@ public class SelectableBeanObjectDataProvider<O extends ObjectType> extends Sele
                 type, getQuery(), currentOptions, task, result);
     }
 
+    @Override
+    protected boolean isSeekPagingSupported() {
+        // Resources and shadows may be searched by provisioning on the resource, these use the offset.
+        return getPageBase().isNativeRepo()
+                && !ResourceType.class.equals(getType())
+                && !ShadowType.class.equals(getType());
+    }
+
     protected boolean isMemberPanel() {
         return isMemberPanel;
     }
@@ -106,8 +117,18 @@ public class SelectableBeanObjectDataProvider<O extends ObjectType> extends Sele
         if (taskConsumer != null) {
             taskConsumer.accept(task);
         }
-        return getModelService().searchObjects(type, query, options, task, result)
+        List<O> objects = getModelService().searchObjects(type, query, options, task, result)
                 .map(prismObject -> prismObject.asObjectable());
+        ObjectPaging offsetPaging = createOffsetPagingIfCookiePageIsShort(query.getPaging(), objects.size());
+        if (offsetPaging != null) {
+            query.setPaging(offsetPaging);
+            objects = getModelService().searchObjects(type, query, options, task, result)
+                    .map(prismObject -> prismObject.asObjectable());
+        }
+        if (!objects.isEmpty()) {
+            rememberSeekCursor(objects.size(), objects.get(objects.size() - 1).getOid());
+        }
+        return objects;
     }
 
     @Override
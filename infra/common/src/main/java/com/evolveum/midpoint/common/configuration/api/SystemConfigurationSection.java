@@ -22,4 +22,7 @@ public interface SystemConfigurationSection {
     String getJhsdb();
 
     String getLogFile();
+
+    /** Should the scripts found in selected objects be compiled (in the background) at system startup? */
+    boolean isPrecompileScripts();
 }
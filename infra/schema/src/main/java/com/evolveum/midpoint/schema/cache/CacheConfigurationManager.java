@@ -56,6 +56,7 @@ public class CacheConfigurationManager {
 
     private boolean wrongConfiguration;
     private Map<CacheType, CacheConfiguration> compiledGlobalConfigurations; // not null if !wrongConfiguration
+    private Map<CacheType, CacheMemoryLimits> compiledMemoryLimits = Map.of();
 
     private final ThreadLocal<ThreadLocalConfiguration> threadLocalConfiguration = new ThreadLocal<>();
 
@@ -71,6 +72,7 @@ public class CacheConfigurationManager {
             defaultCachingProfile = prismContext.parserFor(stream).xml().parseRealValue(CachingProfileType.class);
             stream.close();
             compiledGlobalConfigurations = compileConfigurations(null, emptySet());
+            compiledMemoryLimits = compileMemoryLimits(null, compiledGlobalConfigurations);
         } catch (SchemaException | IOException e) {
             throw new SystemException("Couldn't read and parse default caching profile: " + e.getMessage(), e);
         }
@@ -90,9 +92,11 @@ public class CacheConfigurationManager {
                 LOGGER.info("Applying caching configuration: {} profile(s)",
                         currentGlobalConfiguration != null ? currentGlobalConfiguration.getProfile().size() : 0);
                 compiledGlobalConfigurations = compileConfigurations(currentGlobalConfiguration, emptySet());
+                compiledMemoryLimits = compileMemoryLimits(currentGlobalConfiguration, compiledGlobalConfigurations);
                 wrongConfiguration = false;
             } else {
                 compiledGlobalConfigurations = null;
+                compiledMemoryLimits = Map.of();
                 wrongConfiguration = true;
             }
         } catch (Throwable t) {
@@ -145,6 +149,14 @@ public class CacheConfigurationManager {
         }
     }
 
+    /**
+     * Memory limits for given (global) cache. They are taken from global profiles only, as thread-local profiles
+     * are irrelevant for node-level caches.
+     */
+    public @NotNull CacheMemoryLimits getMemoryLimits(CacheType type) {
+        return compiledMemoryLimits.getOrDefault(type, CacheMemoryLimits.NONE);
+    }
+
     class ThreadLocalConfiguration implements DebugDumpable {
         Map<CacheType, CacheConfiguration> preparedConfigurations;
         CachingConfigurationType configurationsPreparedFrom;
@@ -234,6 +246,69 @@ public class CacheConfigurationManager {
         }
     }
 
+    @NotNull
+    private Map<CacheType, CacheMemoryLimits> compileMemoryLimits(
+            @Nullable CachingConfigurationType configuration, @NotNull Map<CacheType, CacheConfiguration> compiledConfigurations) {
+        try {
+            Map<CacheType, CacheMemoryLimits> rv = new HashMap<>();
+            List<CachingProfileType> profiles = new ArrayList<>();
+            profiles.add(defaultCachingProfile);
+            profiles.addAll(getRelevantProfiles(configuration, emptySet()));
+            for (CachingProfileType profile : profiles) {
+                CacheSettingsType common = profile.getGlobalRepoCache();
+                addMemoryLimits(rv, CacheType.GLOBAL_REPO_OBJECT_CACHE,
+                        common != null ? common : profile.getGlobalRepoObjectCache(), compiledConfigurations);
+                addMemoryLimits(rv, CacheType.GLOBAL_REPO_QUERY_CACHE,
+                        common != null ? common : profile.getGlobalRepoQueryCache(), compiledConfigurations);
+            }
+            if (shouldTrace(configuration)) {
+                LOGGER.info("Compiled memory limits: {}", rv);
+            }
+            return rv;
+        } catch (SchemaException e) {
+            throw new SystemException("Couldn't compile cache memory limits: " + e.getMessage(), e);
+        }
+    }
+
+    private void addMemoryLimits(Map<CacheType, CacheMemoryLimits> aggregate, CacheType cacheType, CacheSettingsType settings,
+            Map<CacheType, CacheConfiguration> compiledConfigurations) throws SchemaException {
+        if (settings == null) {
+            return;
+        }
+        CacheMemoryLimits limits = aggregate.get(cacheType);
+        if (limits == null || Boolean.FALSE.equals(settings.isAppend())) {
+            limits = new CacheMemoryLimits();
+            aggregate.put(cacheType, limits);
+        }
+        if (settings.getMaxHeapPercentage() != null) {
+            limits.setMaxHeapPercentage(checkHeapPercentage(settings.getMaxHeapPercentage()));
+        }
+        for (CacheObjectTypeSettingsType objectTypeSetting : settings.getObjectTypeSettings()) {
+            Integer percentage = objectTypeSetting.getMaxHeapPercentage();
+            if (percentage == null) {
+                continue;
+            }
+            // empty object type list means "apply to all supported types"; here we take the types from the final configuration
+            Collection<Class<?>> applyTo;
+            if (objectTypeSetting.getObjectType().isEmpty()) {
+                CacheConfiguration configuration = compiledConfigurations.get(cacheType);
+                applyTo = configuration != null ? configuration.getObjectTypes().keySet() : emptySet();
+            } else {
+                applyTo = resolveClassNames(objectTypeSetting.getObjectType());
+            }
+            for (Class<?> objectType : applyTo) {
+                limits.setMaxHeapPercentage(objectType, checkHeapPercentage(percentage));
+            }
+        }
+    }
+
+    private int checkHeapPercentage(int percentage) throws SchemaException {
+        if (percentage <= 0 || percentage > 100) {
+            throw new SchemaException("Heap percentage must be between 1 and 100: " + percentage);
+        }
+        return percentage;
+    }
+
     private boolean shouldTrace(@Nullable CachingConfigurationType configuration) {
         return configuration != null && Boolean.TRUE.equals(configuration.isTraceConfiguration());
     }
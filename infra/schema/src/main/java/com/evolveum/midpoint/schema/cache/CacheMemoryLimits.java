@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.schema.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.util.annotation.Experimental;
+
+/**
+ * Memory limits for a node-level cache, compiled from `maxHeapPercentage` items of global caching profiles.
+ *
+ * They are kept aside of {@link com.evolveum.midpoint.util.caching.CacheConfiguration}, because they are relevant
+ * for global caches only, and thread-local profiles cannot change them.
+ *
+ * Instances provided by {@link CacheConfigurationManager} must not be modified.
+ */
+@Experimental
+public class CacheMemoryLimits {
+
+    public static final CacheMemoryLimits NONE = new CacheMemoryLimits();
+
+    private Integer maxHeapPercentage;
+    @NotNull private final Map<Class<?>, Integer> maxHeapPercentagePerType = new HashMap<>();
+
+    void setMaxHeapPercentage(Integer maxHeapPercentage) {
+        this.maxHeapPercentage = maxHeapPercentage;
+    }
+
+    void setMaxHeapPercentage(@NotNull Class<?> type, int maxHeapPercentage) {
+        maxHeapPercentagePerType.put(type, maxHeapPercentage);
+    }
+
+    /** Maximal estimated size of the whole cache (in bytes), or null if the size is not limited by memory. */
+    public @Nullable Long getMaxBytes() {
+        return toBytes(maxHeapPercentage);
+    }
+
+    /** Maximal estimated size of entries of given type (in bytes), or null if there is no such limit. */
+    public @Nullable Long getMaxBytes(@NotNull Class<?> type) {
+        return toBytes(maxHeapPercentagePerType.get(type));
+    }
+
+    public boolean hasTypeLimits() {
+        return !maxHeapPercentagePerType.isEmpty();
+    }
+
+    /** True if there is any limit, i.e. the sizes of cached entries have to be estimated. */
+    public boolean isActive() {
+        return getMaxBytes() != null || hasTypeLimits();
+    }
+
+    private static Long toBytes(Integer percentage) {
+        return percentage != null ? Runtime.getRuntime().maxMemory() / 100 * percentage : null;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheMemoryLimits{" +
+                "maxHeapPercentage=" + maxHeapPercentage +
+                ", maxHeapPercentagePerType=" + maxHeapPercentagePerType +
+                '}';
+    }
+}
@@ -15,9 +15,15 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
  */
 public enum InternalCounters {
 
-    /** This denotes parsing from XML in {@link ResourceSchemaFactory#getNativeSchema(ResourceType)}. */
+    /**
+     * This denotes parsing from XML in {@link ResourceSchemaFactory#getNativeSchema(ResourceType)}, i.e. the native schema
+     * is needed for a resource object. The parsed schema may be reused, see {@link #RESOURCE_SCHEMA_REUSE_COUNT}.
+     */
     RESOURCE_SCHEMA_PARSE_COUNT("resourceSchemaParseCount", "resource schema parse count", InternalOperationClasses.RESOURCE_SCHEMA_OPERATIONS),
 
+    /** The native schema for a resource object is reused from a previously parsed one with the same content. */
+    RESOURCE_SCHEMA_REUSE_COUNT("resourceSchemaReuseCount", "resource schema reuse count", InternalOperationClasses.RESOURCE_SCHEMA_OPERATIONS),
+
     RESOURCE_SCHEMA_FETCH_COUNT("resourceSchemaFetchCount", "resource schema fetch count", InternalOperationClasses.REPOSITORY_OPERATIONS),
 
     /** Resource definition is fetched from the repository (in ResourceManager; not necessarily in other places). */
@@ -38,6 +38,9 @@ public class InternalsConfig {
     private static final String MODEL_PROFILING = "modelProfiling";
     private static final String DETAILED_AUTHORIZATION_LOG = "detailedAuthorizationLog";
     private static final String SHADOW_CACHING_DEFAULT = "shadowCachingDefault";
+    private static final String SHADOW_LOOKUP_BATCH_SIZE = "shadowLookupBatchSize";
+
+    private static final int DEFAULT_SHADOW_LOOKUP_BATCH_SIZE = 50;
 
     /**
      * Checks for consistency of data structures (e.g. prism objects, containers, contexts).
@@ -95,6 +98,14 @@ public class InternalsConfig {
      */
     @Nullable public static String shadowCachingDefaultDefault;
 
+    /**
+     * How many objects found on a resource during search get their repo shadows looked up by a single repository query.
+     * Values of 1 or lower turn the batched lookup off (i.e. each shadow is looked up individually).
+     *
+     * Can be set via `midpoint.internals.shadowLookupBatchSize` property.
+     */
+    private static int shadowLookupBatchSize = DEFAULT_SHADOW_LOOKUP_BATCH_SIZE;
+
     public static boolean isPrismMonitoring() {
         return prismMonitoring;
     }
@@ -198,6 +209,15 @@ public class InternalsConfig {
         return shadowCachingDefault;
     }
 
+    public static int getShadowLookupBatchSize() {
+        return shadowLookupBatchSize;
+    }
+
+    @VisibleForTesting
+    public static void setShadowLookupBatchSize(int shadowLookupBatchSize) {
+        InternalsConfig.shadowLookupBatchSize = shadowLookupBatchSize;
+    }
+
     public static void set(Configuration internalsConfig) {
         if (internalsConfig.containsKey("developmentMode")) {
             boolean developmentMode = internalsConfig.getBoolean("developmentMode");
@@ -218,6 +238,7 @@ public class InternalsConfig {
         modelProfiling = internalsConfig.getBoolean(MODEL_PROFILING, modelProfiling);
         // TODO: testingPaths
         detailedAuthorizationLog = internalsConfig.getBoolean(DETAILED_AUTHORIZATION_LOG, detailedAuthorizationLog);
+        shadowLookupBatchSize = internalsConfig.getInt(SHADOW_LOOKUP_BATCH_SIZE, shadowLookupBatchSize);
 
         shadowCachingDefault =
                 ShadowCachingDefault.fromString(
@@ -237,6 +258,7 @@ public class InternalsConfig {
         modelProfiling = false;
         testingPaths = null;
         detailedAuthorizationLog = false;
+        shadowLookupBatchSize = DEFAULT_SHADOW_LOOKUP_BATCH_SIZE;
         // intentionally not manipulating shadow caching (at least for now)
     }
 
@@ -9,9 +9,16 @@ package com.evolveum.midpoint.schema.processor;
 
 import static com.evolveum.midpoint.util.MiscUtil.stateCheck;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 import com.evolveum.midpoint.util.DOMUtil;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.jetbrains.annotations.*;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -24,12 +31,30 @@ import com.evolveum.midpoint.schema.util.ResourceTypeUtil;
 import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.exception.ConfigurationException;
 import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.LayerType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
 
 /** The official place where resource schemas are created. */
 public class ResourceSchemaFactory {
 
+    private static final Trace LOGGER = TraceManager.getTrace(ResourceSchemaFactory.class);
+
+    /** Maximal number of parsed native schemas kept in {@link #PARSED_NATIVE_SCHEMAS}. */
+    private static final int PARSED_NATIVE_SCHEMAS_MAX_SIZE = 200;
+
+    /**
+     * Parsed native schemas, keyed by the hash of their XSD form. Values are softly referenced, as the schemas are also kept
+     * in resource objects (mainly in the resource cache); here they only need to survive until a new version of a resource
+     * is parsed.
+     */
+    private static final Cache<String, NativeResourceSchema> PARSED_NATIVE_SCHEMAS = CacheBuilder.newBuilder()
+            .maximumSize(PARSED_NATIVE_SCHEMAS_MAX_SIZE)
+            .softValues()
+            .build();
+
     private static final String USER_DATA_KEY_NATIVE_SCHEMA = ResourceSchema.class.getName() + ".nativeSchema";
     private static final String USER_DATA_KEY_COMPLETE_SCHEMA = ResourceSchema.class.getName() + ".completeSchema";
 
@@ -185,15 +210,52 @@ public class ResourceSchemaFactory {
             } else {
                 stateCheck(!resource.isImmutable(), "Trying to set parsed schema on immutable resource: %s", resource);
                 InternalMonitor.recordCount(InternalCounters.RESOURCE_SCHEMA_PARSE_COUNT);
-                NativeResourceSchema parsedSchema =
-                        parseNativeSchema(resourceXsdSchemaElement, "resource schema of " + resource);
-                parsedSchema.freeze();
+                NativeResourceSchema parsedSchema = getOrParseNativeSchema(resourceXsdSchemaElement, resource);
                 resource.setUserData(USER_DATA_KEY_NATIVE_SCHEMA, parsedSchema);
                 return parsedSchema;
             }
         }
     }
 
+    /**
+     * Parses the schema, unless the same schema (by content) was parsed recently - for this or for another resource object.
+     *
+     * Each modification of a resource creates a new resource object, which needs its parsed schema. But most modifications
+     * (of the configuration, schema handling, operational state, and so on) do not touch the native schema; and parsing of
+     * schemas with hundreds of object classes takes seconds. The parsed native schema is immutable and does not depend
+     * on anything other than the XSD, so it can be shared.
+     */
+    private static @NotNull NativeResourceSchema getOrParseNativeSchema(
+            @NotNull Element resourceXsdSchemaElement, @NotNull PrismObject<ResourceType> resource) throws SchemaException {
+        String contentKey = computeContentKey(resourceXsdSchemaElement);
+        NativeResourceSchema cachedSchema = PARSED_NATIVE_SCHEMAS.getIfPresent(contentKey);
+        if (cachedSchema != null) {
+            InternalMonitor.recordCount(InternalCounters.RESOURCE_SCHEMA_REUSE_COUNT);
+            LOGGER.trace("Reusing parsed native schema for {}", resource);
+            return cachedSchema;
+        }
+        NativeResourceSchema parsedSchema = parseNativeSchema(resourceXsdSchemaElement, "resource schema of " + resource);
+        parsedSchema.freeze();
+        PARSED_NATIVE_SCHEMAS.put(contentKey, parsedSchema);
+        return parsedSchema;
+    }
+
+    private static @NotNull String computeContentKey(@NotNull Element resourceXsdSchemaElement) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new SystemException(e); // should not occur, SHA-256 is always available
+        }
+        String serialized = DOMUtil.serializeDOMToString(resourceXsdSchemaElement);
+        return HexFormat.of().formatHex(digest.digest(serialized.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @VisibleForTesting
+    public static void clearParsedNativeSchemas() {
+        PARSED_NATIVE_SCHEMAS.invalidateAll();
+    }
+
     @VisibleForTesting
     public static boolean hasParsedSchema(ResourceType resource) {
         return resource.asPrismObject().getUserData(USER_DATA_KEY_NATIVE_SCHEMA) != null;
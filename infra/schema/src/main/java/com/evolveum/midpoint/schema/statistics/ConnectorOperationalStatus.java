@@ -29,6 +29,14 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
     public static final String F_POOL_CONFIG_MAX_IDLE_TIME = "poolConfigMaxIdleTime";
     public static final String F_POOL_STATUS_NUM_IDLE = "poolStatusNumIdle";
     public static final String F_POOL_STATUS_NUM_ACTIVE = "poolStatusNumActive";
+    public static final String F_POOL_CONFIG_ADAPTIVE_MAX_SIZE = "poolConfigAdaptiveMaxSize";
+    public static final String F_POOL_STATUS_NUM_IN_USE = "poolStatusNumInUse";
+    public static final String F_POOL_STATUS_NUM_WAITING = "poolStatusNumWaiting";
+    public static final String F_POOL_STATUS_LIMIT = "poolStatusLimit";
+    public static final String F_POOL_STATUS_BORROW_COUNT = "poolStatusBorrowCount";
+    public static final String F_POOL_STATUS_BORROW_WAIT_COUNT = "poolStatusBorrowWaitCount";
+    public static final String F_POOL_STATUS_BORROW_WAIT_TIME = "poolStatusBorrowWaitTime";
+    public static final String F_POOL_STATUS_MAX_BORROW_WAIT_TIME = "poolStatusMaxBorrowWaitTime";
 
     private String connectorName;
     private String connectorClassName;
@@ -41,11 +49,21 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
     private Long poolConfigWaitTimeout;
     private Long poolConfigMinEvictableIdleTime;
     private Long poolConfigMaxIdleTime;
+    private Integer poolConfigAdaptiveMaxSize;
 
     // pool status
     private Integer poolStatusNumIdle;
     private Integer poolStatusNumActive;
 
+    // pool usage as seen by midPoint (borrow times are in milliseconds)
+    private Integer poolStatusNumInUse;
+    private Integer poolStatusNumWaiting;
+    private Integer poolStatusLimit;
+    private Long poolStatusBorrowCount;
+    private Long poolStatusBorrowWaitCount;
+    private Long poolStatusBorrowWaitTime;
+    private Long poolStatusMaxBorrowWaitTime;
+
     public String getConnectorName() {
         return connectorName;
     }
@@ -134,6 +152,70 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
         this.poolStatusNumActive = poolStatusNumActive;
     }
 
+    public Integer getPoolConfigAdaptiveMaxSize() {
+        return poolConfigAdaptiveMaxSize;
+    }
+
+    public void setPoolConfigAdaptiveMaxSize(Integer poolConfigAdaptiveMaxSize) {
+        this.poolConfigAdaptiveMaxSize = poolConfigAdaptiveMaxSize;
+    }
+
+    public Integer getPoolStatusNumInUse() {
+        return poolStatusNumInUse;
+    }
+
+    public void setPoolStatusNumInUse(Integer poolStatusNumInUse) {
+        this.poolStatusNumInUse = poolStatusNumInUse;
+    }
+
+    public Integer getPoolStatusNumWaiting() {
+        return poolStatusNumWaiting;
+    }
+
+    public void setPoolStatusNumWaiting(Integer poolStatusNumWaiting) {
+        this.poolStatusNumWaiting = poolStatusNumWaiting;
+    }
+
+    public Integer getPoolStatusLimit() {
+        return poolStatusLimit;
+    }
+
+    public void setPoolStatusLimit(Integer poolStatusLimit) {
+        this.poolStatusLimit = poolStatusLimit;
+    }
+
+    public Long getPoolStatusBorrowCount() {
+        return poolStatusBorrowCount;
+    }
+
+    public void setPoolStatusBorrowCount(Long poolStatusBorrowCount) {
+        this.poolStatusBorrowCount = poolStatusBorrowCount;
+    }
+
+    public Long getPoolStatusBorrowWaitCount() {
+        return poolStatusBorrowWaitCount;
+    }
+
+    public void setPoolStatusBorrowWaitCount(Long poolStatusBorrowWaitCount) {
+        this.poolStatusBorrowWaitCount = poolStatusBorrowWaitCount;
+    }
+
+    public Long getPoolStatusBorrowWaitTime() {
+        return poolStatusBorrowWaitTime;
+    }
+
+    public void setPoolStatusBorrowWaitTime(Long poolStatusBorrowWaitTime) {
+        this.poolStatusBorrowWaitTime = poolStatusBorrowWaitTime;
+    }
+
+    public Long getPoolStatusMaxBorrowWaitTime() {
+        return poolStatusMaxBorrowWaitTime;
+    }
+
+    public void setPoolStatusMaxBorrowWaitTime(Long poolStatusMaxBorrowWaitTime) {
+        this.poolStatusMaxBorrowWaitTime = poolStatusMaxBorrowWaitTime;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -148,6 +230,14 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
         result = prime * result + ((poolConfigWaitTimeout == null) ? 0 : poolConfigWaitTimeout.hashCode());
         result = prime * result + ((poolStatusNumActive == null) ? 0 : poolStatusNumActive.hashCode());
         result = prime * result + ((poolStatusNumIdle == null) ? 0 : poolStatusNumIdle.hashCode());
+        result = prime * result + ((poolConfigAdaptiveMaxSize == null) ? 0 : poolConfigAdaptiveMaxSize.hashCode());
+        result = prime * result + ((poolStatusNumInUse == null) ? 0 : poolStatusNumInUse.hashCode());
+        result = prime * result + ((poolStatusNumWaiting == null) ? 0 : poolStatusNumWaiting.hashCode());
+        result = prime * result + ((poolStatusLimit == null) ? 0 : poolStatusLimit.hashCode());
+        result = prime * result + ((poolStatusBorrowCount == null) ? 0 : poolStatusBorrowCount.hashCode());
+        result = prime * result + ((poolStatusBorrowWaitCount == null) ? 0 : poolStatusBorrowWaitCount.hashCode());
+        result = prime * result + ((poolStatusBorrowWaitTime == null) ? 0 : poolStatusBorrowWaitTime.hashCode());
+        result = prime * result + ((poolStatusMaxBorrowWaitTime == null) ? 0 : poolStatusMaxBorrowWaitTime.hashCode());
         return result;
     }
 
@@ -226,6 +316,62 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
         } else if (!poolStatusNumIdle.equals(other.poolStatusNumIdle)) {
             return false;
         }
+        if (poolConfigAdaptiveMaxSize == null) {
+            if (other.poolConfigAdaptiveMaxSize != null) {
+                return false;
+            }
+        } else if (!poolConfigAdaptiveMaxSize.equals(other.poolConfigAdaptiveMaxSize)) {
+            return false;
+        }
+        if (poolStatusNumInUse == null) {
+            if (other.poolStatusNumInUse != null) {
+                return false;
+            }
+        } else if (!poolStatusNumInUse.equals(other.poolStatusNumInUse)) {
+            return false;
+        }
+        if (poolStatusNumWaiting == null) {
+            if (other.poolStatusNumWaiting != null) {
+                return false;
+            }
+        } else if (!poolStatusNumWaiting.equals(other.poolStatusNumWaiting)) {
+            return false;
+        }
+        if (poolStatusLimit == null) {
+            if (other.poolStatusLimit != null) {
+                return false;
+            }
+        } else if (!poolStatusLimit.equals(other.poolStatusLimit)) {
+            return false;
+        }
+        if (poolStatusBorrowCount == null) {
+            if (other.poolStatusBorrowCount != null) {
+                return false;
+            }
+        } else if (!poolStatusBorrowCount.equals(other.poolStatusBorrowCount)) {
+            return false;
+        }
+        if (poolStatusBorrowWaitCount == null) {
+            if (other.poolStatusBorrowWaitCount != null) {
+                return false;
+            }
+        } else if (!poolStatusBorrowWaitCount.equals(other.poolStatusBorrowWaitCount)) {
+            return false;
+        }
+        if (poolStatusBorrowWaitTime == null) {
+            if (other.poolStatusBorrowWaitTime != null) {
+                return false;
+            }
+        } else if (!poolStatusBorrowWaitTime.equals(other.poolStatusBorrowWaitTime)) {
+            return false;
+        }
+        if (poolStatusMaxBorrowWaitTime == null) {
+            if (other.poolStatusMaxBorrowWaitTime != null) {
+                return false;
+            }
+        } else if (!poolStatusMaxBorrowWaitTime.equals(other.poolStatusMaxBorrowWaitTime)) {
+            return false;
+        }
         return true;
     }
 
@@ -249,7 +395,15 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
         DebugUtil.debugDumpWithLabelLn(sb, "poolConfigMinEvictableIdleTime", poolConfigMinEvictableIdleTime, indent + 1);
         DebugUtil.debugDumpWithLabelLn(sb, "poolConfigMaxIdleTime", poolConfigMaxIdleTime, indent + 1);
         DebugUtil.debugDumpWithLabelLn(sb, "poolStatusNumIdle", poolStatusNumIdle, indent + 1);
-        DebugUtil.debugDumpWithLabel(sb, "poolStatusNumActive", poolStatusNumActive, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "poolStatusNumActive", poolStatusNumActive, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "poolConfigAdaptiveMaxSize", poolConfigAdaptiveMaxSize, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "poolStatusNumInUse", poolStatusNumInUse, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "poolStatusNumWaiting", poolStatusNumWaiting, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "poolStatusLimit", poolStatusLimit, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "poolStatusBorrowCount", poolStatusBorrowCount, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "poolStatusBorrowWaitCount", poolStatusBorrowWaitCount, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "poolStatusBorrowWaitTime", poolStatusBorrowWaitTime, indent + 1);
+        DebugUtil.debugDumpWithLabel(sb, "poolStatusMaxBorrowWaitTime", poolStatusMaxBorrowWaitTime, indent + 1);
         return sb.toString();
 
     }
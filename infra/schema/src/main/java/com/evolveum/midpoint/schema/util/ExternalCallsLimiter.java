@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.schema.util;
+
+import java.util.concurrent.Semaphore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.util.annotation.Experimental;
+
+/**
+ * Limits the number of concurrently executing "external" calls, i.e. repository (JDBC) and connector calls,
+ * coming from a group of threads sharing the same {@link Semaphore}. Typically, these are worker threads
+ * of an activity (that may be virtual ones).
+ *
+ * The limiter is bound to the current thread. Calls are counted only at the outermost level: e.g. repository calls
+ * made from within a connector search handler do not acquire another permit. This avoids deadlocks
+ * when all the permits are taken.
+ *
+ * If there is no limiter set for the current thread, {@link #enter()} and {@link #exit()} do nothing.
+ */
+@Experimental
+public class ExternalCallsLimiter {
+
+    private static final ThreadLocal<ExternalCallsLimiter> THREAD_LOCAL = new ThreadLocal<>();
+
+    @NotNull private final Semaphore semaphore;
+
+    /** Number of nested calls currently executing in this thread. The permit is held iff this is greater than zero. */
+    private int depth;
+
+    private ExternalCallsLimiter(@NotNull Semaphore semaphore) {
+        this.semaphore = semaphore;
+    }
+
+    /** Starts limiting the calls in the current thread using given semaphore. Null means no limiting. */
+    public static void setThreadLocal(@Nullable Semaphore semaphore) {
+        if (semaphore != null) {
+            THREAD_LOCAL.set(new ExternalCallsLimiter(semaphore));
+        } else {
+            THREAD_LOCAL.remove();
+        }
+    }
+
+    public static void unsetThreadLocal() {
+        ExternalCallsLimiter limiter = THREAD_LOCAL.get();
+        if (limiter != null) {
+            if (limiter.depth > 0) {
+                limiter.semaphore.release();
+            }
+            THREAD_LOCAL.remove();
+        }
+    }
+
+    /** Marks the start of an external call. Waits for a permit, if needed. Must be paired with {@link #exit()}. */
+    public static void enter() {
+        ExternalCallsLimiter limiter = THREAD_LOCAL.get();
+        if (limiter != null && limiter.depth++ == 0) {
+            limiter.semaphore.acquireUninterruptibly();
+        }
+    }
+
+    /** Marks the end of an external call. */
+    public static void exit() {
+        ExternalCallsLimiter limiter = THREAD_LOCAL.get();
+        if (limiter != null && limiter.depth > 0 && --limiter.depth == 0) {
+            limiter.semaphore.release();
+        }
+    }
+}
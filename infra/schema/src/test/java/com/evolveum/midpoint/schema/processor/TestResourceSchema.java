@@ -302,6 +302,25 @@ public class TestResourceSchema extends AbstractSchemaTest {
         assertCapabilities(resource.asObjectable());
     }
 
+    /** Parsed native schema is shared by resource objects with the same schema, e.g. by versions of the same resource. */
+    @Test
+    public void testNativeSchemaReuse() throws Exception {
+        ResourceSchemaFactory.clearParsedNativeSchemas();
+        File file = new File("src/test/resources/common/xml/ns/resource-opendj.xml");
+        PrismObject<ResourceType> resource1 = PrismTestUtil.parseObject(file);
+        PrismObject<ResourceType> resource2 = PrismTestUtil.parseObject(file);
+        resource2.asObjectable().setDescription("modified");
+
+        // WHEN
+        NativeResourceSchema schema1 = ResourceSchemaFactory.getNativeSchema(resource1);
+        NativeResourceSchema schema2 = ResourceSchemaFactory.getNativeSchema(resource2);
+
+        // THEN
+        assertNotNull("No schema", schema1);
+        assertSame("Native schema was not reused", schema1, schema2);
+        assertTrue("Schema was not attached to the resource", ResourceSchemaFactory.hasParsedSchema(resource2.asObjectable()));
+    }
+
     @Test
     public void testUnmarshallResource() throws Exception {
         // WHEN
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.schema.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Tests {@link ExternalCallsLimiter}.
+ */
+public class TestExternalCallsLimiter extends AbstractUnitTest {
+
+    @AfterMethod
+    public void unsetLimiter() {
+        ExternalCallsLimiter.unsetThreadLocal();
+    }
+
+    @Test
+    public void test100NoLimiter() {
+        when("entering and exiting without a limiter");
+        ExternalCallsLimiter.enter();
+        ExternalCallsLimiter.exit();
+        ExternalCallsLimiter.exit(); // unpaired exit is harmless
+
+        then("nothing happens");
+        ExternalCallsLimiter.unsetThreadLocal();
+    }
+
+    @Test
+    public void test110NestedCallsTakeOnePermit() {
+        given();
+        Semaphore semaphore = new Semaphore(2);
+        ExternalCallsLimiter.setThreadLocal(semaphore);
+
+        when("nested calls are entered");
+        ExternalCallsLimiter.enter();
+        ExternalCallsLimiter.enter();
+        ExternalCallsLimiter.enter();
+
+        then("only one permit is taken");
+        assertThat(semaphore.availablePermits()).isEqualTo(1);
+
+        when("inner calls exit");
+        ExternalCallsLimiter.exit();
+        ExternalCallsLimiter.exit();
+
+        then("the permit is still held");
+        assertThat(semaphore.availablePermits()).isEqualTo(1);
+
+        when("the outermost call exits");
+        ExternalCallsLimiter.exit();
+
+        then("the permit is released");
+        assertThat(semaphore.availablePermits()).isEqualTo(2);
+
+        when("an unpaired exit is called");
+        ExternalCallsLimiter.exit();
+
+        then("no extra permit is released");
+        assertThat(semaphore.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    public void test120UnsetReleasesHeldPermit() {
+        given();
+        Semaphore semaphore = new Semaphore(1);
+        ExternalCallsLimiter.setThreadLocal(semaphore);
+        ExternalCallsLimiter.enter();
+        ExternalCallsLimiter.enter();
+        assertThat(semaphore.availablePermits()).isEqualTo(0);
+
+        when("limiter is unset in the middle of a call");
+        ExternalCallsLimiter.unsetThreadLocal();
+
+        then("the permit is released and further calls are not limited");
+        assertThat(semaphore.availablePermits()).isEqualTo(1);
+        ExternalCallsLimiter.exit();
+        ExternalCallsLimiter.exit();
+        assertThat(semaphore.availablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    public void test130SetNullMeansNoLimiting() {
+        given();
+        Semaphore semaphore = new Semaphore(1);
+        ExternalCallsLimiter.setThreadLocal(semaphore);
+
+        when("limiter is replaced by null");
+        ExternalCallsLimiter.setThreadLocal(null);
+        ExternalCallsLimiter.enter();
+
+        then("no permit is taken");
+        assertThat(semaphore.availablePermits()).isEqualTo(1);
+        ExternalCallsLimiter.exit();
+    }
+
+    @Test
+    public void test200ConcurrencyIsLimited() throws Exception {
+        given();
+        int threads = 10;
+        int permits = 3;
+        Semaphore semaphore = new Semaphore(permits);
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger maximum = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+
+        when("threads sharing the semaphore execute (nested) calls");
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                ExternalCallsLimiter.setThreadLocal(semaphore);
+                try {
+                    for (int j = 0; j < 20; j++) {
+                        ExternalCallsLimiter.enter();
+                        try {
+                            maximum.accumulateAndGet(current.incrementAndGet(), Math::max);
+                            ExternalCallsLimiter.enter(); // nested call
+                            Thread.sleep(1);
+                            ExternalCallsLimiter.exit();
+                            current.decrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } finally {
+                            ExternalCallsLimiter.exit();
+                        }
+                    }
+                } finally {
+                    ExternalCallsLimiter.unsetThreadLocal();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+            assertThat(worker.isAlive()).as("worker is alive").isFalse();
+        }
+
+        then("at most the allowed number of calls executed concurrently");
+        displayValue("Maximal concurrency", maximum.get());
+        assertThat(maximum.get()).isBetween(1, permits);
+        assertThat(semaphore.availablePermits()).isEqualTo(permits);
+    }
+}
@@ -33,7 +33,7 @@ public abstract class AbstractCachingScriptEvaluator<I, C> extends AbstractScrip
     public AbstractCachingScriptEvaluator(
             PrismContext prismContext, Protector protector, LocalizationService localizationService) {
         super(prismContext, protector, localizationService);
-        this.scriptCache = new ScriptCache<>();
+        this.scriptCache = new ScriptCache<>(ScriptCache.DEFAULT_MAX_SIZE, this::onCompiledScriptEvicted);
     }
 
     protected @NotNull ScriptCache<I, C> getScriptCache() {
@@ -51,23 +51,34 @@ public abstract class AbstractCachingScriptEvaluator<I, C> extends AbstractScrip
         return evaluateScript(compiledScript, context);
     }
 
+    /**
+     * Compiles the script and puts it into the cache, without evaluating it. Nothing is done if the script
+     * is already cached. The context needs to contain the expression profiles and the context description only.
+     */
+    public void precompile(@NotNull String codeString, @NotNull ScriptExpressionEvaluationContext context)
+            throws ExpressionEvaluationException, SecurityViolationException {
+        getCompiledScript(codeString, context);
+    }
+
     private C getCompiledScript(String codeString, ScriptExpressionEvaluationContext context)
             throws ExpressionEvaluationException, SecurityViolationException {
-        C cachedCompiledScript = scriptCache.getCode(context.getExpressionProfile(), codeString);
-        if (cachedCompiledScript != null) {
-            return cachedCompiledScript;
-        }
-        InternalMonitor.recordCount(InternalCounters.SCRIPT_COMPILE_COUNT);
-        C compiledScript;
         try {
-            compiledScript = compileScript(codeString, context);
+            return scriptCache.getOrCompileCode(
+                    context.getExpressionProfile(),
+                    codeString,
+                    () -> {
+                        InternalMonitor.recordCount(InternalCounters.SCRIPT_COMPILE_COUNT);
+                        return compileScript(codeString, context);
+                    });
         } catch (ExpressionEvaluationException | SecurityViolationException e) {
             throw e;
         } catch (Exception e) {
             throw new ExpressionEvaluationException(e.getMessage() + " while compiling " + context.getContextDescription(), e);
         }
-        scriptCache.putCode(context.getExpressionProfile(), codeString, compiledScript);
-        return compiledScript;
+    }
+
+    /** Called when the compiled script is evicted from the cache because of the cache size limit. */
+    protected void onCompiledScriptEvicted(@NotNull C compiledScript) {
     }
 
     protected abstract C compileScript(String codeString, ScriptExpressionEvaluationContext context) throws Exception;
@@ -6,44 +6,119 @@
  */
 package com.evolveum.midpoint.model.common.expression.script;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.schema.expression.ExpressionProfile;
+import com.evolveum.midpoint.util.exception.TunnelException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCachePerformanceInformationType;
 
 /**
  * Cache for compiled scripts and interpreters, aware of expression profiles.
  *
+ * It is safe to be used concurrently by many threads. The number of compiled scripts is bounded; least recently
+ * used ones are evicted when the limit is reached. (This is important for deployments that generate the script text
+ * dynamically.) Interpreters are not bounded, as there is at most one for each expression profile.
+ *
  * @param <C> compiled code
  * @author Radovan Semancik
  */
 public class ScriptCache<I,C> {
 
-    private final Map<String, I> interpreterCache = new HashMap<>();
+    /** Default maximum number of compiled scripts kept in a single cache (i.e. for a single language). */
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    /** Key for {@link #interpreterCache} representing `null` profile; the map does not support null keys. */
+    private static final String NO_PROFILE_KEY = "";
+
+    /** Profile ID (or {@link #NO_PROFILE_KEY}) -> interpreter */
+    private final Map<String, I> interpreterCache = new ConcurrentHashMap<>();
+
+    private final Cache<CodeKey, C> codeCache;
+
+    public ScriptCache() {
+        this(DEFAULT_MAX_SIZE, null);
+    }
 
     /**
-     * Profile ID (key; nullable) -> Source code (key) -> Compiled code (value)
+     * @param evictionListener Called when compiled code is evicted because of the size limit (e.g. to release
+     * the resources held by the interpreter for it). Not called on {@link #clear()}.
      */
-    private final Map<String, Map<String, C>> codeCache = new HashMap<>();
-
-    public synchronized I getInterpreter(ExpressionProfile profile) {
-        return interpreterCache.get(getProfileKey(profile));
+    public ScriptCache(int maxSize, @Nullable Consumer<C> evictionListener) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats();
+        if (evictionListener != null) {
+            codeCache = builder
+                    .<CodeKey, C>removalListener(notification -> {
+                        if (notification.getCause() == RemovalCause.SIZE && notification.getValue() != null) {
+                            evictionListener.accept(notification.getValue());
+                        }
+                    })
+                    .build();
+        } else {
+            codeCache = builder.build();
+        }
     }
 
-    public synchronized void putInterpreter(ExpressionProfile profile, I interpreter) {
-        interpreterCache.put(getProfileKey(profile), interpreter);
+    public I getInterpreter(ExpressionProfile profile) {
+        return interpreterCache.get(getInterpreterKey(profile));
     }
 
-    synchronized C getCode(ExpressionProfile profile, String sourceCodeKey) {
-        String profileKey = getProfileKey(profile);
-        Map<String, C> profileCache = codeCache.get(profileKey);
-        return profileCache != null ? profileCache.get(sourceCodeKey) : null;
+    /**
+     * Returns the interpreter for given profile, or creates and caches it. Concurrent requests for the same profile
+     * wait for a single creation, so there is always at most one interpreter per profile.
+     * Failed creations are not cached; the exception is rethrown as is.
+     */
+    public <E extends Exception> I getOrCreateInterpreter(
+            ExpressionProfile profile, InterpreterFactory<I, E> factory) throws E {
+        try {
+            return interpreterCache.computeIfAbsent(getInterpreterKey(profile), key -> {
+                try {
+                    return factory.create();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new TunnelException(e);
+                }
+            });
+        } catch (TunnelException e) {
+            //noinspection unchecked
+            throw (E) e.getCause();
+        }
     }
 
-    synchronized void putCode(ExpressionProfile profile, String sourceCodeKey, C compiledCode) {
-        String profileKey = getProfileKey(profile);
-        Map<String, C> profileCache = codeCache.computeIfAbsent(profileKey, k -> new HashMap<>());
-        profileCache.put(sourceCodeKey, compiledCode);
+    /**
+     * Returns the compiled code from the cache, or compiles and caches it. Concurrent requests for the same code
+     * wait for a single compilation. Failed compilations are not cached; the exception is rethrown as is.
+     */
+    C getOrCompileCode(ExpressionProfile profile, String sourceCodeKey, Callable<C> compiler) throws Exception {
+        try {
+            return codeCache.get(new CodeKey(getProfileKey(profile), sourceCodeKey), compiler);
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            } else if (cause instanceof Error error) {
+                throw error;
+            } else {
+                throw e;
+            }
+        }
     }
 
     private String getProfileKey(ExpressionProfile profile) {
@@ -54,7 +129,51 @@ public class ScriptCache<I,C> {
         }
     }
 
-    public synchronized void clear() {
-        codeCache.clear();
+    private String getInterpreterKey(ExpressionProfile profile) {
+        return Objects.requireNonNullElse(getProfileKey(profile), NO_PROFILE_KEY);
+    }
+
+    public int getCodeCacheSize() {
+        return (int) codeCache.size();
+    }
+
+    public int getInterpreterCacheSize() {
+        return interpreterCache.size();
+    }
+
+    /** Number of compilations executed by {@link #getOrCompileCode(ExpressionProfile, String, Callable)}. */
+    public long getCompilationCount() {
+        return codeCache.stats().loadCount();
+    }
+
+    /** Total time spent in compilations executed by {@link #getOrCompileCode(ExpressionProfile, String, Callable)}. */
+    public long getCompilationTime(@NotNull TimeUnit unit) {
+        return unit.convert(codeCache.stats().totalLoadTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /** Hit and miss counts of the compiled code lookups. */
+    public @NotNull SingleCachePerformanceInformationType getPerformanceInformation(String name) {
+        CacheStats stats = codeCache.stats();
+        return new SingleCachePerformanceInformationType()
+                .name(name)
+                .hitCount((int) stats.hitCount())
+                .missCount((int) stats.missCount())
+                .missTime(getCompilationTime(TimeUnit.MILLISECONDS));
+    }
+
+    /** Clears the compiled code as well as the interpreters (as they may hold references to the compiled code). */
+    public void clear() {
+        codeCache.invalidateAll();
+        interpreterCache.clear();
+    }
+
+    /** Creates an interpreter, see {@link #getOrCreateInterpreter(ExpressionProfile, InterpreterFactory)}. */
+    @FunctionalInterface
+    public interface InterpreterFactory<I, E extends Exception> {
+        I create() throws E;
+    }
+
+    /** The profile key is nullable, as is the {@link ExpressionProfile} provided by the clients. */
+    private record CodeKey(String profileKey, @NotNull String sourceCode) {
     }
 }
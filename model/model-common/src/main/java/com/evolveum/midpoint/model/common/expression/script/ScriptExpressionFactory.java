@@ -8,19 +8,27 @@ package com.evolveum.midpoint.model.common.expression.script;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import com.evolveum.midpoint.schema.expression.ExpressionEvaluatorsProfile;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
 
 import com.evolveum.midpoint.model.common.ModelCommonBeans;
 import com.evolveum.midpoint.model.common.expression.functions.FunctionLibraryBinding;
 import com.evolveum.midpoint.model.common.expression.functions.FunctionLibraryManager;
 import com.evolveum.midpoint.prism.ItemDefinition;
 import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.repo.api.Cache;
+import com.evolveum.midpoint.repo.api.CacheRegistry;
 import com.evolveum.midpoint.repo.common.ObjectResolver;
 import com.evolveum.midpoint.repo.common.expression.ExpressionSyntaxException;
 import com.evolveum.midpoint.schema.AccessDecision;
@@ -30,8 +38,12 @@ import com.evolveum.midpoint.schema.expression.ScriptLanguageExpressionProfile;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ScriptExpressionEvaluatorType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 /**
  * Creates {@link ScriptExpression} instances. They evaluate Groovy/JS/Python/Velocity/... scripts.
@@ -40,10 +52,15 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ScriptExpressionEval
  *
  * . creates {@link ScriptExpression} instances from {@link ScriptExpressionEvaluatorType} beans;
  * . manages {@link ScriptEvaluator} instances for individual languages (Groovy, JavaScript, ...);
+ * . provides the state of their caches of compiled scripts (these are not cleared by cache invalidation,
+ * see {@link #invalidate(Class, String, CacheInvalidationContext)}).
  *
  * @author Radovan Semancik
  */
-public class ScriptExpressionFactory {
+public class ScriptExpressionFactory implements Cache {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ScriptExpressionFactory.class);
+    private static final Trace LOGGER_CACHE_CONTENT = TraceManager.getTrace(ScriptExpressionFactory.class.getName() + ".content");
 
     private static final String DEFAULT_LANGUAGE = "http://midpoint.evolveum.com/xml/ns/public/expression/language#Groovy";
 
@@ -60,6 +77,8 @@ public class ScriptExpressionFactory {
     /** Initialized at startup. The collection is immutable. */
     @NotNull private final Collection<FunctionLibraryBinding> builtInLibraryBindings;
 
+    @Autowired private CacheRegistry cacheRegistry;
+
     // Invoked by Spring
     public ScriptExpressionFactory(
             @NotNull PrismContext prismContext,
@@ -84,6 +103,16 @@ public class ScriptExpressionFactory {
         this.functionLibraryManager = null;
     }
 
+    @PostConstruct
+    public void register() {
+        cacheRegistry.registerCache(this);
+    }
+
+    @PreDestroy
+    public void unregister() {
+        cacheRegistry.unregisterCache(this);
+    }
+
     private void registerEvaluators(@NotNull Collection<ScriptEvaluator> evaluators) {
         for (ScriptEvaluator evaluator : evaluators) {
             registerEvaluator(evaluator);
@@ -147,6 +176,33 @@ public class ScriptExpressionFactory {
         return expression;
     }
 
+    /**
+     * Compiles the script and stores it in the cache of the respective evaluator, so that it does not need to be compiled
+     * when evaluated for the first time. Returns false if there is nothing to compile, or the evaluator does not cache
+     * compiled scripts.
+     */
+    public boolean precompileScript(
+            @NotNull ScriptExpressionEvaluatorType scriptExpressionBean,
+            ExpressionProfile expressionProfile,
+            String shortDesc)
+            throws ExpressionSyntaxException, SecurityViolationException, ExpressionEvaluationException {
+        String code = scriptExpressionBean.getCode();
+        if (code == null) {
+            return false;
+        }
+        ScriptEvaluator evaluator = getEvaluator(getLanguage(scriptExpressionBean), shortDesc);
+        if (!(evaluator instanceof AbstractCachingScriptEvaluator<?, ?> cachingEvaluator) || !evaluator.isInitialized()) {
+            return false;
+        }
+        ScriptExpressionEvaluationContext context = new ScriptExpressionEvaluationContext();
+        context.setExpressionProfile(expressionProfile);
+        context.setScriptExpressionProfile(
+                getScriptLanguageExpressionProfileOrFail(expressionProfile, evaluator.getLanguageUrl(), shortDesc));
+        context.setContextDescription(shortDesc);
+        cachingEvaluator.precompile(code, context);
+        return true;
+    }
+
     private ScriptLanguageExpressionProfile getScriptLanguageExpressionProfileOrFail(
             ExpressionProfile expressionProfile, @NotNull String language, String shortDesc) throws SecurityViolationException {
         if (expressionProfile == null) {
@@ -216,4 +272,54 @@ public class ScriptExpressionFactory {
     private String getLanguage(ScriptExpressionEvaluatorType expressionBean) {
         return Objects.requireNonNullElse(expressionBean.getLanguage(), DEFAULT_LANGUAGE);
     }
+
+    /**
+     * Compiled scripts are keyed by their code (and expression profile), so they cannot become stale; hence they are
+     * not cleared by any invalidation, not even by the global one. (That one is issued e.g. when the node goes up,
+     * and would throw away the scripts precompiled during the startup.) Use {@link #clearCompiledScripts()} if needed.
+     */
+    @Override
+    public void invalidate(Class<?> type, String oid, CacheInvalidationContext context) {
+    }
+
+    /** Clears the compiled scripts and interpreters of all the caching evaluators. */
+    public void clearCompiledScripts() {
+        LOGGER.debug("Clearing compiled scripts caches");
+        getCachingEvaluators().forEach(evaluator -> evaluator.getScriptCache().clear());
+    }
+
+    @Override
+    public @NotNull Collection<SingleCacheStateInformationType> getStateInformation() {
+        List<SingleCacheStateInformationType> information = new ArrayList<>();
+        for (AbstractCachingScriptEvaluator<?, ?> evaluator : getCachingEvaluators()) {
+            String name = ScriptCache.class.getName() + "." + evaluator.getLanguageName();
+            ScriptCache<?, ?> scriptCache = evaluator.getScriptCache();
+            information.add(
+                    new SingleCacheStateInformationType()
+                            .name(name)
+                            .size(scriptCache.getCodeCacheSize())
+                            .secondarySize(scriptCache.getInterpreterCacheSize())
+                            .performance(scriptCache.getPerformanceInformation(name)));
+        }
+        return information;
+    }
+
+    @Override
+    public void dumpContent() {
+        if (LOGGER_CACHE_CONTENT.isInfoEnabled()) {
+            for (AbstractCachingScriptEvaluator<?, ?> evaluator : getCachingEvaluators()) {
+                ScriptCache<?, ?> scriptCache = evaluator.getScriptCache();
+                LOGGER_CACHE_CONTENT.info("Compiled scripts for {}: {} (compiled {} times in {} ms)",
+                        evaluator.getLanguageName(), scriptCache.getCodeCacheSize(), scriptCache.getCompilationCount(),
+                        scriptCache.getCompilationTime(TimeUnit.MILLISECONDS));
+            }
+        }
+    }
+
+    private @NotNull List<AbstractCachingScriptEvaluator<?, ?>> getCachingEvaluators() {
+        return evaluatorMap.values().stream()
+                .filter(evaluator -> evaluator instanceof AbstractCachingScriptEvaluator<?, ?>)
+                .map(evaluator -> (AbstractCachingScriptEvaluator<?, ?>) evaluator)
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.common.expression.script.groovy;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import groovy.lang.GroovySystem;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Bytecode of compiled Groovy scripts stored in midPoint home directory, so that the scripts need not be compiled
+ * again after the node is restarted.
+ *
+ * Each script is stored in a separate file. Its name is the hash of the source code, expression profile identifier,
+ * midPoint version (including the build) and Groovy version. Files for each midPoint version are kept in a separate
+ * directory.
+ *
+ * The last modification time of a file is updated whenever the file is used. This is the basis for the cleanup,
+ * which takes place when the cache is created (i.e. after the node is started) and when the files grow over the limit:
+ *
+ * . Files not used for {@link #DEFAULT_MAX_AGE} are deleted. This covers files of previous builds of the same version,
+ * as their keys are no longer computed.
+ * . If the total size of the files exceeds {@link #DEFAULT_MAX_SIZE}, the least recently used files are deleted.
+ * . A directory of another midPoint version is deleted only if none of its files was used for {@link #DEFAULT_MAX_AGE}.
+ * Hence, nodes of different versions sharing the midPoint home (e.g. during a rolling upgrade) do not delete each other's
+ * files.
+ *
+ * Any problems with reading or writing the files are logged and otherwise ignored; the script is simply compiled.
+ */
+class CompiledScriptDiskCache {
+
+    private static final Trace LOGGER = TraceManager.getTrace(CompiledScriptDiskCache.class);
+
+    static final String DIRECTORY_NAME = "groovy-cache";
+
+    private static final String FILE_SUFFIX = ".classes";
+
+    /** To be changed if the file layout changes. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Files (and directories of other versions) not used for this time are deleted. */
+    static final Duration DEFAULT_MAX_AGE = Duration.ofDays(30);
+
+    /** Maximal total size of the files for the current version. */
+    static final long DEFAULT_MAX_SIZE = 100L * 1024 * 1024;
+
+    /** When the size limit is exceeded, the least recently used files are deleted to get to this fraction of the limit. */
+    private static final double EVICTION_TARGET = 0.75;
+
+    @NotNull private final Path directory;
+
+    /** MidPoint and Groovy version, to be included in the hash. */
+    @NotNull private final String versionKey;
+
+    @NotNull private final Duration maxAge;
+
+    private final long maxSize;
+
+    /** Total size of the files, as known to this node. Other nodes sharing the directory may add their files as well. */
+    private final AtomicLong size = new AtomicLong();
+
+    private CompiledScriptDiskCache(
+            @NotNull Path directory, @NotNull String versionKey, @NotNull Duration maxAge, long maxSize) {
+        this.directory = directory;
+        this.versionKey = versionKey;
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns null if the cache cannot be used: if there is no midPoint home, the version is not known (we could
+     * not distinguish bytecode produced by different versions of the sandbox) or the directory cannot be created.
+     */
+    static @Nullable CompiledScriptDiskCache create(
+            @Nullable String midPointHome, @Nullable String midPointVersion, @Nullable String midPointBuild) {
+        return create(midPointHome, midPointVersion, midPointBuild, DEFAULT_MAX_AGE, DEFAULT_MAX_SIZE);
+    }
+
+    @VisibleForTesting
+    static @Nullable CompiledScriptDiskCache create(
+            @Nullable String midPointHome, @Nullable String midPointVersion, @Nullable String midPointBuild,
+            @NotNull Duration maxAge, long maxSize) {
+        if (StringUtils.isBlank(midPointHome) || StringUtils.isBlank(midPointVersion)) {
+            LOGGER.debug("Compiled scripts will not be stored on disk: midPoint home ({}) or version ({}) is not known",
+                    midPointHome, midPointVersion);
+            return null;
+        }
+        Path baseDirectory = Path.of(midPointHome, DIRECTORY_NAME);
+        Path directory = baseDirectory.resolve(midPointVersion.replaceAll("[^A-Za-z0-9._-]", "_"));
+        try {
+            Files.createDirectories(directory);
+            deleteUnusedOtherVersions(baseDirectory, directory, maxAge);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Couldn't create directory {} for compiled scripts, they will not be stored on disk: {}",
+                    directory, e.getMessage(), e);
+            return null;
+        }
+        if (!Files.isWritable(directory)) {
+            LOGGER.warn("Directory {} for compiled scripts is not writable, they will not be stored on disk", directory);
+            return null;
+        }
+        LOGGER.debug("Compiled scripts will be stored in {}", directory);
+        CompiledScriptDiskCache cache = new CompiledScriptDiskCache(
+                directory,
+                midPointVersion + "/" + midPointBuild + "/" + GroovySystem.getVersion(),
+                maxAge,
+                maxSize);
+        cache.cleanup();
+        return cache;
+    }
+
+    /**
+     * Scripts compiled by other midPoint versions are of no use for us; they would only occupy the disk space.
+     * But the directory may be used by another node sharing the midPoint home, so we delete it only if it was not used
+     * for a long time.
+     */
+    private static void deleteUnusedOtherVersions(Path baseDirectory, Path currentDirectory, Duration maxAge)
+            throws IOException {
+        List<Path> otherDirectories;
+        try (Stream<Path> children = Files.list(baseDirectory)) {
+            otherDirectories = children
+                    .filter(child -> !child.equals(currentDirectory))
+                    .toList();
+        }
+        Instant threshold = Instant.now().minus(maxAge);
+        for (Path otherDirectory : otherDirectories) {
+            Instant lastUsed = getLastUsed(otherDirectory);
+            if (lastUsed.isAfter(threshold)) {
+                LOGGER.debug("Keeping compiled scripts of other midPoint version in {}, last used at {}",
+                        otherDirectory, lastUsed);
+                continue;
+            }
+            LOGGER.info("Deleting compiled scripts of other midPoint version in {}, last used at {}",
+                    otherDirectory, lastUsed);
+            try (Stream<Path> paths = Files.walk(otherDirectory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    deleteQuietly(path);
+                }
+            }
+        }
+    }
+
+    /** The latest modification time of the directory (or file) and anything in it. */
+    private static Instant getLastUsed(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            Instant lastUsed = Instant.EPOCH;
+            for (Path p : paths.toList()) {
+                Instant modified = getLastModified(p);
+                if (modified.isAfter(lastUsed)) {
+                    lastUsed = modified;
+                }
+            }
+            return lastUsed;
+        }
+    }
+
+    /**
+     * Deletes the files not used for {@link #maxAge}, and then the least recently used ones, if the size limit is exceeded.
+     * Problems are logged and otherwise ignored.
+     */
+    synchronized void cleanup() {
+        List<FileInfo> files = new ArrayList<>();
+        try (Stream<Path> children = Files.list(directory)) {
+            for (Path child : children.toList()) {
+                if (Files.isRegularFile(child)) {
+                    files.add(new FileInfo(child, getLastModified(child), Files.size(child)));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Couldn't list compiled scripts in {}: {}", directory, e.getMessage(), e);
+            return;
+        }
+        files.sort(Comparator.comparing(FileInfo::lastModified));
+
+        Instant threshold = Instant.now().minus(maxAge);
+        long total = files.stream().mapToLong(FileInfo::size).sum();
+        long target = total > maxSize ? (long) (maxSize * EVICTION_TARGET) : maxSize;
+        int deleted = 0;
+        for (FileInfo file : files) {
+            // The files are sorted from the least recently used, so the expired ones are at the beginning.
+            if (!file.lastModified().isBefore(threshold) && total <= target) {
+                break;
+            }
+            if (deleteQuietly(file.path())) {
+                total -= file.size();
+                deleted++;
+            }
+        }
+        size.set(total);
+        LOGGER.debug("Cleaned up compiled scripts in {}: deleted {} file(s), {} file(s) with {} bytes remain",
+                directory, deleted, files.size() - deleted, total);
+    }
+
+    private static Instant getLastModified(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toInstant();
+    }
+
+    private static boolean deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            return true;
+        } catch (IOException e) {
+            // e.g. a file held by another node sharing the midPoint home; we will try again next time
+            LOGGER.debug("Couldn't delete {}: {}", path, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    @NotNull String computeKey(@Nullable String profileIdentifier, @NotNull String code) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new SystemException(e); // should not occur, SHA-256 is always available
+        }
+        digest.update(versionKey.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        if (profileIdentifier != null) {
+            digest.update(profileIdentifier.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+        digest.update(code.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Returns the stored script, or null if it's not there or cannot be read. */
+    @Nullable StoredScript load(@NotNull String key) {
+        Path file = getFile(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOGGER.debug("Ignoring compiled script in {} because of different format version", file);
+                return null;
+            }
+            String mainClassName = in.readUTF();
+            int count = in.readInt();
+            List<ClassBytes> classes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.add(new ClassBytes(name, bytes));
+            }
+            touch(file);
+            return new StoredScript(mainClassName, classes);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Couldn't read compiled script from {}, it will be compiled again: {}", file, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the script to a temporary file first and then moves it to the final place, so other threads
+     * (or other nodes sharing the midPoint home) never see a partially written file.
+     */
+    void store(@NotNull String key, @NotNull StoredScript script) {
+        Path file = getFile(key);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory); // might be deleted by a node of another version after a long inactivity
+            tempFile = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(script.mainClassName());
+                out.writeInt(script.classes().size());
+                for (ClassBytes classBytes : script.classes()) {
+                    out.writeUTF(classBytes.name());
+                    out.writeInt(classBytes.bytes().length);
+                    out.write(classBytes.bytes());
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tempFile = null;
+            if (size.addAndGet(Files.size(file)) > maxSize) {
+                cleanup();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Couldn't store compiled script to {}: {}", file, e.getMessage(), e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    LOGGER.debug("Couldn't delete temporary file {}", tempFile, e);
+                }
+            }
+        }
+    }
+
+    /** Marks the file as recently used. */
+    private void touch(@NotNull Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            LOGGER.debug("Couldn't update the modification time of {}: {}", file, e.getMessage(), e);
+        }
+    }
+
+    void delete(@NotNull String key) {
+        try {
+            Files.deleteIfExists(getFile(key));
+        } catch (IOException e) {
+            LOGGER.debug("Couldn't delete compiled script {}", key, e);
+        }
+    }
+
+    private @NotNull Path getFile(@NotNull String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+
+    /** Bytecode of a single class. */
+    record ClassBytes(@NotNull String name, byte @NotNull [] bytes) {
+    }
+
+    /** All classes produced by compiling a script; the main one is the script class itself. */
+    record StoredScript(@NotNull String mainClassName, @NotNull List<ClassBytes> classes) {
+    }
+
+    private record FileInfo(@NotNull Path path, @NotNull Instant lastModified, long size) {
+    }
+}
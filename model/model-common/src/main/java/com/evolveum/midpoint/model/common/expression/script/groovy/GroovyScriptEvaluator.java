@@ -7,7 +7,9 @@
 package com.evolveum.midpoint.model.common.expression.script.groovy;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
@@ -18,8 +20,11 @@ import groovy.lang.GroovyClassLoader;
 import groovy.lang.GroovyRuntimeException;
 import groovy.lang.Script;
 import groovy.transform.CompileStatic;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.MultipleCompilationErrorsException;
+import org.codehaus.groovy.control.SourceUnit;
 import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
 import org.codehaus.groovy.control.customizers.SecureASTCustomizer;
 import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
@@ -27,6 +32,7 @@ import org.codehaus.groovy.runtime.InvokerHelper;
 import org.codehaus.groovy.syntax.SyntaxException;
 
 import com.evolveum.midpoint.common.LocalizationService;
+import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
 import com.evolveum.midpoint.model.common.expression.script.AbstractCachingScriptEvaluator;
 import com.evolveum.midpoint.model.common.expression.script.ScriptExpressionEvaluationContext;
 import com.evolveum.midpoint.prism.PrismContext;
@@ -37,8 +43,12 @@ import com.evolveum.midpoint.schema.expression.ExpressionPermissionProfile;
 import com.evolveum.midpoint.schema.expression.ScriptLanguageExpressionProfile;
 import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Expression evaluator that is using Groovy scripting engine.
@@ -50,6 +60,8 @@ public class GroovyScriptEvaluator extends AbstractCachingScriptEvaluator<Groovy
     public static final String LANGUAGE_NAME = "Groovy";
     private static final String LANGUAGE_URL = MidPointConstants.EXPRESSION_LANGUAGE_URL_BASE + LANGUAGE_NAME;
 
+    private static final Trace LOGGER = TraceManager.getTrace(GroovyScriptEvaluator.class);
+
     static final String SANDBOX_ERROR_PREFIX = "[SANDBOX] ";
 
     /**
@@ -57,6 +69,10 @@ public class GroovyScriptEvaluator extends AbstractCachingScriptEvaluator<Groovy
      */
     @NotNull private static final ScriptLanguageExpressionProfile BUILTIN_GROOVY_LANGUAGE_PROFILE;
 
+    /** Lazily initialized, see {@link #getDiskCache()}. */
+    private CompiledScriptDiskCache diskCache;
+    private boolean diskCacheInitialized;
+
     /** Called by Spring but also by lower-level tests */
     public GroovyScriptEvaluator(PrismContext prismContext, Protector protector, LocalizationService localizationService) {
         super(prismContext, protector, localizationService);
@@ -83,7 +99,26 @@ public class GroovyScriptEvaluator extends AbstractCachingScriptEvaluator<Groovy
     protected Class<?> compileScript(String codeString, ScriptExpressionEvaluationContext context)
             throws ExpressionEvaluationException, SecurityViolationException {
         try {
-            return getGroovyLoader(context).parseClass(codeString, context.getContextDescription());
+            ScriptClassLoader loader = getGroovyLoader(context);
+            CompiledScriptDiskCache storage = isStorableOnDisk(context) ? getDiskCache() : null;
+            if (storage == null) {
+                return loader.parseClass(codeString, context.getContextDescription());
+            }
+            String key = storage.computeKey(getProfileIdentifier(context), codeString);
+            CompiledScriptDiskCache.StoredScript storedScript = storage.load(key);
+            if (storedScript != null) {
+                try {
+                    return loader.defineStoredScript(storedScript);
+                } catch (LinkageError e) {
+                    LOGGER.warn("Couldn't load stored compiled script for {}, compiling it again: {}",
+                            context.getContextDescription(), e.getMessage(), e);
+                    storage.delete(key);
+                }
+            }
+            List<CompiledScriptDiskCache.ClassBytes> classes = new ArrayList<>();
+            Class<?> compiledClass = loader.parseClass(codeString, context.getContextDescription(), classes);
+            storage.store(key, new CompiledScriptDiskCache.StoredScript(compiledClass.getName(), classes));
+            return compiledClass;
         } catch (MultipleCompilationErrorsException e) {
             String sandboxErrorMessage = getSandboxError(e);
             if (sandboxErrorMessage == null) {
@@ -104,20 +139,67 @@ public class GroovyScriptEvaluator extends AbstractCachingScriptEvaluator<Groovy
         }
     }
 
-    private GroovyClassLoader getGroovyLoader(ScriptExpressionEvaluationContext context) throws SecurityViolationException {
-        GroovyClassLoader existingLoader = getScriptCache().getInterpreter(context.getExpressionProfile());
-        if (existingLoader != null) {
-            return existingLoader;
-        }
-        var newLoader = createGroovyLoader(context);
-        getScriptCache().putInterpreter(context.getExpressionProfile(), newLoader);
-        return newLoader;
+    private ScriptClassLoader getGroovyLoader(ScriptExpressionEvaluationContext context) throws SecurityViolationException {
+        return (ScriptClassLoader) getScriptCache() // we create no other loaders
+                .getOrCreateInterpreter(context.getExpressionProfile(), () -> createGroovyLoader(context));
     }
 
-    private GroovyClassLoader createGroovyLoader(ScriptExpressionEvaluationContext context) throws SecurityViolationException {
+    private ScriptClassLoader createGroovyLoader(ScriptExpressionEvaluationContext context) throws SecurityViolationException {
         CompilerConfiguration compilerConfiguration = new CompilerConfiguration(CompilerConfiguration.DEFAULT);
         configureCompiler(compilerConfiguration, context);
-        return new GroovyClassLoader(GroovyScriptEvaluator.class.getClassLoader(), compilerConfiguration);
+        return new ScriptClassLoader(GroovyScriptEvaluator.class.getClassLoader(), compilerConfiguration);
+    }
+
+    /**
+     * Bytecode of sandboxed (type checked) scripts is not stored, because it depends on the content of the permission
+     * profile, not only on its identifier. Such a stored script could then circumvent the changed profile.
+     * Other scripts are compiled in the same way regardless of the expression profile.
+     */
+    private boolean isStorableOnDisk(ScriptExpressionEvaluationContext context) {
+        var languageProfile = context.getScriptExpressionProfile();
+        return languageProfile == null || !languageProfile.isTypeChecking();
+    }
+
+    private String getProfileIdentifier(ScriptExpressionEvaluationContext context) {
+        var profile = context.getExpressionProfile();
+        return profile != null ? profile.getIdentifier() : null;
+    }
+
+    /**
+     * Created on first use, as the localization service may not be fully initialized when this evaluator is created.
+     * Null if the cache cannot be used.
+     */
+    private synchronized CompiledScriptDiskCache getDiskCache() {
+        if (!diskCacheInitialized) {
+            LocalizationService localizationService = getLocalizationService();
+            diskCache = CompiledScriptDiskCache.create(
+                    System.getProperty(MidpointConfiguration.MIDPOINT_HOME_PROPERTY),
+                    localizationService != null ?
+                            localizationService.translate("midpoint.system.version", null, Locale.getDefault(), null) : null,
+                    localizationService != null ?
+                            localizationService.translate("midpoint.system.build", null, Locale.getDefault(), null) : null);
+            diskCacheInitialized = true;
+        }
+        return diskCache;
+    }
+
+    @VisibleForTesting
+    synchronized void setDiskCache(@Nullable CompiledScriptDiskCache diskCache) {
+        this.diskCache = diskCache;
+        diskCacheInitialized = true;
+    }
+
+    /** The loader keeps all the classes it has compiled, so we have to release evicted ones explicitly. */
+    @Override
+    protected void onCompiledScriptEvicted(@NotNull Class<?> compiledScriptClass) {
+        // The class is defined by an inner loader whose parent is our loader.
+        ClassLoader loader = compiledScriptClass.getClassLoader();
+        while (loader != null && !(loader instanceof ScriptClassLoader)) {
+            loader = loader.getParent();
+        }
+        if (loader instanceof ScriptClassLoader scriptClassLoader) {
+            scriptClassLoader.forgetClass(compiledScriptClass);
+        }
     }
 
     private void configureCompiler(
@@ -243,4 +325,67 @@ public class GroovyScriptEvaluator extends AbstractCachingScriptEvaluator<Groovy
                 false, // actually, this information is not used
                 permissionProfile);
     }
+
+    /**
+     * Allows removing individual classes from the class cache of the loader, and provides the bytecode
+     * of compiled scripts for {@link CompiledScriptDiskCache}.
+     */
+    private static class ScriptClassLoader extends GroovyClassLoader {
+
+        /** Collects the bytecode of classes compiled by the current thread, if requested. */
+        private final ThreadLocal<List<CompiledScriptDiskCache.ClassBytes>> classesBeingRecorded = new ThreadLocal<>();
+
+        ScriptClassLoader(ClassLoader parent, CompilerConfiguration config) {
+            super(parent, config);
+        }
+
+        /** Compiles the script, adding the bytecode of all resulting classes to `classes`. */
+        Class<?> parseClass(String codeString, String fileName, List<CompiledScriptDiskCache.ClassBytes> classes) {
+            classesBeingRecorded.set(classes);
+            try {
+                return parseClass(codeString, fileName);
+            } finally {
+                classesBeingRecorded.remove();
+            }
+        }
+
+        @Override
+        protected ClassCollector createCollector(CompilationUnit unit, SourceUnit su) {
+            List<CompiledScriptDiskCache.ClassBytes> classes = classesBeingRecorded.get();
+            if (classes == null) {
+                return super.createCollector(unit, su);
+            }
+            return new ClassCollector(new InnerLoader(this), unit, su) {
+                @Override
+                protected Class<?> createClass(byte[] code, ClassNode classNode) {
+                    Class<?> createdClass = super.createClass(code, classNode);
+                    classes.add(new CompiledScriptDiskCache.ClassBytes(classNode.getName(), code));
+                    return createdClass;
+                }
+            };
+        }
+
+        /**
+         * Defines the classes of a stored script in a separate inner loader, just like the compilation does.
+         * All of them are defined eagerly, so the references between them are resolved by that loader.
+         */
+        Class<?> defineStoredScript(CompiledScriptDiskCache.StoredScript storedScript) {
+            InnerLoader innerLoader = new InnerLoader(this);
+            Class<?> mainClass = null;
+            for (CompiledScriptDiskCache.ClassBytes classBytes : storedScript.classes()) {
+                Class<?> definedClass = innerLoader.defineClass(classBytes.name(), classBytes.bytes());
+                if (classBytes.name().equals(storedScript.mainClassName())) {
+                    mainClass = definedClass;
+                }
+            }
+            if (mainClass == null) {
+                throw new ClassFormatError("Main class " + storedScript.mainClassName() + " is not among the stored classes");
+            }
+            return mainClass;
+        }
+
+        void forgetClass(Class<?> compiledScriptClass) {
+            removeClassCacheEntry(compiledScriptClass.getName());
+        }
+    }
 }
@@ -6,19 +6,20 @@
  */
 package com.evolveum.midpoint.model.common.expression.script.velocity;
 
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Map;
 import java.util.Properties;
 
-import com.evolveum.midpoint.schema.internals.InternalCounters;
-import com.evolveum.midpoint.schema.internals.InternalMonitor;
-
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.Velocity;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.RuntimeSingleton;
 import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.common.LocalizationService;
-import com.evolveum.midpoint.model.common.expression.script.AbstractScriptEvaluator;
+import com.evolveum.midpoint.model.common.expression.script.AbstractCachingScriptEvaluator;
 import com.evolveum.midpoint.model.common.expression.script.ScriptExpressionEvaluationContext;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.crypto.Protector;
@@ -28,8 +29,10 @@ import com.evolveum.midpoint.util.exception.*;
 
 /**
  * Expression evaluator that is using Apache Velocity engine.
+ *
+ * Templates are parsed once and then cached; there is no interpreter to be cached, as Velocity has a single global one.
  */
-public class VelocityScriptEvaluator extends AbstractScriptEvaluator {
+public class VelocityScriptEvaluator extends AbstractCachingScriptEvaluator<Void, Template> {
 
     private static final String LANGUAGE_NAME = "velocity";
     private static final String LANGUAGE_URL = MidPointConstants.EXPRESSION_LANGUAGE_URL_BASE + LANGUAGE_NAME;
@@ -40,18 +43,25 @@ public class VelocityScriptEvaluator extends AbstractScriptEvaluator {
     }
 
     @Override
-    public @NotNull Object evaluateInternal(
-            @NotNull String codeString,
-            @NotNull ScriptExpressionEvaluationContext context)
+    protected Template compileScript(String codeString, ScriptExpressionEvaluationContext context) throws Exception {
+        RuntimeServices runtimeServices = RuntimeSingleton.getRuntimeServices();
+        Template template = new Template();
+        template.setRuntimeServices(runtimeServices);
+        template.setName(""); // the same as used by Velocity.evaluate() we used before
+        template.setData(runtimeServices.parse(new StringReader(codeString), template));
+        template.initDocument();
+        return template;
+    }
+
+    @Override
+    protected Object evaluateScript(Template compiledScript, ScriptExpressionEvaluationContext context)
             throws ExpressionEvaluationException, ObjectNotFoundException, ExpressionSyntaxException, CommunicationException,
             ConfigurationException, SecurityViolationException {
 
         VelocityContext velocityCtx = createVelocityContext(context);
 
         StringWriter resultWriter = new StringWriter();
-
-        InternalMonitor.recordCount(InternalCounters.SCRIPT_EXECUTION_COUNT);
-        Velocity.evaluate(velocityCtx, resultWriter, "", codeString);
+        compiledScript.merge(velocityCtx, resultWriter);
 
         return resultWriter.toString();
     }
@@ -120,6 +120,75 @@ public class TestScriptCaching extends AbstractUnitTest
         assertTrue("Even Horatio was wrong! " + horatio1Time + " -> " + horatio2Time, horatio2Time <= horatio1Time);
     }
 
+    @Test
+    public void testPrecompile() throws Exception {
+        // GIVEN
+        InternalMonitor.reset();
+        ScriptExpressionEvaluatorType scriptType = parseScriptType("expression-simple.xml");
+
+        // WHEN
+        boolean precompiled = scriptExpressionfactory.precompileScript(scriptType, null, "precompile");
+
+        // THEN
+        assertTrue("Script was not precompiled", precompiled);
+        assertScriptMonitor(1, 0, "precompile");
+
+        // Already compiled, so no compilation.
+        executeScript("expression-simple.xml", "foobar", "after precompile");
+        assertScriptMonitor(1, 1, "after precompile");
+
+        scriptExpressionfactory.precompileScript(scriptType, null, "precompile again");
+        assertScriptMonitor(1, 1, "precompile again");
+    }
+
+    @Test
+    public void testGlobalInvalidationKeepsCompiledScripts() throws Exception {
+        // GIVEN
+        scriptExpressionfactory.clearCompiledScripts();
+        InternalMonitor.reset();
+        ScriptExpressionEvaluatorType scriptType = parseScriptType("expression-simple.xml");
+        scriptExpressionfactory.precompileScript(scriptType, null, "precompile");
+        assertScriptMonitor(1, 0, "precompile");
+
+        // WHEN (global invalidation, e.g. when the node goes up)
+        scriptExpressionfactory.invalidate(null, null, null);
+
+        // THEN (the precompiled script is used)
+        executeScript("expression-simple.xml", "foobar", "after invalidation");
+        assertScriptMonitor(1, 1, "after invalidation");
+
+        // WHEN (explicit clearing)
+        scriptExpressionfactory.clearCompiledScripts();
+
+        // THEN (the script is compiled again)
+        executeScript("expression-simple.xml", "foobar", "after clearing");
+        assertScriptMonitor(2, 2, "after clearing");
+
+        scriptExpressionfactory.clearCompiledScripts(); // not to influence other tests
+    }
+
+    @Test
+    public void testCacheSizeLimit() throws Exception {
+        // GIVEN (cache limited to 2 entries)
+        List<String> evicted = new ArrayList<>();
+        ScriptCache<Void, String> cache = new ScriptCache<>(2, evicted::add);
+
+        // WHEN (three scripts are compiled, the first one twice)
+        cache.getOrCompileCode(null, "a", () -> "compiled a");
+        cache.getOrCompileCode(null, "a", () -> "compiled a");
+        cache.getOrCompileCode(null, "b", () -> "compiled b");
+        cache.getOrCompileCode(null, "c", () -> "compiled c");
+
+        // THEN (the least recently used one is evicted)
+        assertEquals("Wrong cache size", 2, cache.getCodeCacheSize());
+        assertEquals("Wrong evicted scripts", List.of("compiled a"), evicted);
+        assertEquals("Wrong compilation count", 3, cache.getCompilationCount());
+
+        var performance = cache.getPerformanceInformation("test");
+        assertEquals("Wrong hit count", 1, (int) performance.getHitCount());
+        assertEquals("Wrong miss count", 3, (int) performance.getMissCount());
+    }
+
     private void assertScriptMonitor(int expCompilations, int expExecutions, String desc) {
         assertEquals("Unexpected number of script compilations after " + desc, expCompilations, InternalMonitor.getCount(InternalCounters.SCRIPT_COMPILE_COUNT));
         assertEquals("Unexpected number of script executions after " + desc, expExecutions, InternalMonitor.getCount(InternalCounters.SCRIPT_EXECUTION_COUNT));
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.common.expression.script.groovy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import groovy.lang.Binding;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.common.LocalizationTestUtil;
+import com.evolveum.midpoint.model.common.expression.script.ScriptExpressionEvaluationContext;
+import com.evolveum.midpoint.model.common.expression.script.groovy.CompiledScriptDiskCache.ClassBytes;
+import com.evolveum.midpoint.model.common.expression.script.groovy.CompiledScriptDiskCache.StoredScript;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.crypto.KeyStoreBasedProtectorBuilder;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.test.util.InfraTestMixin;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Tests {@link CompiledScriptDiskCache} and its use by {@link GroovyScriptEvaluator}.
+ */
+public class TestCompiledScriptDiskCache extends AbstractUnitTest implements InfraTestMixin {
+
+    private static final String VERSION = "4.9-test";
+    private static final String BUILD = "build-1";
+
+    private Path home;
+
+    @BeforeSuite
+    public void setup() throws Exception {
+        PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+    }
+
+    @BeforeMethod
+    public void createHome() throws IOException {
+        home = Files.createTempDirectory("midpoint-home");
+    }
+
+    @AfterMethod
+    public void deleteHome() throws IOException {
+        try (Stream<Path> paths = Files.walk(home)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void test100NoHomeOrVersion() {
+        expect("no cache without midPoint home or version");
+        assertThat(CompiledScriptDiskCache.create(null, VERSION, BUILD)).isNull();
+        assertThat(CompiledScriptDiskCache.create(home.toString(), null, BUILD)).isNull();
+    }
+
+    @Test
+    public void test110StoreAndLoad() {
+        given("a cache and a script");
+        CompiledScriptDiskCache cache = createCache();
+        String key = cache.computeKey("profile", "return 'hello'");
+        StoredScript script = new StoredScript("Main", List.of(
+                new ClassBytes("Main", new byte[] { 1, 2, 3 }),
+                new ClassBytes("Main$Inner", new byte[] { 4, 5 })));
+
+        expect("nothing is there before storing");
+        assertThat(cache.load(key)).isNull();
+
+        when("the script is stored and loaded");
+        cache.store(key, script);
+        StoredScript loaded = cache.load(key);
+
+        then("the loaded script is the same");
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.mainClassName()).isEqualTo("Main");
+        assertThat(loaded.classes()).hasSize(2);
+        for (int i = 0; i < 2; i++) {
+            assertThat(loaded.classes().get(i).name()).isEqualTo(script.classes().get(i).name());
+            assertThat(loaded.classes().get(i).bytes()).isEqualTo(script.classes().get(i).bytes());
+        }
+
+        and("no temporary files are left");
+        assertThat(listFiles(versionDirectory())).containsExactly(key + ".classes");
+
+        when("the script is deleted");
+        cache.delete(key);
+
+        then("it is no longer there");
+        assertThat(cache.load(key)).isNull();
+    }
+
+    @Test
+    public void test120KeyDependsOnProfileAndCode() {
+        given("a cache");
+        CompiledScriptDiskCache cache = createCache();
+
+        expect("keys differ for different profiles and codes");
+        String key = cache.computeKey("profile", "code");
+        assertThat(cache.computeKey("profile", "code")).isEqualTo(key);
+        assertThat(cache.computeKey("other", "code")).isNotEqualTo(key);
+        assertThat(cache.computeKey(null, "code")).isNotEqualTo(key);
+        assertThat(cache.computeKey("profile", "other code")).isNotEqualTo(key);
+    }
+
+    @Test
+    public void test130CorruptedFile() throws IOException {
+        given("a cache with a corrupted and a truncated file");
+        CompiledScriptDiskCache cache = createCache();
+        String corruptedKey = cache.computeKey(null, "corrupted");
+        Files.write(versionDirectory().resolve(corruptedKey + ".classes"), "garbage".getBytes(StandardCharsets.UTF_8));
+
+        String truncatedKey = cache.computeKey(null, "truncated");
+        cache.store(truncatedKey, new StoredScript("Main", List.of(new ClassBytes("Main", new byte[100]))));
+        Path truncatedFile = versionDirectory().resolve(truncatedKey + ".classes");
+        byte[] content = Files.readAllBytes(truncatedFile);
+        Files.write(truncatedFile, Arrays.copyOf(content, content.length - 10));
+
+        expect("the files are ignored");
+        assertThat(cache.load(corruptedKey)).isNull();
+        assertThat(cache.load(truncatedKey)).isNull();
+    }
+
+    /** Directories of other versions are deleted only if they were not used for a long time. */
+    @Test
+    public void test140UnusedOtherVersionsAreDeleted() throws IOException {
+        given("directories with scripts compiled by other versions, long unused");
+        Path baseDirectory = home.resolve(CompiledScriptDiskCache.DIRECTORY_NAME);
+        Path oldDirectory = Files.createDirectories(baseDirectory.resolve("4.8"));
+        Files.write(oldDirectory.resolve("abc.classes"), new byte[] { 1 });
+        Path olderDirectory = Files.createDirectories(baseDirectory.resolve("4.7").resolve("nested"));
+        Files.write(olderDirectory.resolve("def.classes"), new byte[] { 2 });
+        makeOld(baseDirectory.resolve("4.8"), CompiledScriptDiskCache.DEFAULT_MAX_AGE.plusDays(1));
+        makeOld(baseDirectory.resolve("4.7"), CompiledScriptDiskCache.DEFAULT_MAX_AGE.plusDays(1));
+
+        and("a directory of other version that is in use (e.g. by another node during a rolling upgrade)");
+        Path usedDirectory = Files.createDirectories(baseDirectory.resolve("4.9.1"));
+        Files.write(usedDirectory.resolve("ghi.classes"), new byte[] { 4 });
+
+        and("a script compiled by the current version");
+        CompiledScriptDiskCache cache = createCache();
+        String key = cache.computeKey(null, "current");
+        cache.store(key, new StoredScript("Main", List.of(new ClassBytes("Main", new byte[] { 3 }))));
+
+        when("the cache is created again (e.g. after restart)");
+        CompiledScriptDiskCache cacheAfterRestart = createCache();
+
+        then("only the current version directory and the one in use are there");
+        assertThat(listFiles(baseDirectory)).containsExactlyInAnyOrder(VERSION, "4.9.1");
+        assertThat(listFiles(usedDirectory)).containsExactly("ghi.classes");
+        assertThat(cacheAfterRestart.load(key)).isNotNull();
+    }
+
+    /** Files not used for a long time (e.g. the ones of previous builds) are deleted; the used ones are kept. */
+    @Test
+    public void test150UnusedFilesAreDeleted() throws IOException {
+        given("two scripts stored long ago");
+        CompiledScriptDiskCache cache = createCache();
+        String usedKey = cache.computeKey(null, "used");
+        String unusedKey = cache.computeKey(null, "unused");
+        cache.store(usedKey, new StoredScript("Main", List.of(new ClassBytes("Main", new byte[] { 1 }))));
+        cache.store(unusedKey, new StoredScript("Main", List.of(new ClassBytes("Main", new byte[] { 2 }))));
+        makeOld(versionDirectory(), CompiledScriptDiskCache.DEFAULT_MAX_AGE.plusDays(1));
+
+        and("one of them used recently");
+        assertThat(cache.load(usedKey)).isNotNull();
+
+        when("the cache is created again (e.g. after restart)");
+        CompiledScriptDiskCache cacheAfterRestart = createCache();
+
+        then("only the used script is there");
+        assertThat(listFiles(versionDirectory())).containsExactly(usedKey + ".classes");
+        assertThat(cacheAfterRestart.load(usedKey)).isNotNull();
+        assertThat(cacheAfterRestart.load(unusedKey)).isNull();
+    }
+
+    /** When the size limit is exceeded, the least recently used files are deleted. */
+    @Test
+    public void test160SizeLimit() throws IOException {
+        given("a cache with a size limit of 10 scripts");
+        StoredScript script = new StoredScript("Main", List.of(new ClassBytes("Main", new byte[1000])));
+        CompiledScriptDiskCache probe = createCache();
+        String probeKey = probe.computeKey(null, "probe");
+        probe.store(probeKey, script);
+        long scriptSize = Files.size(versionDirectory().resolve(probeKey + ".classes"));
+        probe.delete(probeKey);
+        CompiledScriptDiskCache cache = CompiledScriptDiskCache.create(
+                home.toString(), VERSION, BUILD, CompiledScriptDiskCache.DEFAULT_MAX_AGE, 10 * scriptSize);
+        assertThat(cache).isNotNull();
+
+        when("10 scripts are stored, the first one is used, and one more is stored");
+        for (int i = 0; i < 10; i++) {
+            cache.store(cache.computeKey(null, "script " + i), script);
+            setLastModified(versionDirectory().resolve(cache.computeKey(null, "script " + i) + ".classes"),
+                    Duration.ofMinutes(20 - i));
+        }
+        assertThat(cache.load(cache.computeKey(null, "script 0"))).isNotNull();
+        cache.store(cache.computeKey(null, "script 10"), script);
+
+        then("the least recently used scripts are deleted");
+        List<String> files = listFiles(versionDirectory());
+        assertThat(files).hasSizeLessThanOrEqualTo(8);
+        assertThat(files).contains(
+                cache.computeKey(null, "script 0") + ".classes",
+                cache.computeKey(null, "script 10") + ".classes");
+        assertThat(files).doesNotContain(cache.computeKey(null, "script 1") + ".classes");
+    }
+
+    /** The evaluator stores the compiled script, and another evaluator (e.g. after restart) uses it. */
+    @Test
+    public void test200EvaluatorUsesStoredScript() throws Exception {
+        given("a script compiled by one evaluator");
+        CompiledScriptDiskCache cache = createCache();
+        createEvaluator(cache).compileScript("return 'stored'", createContext());
+        StoredScript stored = cache.load(cache.computeKey(null, "return 'stored'"));
+        assertThat(stored).as("stored script").isNotNull();
+
+        and("the bytecode stored for a different code (to distinguish loading from compilation)");
+        cache.store(cache.computeKey(null, "return 'compiled'"), stored);
+
+        when("another evaluator gets the other code");
+        Class<?> scriptClass = createEvaluator(cache).compileScript("return 'compiled'", createContext());
+
+        then("the stored bytecode is used");
+        assertThat(run(scriptClass)).isEqualTo("stored");
+    }
+
+    /** Stored bytecode that cannot be defined (LinkageError) is replaced by freshly compiled one. */
+    @Test
+    public void test210EvaluatorRecompilesInvalidStoredScript() throws Exception {
+        given("invalid bytecode stored for a script");
+        CompiledScriptDiskCache cache = createCache();
+        String code = "return 'compiled'";
+        String key = cache.computeKey(null, code);
+        cache.store(key, new StoredScript("Bogus", List.of(new ClassBytes("Bogus", new byte[] { 1, 2, 3 }))));
+
+        when("the evaluator gets the script");
+        Class<?> scriptClass = createEvaluator(cache).compileScript(code, createContext());
+
+        then("the script is compiled and works");
+        assertThat(run(scriptClass)).isEqualTo("compiled");
+
+        and("the stored bytecode is replaced");
+        StoredScript stored = cache.load(key);
+        assertThat(stored).isNotNull();
+        assertThat(stored.mainClassName()).isNotEqualTo("Bogus");
+    }
+
+    private CompiledScriptDiskCache createCache() {
+        CompiledScriptDiskCache cache = CompiledScriptDiskCache.create(home.toString(), VERSION, BUILD);
+        assertThat(cache).as("disk cache").isNotNull();
+        return cache;
+    }
+
+    private Path versionDirectory() {
+        return home.resolve(CompiledScriptDiskCache.DIRECTORY_NAME).resolve(VERSION);
+    }
+
+    /** Sets the modification time of the path and everything in it to the specified time ago. */
+    private void makeOld(Path path, Duration ago) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path p : paths.toList()) {
+                setLastModified(p, ago);
+            }
+        }
+    }
+
+    private void setLastModified(Path path, Duration ago) throws IOException {
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(ago)));
+    }
+
+    private List<String> listFiles(Path directory) {
+        try (Stream<Path> children = Files.list(directory)) {
+            return children.map(child -> child.getFileName().toString()).toList();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private GroovyScriptEvaluator createEvaluator(CompiledScriptDiskCache cache) {
+        PrismContext prismContext = PrismTestUtil.getPrismContext();
+        GroovyScriptEvaluator evaluator = new GroovyScriptEvaluator(
+                prismContext,
+                KeyStoreBasedProtectorBuilder.create(prismContext).buildOnly(),
+                LocalizationTestUtil.getLocalizationService());
+        evaluator.setDiskCache(cache);
+        return evaluator;
+    }
+
+    private ScriptExpressionEvaluationContext createContext() {
+        ScriptExpressionEvaluationContext context = new ScriptExpressionEvaluationContext();
+        context.setContextDescription("test");
+        return context;
+    }
+
+    private Object run(Class<?> scriptClass) {
+        return InvokerHelper.createScript(scriptClass, new Binding()).run();
+    }
+}
@@ -21,6 +21,7 @@ import com.evolveum.midpoint.CacheInvalidationContext;
 import com.evolveum.midpoint.authentication.api.config.NodeAuthenticationToken;
 import com.evolveum.midpoint.repo.api.CacheDispatcher;
 import com.evolveum.midpoint.repo.api.CacheListener;
+import com.evolveum.midpoint.repo.api.ClusterCacheInvalidationBus;
 import com.evolveum.midpoint.schema.constants.ObjectTypes;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.ClusterExecutionHelper;
@@ -39,6 +40,9 @@ public class ClusterCacheListener implements CacheListener {
     @Autowired private CacheDispatcher cacheDispatcher;
     @Autowired private ClusterExecutionHelper clusterExecutionHelper;
 
+    /** If present and active, used instead of REST calls to individual nodes. */
+    @Autowired(required = false) private ClusterCacheInvalidationBus invalidationBus;
+
     @PostConstruct
     public void addListener() {
         cacheDispatcher.registerCacheListener(this);
@@ -52,6 +56,12 @@ public class ClusterCacheListener implements CacheListener {
             return;
         }
 
+        if (invalidationBus != null && invalidationBus.isActive()) {
+            LOGGER.trace("Publishing cache invalidation for type {} (oid={}) to the invalidation bus", type, oid);
+            invalidationBus.publish(type, oid);
+            return;
+        }
+
         Task task = taskManager.createTaskInstance("invalidate");
         OperationResult result = task.getResult();
 
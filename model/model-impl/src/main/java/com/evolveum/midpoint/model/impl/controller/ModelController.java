@@ -50,6 +50,7 @@ import com.evolveum.midpoint.model.api.hooks.ReadHook;
 import com.evolveum.midpoint.repo.common.AuditHelper;
 import com.evolveum.midpoint.model.impl.ModelObjectResolver;
 import com.evolveum.midpoint.model.impl.importer.ObjectImporter;
+import com.evolveum.midpoint.model.impl.expr.ScriptPrecompiler;
 import com.evolveum.midpoint.model.impl.lens.*;
 import com.evolveum.midpoint.model.impl.scripting.ExecutionContext;
 import com.evolveum.midpoint.model.impl.sync.tasks.imp.ImportFromResourceLauncher;
@@ -168,6 +169,7 @@ public class ModelController implements ModelService, TaskService, CaseService,
     private CertificationManager certificationManager;
     @Autowired private OperationalDataManager operationalDataManager;
     @Autowired private ResourceSchemaRegistry resourceSchemaRegistry;
+    @Autowired private ScriptPrecompiler scriptPrecompiler;
 
     public ModelObjectResolver getObjectResolver() {
         return objectResolver;
@@ -1774,6 +1776,8 @@ public class ModelController implements ModelService, TaskService, CaseService,
 
             provisioning.postInit(result);
 
+            scriptPrecompiler.startPrecompilationIfEnabled();
+
         } catch (SchemaException e) {
             result.recordFatalError(e);
             throw new SystemException(e.getMessage(), e);
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.expr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import jakarta.xml.bind.JAXBElement;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
+import com.evolveum.midpoint.model.common.expression.ExpressionProfileManager;
+import com.evolveum.midpoint.model.common.expression.script.ScriptExpressionFactory;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.expression.ExpressionProfile;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Compiles scripts found in selected types of objects (resources, roles, object templates, function libraries)
+ * at system startup, so that the first operations after the start - e.g. the first reconciliation - do not pay the
+ * compilation cost in their worker threads. The compiled scripts are put into the caches of respective evaluators.
+ *
+ * Only scripts directly in expressions stored as property values are found; scripts nested in other expression
+ * evaluators are compiled on their first use, as before. Any compilation errors are just logged here; they are
+ * reported as usual when the script is evaluated.
+ *
+ * The precompilation is turned off by default. It is enabled by `midpoint.system.precompileScripts` configuration
+ * property, and it runs in the background, so the system startup is not delayed by it.
+ */
+@Component
+public class ScriptPrecompiler {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ScriptPrecompiler.class);
+
+    private static final String OP_PRECOMPILE_SCRIPTS = ScriptPrecompiler.class.getName() + ".precompileScripts";
+
+    private static final List<Class<? extends ObjectType>> TYPES_TO_PROCESS = List.of(
+            ResourceType.class, RoleType.class, ObjectTemplateType.class, FunctionLibraryType.class);
+
+    @Autowired
+    @Qualifier("cacheRepositoryService")
+    private RepositoryService repositoryService;
+
+    @Autowired private MidpointConfiguration midpointConfiguration;
+    @Autowired private ScriptExpressionFactory scriptExpressionFactory;
+    @Autowired private ExpressionProfileManager expressionProfileManager;
+
+    /** Starts the precompilation in a background thread, if it is enabled in the configuration. Does not wait for it. */
+    public void startPrecompilationIfEnabled() {
+        if (!midpointConfiguration.getSystemSection().isPrecompileScripts()) {
+            LOGGER.debug("Script precompilation is not enabled");
+            return;
+        }
+        Thread thread = new Thread(
+                () -> precompileScripts(new OperationResult(OP_PRECOMPILE_SCRIPTS)),
+                "script-precompiler-main");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Finds the scripts and compiles them in parallel. Waits until all are compiled. Never throws an exception. */
+    public void precompileScripts(OperationResult parentResult) {
+        OperationResult result = parentResult.subresult(OP_PRECOMPILE_SCRIPTS)
+                .setMinor()
+                .build();
+        try {
+            long start = System.currentTimeMillis();
+            Map<ScriptKey, ScriptToCompile> scripts = new LinkedHashMap<>();
+            for (Class<? extends ObjectType> type : TYPES_TO_PROCESS) {
+                collectScripts(type, scripts, result);
+            }
+            long collected = System.currentTimeMillis();
+            int compiled = compileInParallel(scripts.values());
+            LOGGER.info("Precompiled {} of {} scripts in {} ms (collecting them took {} ms)",
+                    compiled, scripts.size(), System.currentTimeMillis() - collected, collected - start);
+            result.addReturn("scripts", scripts.size());
+            result.addReturn("compiled", compiled);
+        } catch (Throwable t) {
+            // Not critical, the scripts will be compiled on their first use.
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't precompile scripts", t);
+            result.recordException(t);
+        } finally {
+            result.close();
+        }
+    }
+
+    private <O extends ObjectType> void collectScripts(
+            Class<O> type, Map<ScriptKey, ScriptToCompile> scripts, OperationResult result)
+            throws SchemaException {
+        repositoryService.searchObjectsIterative(
+                type,
+                null,
+                (object, lResult) -> {
+                    collectScriptsFromObject(object, scripts, lResult);
+                    return true;
+                },
+                GetOperationOptions.createReadOnlyCollection(),
+                true,
+                result);
+    }
+
+    private void collectScriptsFromObject(
+            PrismObject<? extends ObjectType> object, Map<ScriptKey, ScriptToCompile> scripts, OperationResult result) {
+        ExpressionProfile profile;
+        try {
+            profile = expressionProfileManager.determineExpressionProfile(object, result);
+        } catch (Exception e) {
+            LOGGER.debug("Couldn't determine expression profile for {}, its scripts will not be precompiled: {}",
+                    object, e.getMessage(), e);
+            return;
+        }
+        String contextDescription = "script in " + object;
+        object.accept(visitable -> {
+            if (visitable instanceof PrismPropertyValue<?> propertyValue
+                    && propertyValue.getRealValue() instanceof ExpressionType expression) {
+                for (JAXBElement<?> evaluator : expression.getExpressionEvaluator()) {
+                    if (evaluator.getValue() instanceof ScriptExpressionEvaluatorType script && script.getCode() != null) {
+                        scripts.putIfAbsent(
+                                new ScriptKey(script.getLanguage(), script.getCode(), profile.getIdentifier()),
+                                new ScriptToCompile(script, profile, contextDescription));
+                    }
+                }
+            }
+        });
+    }
+
+    /** Returns the number of successfully compiled scripts. */
+    private int compileInParallel(@NotNull Collection<ScriptToCompile> scripts) throws InterruptedException {
+        if (scripts.isEmpty()) {
+            return 0;
+        }
+        AtomicInteger compiled = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (ScriptToCompile script : scripts) {
+            tasks.add(() -> {
+                try {
+                    if (scriptExpressionFactory.precompileScript(script.bean(), script.profile(), script.contextDescription())) {
+                        compiled.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    LOGGER.debug("Couldn't precompile {}: {}", script.contextDescription(), e.getMessage(), e);
+                }
+                return null;
+            });
+        }
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), scripts.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "script-precompiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            executor.invokeAll(tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+        return compiled.get();
+    }
+
+    /** Scripts with the same key are compiled only once, so we do not need to keep the duplicates. */
+    private record ScriptKey(String language, @NotNull String code, @NotNull String profileIdentifier) {
+    }
+
+    private record ScriptToCompile(
+            @NotNull ScriptExpressionEvaluatorType bean,
+            @NotNull ExpressionProfile profile,
+            @NotNull String contextDescription) {
+    }
+}
@@ -9,6 +9,9 @@ package com.evolveum.midpoint.model.impl.sync.tasks.sync;
 
 import com.evolveum.midpoint.model.impl.sync.tasks.ResourceSetTaskWorkDefinition;
 
+import java.util.Date;
+import javax.xml.datatype.Duration;
+
 import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.repo.common.activity.definition.AbstractWorkDefinition;
@@ -24,6 +27,8 @@ public class LiveSyncWorkDefinition extends ResourceSetTaskWorkDefinition implem
     private final Integer batchSize;
     private final boolean updateLiveSyncTokenInDryRun;
     private final boolean updateLiveSyncTokenInPreviewMode;
+    private final boolean streaming;
+    private final Long tokenCommitInterval;
 
     LiveSyncWorkDefinition(@NotNull WorkDefinitionFactory.WorkDefinitionInfo info) {
         super(info);
@@ -32,6 +37,9 @@ public class LiveSyncWorkDefinition extends ResourceSetTaskWorkDefinition implem
         updateLiveSyncTokenInPreviewMode = Boolean.TRUE.equals(typedDefinition.isUpdateLiveSyncTokenInPreviewMode());
         ResourceObjectSetUtil.removeQuery(getResourceObjectSetSpecification());
         updateLiveSyncTokenInDryRun = Boolean.TRUE.equals(typedDefinition.isUpdateLiveSyncTokenInDryRun());
+        streaming = Boolean.TRUE.equals(typedDefinition.isStreaming());
+        Duration tokenCommitIntervalDuration = typedDefinition.getTokenCommitInterval();
+        tokenCommitInterval = tokenCommitIntervalDuration != null ? tokenCommitIntervalDuration.getTimeInMillis(new Date()) : null;
     }
 
     Integer getBatchSize() {
@@ -46,11 +54,21 @@ public class LiveSyncWorkDefinition extends ResourceSetTaskWorkDefinition implem
         return updateLiveSyncTokenInPreviewMode;
     }
 
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    Long getTokenCommitInterval() {
+        return tokenCommitInterval;
+    }
+
     @Override
     protected void debugDumpContent(StringBuilder sb, int indent) {
         DebugUtil.debugDumpWithLabelLn(sb, "resourceObjects", getResourceObjectSetSpecification(), indent+1);
         DebugUtil.debugDumpWithLabelLn(sb, "batchSize", batchSize, indent+1);
         DebugUtil.debugDumpWithLabelLn(sb, "updateLiveSyncTokenInDryRun", updateLiveSyncTokenInDryRun, indent+1);
-        DebugUtil.debugDumpWithLabel(sb, "updateLiveSyncTokenInPreviewMode", updateLiveSyncTokenInPreviewMode, indent+1);
+        DebugUtil.debugDumpWithLabelLn(sb, "updateLiveSyncTokenInPreviewMode", updateLiveSyncTokenInPreviewMode, indent+1);
+        DebugUtil.debugDumpWithLabelLn(sb, "streaming", streaming, indent+1);
+        DebugUtil.debugDumpWithLabel(sb, "tokenCommitInterval", tokenCommitInterval, indent+1);
     }
 }
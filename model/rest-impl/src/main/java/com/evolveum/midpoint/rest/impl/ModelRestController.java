@@ -632,6 +632,7 @@ public class ModelRestController extends AbstractRestController {
             @RequestParam(value = "include", required = false) List<String> include,
             @RequestParam(value = "exclude", required = false) List<String> exclude,
             @RequestParam(value = "resolveNames", required = false) List<String> resolveNames,
+            @RequestParam(value = "pagingCookie", required = false) String pagingCookie,
             @RequestBody QueryType queryType) {
 
         Task task = initRequest();
@@ -641,6 +642,13 @@ public class ModelRestController extends AbstractRestController {
         ResponseEntity<?> response;
         try {
             ObjectQuery query = prismContext.getQueryConverter().createObjectQuery(clazz, queryType);
+            if (pagingCookie != null) {
+                // OID of the last object of the previous page, the next page starts after it instead of the offset
+                if (query.getPaging() == null) {
+                    query.setPaging(prismContext.queryFactory().createPaging());
+                }
+                query.getPaging().setCookie(pagingCookie);
+            }
             Collection<SelectorOptions<GetOperationOptions>> searchOptions = GetOperationOptions.fromRestOptions(options, include,
                     exclude, resolveNames, DefinitionProcessingOption.ONLY_IF_EXISTS, prismContext);
             List<? extends PrismObject<? extends ObjectType>> objects =
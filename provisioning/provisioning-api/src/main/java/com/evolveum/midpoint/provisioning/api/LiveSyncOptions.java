@@ -31,6 +31,12 @@ public class LiveSyncOptions {
     private final boolean updateLiveSyncTokenInDryRun;
     private final boolean updateLiveSyncTokenInPreviewMode;
 
+    /** Should the changes be fetched repeatedly (in batches) within a single run? */
+    private final boolean streaming;
+
+    /** Minimal time between intermediate token commits, in milliseconds. Null means the default. */
+    private final Long tokenCommitInterval;
+
     public LiveSyncOptions() {
         this(ExecutionModeType.FULL, null, false, false);
     }
@@ -40,10 +46,22 @@ public class LiveSyncOptions {
             Integer batchSize,
             boolean updateLiveSyncTokenInDryRun,
             boolean updateLiveSyncTokenInPreviewMode) {
+        this(executionMode, batchSize, updateLiveSyncTokenInDryRun, updateLiveSyncTokenInPreviewMode, false, null);
+    }
+
+    public LiveSyncOptions(
+            @NotNull ExecutionModeType executionMode,
+            Integer batchSize,
+            boolean updateLiveSyncTokenInDryRun,
+            boolean updateLiveSyncTokenInPreviewMode,
+            boolean streaming,
+            Long tokenCommitInterval) {
         this.executionMode = executionMode;
         this.batchSize = batchSize;
         this.updateLiveSyncTokenInDryRun = updateLiveSyncTokenInDryRun;
         this.updateLiveSyncTokenInPreviewMode = updateLiveSyncTokenInPreviewMode;
+        this.streaming = streaming;
+        this.tokenCommitInterval = tokenCommitInterval;
     }
 
     public @NotNull ExecutionModeType getExecutionMode() {
@@ -61,4 +79,12 @@ public class LiveSyncOptions {
     public boolean isUpdateLiveSyncTokenInPreviewMode() {
         return updateLiveSyncTokenInPreviewMode;
     }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public Long getTokenCommitInterval() {
+        return tokenCommitInterval;
+    }
 }
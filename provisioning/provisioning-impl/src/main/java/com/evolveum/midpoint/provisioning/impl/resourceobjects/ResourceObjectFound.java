@@ -77,6 +77,11 @@ public class ResourceObjectFound extends AbstractLazilyInitializableResourceEnti
         return initialUcfResourceObject;
     }
 
+    /** The resource object as obtained from UCF. Available also before initialization, e.g. to get the identifiers. */
+    public @NotNull ExistingResourceObjectShadow getInitialResourceObject() {
+        return initialResourceObject;
+    }
+
     /** Returns the best available resource object. */
     public @NotNull ExistingResourceObjectShadow getResourceObject() {
         return getCompleteResourceObject().resourceObject();
@@ -7,6 +7,8 @@
 
 package com.evolveum.midpoint.provisioning.impl.resourceobjects;
 
+import java.util.List;
+
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.annotation.Experimental;
 
@@ -25,4 +27,21 @@ public interface ResourceObjectHandler {
 
     boolean handle(@NotNull ResourceObjectFound resourceObject, @NotNull OperationResult result)
             throws SchemaException;
+
+    /**
+     * How many objects should be collected before they are passed to {@link #handle(ResourceObjectFound, OperationResult)}.
+     * If greater than 1, {@link #prepareBatch(List, OperationResult)} is called for each such batch.
+     */
+    default int getBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Called before the objects in the batch are handled (one by one, in the original order).
+     * Allows the handler to do the work common to all objects at once; for example, to look up the repository shadows
+     * for all the objects using a single query. The objects are not initialized at this point.
+     */
+    default void prepareBatch(@NotNull List<ResourceObjectFound> objects, @NotNull OperationResult result)
+            throws SchemaException {
+    }
 }
@@ -7,6 +7,8 @@
 
 package com.evolveum.midpoint.provisioning.impl.resourceobjects;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.evolveum.midpoint.provisioning.ucf.api.ShadowItemsToReturn;
@@ -54,6 +56,15 @@ class ResourceObjectSearchOperation extends AbstractResourceObjectRetrievalOpera
     /** Just for numbering the objects for diagnostics purposes (for now). */
     private final AtomicInteger objectCounter = new AtomicInteger(0);
 
+    /**
+     * Objects collected but not yet passed to {@link #resultHandler}; see {@link ResourceObjectHandler#getBatchSize()}.
+     * Guarded by: this.
+     */
+    private final List<ResourceObjectFound> bufferedObjects = new ArrayList<>();
+
+    /** True if the {@link #resultHandler} requested stopping the search. Guarded by: this. */
+    private boolean stopped;
+
     private ResourceObjectSearchOperation(
             @NotNull ProvisioningContext ctx,
             @NotNull ResourceObjectHandler resultHandler,
@@ -154,6 +165,8 @@ class ResourceObjectSearchOperation extends AbstractResourceObjectRetrievalOpera
                     ctx.getUcfExecutionContext(),
                     result);
 
+            handleBufferedObjects(result);
+
         } catch (GenericFrameworkException e) {
             throw new SystemException("Generic error in the connector: " + e.getMessage(), e);
         } catch (CommunicationException ex) {
@@ -197,6 +210,45 @@ class ResourceObjectSearchOperation extends AbstractResourceObjectRetrievalOpera
 
         ResourceObjectFound objectFound = ResourceObjectFound.fromUcf(ucfObject, ctx, fetchAssociations);
 
+        if (resultHandler.getBatchSize() <= 1) {
+            return handleObjectFound(objectFound, parentResult);
+        }
+
+        // The connector may call us from multiple threads (although it usually does not).
+        synchronized (this) {
+            bufferedObjects.add(objectFound);
+            if (bufferedObjects.size() < resultHandler.getBatchSize()) {
+                return true;
+            }
+            return handleBufferedObjects(parentResult);
+        }
+    }
+
+    /** Passes the buffered objects to the handler, preparing the batch first. Returns false if the handler wants to stop. */
+    private synchronized boolean handleBufferedObjects(OperationResult parentResult) {
+        if (bufferedObjects.isEmpty() || stopped) {
+            bufferedObjects.clear();
+            return !stopped;
+        }
+        List<ResourceObjectFound> batch = new ArrayList<>(bufferedObjects);
+        bufferedObjects.clear();
+        try {
+            resultHandler.prepareBatch(batch, parentResult);
+        } catch (SchemaException e) {
+            throw new TunnelException(e);
+        }
+        for (ResourceObjectFound objectFound : batch) {
+            if (!handleObjectFound(objectFound, parentResult)) {
+                stopped = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean handleObjectFound(ResourceObjectFound objectFound, OperationResult parentResult) {
+        UcfResourceObject ucfObject = objectFound.getInitialUcfResourceObject();
+
         // In order to utilize the cache right from the beginning.
         RepositoryCache.enterLocalCaches(b.cacheConfigurationManager);
         try {
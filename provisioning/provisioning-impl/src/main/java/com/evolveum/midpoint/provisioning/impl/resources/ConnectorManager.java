@@ -14,6 +14,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
@@ -53,6 +54,7 @@ import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.internals.InternalCounters;
 import com.evolveum.midpoint.schema.internals.InternalMonitor;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.statistics.ConnectorOperationalStatus;
 import com.evolveum.midpoint.schema.util.ConnectorTypeUtil;
 import com.evolveum.midpoint.schema.util.ResourceTypeUtil;
 import com.evolveum.midpoint.task.api.Task;
@@ -791,14 +793,65 @@ public class ConnectorManager implements Cache, ConnectorDiscoveryListener {
     @NotNull
     @Override
     public Collection<SingleCacheStateInformationType> getStateInformation() {
-        return Arrays.asList(
+        List<SingleCacheStateInformationType> information = new ArrayList<>(Arrays.asList(
                 new SingleCacheStateInformationType()
                         .name(CONNECTOR_INSTANCE_CACHE_NAME)
                         .size(connectorInstanceCache.size()),
                 new SingleCacheStateInformationType()
                         .name(CONNECTOR_BEAN_CACHE_NAME)
                         .size(connectorBeanCache.size())
-        );
+        ));
+        connectorInstanceCache.forEach((key, entry) -> {
+            SingleCacheStateInformationType poolInformation = getPoolStateInformation(key, entry);
+            if (poolInformation != null) {
+                information.add(poolInformation);
+            }
+        });
+        return information;
+    }
+
+    /**
+     * Connector pool of a cached connector instance: size = connectors in use, secondary size = idle connectors;
+     * "hits" are borrowings without waiting, "misses" are the ones that had to wait (with the total waiting time).
+     */
+    private @Nullable SingleCacheStateInformationType getPoolStateInformation(
+            @NotNull ConfiguredConnectorCacheKey key, @NotNull ConfiguredConnectorInstanceEntry entry) {
+        ConnectorOperationalStatus status;
+        try {
+            status = entry.isConfigured() ? entry.getConnectorInstance().getOperationalStatus() : null;
+        } catch (ObjectNotFoundException | RuntimeException e) {
+            LOGGER.debug("Couldn't get operational status of {}: {}", entry, e.getMessage(), e);
+            return null;
+        }
+        if (status == null || status.getPoolStatusBorrowCount() == null) {
+            return null;
+        }
+        long borrows = status.getPoolStatusBorrowCount();
+        long waits = Objects.requireNonNullElse(status.getPoolStatusBorrowWaitCount(), 0L);
+        String name = CONNECTOR_INSTANCE_CACHE_NAME + ".pool." + key.getResourceOid() + "." + key.getConnectorName();
+        SingleCacheStateInformationType information = new SingleCacheStateInformationType()
+                .name(name)
+                .size(status.getPoolStatusNumInUse())
+                .secondarySize(status.getPoolStatusNumIdle())
+                .performance(new SingleCachePerformanceInformationType()
+                        .name(name)
+                        .hitCount(toIntSaturated(borrows - waits))
+                        .missCount(toIntSaturated(waits))
+                        .missTime(status.getPoolStatusBorrowWaitTime()));
+        information.getComponent().add(new ComponentSizeInformationType()
+                .name("waiting")
+                .size(status.getPoolStatusNumWaiting()));
+        if (status.getPoolStatusLimit() != null) {
+            information.getComponent().add(new ComponentSizeInformationType()
+                    .name("limit")
+                    .size(status.getPoolStatusLimit()));
+        }
+        return information;
+    }
+
+    /** The counters are long, but the cache statistics use int; the long-running ones must not wrap to negative values. */
+    private static int toIntSaturated(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
     }
 
     @Override
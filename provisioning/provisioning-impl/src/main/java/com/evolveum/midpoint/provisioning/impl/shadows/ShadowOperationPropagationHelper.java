@@ -10,12 +10,14 @@ package com.evolveum.midpoint.provisioning.impl.shadows;
 import static com.evolveum.midpoint.schema.util.ResourceTypeUtil.getGroupingInterval;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.PendingOperationExecutionStatusType.EXECUTION_PENDING;
 
+import java.util.Collection;
 import javax.xml.datatype.Duration;
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import com.evolveum.midpoint.provisioning.api.ProvisioningOperationContext;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -32,6 +34,7 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.RawRepoShadow;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.*;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
@@ -45,9 +48,13 @@ class ShadowOperationPropagationHelper {
 
     private static final Trace LOGGER = TraceManager.getTrace(ShadowOperationPropagationHelper.class);
 
+    private static final String OP_PROPAGATE_OPERATIONS_ON_SHADOW =
+            ShadowOperationPropagationHelper.class.getName() + ".propagateOperationsOnShadow";
+
     @Autowired private Clock clock;
     @Autowired private ProvisioningContextFactory ctxFactory;
 
+    /** Propagates operations on a single shadow. Any exception is thrown to the caller. */
     void propagateOperations(
             @NotNull ResourceType resource,
             @NotNull RawRepoShadow rawRepoShadow,
@@ -63,8 +70,72 @@ class ShadowOperationPropagationHelper {
             return;
         }
 
+        PendingOperations sortedOperations = getOperationsToPropagate(
+                rawRepoShadow, operationGroupingInterval, clock.currentTimeXMLGregorianCalendar());
+        if (sortedOperations != null) {
+            ProvisioningContext ctx = ctxFactory.createForShadow(rawRepoShadow.getBean(), task, result);
+            propagateOperations(ctx, rawRepoShadow, sortedOperations, result);
+        }
+    }
+
+    /**
+     * Propagates operations on a batch of shadows of given resource.
+     *
+     * The shadows without operations to be propagated are skipped before any provisioning context is created.
+     * The resource and its connector are looked up only once for the whole batch; the contexts for the individual shadows
+     * are spawned from the first one. The resource operations are executed shadow by shadow (in the order of the shadows),
+     * because each of them goes through the whole provisioning machinery (waves, read-replace, scripts, error handling).
+     * The repository shadow is updated (e.g. its pending operations are completed) right after its resource operation;
+     * these updates are not deferred, so that a crash does not cause the operations to be executed again.
+     *
+     * A failure of a shadow is recorded in its own operation result, and the other shadows are processed nevertheless.
+     */
+    void propagateOperations(
+            @NotNull ResourceType resource,
+            @NotNull Collection<RawRepoShadow> rawRepoShadows,
+            @NotNull Task task,
+            @NotNull OperationResult result) {
+
+        Duration operationGroupingInterval = getGroupingInterval(resource);
+        if (operationGroupingInterval == null) {
+            LOGGER.warn("Skipping propagation of {} shadows because no there is no operationGroupingInterval defined in resource",
+                    rawRepoShadows.size());
+            return;
+        }
+
         XMLGregorianCalendar now = clock.currentTimeXMLGregorianCalendar();
 
+        ProvisioningContext firstCtx = null;
+        for (RawRepoShadow rawRepoShadow : rawRepoShadows) {
+            PendingOperations sortedOperations = getOperationsToPropagate(rawRepoShadow, operationGroupingInterval, now);
+            if (sortedOperations == null) {
+                continue;
+            }
+            OperationResult shadowResult = result.subresult(OP_PROPAGATE_OPERATIONS_ON_SHADOW)
+                    .addParam("shadow", rawRepoShadow.getOid())
+                    .build();
+            try {
+                ProvisioningContext ctx;
+                if (firstCtx == null) {
+                    firstCtx = ctx = ctxFactory.createForShadow(rawRepoShadow.getBean(), task, shadowResult);
+                } else {
+                    ctx = firstCtx.spawnForShadow(rawRepoShadow.getBean());
+                }
+                propagateOperations(ctx, rawRepoShadow, sortedOperations, shadowResult);
+            } catch (CommonException | GenericFrameworkException | RuntimeException e) {
+                shadowResult.recordException(e);
+                LoggingUtils.logException(LOGGER, "Couldn't propagate operations on {}, continuing with other shadows",
+                        e, rawRepoShadow);
+            } finally {
+                shadowResult.close();
+            }
+        }
+    }
+
+    /** Returns null if there's nothing to propagate (now). */
+    private @Nullable PendingOperations getOperationsToPropagate(
+            @NotNull RawRepoShadow rawRepoShadow, @NotNull Duration operationGroupingInterval, @NotNull XMLGregorianCalendar now) {
+
         PendingOperations sortedOperations = PendingOperations.sorted(
                 rawRepoShadow.getBean().getPendingOperation().stream()
                         .filter(op -> op.getExecutionStatus() == EXECUTION_PENDING)
@@ -72,15 +143,25 @@ class ShadowOperationPropagationHelper {
 
         if (sortedOperations.isEmpty()) {
             LOGGER.debug("Skipping propagation of {} because there are no pending executions", rawRepoShadow);
-            return;
+            return null;
         }
         if (!isPropagationTriggered(sortedOperations, operationGroupingInterval, now)) {
             LOGGER.debug("Skipping propagation of {} because no pending operation triggered propagation", rawRepoShadow);
-            return;
+            return null;
         }
+        return sortedOperations;
+    }
+
+    private void propagateOperations(
+            @NotNull ProvisioningContext ctx,
+            @NotNull RawRepoShadow rawRepoShadow,
+            @NotNull PendingOperations sortedOperations,
+            @NotNull OperationResult result) throws ObjectNotFoundException, SchemaException, CommunicationException,
+            ConfigurationException, ExpressionEvaluationException, GenericFrameworkException, ObjectAlreadyExistsException,
+            SecurityViolationException, PolicyViolationException, EncryptionException {
+
         LOGGER.debug("Propagating {} pending operations in {}", sortedOperations.size(), rawRepoShadow);
 
-        ProvisioningContext ctx = ctxFactory.createForShadow(rawRepoShadow.getBean(), task, result);
         ctx.setOperationContext(ProvisioningOperationContext.empty());
         ctx.setPropagation(true);
         RepoShadow repoShadow = ctx.adoptRawRepoShadow(rawRepoShadow);
@@ -7,12 +7,16 @@
 package com.evolveum.midpoint.provisioning.impl.shadows;
 
 import static com.evolveum.midpoint.provisioning.impl.shadows.RepoShadowWithState.ShadowState.EXISTING;
+import static com.evolveum.midpoint.provisioning.impl.shadows.manager.ShadowManagerMiscUtil.determinePrimaryIdentifierValue;
 import static com.evolveum.midpoint.provisioning.util.ProvisioningUtil.determineContentDescription;
 import static com.evolveum.midpoint.schema.GetOperationOptions.getErrorReportingMethod;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.evolveum.midpoint.provisioning.impl.RepoShadow;
 
@@ -37,6 +41,7 @@ import com.evolveum.midpoint.schema.internals.InternalMonitor;
 import com.evolveum.midpoint.schema.internals.InternalsConfig;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.ObjectQueryUtil;
+import com.evolveum.midpoint.schema.util.RawRepoShadow;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.*;
 import com.evolveum.midpoint.util.logging.Trace;
@@ -157,23 +162,7 @@ class ShadowSearchLikeOperation {
         // We need to record the fetch down here. Now it is certain that we are going to fetch from resource.
         InternalMonitor.recordCount(InternalCounters.SHADOW_FETCH_OPERATION_COUNT);
 
-        ResourceObjectHandler shadowHandler = (ResourceObjectFound objectFound, OperationResult lResult) -> {
-
-            ShadowedObjectFound shadowedObjectFound = new ShadowedObjectFound(objectFound);
-            shadowedObjectFound.initialize(ctx.getTask(), lResult);
-            ShadowType shadowedObject = shadowedObjectFound.getResultingObject(ucfErrorReportingMethod, lResult);
-            shadowedObject.setContentDescription(
-                    determineContentDescription(options, shadowedObjectFound.isError()));
-
-            try {
-                return handler.handle(shadowedObject.asPrismObject(), lResult);
-            } catch (Throwable t) {
-                lResult.recordException(t);
-                throw t;
-            } finally {
-                lResult.close();
-            }
-        };
+        var shadowHandler = new ShadowedObjectHandler(handler, ucfErrorReportingMethod);
 
         boolean fetchAssociations = SelectorOptions.hasToIncludePath(ShadowType.F_ASSOCIATIONS, options, true);
         try {
@@ -405,4 +394,107 @@ class ShadowSearchLikeOperation {
     private boolean isMaxStaleness() {
         return GetOperationOptions.isMaxStaleness(rootOptions);
     }
+
+    /**
+     * Converts objects found on the resource to shadowed objects and passes them to the client's handler.
+     *
+     * Live repo shadows for the objects are looked up for the whole batch by a single repository query
+     * (instead of a query per object). Objects for which no shadow is found this way (e.g. new objects, or shadows
+     * without indexed primary identifier value) are treated in the regular way.
+     *
+     * Processing of an object (including the client's handler) may modify shadows of other objects in the batch.
+     * Hence, a prefetched shadow is used only if its version in the repository is still the same; otherwise, the object
+     * is treated in the regular way as well.
+     */
+    private class ShadowedObjectHandler implements ResourceObjectHandler {
+
+        @NotNull private final ResultHandler<ShadowType> handler;
+        private final FetchErrorReportingMethodType ucfErrorReportingMethod;
+
+        /** Shadows looked up for the objects in the current batch. Removed when the object is processed. */
+        private final Map<ResourceObjectFound, RawRepoShadow> prefetchedShadows = new IdentityHashMap<>();
+
+        /** Set when the batched lookup is found to be not applicable; it is then not tried for the rest of the search. */
+        private boolean prefetchDisabled;
+
+        ShadowedObjectHandler(
+                @NotNull ResultHandler<ShadowType> handler, FetchErrorReportingMethodType ucfErrorReportingMethod) {
+            this.handler = handler;
+            this.ucfErrorReportingMethod = ucfErrorReportingMethod;
+        }
+
+        @Override
+        public int getBatchSize() {
+            return InternalsConfig.getShadowLookupBatchSize();
+        }
+
+        @Override
+        public void prepareBatch(@NotNull List<ResourceObjectFound> objects, @NotNull OperationResult result)
+                throws SchemaException {
+            prefetchedShadows.clear();
+            if (prefetchDisabled) {
+                return;
+            }
+            Map<String, List<ResourceObjectFound>> objectsByValue = new HashMap<>();
+            for (ResourceObjectFound object : objects) {
+                String primaryIdentifierValue;
+                try {
+                    primaryIdentifierValue = determinePrimaryIdentifierValue(ctx, object.getInitialResourceObject());
+                } catch (SchemaException | RuntimeException e) {
+                    LOGGER.trace("Couldn't determine primary identifier value for {}, will look up the shadow later: {}",
+                            object, e.getMessage());
+                    continue;
+                }
+                if (primaryIdentifierValue != null) {
+                    objectsByValue.computeIfAbsent(primaryIdentifierValue, k -> new ArrayList<>()).add(object);
+                }
+            }
+            // Objects with the same identifier in a single batch are strange; processing the first one could update
+            // the shadow, so the others would get stale data. Let us look them up individually.
+            objectsByValue.values().removeIf(sameValueObjects -> sameValueObjects.size() > 1);
+            if (objectsByValue.isEmpty()) {
+                return;
+            }
+            Map<String, RawRepoShadow> shadowsByValue;
+            try {
+                shadowsByValue = b.shadowFinder.lookupLiveRawRepoShadowsByIndexedPrimaryIdValues(
+                        ctx, objectsByValue.keySet(), result);
+            } catch (ConfigurationException e) {
+                throw new TunnelException(e);
+            }
+            if (shadowsByValue == null) {
+                LOGGER.debug("Batched shadow lookup is not applicable, objects will be treated individually for the rest of "
+                        + "the search");
+                prefetchDisabled = true;
+                return;
+            }
+            shadowsByValue.forEach((value, shadow) ->
+                    prefetchedShadows.put(objectsByValue.get(value).get(0), shadow));
+            LOGGER.trace("Prefetched {} shadows for {} objects", shadowsByValue.size(), objects.size());
+        }
+
+        @Override
+        public boolean handle(@NotNull ResourceObjectFound objectFound, @NotNull OperationResult lResult) {
+
+            RawRepoShadow prefetchedShadow = prefetchedShadows.remove(objectFound);
+            if (prefetchedShadow != null && !b.shadowFinder.isUnchanged(prefetchedShadow, lResult)) {
+                LOGGER.trace("Prefetched {} was changed in the meanwhile, looking it up again", prefetchedShadow);
+                prefetchedShadow = null;
+            }
+            ShadowedObjectFound shadowedObjectFound = new ShadowedObjectFound(objectFound, prefetchedShadow);
+            shadowedObjectFound.initialize(ctx.getTask(), lResult);
+            ShadowType shadowedObject = shadowedObjectFound.getResultingObject(ucfErrorReportingMethod, lResult);
+            shadowedObject.setContentDescription(
+                    determineContentDescription(options, shadowedObjectFound.isError()));
+
+            try {
+                return handler.handle(shadowedObject.asPrismObject(), lResult);
+            } catch (Throwable t) {
+                lResult.recordException(t);
+                throw t;
+            } finally {
+                lResult.close();
+            }
+        }
+    }
 }
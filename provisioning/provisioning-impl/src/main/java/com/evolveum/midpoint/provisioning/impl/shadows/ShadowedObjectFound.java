@@ -21,6 +21,7 @@ import com.evolveum.midpoint.provisioning.impl.resourceobjects.ExistingResourceO
 import com.evolveum.midpoint.provisioning.impl.resourceobjects.ResourceObjectFound;
 import com.evolveum.midpoint.provisioning.util.ProvisioningUtil;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.RawRepoShadow;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.DebugUtil;
@@ -44,6 +45,9 @@ public class ShadowedObjectFound extends AbstractLazilyInitializableShadowedEnti
     /** The resource object that corresponds to this instance. */
     @NotNull private final ResourceObjectFound resourceObjectFound;
 
+    /** Live repo shadow looked up in advance (for the whole batch of objects), if available. */
+    @Nullable private final RawRepoShadow prefetchedLiveShadow;
+
 //    /**
 //     * The object after "shadowization". Fulfills the following:
 //     *
@@ -61,9 +65,11 @@ public class ShadowedObjectFound extends AbstractLazilyInitializableShadowedEnti
 //     * This object points to such a shadow. The other parts (from resource object) can be missing.
 //     */
 
-    ShadowedObjectFound(@NotNull ResourceObjectFound resourceObjectFound) {
+    ShadowedObjectFound(
+            @NotNull ResourceObjectFound resourceObjectFound, @Nullable RawRepoShadow prefetchedLiveShadow) {
         super(resourceObjectFound);
         this.resourceObjectFound = resourceObjectFound;
+        this.prefetchedLiveShadow = prefetchedLiveShadow;
     }
 
     @Override
@@ -75,7 +81,7 @@ public class ShadowedObjectFound extends AbstractLazilyInitializableShadowedEnti
     @Override
     protected RepoShadowWithState acquireOrLookupRepoShadow(OperationResult result)
             throws SchemaException, ConfigurationException, EncryptionException {
-        return acquireRepoShadow(resourceObjectFound.getResourceObject(), result);
+        return acquireRepoShadow(resourceObjectFound.getResourceObject(), prefetchedLiveShadow, result);
     }
 
     @Override
@@ -211,6 +211,23 @@ public class ShadowsFacade {
         propagationHelper.propagateOperations(resource, RawRepoShadow.of(repoShadow), task, result);
     }
 
+    /**
+     * Propagates operations on a batch of shadows of the same resource.
+     * We assume that the `repoShadows` were retrieved right from the repository.
+     *
+     * Failures of individual shadows are recorded in the operation result, they are not thrown.
+     */
+    public void propagateOperations(
+            @NotNull ResourceType resource,
+            @NotNull Collection<ShadowType> repoShadows,
+            @NotNull Task task,
+            @NotNull OperationResult result) {
+        propagationHelper.propagateOperations(
+                resource,
+                repoShadows.stream().map(RawRepoShadow::of).toList(),
+                task, result);
+    }
+
     public <T> ItemComparisonResult compare(
             @NotNull ShadowType repositoryShadow,
             ItemPath path,
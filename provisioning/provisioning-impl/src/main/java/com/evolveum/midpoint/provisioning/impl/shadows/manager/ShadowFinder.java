@@ -10,8 +10,11 @@ import static com.evolveum.midpoint.schema.processor.ShadowsNormalizationUtil.tr
 import static com.evolveum.midpoint.schema.GetOperationOptions.zeroStalenessOptions;
 import static com.evolveum.midpoint.util.DebugUtil.lazy;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.evolveum.midpoint.schema.util.ObjectSet;
 import com.evolveum.midpoint.schema.util.RawRepoShadow;
@@ -29,6 +32,8 @@ import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.builder.S_FilterEntry;
+import com.evolveum.midpoint.prism.query.builder.S_FilterExit;
+import com.evolveum.midpoint.prism.query.builder.S_QueryExit;
 import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
 import com.evolveum.midpoint.provisioning.impl.RepoShadow;
 import com.evolveum.midpoint.provisioning.impl.resourceobjects.ResourceObjectShadow;
@@ -218,6 +223,87 @@ public class ShadowFinder {
                 lazy(() -> "primary identifier value " + primaryIdentifierValue + " (impossible because of DB constraint)"));
     }
 
+    /**
+     * Looks up live shadows for a number of primary identifier values at once, using the indexed
+     * shadow.primaryIdentifierValue property, just like {@link #lookupShadowByIndexedPrimaryIdValue(ProvisioningContext,
+     * String, OperationResult)} does for a single value.
+     *
+     * Used to avoid one repository query per object when processing objects found on the resource.
+     * The returned map contains only values for which a live shadow was found. The absence of a value does not mean
+     * there is no shadow for the object. The caller must fall back to the regular lookup in such cases.
+     *
+     * The regular lookup (by primary identifier attribute) detects the situation of more live shadows for the same object,
+     * see {@link RawRepoShadow#selectLiveShadow(List, Object)}. Such a conflicting shadow may have no primary identifier
+     * value stored (e.g. a proposed shadow), so we look for live shadows without the value as well. If there are any,
+     * `null` is returned: the batched lookup is not applicable, and the regular lookup has to be used, so that the conflicts
+     * are reported in the usual way. (Such shadows are not bound to the values looked for, so the caller should not try
+     * the batched lookup again in the same operation.)
+     */
+    public @Nullable Map<String, RawRepoShadow> lookupLiveRawRepoShadowsByIndexedPrimaryIdValues(
+            ProvisioningContext ctx, Collection<String> primaryIdentifierValues, OperationResult result)
+            throws SchemaException, ConfigurationException {
+
+        if (primaryIdentifierValues.isEmpty()) {
+            return Map.of();
+        }
+
+        ObjectQuery query = createQueryByPrimaryIdValues(ctx, primaryIdentifierValues, true);
+        LOGGER.trace("Searching for shadows by {} primary identifier values using filter:\n{}",
+                primaryIdentifierValues.size(), query.debugDumpLazily(1));
+
+        var shadowsFound = searchRepoShadows(query, zeroStalenessOptions(), result); // zero staleness = no caching!
+        LOGGER.trace("Found {} shadows", shadowsFound.size());
+
+        Map<String, List<PrismObject<ShadowType>>> shadowsFoundByValue = new HashMap<>();
+        for (PrismObject<ShadowType> shadowFound : shadowsFound) {
+            String value = shadowFound.asObjectable().getPrimaryIdentifierValue();
+            if (value != null) {
+                shadowsFoundByValue.computeIfAbsent(value, k -> new ArrayList<>()).add(shadowFound);
+            } else if (ShadowUtil.isNotDead(shadowFound.asObjectable())) {
+                LOGGER.debug("Live shadow without primary identifier value found ({}), the batched lookup is not applicable",
+                        shadowFound);
+                return null;
+            }
+        }
+
+        Map<String, RawRepoShadow> shadowsByValue = new HashMap<>();
+        for (var entry : shadowsFoundByValue.entrySet()) {
+            String value = entry.getKey();
+            RawRepoShadow liveShadow;
+            try {
+                liveShadow = RawRepoShadow.selectLiveShadow(entry.getValue(), "by primary identifier value " + value);
+            } catch (IllegalStateException e) {
+                // Not expected because of the DB constraint; anyway, the regular lookup will report the problem.
+                LOGGER.debug("Couldn't select live shadow for primary identifier value {}: {}", value, e.getMessage());
+                continue;
+            }
+            if (liveShadow != null) {
+                shadowsByValue.put(value, liveShadow);
+            }
+        }
+        return shadowsByValue;
+    }
+
+    /**
+     * Returns `true` if the shadow (obtained earlier, e.g. by {@link #lookupLiveRawRepoShadowsByIndexedPrimaryIdValues(
+     * ProvisioningContext, Collection, OperationResult)}) still exists in the repository in the same version.
+     */
+    public boolean isUnchanged(@NotNull RawRepoShadow shadow, @NotNull OperationResult result) {
+        String version = shadow.getBean().getVersion();
+        if (version == null) {
+            return false;
+        }
+        try {
+            return version.equals(
+                    repositoryService.getVersion(ShadowType.class, shadow.getOid(), result));
+        } catch (ObjectNotFoundException | SchemaException e) {
+            // The regular lookup will deal with the shadow.
+            result.muteLastSubresultError();
+            LOGGER.trace("Couldn't get the version of {}: {}", shadow, e.getMessage());
+            return false;
+        }
+    }
+
     private static @Nullable RepoShadow selectSingleShadow(
             @NotNull ProvisioningContext ctx, @NotNull List<PrismObject<ShadowType>> rawShadows, Object context)
             throws SchemaException, ConfigurationException {
@@ -330,11 +416,40 @@ public class ShadowFinder {
     }
 
     private @NotNull ObjectQuery createQueryByPrimaryIdValue(ProvisioningContext ctx, String primaryIdentifierValue) {
-        return prismContext.queryFor(ShadowType.class)
-                .item(ShadowType.F_PRIMARY_IDENTIFIER_VALUE).eq(primaryIdentifierValue)
+        return createQueryByPrimaryIdValues(ctx, List.of(primaryIdentifierValue), false);
+    }
+
+    /**
+     * Query for shadows having any of the primary identifier values. If `alsoLiveWithoutValue` is set, live shadows
+     * having no primary identifier value are matched as well (the query is then limited to a reasonable number of
+     * results; at most one shadow per value is guaranteed by the DB constraint).
+     */
+    private @NotNull ObjectQuery createQueryByPrimaryIdValues(
+            ProvisioningContext ctx, Collection<String> primaryIdentifierValues, boolean alsoLiveWithoutValue) {
+        S_FilterExit valuesClause;
+        if (alsoLiveWithoutValue) {
+            valuesClause = prismContext.queryFor(ShadowType.class)
+                    .block()
+                        .item(ShadowType.F_PRIMARY_IDENTIFIER_VALUE).eq(primaryIdentifierValues.toArray())
+                        .or().block()
+                            .item(ShadowType.F_PRIMARY_IDENTIFIER_VALUE).isNull()
+                            .and().block()
+                                .item(ShadowType.F_DEAD).eq(false)
+                                .or().item(ShadowType.F_DEAD).isNull()
+                            .endBlock()
+                        .endBlock()
+                    .endBlock();
+        } else {
+            valuesClause = prismContext.queryFor(ShadowType.class)
+                    .item(ShadowType.F_PRIMARY_IDENTIFIER_VALUE).eq(primaryIdentifierValues.toArray());
+        }
+        S_QueryExit q = valuesClause
                 .and().item(ShadowType.F_OBJECT_CLASS).eq(ctx.getObjectClassNameRequired())
-                .and().item(ShadowType.F_RESOURCE_REF).ref(ctx.getResourceOid())
-                .build();
+                .and().item(ShadowType.F_RESOURCE_REF).ref(ctx.getResourceOid());
+        if (alsoLiveWithoutValue) {
+            q = q.maxSize(primaryIdentifierValues.size() + 1);
+        }
+        return q.build();
     }
 
     /**
@@ -9,6 +9,7 @@ package com.evolveum.midpoint.provisioning.impl.shadows.sync;
 
 import static org.apache.commons.lang3.BooleanUtils.isTrue;
 
+import com.evolveum.midpoint.common.Clock;
 import com.evolveum.midpoint.provisioning.api.*;
 import com.evolveum.midpoint.provisioning.impl.TokenUtil;
 import com.evolveum.midpoint.schema.ResourceOperationCoordinates;
@@ -49,12 +50,27 @@ import com.evolveum.midpoint.xml.ns._public.resource.capabilities_3.LiveSyncCapa
  * 1. Converts ROC changes into pre-processed shadowed changes, embeds them to {@link LiveSyncEvent} instances and emits them out.
  * 2. Manages the token value in the task, based on the acknowledgements.
  * 3. Keeps the control until all events are acknowledged.
+ *
+ * If the resource provides precise token values, the token is committed also while the changes are being fetched
+ * and processed: it is set to the token of the oldest change before which everything was processed (a "watermark"),
+ * at most once per {@link LiveSyncOptions#getTokenCommitInterval()} (default: {@link #DEFAULT_TOKEN_COMMIT_INTERVAL}).
+ * Hence, large amounts of changes can be fetched in a single run, and when the run is interrupted, it continues
+ * near the place where it stopped.
+ *
+ * In the streaming mode ({@link LiveSyncOptions#isStreaming()}) the changes are fetched repeatedly within a single run:
+ * each fetch continues from the last change fetched by the previous one, without waiting for the changes to be processed.
+ * The run ends when a fetch brings no changes, when the handler or connector stops the processing, or when the task
+ * is suspended.
  */
 @Component
 public class LiveSynchronizer {
 
     private static final Trace LOGGER = TraceManager.getTrace(LiveSynchronizer.class);
 
+    /** Minimal time between intermediate token commits (if not specified in the options), in milliseconds. */
+    private static final long DEFAULT_TOKEN_COMMIT_INTERVAL = 5000;
+
+    @Autowired private Clock clock;
     @Autowired private ProvisioningContextFactory ctxFactory;
     @Autowired private ResourceObjectConverter resourceObjectConverter;
 
@@ -85,11 +101,19 @@ public class LiveSynchronizer {
         ResourceObjectLiveSyncChangeListener listener = (resourceObjectChange, lResult) -> {
 
             int sequentialNumber = ctx.oldestTokenWatcher.changeArrived(resourceObjectChange.getToken());
+            ctx.changesInCurrentFetch++;
+            ctx.lastChangeToken = resourceObjectChange.getToken();
 
             ShadowedLiveSyncChange change = new ShadowedLiveSyncChange(resourceObjectChange);
             change.initialize(task, lResult);
 
             LiveSyncEvent event = new LiveSyncEventImpl(change) {
+                @Override
+                public int getSequentialNumber() {
+                    // Connector numbers the changes in each fetch from 1; here we need them to be unique within the run.
+                    return ctx.isStreaming() ? sequentialNumber + 1 : super.getSequentialNumber();
+                }
+
                 @Override
                 public void acknowledge(boolean release, OperationResult aResult) {
                     LOGGER.trace("Acknowledgement (release={}) sent for {}", release, this);
@@ -101,21 +125,39 @@ public class LiveSynchronizer {
             };
 
             acknowledgeGate.registerIssuedEvent(event);
+            boolean continueProcessing;
             try {
-                return handler.handle(event, lResult);
+                continueProcessing = handler.handle(event, lResult);
             } catch (Throwable t) {
                 // We assume the event was not acknowledged yet. Note that serious handler should never throw an exception!
                 LoggingUtils.logUnexpectedException(LOGGER, "Got unexpected exception while handling a live sync event", t);
                 acknowledgeGate.acknowledgeIssuedEvent(event);
+                ctx.stoppedByHandler = true;
                 return false;
             }
+            if (continueProcessing) {
+                commitIntermediateTokenIfDue(ctx, lResult);
+            } else {
+                ctx.stoppedByHandler = true;
+            }
+            return continueProcessing;
         };
 
         UcfFetchChangesResult fetchChangesResult;
         try {
-            fetchChangesResult =
-                    resourceObjectConverter.fetchChanges(
-                            ctx.context, ctx.getInitialToken(), ctx.getBatchSize(), listener, gResult);
+            LiveSyncToken fromToken = ctx.getInitialToken();
+            for (;;) {
+                ctx.changesInCurrentFetch = 0;
+                fetchChangesResult =
+                        resourceObjectConverter.fetchChanges(
+                                ctx.context, fromToken, ctx.getBatchSize(), listener, gResult);
+                fromToken = getTokenToContinueStreamingFrom(ctx, fetchChangesResult);
+                if (fromToken == null) {
+                    break;
+                }
+                LOGGER.trace("Continuing streaming live sync from {} ({} changes in the last fetch)",
+                        fromToken, ctx.changesInCurrentFetch);
+            }
         } finally {
             handler.allEventsSubmitted(gResult);
         }
@@ -141,11 +183,54 @@ public class LiveSynchronizer {
                 ctx.tokenStorage.getToken());
     }
 
+    /** Returns the token from which the (streaming) fetching should continue; null if it should not continue. */
+    private LiveSyncToken getTokenToContinueStreamingFrom(LiveSyncCtx ctx, UcfFetchChangesResult fetchChangesResult) {
+        if (!ctx.isStreaming() || ctx.changesInCurrentFetch == 0 || ctx.stoppedByHandler || !ctx.canRun()) {
+            return null;
+        }
+        if (fetchChangesResult.isAllChangesFetched()) {
+            LiveSyncToken finalToken = TokenUtil.fromUcf(fetchChangesResult.getFinalToken());
+            return finalToken != null ? finalToken : ctx.lastChangeToken;
+        } else if (ctx.getBatchSize() != null && ctx.changesInCurrentFetch >= ctx.getBatchSize()) {
+            // The batch is full (batching is allowed only for precise token values), so we can continue after the last change.
+            return ctx.lastChangeToken;
+        } else {
+            // Fetching was stopped by the connector or by an error; let us not continue.
+            return null;
+        }
+    }
+
+    /**
+     * Commits the watermark token, if the resource provides precise token values, the token can be updated in the current
+     * execution mode, and enough time has passed since the last commit. Errors are only logged, as the token will be
+     * set at the end anyway.
+     */
+    private void commitIntermediateTokenIfDue(LiveSyncCtx ctx, OperationResult result) {
+        long now = clock.currentTimeMillis();
+        if (now - ctx.lastTokenCommit < ctx.getTokenCommitInterval()
+                || !ctx.hasPreciseTokenValue()
+                || ctx.isPreview() && !ctx.isUpdateLiveSyncTokenInPreviewMode()
+                || ctx.isDryRun() && !ctx.isUpdateLiveSyncTokenInDryRun()) {
+            return;
+        }
+        ctx.lastTokenCommit = now;
+        LiveSyncToken watermark = ctx.oldestTokenWatcher.getOldestTokenProcessed();
+        if (watermark == null || watermark.equals(ctx.syncResult.getTokenUpdatedTo())) {
+            return;
+        }
+        try {
+            LOGGER.trace("Setting intermediate token value of {}", SchemaDebugUtil.prettyPrintLazily(watermark));
+            ctx.tokenStorage.setToken(watermark, result);
+            ctx.syncResult.setTokenUpdatedTo(watermark);
+        } catch (CommonException | RuntimeException e) {
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't set intermediate live sync token value to {}", e, watermark);
+        }
+    }
+
     private void updateTokenValue(LiveSyncCtx ctx, OperationResult result)
             throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
 
-        LiveSyncCapabilityType capability = ctx.context.getCapability(LiveSyncCapabilityType.class); // TODO only if enabled?
-        boolean preciseTokenValue = capability != null && isTrue(capability.isPreciseTokenValue());
+        boolean preciseTokenValue = ctx.hasPreciseTokenValue();
         boolean updateTokenInDryRun = ctx.isUpdateLiveSyncTokenInDryRun();
         boolean updateTokenInPreviewMode = ctx.isUpdateLiveSyncTokenInPreviewMode();
         LiveSyncToken initialToken = ctx.getInitialToken();
@@ -222,6 +307,21 @@ public class LiveSynchronizer {
         @NotNull private final OldestTokenWatcher oldestTokenWatcher;
         private LiveSyncToken finalToken; // TODO what exactly is this for? Be sure to set it only when all changes were processed
 
+        /** When was the token committed during processing; see {@link LiveSynchronizer#commitIntermediateTokenIfDue(LiveSyncCtx, OperationResult)}. */
+        private long lastTokenCommit = clock.currentTimeMillis();
+
+        /** Number of changes that arrived in the current fetch (used in the streaming mode). */
+        private int changesInCurrentFetch;
+
+        /** Token of the last change that arrived (used in the streaming mode). */
+        private LiveSyncToken lastChangeToken;
+
+        /** True if the handler stopped the processing (or failed). */
+        private boolean stoppedByHandler;
+
+        /** Lazily evaluated; see {@link #hasPreciseTokenValue()}. */
+        private Boolean preciseTokenValue;
+
         private LiveSyncCtx(
                 @NotNull ResourceOperationCoordinates coordinates,
                 @NotNull Task task,
@@ -261,6 +361,15 @@ public class LiveSynchronizer {
             return options.getBatchSize();
         }
 
+        boolean isStreaming() {
+            return options.isStreaming();
+        }
+
+        long getTokenCommitInterval() {
+            Long interval = options.getTokenCommitInterval();
+            return interval != null ? interval : DEFAULT_TOKEN_COMMIT_INTERVAL;
+        }
+
         boolean isUpdateLiveSyncTokenInDryRun() {
             return options.isUpdateLiveSyncTokenInDryRun();
         }
@@ -272,5 +381,13 @@ public class LiveSynchronizer {
         public boolean canRun() {
             return context.canRun();
         }
+
+        boolean hasPreciseTokenValue() {
+            if (preciseTokenValue == null) {
+                LiveSyncCapabilityType capability = context.getCapability(LiveSyncCapabilityType.class); // TODO only if enabled?
+                preciseTokenValue = capability != null && isTrue(capability.isPreciseTokenValue());
+            }
+            return preciseTokenValue;
+        }
     }
 }
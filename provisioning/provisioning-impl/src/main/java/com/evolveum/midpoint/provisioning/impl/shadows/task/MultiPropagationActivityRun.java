@@ -7,6 +7,9 @@
 
 package com.evolveum.midpoint.provisioning.impl.shadows.task;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.evolveum.midpoint.repo.common.activity.run.ActivityRunException;
 import com.evolveum.midpoint.repo.common.activity.run.SearchBasedActivityRun;
 
@@ -14,7 +17,6 @@ import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.prism.crypto.EncryptionException;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
-import com.evolveum.midpoint.provisioning.ucf.api.GenericFrameworkException;
 import com.evolveum.midpoint.repo.common.activity.run.ActivityRunInstantiationContext;
 import com.evolveum.midpoint.repo.common.activity.run.ActivityReportingCharacteristics;
 import com.evolveum.midpoint.repo.common.activity.run.processing.ItemProcessingRequest;
@@ -22,7 +24,6 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.RunningTask;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.CommonException;
-import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractActivityWorkStateType;
@@ -41,6 +42,9 @@ public final class MultiPropagationActivityRun
 
     private static final Trace LOGGER = TraceManager.getTrace(MultiPropagationActivityRun.class);
 
+    /** How many shadows are propagated together, sharing the resource and connector lookups. */
+    private static final int BATCH_SIZE = 100;
+
     MultiPropagationActivityRun(
             @NotNull ActivityRunInstantiationContext<MultiPropagationWorkDefinition, MultiPropagationActivityHandler> context) {
         super(context, "Multi-propagation");
@@ -73,24 +77,34 @@ public final class MultiPropagationActivityRun
                 .exists(ShadowType.F_PENDING_OPERATION)
                 .build();
 
+        List<ShadowType> batch = new ArrayList<>(BATCH_SIZE);
         getBeans().repositoryService.searchObjectsIterative(ShadowType.class, shadowQuery, (shadow, lResult) -> {
-            propagateOperationsOnShadow(shadow.asObjectable(), resource, workerTask, lResult);
+            batch.add(shadow.asObjectable());
+            if (batch.size() >= BATCH_SIZE) {
+                propagateOperationsOnShadows(batch, resource, workerTask, lResult);
+            }
             return true;
         }, null, true, result);
+        propagateOperationsOnShadows(batch, resource, workerTask, result);
 
         LOGGER.trace("Propagation of {} done", resource);
         return true;
     }
 
-    private void propagateOperationsOnShadow(
-            @NotNull ShadowType repoShadow,
+    /** Propagates the operations on the shadows and clears the batch. */
+    private void propagateOperationsOnShadows(
+            @NotNull List<ShadowType> batch,
             @NotNull ResourceType resource,
             @NotNull Task workerTask,
             @NotNull OperationResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
         try {
-            getActivityHandler().shadowsFacade.propagateOperations(resource, repoShadow, workerTask, result);
-        } catch (CommonException | GenericFrameworkException e) {
-            throw new SystemException("Provisioning error: " + e.getMessage(), e);
+            // Failures of individual shadows are recorded in the result; they do not stop the processing of the others.
+            getActivityHandler().shadowsFacade.propagateOperations(resource, batch, workerTask, result);
+        } finally {
+            batch.clear();
         }
     }
 }
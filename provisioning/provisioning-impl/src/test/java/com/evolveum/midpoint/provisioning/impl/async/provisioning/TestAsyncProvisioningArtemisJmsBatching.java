@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.impl.async.provisioning;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.messaging.JsonAsyncProvisioningRequest;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.util.ParallelTestThread;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Uses Artemis broker with midPoint using JMS API to access it, with the batching of sent messages turned on.
+ */
+public class TestAsyncProvisioningArtemisJmsBatching extends TestAsyncProvisioningArtemis {
+
+    private static final File RESOURCE_ARTEMIS_JMS_BATCHING_FILE =
+            new File(TEST_DIR, "resource-async-provisioning-artemis-jms-batching.xml");
+
+    private static final int THREADS = 5;
+    private static final int ACCOUNTS_PER_THREAD = 4;
+
+    @Override
+    protected File getResourceFile() {
+        return RESOURCE_ARTEMIS_JMS_BATCHING_FILE;
+    }
+
+    /** Accounts created concurrently are sent (in groups); each message is delivered exactly once. */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void test700ConcurrentAdds() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        clearRequests();
+
+        when("accounts are created by multiple threads");
+        String testName = getTestNameShort();
+        ParallelTestThread[] threads = multithread(
+                threadIndex -> {
+                    for (int i = 0; i < ACCOUNTS_PER_THREAD; i++) {
+                        String name = "conc-" + threadIndex + "-" + i;
+                        Task localTask = createPlainTask(testName + "-" + name);
+                        OperationResult localResult = localTask.getResult();
+                        PrismObject<ShadowType> shadow = createShadow(resource, name, name).getPrismObject();
+                        provisioningService.addObject(shadow, null, null, localTask, localResult);
+                        localResult.computeStatus();
+                        assertSuccessOrInProgress(localResult);
+                    }
+                }, THREADS, null);
+        waitForThreads(threads, 60_000L);
+
+        then("all the messages are in the queue");
+        List<String> names = new ArrayList<>();
+        String request;
+        while ((request = getRequest()) != null) {
+            JsonAsyncProvisioningRequest jsonRequest = JsonAsyncProvisioningRequest.from(request);
+            assertThat(jsonRequest.getOperation()).isEqualTo("add");
+            names.addAll((Collection<String>) jsonRequest.getAttributes().get(icfsName()));
+        }
+        assertThat(names)
+                .as("names of accounts sent")
+                .hasSize(THREADS * ACCOUNTS_PER_THREAD)
+                .doesNotHaveDuplicates();
+        assertSuccess(result);
+    }
+}
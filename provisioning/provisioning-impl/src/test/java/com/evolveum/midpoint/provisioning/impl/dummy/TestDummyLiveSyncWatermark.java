@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.provisioning.impl.dummy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.schema.constants.SchemaConstants.RI_ACCOUNT_OBJECT_CLASS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.provisioning.api.LiveSyncEvent;
+import com.evolveum.midpoint.provisioning.api.LiveSyncEventHandler;
+import com.evolveum.midpoint.provisioning.api.LiveSyncOptions;
+import com.evolveum.midpoint.provisioning.api.LiveSyncToken;
+import com.evolveum.midpoint.provisioning.impl.DummyTokenStorageImpl;
+import com.evolveum.midpoint.schema.ResourceOperationCoordinates;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CapabilitiesType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CapabilityCollectionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ExecutionModeType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.resource.capabilities_3.LiveSyncCapabilityType;
+
+/**
+ * Tests the intermediate (watermark) token commits and the streaming mode of live sync
+ * on a dummy resource with precise token values.
+ *
+ * The dummy resource assigns sequential tokens to the changes, so the token values are checked precisely.
+ */
+@ContextConfiguration(locations = "classpath:ctx-provisioning-test-main.xml")
+@DirtiesContext
+@Listeners({ com.evolveum.midpoint.tools.testng.AlphabeticalMethodInterceptor.class })
+public class TestDummyLiveSyncWatermark extends AbstractDummyTest {
+
+    private static final long NEVER = 3_600_000L;
+
+    private final DummyTokenStorageImpl tokenStorage = new DummyTokenStorageImpl();
+
+    @Override
+    public void initSystem(Task task, OperationResult result) throws Exception {
+        super.initSystem(task, result);
+
+        repositoryService.modifyObject(
+                ResourceType.class, RESOURCE_DUMMY_OID,
+                deltaFor(ResourceType.class)
+                        .item(ResourceType.F_CAPABILITIES, CapabilitiesType.F_CONFIGURED, CapabilityCollectionType.F_LIVE_SYNC)
+                        .replace(new LiveSyncCapabilityType().preciseTokenValue(true))
+                        .asItemDeltas(),
+                result);
+
+        testResourceAssertSuccess(RESOURCE_DUMMY_OID, task, result);
+
+        resource = provisioningService.getObject(ResourceType.class, RESOURCE_DUMMY_OID, null, task, result);
+        resourceBean = resource.asObjectable();
+    }
+
+    /** The first run only remembers the current token. */
+    @Test
+    public void test100InitialToken() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        when("live sync is run for the first time");
+        synchronize(options(null, false, null), new RecordingHandler(seq -> true), task, result);
+
+        then("the current token is stored");
+        assertSuccess(result);
+        tokenStorage.assertToken(dummyResource.getLatestSyncToken());
+    }
+
+    /** The token is not committed before the interval elapses; at the end, it is set to the final value. */
+    @Test
+    public void test110NoIntermediateCommitBeforeInterval() throws Exception {
+        given("five new accounts");
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        int start = dummyResource.getLatestSyncToken();
+        addAccounts("wm1-", 5);
+
+        when("live sync is run with long commit interval");
+        RecordingHandler handler = new RecordingHandler(seq -> true);
+        synchronize(options(null, false, NEVER), handler, task, result);
+
+        then("all changes are processed, and the token was not changed during the processing");
+        assertThat(handler.sequentialNumbers).hasSize(5);
+        assertThat(handler.storedTokens).containsOnly(start);
+
+        and("it is set at the end");
+        tokenStorage.assertToken(start + 5);
+    }
+
+    /**
+     * The watermark is committed after each change (interval of zero); when the processing breaks down,
+     * the next run continues right after the last processed change.
+     */
+    @Test
+    public void test120ResumeFromWatermark() throws Exception {
+        given("five new accounts");
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        int start = dummyResource.getLatestSyncToken();
+        addAccounts("wm2-", 5);
+
+        when("live sync is run with the handler failing at the fourth change");
+        RecordingHandler failing = new RecordingHandler(seq -> seq < 4);
+        synchronize(options(null, false, 0L), failing, task, result);
+
+        then("the watermark was committed while the changes were processed");
+        assertThat(failing.storedTokens).containsExactly(start, start + 1, start + 2, start + 3);
+        tokenStorage.assertToken(start + 3);
+
+        when("live sync is run again");
+        RecordingHandler resumed = new RecordingHandler(seq -> true);
+        synchronize(options(null, false, 0L), resumed, task, result);
+
+        then("only the remaining changes are processed");
+        assertThat(resumed.sequentialNumbers).hasSize(2);
+        assertThat(resumed.storedTokens).containsExactly(start + 3, start + 4);
+        tokenStorage.assertToken(start + 5);
+    }
+
+    /** The commit interval is measured by midPoint clock. */
+    @Test
+    public void test130CommitIntervalUsesClock() throws Exception {
+        given("five new accounts");
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        int start = dummyResource.getLatestSyncToken();
+        addAccounts("wm3-", 5);
+
+        when("live sync is run with 10-minute interval, with the clock moved by 11 minutes at the second change");
+        RecordingHandler handler = new RecordingHandler(seq -> {
+            if (seq == 2) {
+                clock.overrideDuration("PT11M");
+            }
+            return true;
+        });
+        try {
+            synchronize(options(null, false, 600_000L), handler, task, result);
+        } finally {
+            clock.resetOverride();
+        }
+
+        then("the token was committed exactly once during the processing, after the second change");
+        assertThat(handler.storedTokens).containsExactly(start, start, start + 2, start + 2, start + 2);
+        tokenStorage.assertToken(start + 5);
+    }
+
+    /** Without streaming, one run processes a single batch; with streaming, it goes on until there are no more changes. */
+    @Test
+    public void test200Streaming() throws Exception {
+        given("five new accounts");
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        int start = dummyResource.getLatestSyncToken();
+        addAccounts("wm4-", 5);
+
+        when("live sync is run with batch size of 2 without streaming");
+        RecordingHandler batched = new RecordingHandler(seq -> true);
+        synchronize(options(2, false, null), batched, task, result);
+
+        then("only the first batch is processed");
+        assertThat(batched.sequentialNumbers).hasSize(2);
+        tokenStorage.assertToken(start + 2);
+
+        when("five more accounts are added, and live sync is run with batch size of 2 with streaming");
+        addAccounts("wm5-", 5);
+        RecordingHandler streaming = new RecordingHandler(seq -> true);
+        synchronize(options(2, true, 0L), streaming, task, result);
+
+        then("all the remaining changes are processed in a single run, with unique sequential numbers");
+        assertThat(streaming.sequentialNumbers).hasSize(8);
+        assertThat(streaming.sequentialNumbers).doesNotHaveDuplicates();
+        assertThat(streaming.storedTokens).containsExactly(
+                start + 2, start + 3, start + 4, start + 5, start + 6, start + 7, start + 8, start + 9);
+        tokenStorage.assertToken(start + 10);
+    }
+
+    private void synchronize(LiveSyncOptions options, LiveSyncEventHandler handler, Task task, OperationResult result)
+            throws Exception {
+        provisioningService.synchronize(
+                ResourceOperationCoordinates.ofObjectClass(RESOURCE_DUMMY_OID, RI_ACCOUNT_OBJECT_CLASS),
+                options, tokenStorage, handler, task, result);
+    }
+
+    private LiveSyncOptions options(Integer batchSize, boolean streaming, Long tokenCommitInterval) {
+        return new LiveSyncOptions(ExecutionModeType.FULL, batchSize, false, false, streaming, tokenCommitInterval);
+    }
+
+    private void addAccounts(String prefix, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            dummyResourceCtl.addAccount(prefix + i, prefix + i);
+        }
+    }
+
+    /**
+     * Acknowledges the events for which the predicate (applied to the order of the event in this run, starting at 1)
+     * is true. At the first one for which it is false, it stops the processing, without acknowledging the event.
+     *
+     * For each event it records the token stored at the time it arrived.
+     */
+    private class RecordingHandler implements LiveSyncEventHandler {
+
+        private final IntPredicate shouldProcess;
+        private final List<Integer> sequentialNumbers = new ArrayList<>();
+        private final List<Object> storedTokens = new ArrayList<>();
+
+        private RecordingHandler(IntPredicate shouldProcess) {
+            this.shouldProcess = shouldProcess;
+        }
+
+        @Override
+        public boolean handle(LiveSyncEvent event, OperationResult hResult) {
+            sequentialNumbers.add(event.getSequentialNumber());
+            storedTokens.add(LiveSyncToken.getValue(tokenStorage.getToken()));
+            if (shouldProcess.test(sequentialNumbers.size())) {
+                event.acknowledge(true, hResult);
+                return true;
+            } else {
+                event.acknowledge(false, hResult);
+                return false;
+            }
+        }
+
+        @Override
+        public void allEventsSubmitted(OperationResult result) {
+        }
+    }
+}
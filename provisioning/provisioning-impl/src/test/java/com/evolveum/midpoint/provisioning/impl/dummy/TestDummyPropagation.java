@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.provisioning.impl.dummy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.schema.constants.SchemaConstants.RI_ACCOUNT_OBJECT_CLASS;
+import static com.evolveum.midpoint.xml.ns._public.common.common_3.PendingOperationExecutionStatusType.COMPLETED;
+import static com.evolveum.midpoint.xml.ns._public.common.common_3.PendingOperationExecutionStatusType.EXECUTION_PENDING;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import com.evolveum.icf.dummy.resource.BreakMode;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.provisioning.impl.shadows.ShadowsFacade;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectQueryUtil;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.DummyResourceContoller;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Tests the propagation of grouped (pending) operations on a batch of shadows,
+ * see {@link ShadowsFacade#propagateOperations(ResourceType, java.util.Collection, Task, OperationResult)}.
+ */
+@ContextConfiguration(locations = "classpath:ctx-provisioning-test-main.xml")
+@DirtiesContext
+@Listeners({ com.evolveum.midpoint.tools.testng.AlphabeticalMethodInterceptor.class })
+public class TestDummyPropagation extends AbstractDummyTest {
+
+    private static final int ACCOUNTS = 5;
+    private static final String ACCOUNT_NAME_FORMAT = "prop-%02d";
+    private static final int BROKEN_ACCOUNT_INDEX = 2;
+
+    @Autowired private ShadowsFacade shadowsFacade;
+
+    @Override
+    public void initSystem(Task task, OperationResult result) throws Exception {
+        super.initSystem(task, result);
+
+        repositoryService.modifyObject(
+                ResourceType.class, RESOURCE_DUMMY_OID,
+                deltaFor(ResourceType.class)
+                        .item(ResourceType.F_CONSISTENCY, ResourceConsistencyType.F_OPERATION_GROUPING_INTERVAL)
+                        .replace(XmlTypeConverter.createDuration("PT5M"))
+                        .asItemDeltas(),
+                result);
+
+        testResourceAssertSuccess(RESOURCE_DUMMY_OID, task, result);
+
+        resource = provisioningService.getObject(ResourceType.class, RESOURCE_DUMMY_OID, null, task, result);
+        resourceBean = resource.asObjectable();
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            dummyResourceCtl.addAccount(accountName(i), "Prop " + i);
+        }
+    }
+
+    /** The modifications are not executed on the resource; they are recorded as pending operations. */
+    @Test
+    public void test100ModifyAccountsGrouped() throws Exception {
+        given("shadows for the accounts");
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        List<PrismObject<ShadowType>> shadows = searchAccounts(task, result);
+        assertThat(shadows).as("shadows found").hasSize(ACCOUNTS);
+
+        when("accounts are modified");
+        for (PrismObject<ShadowType> shadow : shadows) {
+            ObjectDelta<ShadowType> delta = prismContext.deltaFactory().object().createModificationReplaceProperty(
+                    ShadowType.class, shadow.getOid(),
+                    dummyResourceCtl.getAttributeFullnamePath(), newFullName(shadow));
+            provisioningService.modifyObject(
+                    ShadowType.class, shadow.getOid(), delta.getModifications(), null, null, task, result);
+        }
+
+        then("the accounts on the resource are unchanged, and there are pending operations in the shadows");
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertThat(getFullName(accountName(i))).isEqualTo("Prop " + i);
+        }
+        for (PrismObject<ShadowType> shadow : shadows) {
+            assertThat(getPendingStatuses(shadow.getOid(), result))
+                    .as("pending operations of " + shadow)
+                    .containsExactly(EXECUTION_PENDING);
+        }
+    }
+
+    /**
+     * The pending operations are propagated in a single batch. A failure of one shadow does not prevent
+     * the others from being propagated.
+     */
+    @Test
+    public void test110PropagateWithOneFailure() throws Exception {
+        given("one of the accounts failing on modification, and the grouping interval elapsed");
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        String brokenName = accountName(BROKEN_ACCOUNT_INDEX);
+        dummyResource.getAccountByName(brokenName).setModifyBreakMode(BreakMode.RUNTIME);
+        clock.overrideDuration("PT10M");
+
+        List<ShadowType> repoShadows = new ArrayList<>();
+        for (PrismObject<ShadowType> shadow : searchRepoShadows(result)) {
+            repoShadows.add(
+                    repositoryService.getObject(ShadowType.class, shadow.getOid(), null, result).asObjectable());
+        }
+
+        try {
+            when("the operations are propagated");
+            shadowsFacade.propagateOperations(resourceBean, repoShadows, task, result);
+        } finally {
+            dummyResource.getAccountByName(brokenName).setModifyBreakMode(null);
+            clock.resetOverride();
+        }
+
+        then("the failure is recorded in the result (not thrown)");
+        result.computeStatus();
+        displayDumpable("result", result);
+        assertThat(result.isSuccess()).as("result is success").isFalse();
+
+        and("other accounts are modified, with their pending operations completed");
+        for (ShadowType repoShadow : repoShadows) {
+            String name = repoShadow.getName().getOrig();
+            if (name.equals(brokenName)) {
+                assertThat(getFullName(name)).isEqualTo("Prop " + BROKEN_ACCOUNT_INDEX);
+            } else {
+                assertThat(getFullName(name)).isEqualTo(newFullName(repoShadow.asPrismObject()));
+                assertThat(getPendingStatuses(repoShadow.getOid(), result))
+                        .as("pending operations of " + name)
+                        .containsExactly(COMPLETED);
+            }
+        }
+    }
+
+    private List<PrismObject<ShadowType>> searchAccounts(Task task, OperationResult result) throws Exception {
+        return provisioningService.searchObjects(
+                ShadowType.class,
+                ObjectQueryUtil.createResourceAndObjectClassQuery(RESOURCE_DUMMY_OID, RI_ACCOUNT_OBJECT_CLASS),
+                null, task, result).stream()
+                .filter(shadow -> shadow.getName().getOrig().startsWith("prop-"))
+                .toList();
+    }
+
+    private List<PrismObject<ShadowType>> searchRepoShadows(OperationResult result) throws Exception {
+        return repositoryService.searchObjects(
+                ShadowType.class,
+                ObjectQueryUtil.createResourceAndObjectClassQuery(RESOURCE_DUMMY_OID, RI_ACCOUNT_OBJECT_CLASS),
+                null, result).stream()
+                .filter(shadow -> shadow.getName().getOrig().startsWith("prop-"))
+                .toList();
+    }
+
+    private List<PendingOperationExecutionStatusType> getPendingStatuses(String oid, OperationResult result)
+            throws Exception {
+        return repositoryService.getObject(ShadowType.class, oid, null, result).asObjectable()
+                .getPendingOperation().stream()
+                .map(PendingOperationType::getExecutionStatus)
+                .toList();
+    }
+
+    private String getFullName(String accountName) throws Exception {
+        return dummyResource.getAccountByName(accountName)
+                .getAttributeValue(DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_FULLNAME_NAME);
+    }
+
+    private String accountName(int index) {
+        return String.format(ACCOUNT_NAME_FORMAT, index);
+    }
+
+    private String newFullName(PrismObject<ShadowType> shadow) {
+        return "Propagated " + shadow.getName().getOrig();
+    }
+}
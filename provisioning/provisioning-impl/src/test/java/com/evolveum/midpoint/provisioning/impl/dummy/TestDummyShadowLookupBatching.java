@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.provisioning.impl.dummy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.schema.constants.SchemaConstants.RI_ACCOUNT_OBJECT_CLASS;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.api.perf.PerformanceInformation;
+import com.evolveum.midpoint.schema.internals.InternalsConfig;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectQueryUtil;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Tests the batched lookup of repo shadows for objects found on the resource during search
+ * (see {@link InternalsConfig#getShadowLookupBatchSize()}).
+ *
+ * Each search is executed with and without the batching, and the results are compared.
+ */
+@ContextConfiguration(locations = "classpath:ctx-provisioning-test-main.xml")
+@DirtiesContext
+@Listeners({ com.evolveum.midpoint.tools.testng.AlphabeticalMethodInterceptor.class })
+public class TestDummyShadowLookupBatching extends AbstractDummyTest {
+
+    private static final int ACCOUNTS = 12;
+    private static final String ACCOUNT_NAME_FORMAT = "batch-%02d";
+
+    private final int originalBatchSize = InternalsConfig.getShadowLookupBatchSize();
+
+    @Override
+    public void initSystem(Task task, OperationResult result) throws Exception {
+        super.initSystem(task, result);
+
+        testResourceAssertSuccess(RESOURCE_DUMMY_OID, task, result);
+
+        resource = provisioningService.getObject(ResourceType.class, RESOURCE_DUMMY_OID, null, task, result);
+        resourceBean = resource.asObjectable();
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String name = String.format(ACCOUNT_NAME_FORMAT, i);
+            dummyResourceCtl.addAccount(name, "Batch " + i);
+        }
+    }
+
+    @AfterClass
+    public void resetBatchSize() {
+        InternalsConfig.setShadowLookupBatchSize(originalBatchSize);
+    }
+
+    /** The first search creates the shadows; they are looked up individually, because none exists yet. */
+    @Test
+    public void test100SearchCreatingShadows() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        when("accounts are searched for the first time");
+        var outcome = searchAccounts(InternalsConfig.getShadowLookupBatchSize(), task, result);
+
+        then("all accounts are found, with shadows created");
+        assertSuccess(result);
+        assertThat(outcome.shadows()).as("shadows found").hasSize(ACCOUNTS);
+        assertThat(outcome.shadows()).allSatisfy(
+                shadow -> assertThat(shadow.getOid()).as("shadow OID").isNotNull());
+    }
+
+    /** Existing shadows are looked up by a single repo query per batch; the results are the same as without batching. */
+    @Test
+    public void test110SearchExistingShadows() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        when("accounts are searched for without and with batching");
+        var unbatched = searchAccounts(1, task, result);
+        var batched = searchAccounts(ACCOUNTS, task, result);
+
+        then("the same shadows are returned");
+        assertSuccess(result);
+        assertThat(batched.shadows()).as("shadows found").hasSize(ACCOUNTS);
+        assertThat(oidsOf(batched)).isEqualTo(oidsOf(unbatched));
+
+        and("the number of repository searches is lower (one for the batch instead of one per account)");
+        displayValue("repo searches (unbatched, batched)", unbatched.repoSearches() + ", " + batched.repoSearches());
+        assertThat(unbatched.repoSearches() - batched.repoSearches())
+                .as("repo searches saved by batching")
+                .isGreaterThanOrEqualTo(ACCOUNTS - 1);
+    }
+
+    /**
+     * A live shadow without primary identifier value (e.g. a leftover proposed shadow) conflicts with the regular one.
+     * The batched lookup must not hide the conflict: the outcome must be the same as without batching.
+     */
+    @Test
+    public void test120DuplicateLiveShadow() throws Exception {
+        given("a duplicate live shadow without primary identifier value");
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        String name = String.format(ACCOUNT_NAME_FORMAT, 0);
+        String existingOid = searchAccounts(ACCOUNTS, task, result).shadows().stream()
+                .filter(shadow -> name.equals(shadow.getName().getOrig()))
+                .map(PrismObject::getOid)
+                .findFirst()
+                .orElseThrow();
+        PrismObject<ShadowType> duplicate = repositoryService
+                .getObject(ShadowType.class, existingOid, null, result)
+                .clone();
+        duplicate.setOid(null);
+        duplicate.asObjectable().setPrimaryIdentifierValue(null);
+        String duplicateOid = repositoryService.addObject(duplicate, null, result);
+
+        try {
+            when("accounts are searched for without and with batching");
+            String unbatched = describeOutcome(1, task);
+            String batched = describeOutcome(ACCOUNTS, task);
+
+            then("the outcome is the same");
+            displayValue("outcome (unbatched)", unbatched);
+            displayValue("outcome (batched)", batched);
+            assertThat(batched).isEqualTo(unbatched);
+        } finally {
+            repositoryService.deleteObject(ShadowType.class, duplicateOid, result);
+        }
+    }
+
+    /**
+     * Shadows of the objects in the batch are modified while the first object is being processed.
+     * The other objects must get the current shadows, not the ones prefetched for the batch.
+     */
+    @Test
+    public void test130ShadowsChangedWhileProcessingBatch() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        InternalsConfig.setShadowLookupBatchSize(ACCOUNTS);
+        String description = "changed by " + getTestNameShort();
+
+        when("accounts are searched for, and the first one processed changes the shadows of all the others");
+        AtomicBoolean changed = new AtomicBoolean();
+        List<ShadowType> processedAfterChange = new ArrayList<>();
+        provisioningService.searchObjectsIterative(
+                ShadowType.class,
+                ObjectQueryUtil.createResourceAndObjectClassQuery(RESOURCE_DUMMY_OID, RI_ACCOUNT_OBJECT_CLASS),
+                null,
+                (shadow, lResult) -> {
+                    if (changed.compareAndSet(false, true)) {
+                        modifyOtherShadows(shadow.getOid(), description, lResult);
+                    } else {
+                        processedAfterChange.add(shadow.asObjectable());
+                    }
+                    return true;
+                },
+                task, result);
+
+        then("the objects processed after the change have the current shadows");
+        assertSuccess(result);
+        assertThat(processedAfterChange)
+                .as("objects processed after the change")
+                .hasSize(ACCOUNTS - 1)
+                .allSatisfy(shadow -> assertThat(shadow.getDescription()).as("description").isEqualTo(description));
+    }
+
+    /**
+     * A live shadow without primary identifier value (not related to any of the objects found) makes the batched
+     * lookup not applicable. This is detected once, and the batched lookup is not tried again in the same search.
+     */
+    @Test
+    public void test140LiveShadowWithoutValueDisablesBatching() throws Exception {
+        given("a live shadow without primary identifier value, for an account that no longer exists");
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        String name = String.format(ACCOUNT_NAME_FORMAT, ACCOUNTS - 1);
+        String existingOid = searchAccounts(ACCOUNTS, task, result).shadows().stream()
+                .filter(shadow -> name.equals(shadow.getName().getOrig()))
+                .map(PrismObject::getOid)
+                .findFirst()
+                .orElseThrow();
+        PrismObject<ShadowType> orphan = repositoryService
+                .getObject(ShadowType.class, existingOid, null, result)
+                .clone();
+        orphan.setOid(null);
+        orphan.asObjectable().setPrimaryIdentifierValue(null);
+        repositoryService.addObject(orphan, null, result);
+        dummyResource.deleteAccountByName(name);
+
+        when("accounts are searched for without and with batching (in batches of 4)");
+        var unbatched = searchAccounts(1, task, result);
+        var batched = searchAccounts(4, task, result);
+
+        then("the same shadows are returned");
+        assertSuccess(result);
+        assertThat(batched.shadows()).as("shadows found").hasSize(ACCOUNTS - 1);
+        assertThat(oidsOf(batched)).isEqualTo(oidsOf(unbatched));
+
+        and("only the first batch was looked up by the batched query");
+        displayValue("repo searches (unbatched, batched)", unbatched.repoSearches() + ", " + batched.repoSearches());
+        assertThat(batched.repoSearches() - unbatched.repoSearches())
+                .as("additional repo searches caused by batching")
+                .isLessThanOrEqualTo(1);
+    }
+
+    private void modifyOtherShadows(String oid, String description, OperationResult result) {
+        try {
+            for (PrismObject<ShadowType> shadow : repositoryService.searchObjects(
+                    ShadowType.class,
+                    ObjectQueryUtil.createResourceAndObjectClassQuery(RESOURCE_DUMMY_OID, RI_ACCOUNT_OBJECT_CLASS),
+                    null, result)) {
+                if (!shadow.getOid().equals(oid)) {
+                    repositoryService.modifyObject(
+                            ShadowType.class, shadow.getOid(),
+                            deltaFor(ShadowType.class)
+                                    .item(ShadowType.F_DESCRIPTION).replace(description)
+                                    .asItemDeltas(),
+                            result);
+                }
+            }
+        } catch (CommonException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    private SearchOutcome searchAccounts(int batchSize, Task task, OperationResult result) throws Exception {
+        InternalsConfig.setShadowLookupBatchSize(batchSize);
+        repositoryService.getPerformanceMonitor().startThreadLocalPerformanceInformationCollection();
+        try {
+            var shadows = provisioningService.searchObjects(
+                    ShadowType.class,
+                    ObjectQueryUtil.createResourceAndObjectClassQuery(RESOURCE_DUMMY_OID, RI_ACCOUNT_OBJECT_CLASS),
+                    null, task, result);
+            PerformanceInformation performanceInformation =
+                    repositoryService.getPerformanceMonitor().getThreadLocalPerformanceInformation();
+            displayDumpable("repository performance (batch size " + batchSize + ")", performanceInformation);
+            return new SearchOutcome(shadows, countRepoSearches(performanceInformation));
+        } finally {
+            repositoryService.getPerformanceMonitor().stopThreadLocalPerformanceInformationCollection();
+        }
+    }
+
+    /** Either the exception thrown, or names and fetch result statuses of the shadows returned. */
+    private String describeOutcome(int batchSize, Task task) {
+        OperationResult result = createSubresult("search-" + batchSize);
+        try {
+            var outcome = searchAccounts(batchSize, task, result);
+            return outcome.shadows().stream()
+                    .map(PrismObject::asObjectable)
+                    .sorted(Comparator.comparing(s -> s.getName().getOrig()))
+                    .map(s -> s.getName().getOrig() + ":"
+                            + (s.getFetchResult() != null ? s.getFetchResult().getStatus() : "none"))
+                    .toList()
+                    .toString();
+        } catch (Exception | Error e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private List<String> oidsOf(SearchOutcome outcome) {
+        return outcome.shadows().stream()
+                .map(PrismObject::getOid)
+                .sorted()
+                .toList();
+    }
+
+    /** Counts `searchObjects` repository calls (the keys are like `SqaleRepositoryService.searchObjects[.ShadowType]`). */
+    private int countRepoSearches(PerformanceInformation performanceInformation) {
+        return performanceInformation.getAllData().entrySet().stream()
+                .filter(e -> {
+                    String[] segments = e.getKey().split("\\.");
+                    return segments.length >= 2 && RepositoryService.OP_SEARCH_OBJECTS.equals(segments[1]);
+                })
+                .mapToInt(e -> e.getValue().getInvocationCount())
+                .sum();
+    }
+
+    private record SearchOutcome(List<PrismObject<ShadowType>> shadows, int repoSearches) {
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.async.provisioning.targets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jakarta.jms.*;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AsyncProvisioningBatchingType;
+
+/**
+ * Sends messages for {@link JmsProvisioningTarget} in groups: messages submitted by (typically) multiple threads
+ * are collected by a single sender thread and sent in one transacted session, committing once per group.
+ *
+ * A group is closed when it reaches the maximal size, or when the linger time (counted from taking the first message
+ * of the group) elapses. Each submitting thread waits until its message is committed (or fails to be sent),
+ * so the callers see the same semantics as with the non-batched sending. The waiting is bounded by {@link #SEND_TIMEOUT}
+ * (plus the linger time); a message that was not sent in time is withdrawn, unless its sending is already in progress.
+ *
+ * If a group cannot be sent, the transaction is rolled back, and the messages are sent one by one (each in its own
+ * transaction), so that only the callers of the messages that really fail get the error.
+ */
+class JmsBatchingSender {
+
+    private static final Trace LOGGER = TraceManager.getTrace(JmsBatchingSender.class);
+
+    private static final int DEFAULT_MAX_SIZE = 100;
+    private static final int DEFAULT_LINGER_TIME = 5;
+
+    /** How often the sender thread checks whether it should stop. */
+    private static final long IDLE_POLL_MILLIS = 1000;
+
+    /** How long a submitting thread waits for its message to be sent (in addition to the linger time). */
+    private static final long SEND_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+    /** How long {@link #stop()} waits for the sender thread to finish. */
+    private static final long STOP_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    @NotNull private final Connection connection;
+    @NotNull private final Destination destination;
+    private final int maxSize;
+    private final long lingerNanos;
+
+    @NotNull private final BlockingQueue<MessageToSend> queue = new LinkedBlockingQueue<>();
+    @NotNull private final Thread senderThread;
+
+    /** Guarded by {@link #queue} (when being set), so no message can be enqueued after the sender is stopped. */
+    private volatile boolean stopped;
+
+    /** Used only by the sender thread. Created lazily, discarded after a failure. */
+    private Session session;
+    private MessageProducer producer;
+
+    JmsBatchingSender(
+            @NotNull Connection connection,
+            @NotNull Destination destination,
+            @NotNull AsyncProvisioningBatchingType batching,
+            @NotNull String name) {
+        this.connection = connection;
+        this.destination = destination;
+        this.maxSize = Math.max(1, Objects.requireNonNullElse(batching.getMaxSize(), DEFAULT_MAX_SIZE));
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(0, Objects.requireNonNullElse(batching.getLingerTime(), DEFAULT_LINGER_TIME)));
+        this.senderThread = new Thread(this::run, "jms-batching-sender-" + name);
+        this.senderThread.setDaemon(true);
+        this.senderThread.start();
+    }
+
+    /** Sends the message as part of the next group. Returns the JMS message ID after the group is committed. */
+    String send(@NotNull String text) throws JMSException {
+        MessageToSend message = new MessageToSend(text, new CompletableFuture<>(), new AtomicBoolean());
+        synchronized (queue) {
+            if (stopped) {
+                throw new IllegalStateException("The batching sender is stopped");
+            }
+            queue.add(message);
+        }
+        long timeout = SEND_TIMEOUT + TimeUnit.NANOSECONDS.toMillis(lingerNanos);
+        try {
+            try {
+                return message.completion().get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (message.claimed().compareAndSet(false, true)) {
+                    message.completion().cancel(false);
+                    throw new JMSException("The message was not sent within " + timeout + " ms");
+                }
+                // The sending is in progress, so we give it a chance to finish.
+                return message.completion().get(SEND_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            throw new JMSException("The message sending was not finished within the time limit; its outcome is unknown");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for the message to be sent", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JMSException jmsException) {
+                throw jmsException;
+            } else if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else {
+                throw new SystemException("Couldn't send the message: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Stops the sender thread. Messages not sent yet are failed.
+     *
+     * After the {@link #stopped} flag is set, no new messages are enqueued; the remaining ones are failed here,
+     * and - should the sender thread still run after the timeout - also by the thread itself when it finishes.
+     */
+    void stop() {
+        synchronized (queue) {
+            stopped = true;
+        }
+        senderThread.interrupt();
+        try {
+            senderThread.join(STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failRemaining();
+    }
+
+    private void run() {
+        try {
+            while (!stopped) {
+                MessageToSend first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    sendGroup(collectGroup(first));
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.trace("Batching sender thread was interrupted, stopping");
+        } finally {
+            closeSession();
+            failRemaining();
+        }
+    }
+
+    private @NotNull List<MessageToSend> collectGroup(@NotNull MessageToSend first) throws InterruptedException {
+        List<MessageToSend> group = new ArrayList<>(maxSize);
+        group.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        try {
+            while (group.size() < maxSize) {
+                long remaining = deadline - System.nanoTime();
+                MessageToSend next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                if (next == null) {
+                    break;
+                }
+                group.add(next);
+            }
+        } catch (InterruptedException e) {
+            failAll(group, new IllegalStateException("The batching sender was stopped"));
+            throw e;
+        }
+        return group;
+    }
+
+    private void sendGroup(@NotNull List<MessageToSend> group) {
+        group.removeIf(messageToSend -> !messageToSend.claimed().compareAndSet(false, true)); // withdrawn after timeout
+        if (group.isEmpty()) {
+            return;
+        }
+        if (group.size() == 1) {
+            sendSingle(group.get(0));
+            return;
+        }
+        List<String> messageIds;
+        try {
+            messageIds = sendAndCommit(group);
+        } catch (Throwable t) {
+            LoggingUtils.logException(LOGGER,
+                    "Couldn't send a group of {} message(s), sending them one by one", t, group.size());
+            rollbackAndCloseSession();
+            group.forEach(this::sendSingle);
+            return;
+        }
+        LOGGER.trace("Sent a group of {} message(s)", group.size());
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).completion().complete(messageIds.get(i));
+        }
+    }
+
+    private void sendSingle(@NotNull MessageToSend messageToSend) {
+        String messageId;
+        try {
+            messageId = sendAndCommit(List.of(messageToSend)).get(0);
+        } catch (Throwable t) {
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't send a message", t);
+            rollbackAndCloseSession();
+            messageToSend.completion().completeExceptionally(t);
+            return;
+        }
+        messageToSend.completion().complete(messageId);
+    }
+
+    /** Sends the messages in a single transaction. Returns their JMS message IDs. */
+    private @NotNull List<String> sendAndCommit(@NotNull List<MessageToSend> messages) throws JMSException {
+        List<String> messageIds = new ArrayList<>(messages.size());
+        MessageProducer producer = getOrCreateProducer();
+        for (MessageToSend messageToSend : messages) {
+            TextMessage message = session.createTextMessage(messageToSend.text());
+            producer.send(message);
+            messageIds.add(message.getJMSMessageID());
+        }
+        session.commit();
+        return messageIds;
+    }
+
+    private @NotNull MessageProducer getOrCreateProducer() throws JMSException {
+        if (producer == null) {
+            session = connection.createSession(true, Session.SESSION_TRANSACTED);
+            producer = session.createProducer(destination);
+        }
+        return producer;
+    }
+
+    private void rollbackAndCloseSession() {
+        if (session != null) {
+            try {
+                session.rollback();
+            } catch (Throwable t) {
+                LoggingUtils.logException(LOGGER, "Couldn't roll back the session - ignoring this exception", t);
+            }
+        }
+        closeSession();
+    }
+
+    private void closeSession() {
+        if (session != null) {
+            try {
+                session.close(); // closes the producer as well
+            } catch (Throwable t) {
+                LoggingUtils.logException(LOGGER, "Couldn't close the session - ignoring this exception", t);
+            } finally {
+                session = null;
+                producer = null;
+            }
+        }
+    }
+
+    private void failRemaining() {
+        List<MessageToSend> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        failAll(remaining, new IllegalStateException("The batching sender was stopped"));
+    }
+
+    private static void failAll(@NotNull List<MessageToSend> messages, @NotNull Throwable t) {
+        for (MessageToSend message : messages) {
+            message.completion().completeExceptionally(t);
+        }
+    }
+
+    /**
+     * @param claimed Set either by the sender thread (when the message is about to be sent),
+     * or by the submitting thread (when withdrawing the message after timeout), whichever comes first.
+     */
+    private record MessageToSend(
+            @NotNull String text,
+            @NotNull CompletableFuture<String> completion,
+            @NotNull AtomicBoolean claimed) {
+    }
+}
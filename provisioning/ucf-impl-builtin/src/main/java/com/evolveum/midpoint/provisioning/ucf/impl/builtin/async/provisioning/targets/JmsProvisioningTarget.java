@@ -28,6 +28,9 @@ import java.util.Objects;
 
 /**
  * Connection to async provisioning target using JMS API.
+ *
+ * Messages are sent either directly by the calling threads (each using its own session), or - if batching is configured -
+ * by a {@link JmsBatchingSender} that groups them into transactions.
  */
 public class JmsProvisioningTarget extends AbstractMessagingTarget<JmsProvisioningTargetType> {
 
@@ -56,6 +59,12 @@ public class JmsProvisioningTarget extends AbstractMessagingTarget<JmsProvisioni
      */
     private final ThreadLocal<MessageProducer> producerThreadLocal = new ThreadLocal<>();
 
+    /**
+     * Sender used if batching is configured. Created along with the connection.
+     * Guarded by "this". Should use {@link #getOrCreateBatchingSender()} to obtain it.
+     */
+    private JmsBatchingSender batchingSender;
+
     private JmsProvisioningTarget(@NotNull JmsProvisioningTargetType configuration, @NotNull AsyncProvisioningConnectorInstance connectorInstance) {
         super(configuration, connectorInstance);
 
@@ -93,6 +102,9 @@ public class JmsProvisioningTarget extends AbstractMessagingTarget<JmsProvisioni
 
     @Override
     protected String executeSend(AsyncProvisioningRequest request) throws JMSException, EncryptionException {
+        if (configuration.getBatching() != null) {
+            return getOrCreateBatchingSender().send(request.asString());
+        }
         Session session = getOrCreateSession();
         TextMessage message = session.createTextMessage(request.asString());
         MessageProducer producer = getOrCreateProducer();
@@ -143,6 +155,14 @@ public class JmsProvisioningTarget extends AbstractMessagingTarget<JmsProvisioni
         return connection;
     }
 
+    private synchronized JmsBatchingSender getOrCreateBatchingSender() throws JMSException, EncryptionException {
+        if (batchingSender == null) {
+            batchingSender = new JmsBatchingSender(
+                    getOrCreateConnection(), destination, configuration.getBatching(), configuration.getDestination());
+        }
+        return batchingSender;
+    }
+
     /**
      * Closes existing producer and removes it from the thread.
      */
@@ -175,8 +195,13 @@ public class JmsProvisioningTarget extends AbstractMessagingTarget<JmsProvisioni
         }
     }
 
+    /** Synchronized, as the connection and the batching sender are guarded by "this". */
     @Override
-    protected void closeBrokerConnection() {
+    protected synchronized void closeBrokerConnection() {
+        if (batchingSender != null) {
+            batchingSender.stop();
+            batchingSender = null;
+        }
         if (connection != null) {
             try {
                 connection.close();
@@ -68,6 +68,12 @@ class ConnIdConfigurationTransformer {
     private final Protector protector;
     private final ConnectorConfigurationOptions options;
 
+    /** Configured upper bound of adaptive pool sizing. Not a part of ConnId pool configuration. */
+    private Integer adaptiveMaxObjects;
+
+    /** Adaptive pool sizing, if applicable. */
+    private AdaptivePoolSizing adaptivePoolSizing;
+
     ConnIdConfigurationTransformer(
             ConnectorType connectorBean, ConnectorInfo connectorInfo, Protector protector, ConnectorConfigurationOptions options) {
         this.connectorBean = connectorBean;
@@ -286,6 +292,8 @@ class ConnIdConfigurationTransformer {
                         connectorPoolConfiguration.setMaxWait(parseLong(prismProperty));
                     } else if (CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_MAX_IDLE_TIME_MILLIS.equals(subelementName)) {
                         connectorPoolConfiguration.setMaxIdleTimeMillis(parseLong(prismProperty));
+                    } else if (CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_ADAPTIVE_MAX_OBJECTS.equals(subelementName)) {
+                        adaptiveMaxObjects = parseInt(prismProperty);
                     } else {
                         throw new SchemaException(
                                 "Unexpected element "
@@ -305,6 +313,25 @@ class ConnIdConfigurationTransformer {
         if (options != null && options.isDoNotCache()) {
             connectorPoolConfiguration.setMinIdle(0); // TODO but does this really work?
         }
+        int maxObjects = connectorPoolConfiguration.getMaxObjects();
+        if (adaptiveMaxObjects != null && adaptiveMaxObjects > maxObjects) {
+            adaptivePoolSizing = new AdaptivePoolSizing(maxObjects, adaptiveMaxObjects);
+            // The pool must be able to hold all the instances; the actual limit is managed by ConnIdPoolGate.
+            connectorPoolConfiguration.setMaxObjects(adaptiveMaxObjects);
+        }
+    }
+
+    /**
+     * Returns the adaptive pool sizing, or null if the sizing is not adaptive. In the former case, the `maxObjects`
+     * in the ConnId pool configuration is already set to the upper bound.
+     * Valid after {@link #transformConnectorConfiguration(PrismContainerValue)} is called.
+     */
+    AdaptivePoolSizing getAdaptivePoolSizing() {
+        return adaptivePoolSizing;
+    }
+
+    /** The number of concurrently used connector instances adapts between these two values. */
+    record AdaptivePoolSizing(int minObjects, int maxObjects) {
     }
 
     private void transformConnectorTimeoutsConfiguration(APIConfiguration apiConfig,
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.ucf.impl.connid;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.identityconnectors.framework.api.ConnectorFacade;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.schema.statistics.ConnectorOperationalStatus;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Stands in front of the ConnId connector pool of a single connector instance (i.e. of a resource).
+ *
+ * All operations on the {@link ConnectorFacade} go through this gate, which
+ *
+ * . measures the borrowing: how many operations had to wait for a connector, and how long;
+ * . limits the number of concurrent operations to the size of the pool, so that the waiting occurs here
+ * (where it can be measured) and not in the ConnId pool;
+ * . optionally, adapts the limit to the observed demand, between the configured `maxObjects` and `adaptiveMaxObjects`.
+ * The ConnId pool itself is sized to the upper bound in that case. The limit grows by one (at most once per
+ * {@link #GROW_INTERVAL_MILLIS}) while there are waiting operations, and shrinks back by one after each
+ * {@link #SHRINK_INTERVAL_MILLIS} without any waiting. Superfluous idle connectors are then evicted by the pool
+ * according to its idle settings.
+ *
+ * If an operation cannot get a permit within the pool `maxWait` time (or it is interrupted while waiting), it fails
+ * with {@link ConnectorException}, just like it would fail in the ConnId pool if the pool was exhausted. Letting it through
+ * would only make it wait for the second time, in the ConnId pool.
+ */
+class ConnIdPoolGate {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ConnIdPoolGate.class);
+
+    private static final long GROW_INTERVAL_MILLIS = 1000;
+    private static final long SHRINK_INTERVAL_MILLIS = 60_000;
+
+    /** Facade methods that do not borrow a connector from the pool. */
+    private static final Set<String> NON_BORROWING_METHODS = Set.of(
+            "getSupportedOperations", "getOperation", "dispose", "equals", "hashCode", "toString");
+
+    @NotNull private final String instanceName;
+
+    /** Null if the connector is not pooled or the pool is not known to us (remote connectors); we only count then. */
+    @Nullable private final AdjustableSemaphore permits;
+
+    /** The lower bound of the limit; it is the configured `maxObjects`. */
+    private final int minLimit;
+
+    /** The upper bound of the limit; if it's the same as {@link #minLimit}, the limit is fixed. */
+    private final int maxLimit;
+
+    /** How long to wait for a permit; non-positive means "forever". */
+    private final long maxWaitMillis;
+
+    private volatile int currentLimit;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowWaitCount = new LongAdder();
+    private final LongAdder borrowWaitNanos = new LongAdder();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+
+    /** Source of the current time (in millis) for the adaptation; replaceable in tests. */
+    @NotNull private final LongSupplier clock;
+
+    /** Guarded by `this`. */
+    private long lastResizeTime;
+    private volatile long lastWaitTime;
+
+    @VisibleForTesting
+    ConnIdPoolGate(
+            @NotNull String instanceName, boolean limiting, int minLimit, int maxLimit, long maxWaitMillis,
+            @NotNull LongSupplier clock) {
+        this.instanceName = instanceName;
+        this.clock = clock;
+        this.lastResizeTime = clock.getAsLong();
+        this.permits = limiting ? new AdjustableSemaphore(minLimit) : null;
+        this.minLimit = minLimit;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.maxWaitMillis = maxWaitMillis;
+        this.currentLimit = minLimit;
+    }
+
+    /**
+     * @param pooled True if the ConnId pool applies to the connector (and we know its size).
+     * @param maxObjects Configured `maxObjects` of the pool.
+     * @param adaptiveMaxObjects Upper bound for adaptive sizing; null or not greater than `maxObjects` means no adaptation.
+     */
+    static @NotNull ConnIdPoolGate create(
+            @NotNull String instanceName, boolean pooled, int maxObjects, @Nullable Integer adaptiveMaxObjects, long maxWait) {
+        boolean limiting = pooled && maxObjects > 0;
+        int maxLimit = limiting && adaptiveMaxObjects != null ? Math.max(maxObjects, adaptiveMaxObjects) : maxObjects;
+        return new ConnIdPoolGate(instanceName, limiting, maxObjects, maxLimit, maxWait, System::currentTimeMillis);
+    }
+
+    /** Returns the facade whose operations go through this gate. */
+    @NotNull ConnectorFacade wrap(@NotNull ConnectorFacade facade) {
+        return (ConnectorFacade) Proxy.newProxyInstance(
+                ConnectorFacade.class.getClassLoader(),
+                new Class<?>[] { ConnectorFacade.class },
+                (proxy, method, args) -> invoke(facade, method, args));
+    }
+
+    private Object invoke(ConnectorFacade facade, Method method, Object[] args) throws Throwable {
+        if (NON_BORROWING_METHODS.contains(method.getName())) {
+            return invokeTarget(facade, method, args);
+        }
+        boolean permitAcquired = enter();
+        try {
+            return invokeTarget(facade, method, args);
+        } finally {
+            exit(permitAcquired);
+        }
+    }
+
+    private static Object invokeTarget(ConnectorFacade facade, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(facade, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns true if a permit was acquired (and must be released).
+     *
+     * @throws ConnectorException If no permit could be acquired within the `maxWait` time.
+     */
+    private boolean enter() {
+        borrowCount.increment();
+        boolean acquired;
+        if (permits == null) {
+            acquired = false;
+        } else {
+            if (!permits.tryAcquire()) {
+                waitForPermit(permits);
+            }
+            acquired = true;
+        }
+        inUse.incrementAndGet();
+        return acquired;
+    }
+
+    private void waitForPermit(@NotNull AdjustableSemaphore permits) {
+        long start = System.nanoTime();
+        lastWaitTime = clock.getAsLong();
+        waiting.incrementAndGet();
+        try {
+            adapt();
+            if (maxWaitMillis > 0) {
+                if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                    LOGGER.debug("No connector for {} became available in {} ms", instanceName, maxWaitMillis);
+                    throw new ConnectorException(
+                            "Connector pool for " + instanceName + " is exhausted: no connector became available in "
+                                    + maxWaitMillis + " ms");
+                }
+            } else {
+                permits.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectorException("Interrupted while waiting for a connector for " + instanceName, e);
+        } finally {
+            waiting.decrementAndGet();
+            long waitNanos = System.nanoTime() - start;
+            borrowWaitCount.increment();
+            borrowWaitNanos.add(waitNanos);
+            maxBorrowWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+    }
+
+    private void exit(boolean permitAcquired) {
+        inUse.decrementAndGet();
+        if (permitAcquired) {
+            assert permits != null;
+            permits.release();
+            adapt();
+        }
+    }
+
+    /** Grows the limit if there are waiting operations, shrinks it if there were none for some time. */
+    private void adapt() {
+        if (permits == null || minLimit == maxLimit) {
+            return;
+        }
+        long now = clock.getAsLong();
+        synchronized (this) {
+            if (waiting.get() > 0 && currentLimit < maxLimit && now - lastResizeTime >= GROW_INTERVAL_MILLIS) {
+                currentLimit++;
+                lastResizeTime = now;
+                permits.release();
+                LOGGER.debug("Increased the connector pool limit for {} to {}", instanceName, currentLimit);
+            } else if (waiting.get() == 0 && currentLimit > minLimit
+                    && now - lastWaitTime >= SHRINK_INTERVAL_MILLIS && now - lastResizeTime >= SHRINK_INTERVAL_MILLIS) {
+                currentLimit--;
+                lastResizeTime = now;
+                permits.reducePermits(1);
+                LOGGER.debug("Decreased the connector pool limit for {} to {}", instanceName, currentLimit);
+            }
+        }
+    }
+
+    /** Fills-in the statistics collected here. */
+    void fillStatus(@NotNull ConnectorOperationalStatus status) {
+        status.setPoolStatusNumWaiting(waiting.get());
+        status.setPoolStatusNumInUse(inUse.get());
+        if (permits != null) {
+            status.setPoolStatusLimit(currentLimit);
+        }
+        if (maxLimit > minLimit) {
+            status.setPoolConfigAdaptiveMaxSize(maxLimit);
+        }
+        status.setPoolStatusBorrowCount(borrowCount.sum());
+        status.setPoolStatusBorrowWaitCount(borrowWaitCount.sum());
+        status.setPoolStatusBorrowWaitTime(TimeUnit.NANOSECONDS.toMillis(borrowWaitNanos.sum()));
+        status.setPoolStatusMaxBorrowWaitTime(TimeUnit.NANOSECONDS.toMillis(maxBorrowWaitNanos.get()));
+    }
+
+    /** Exposes the protected {@link Semaphore#reducePermits(int)}. */
+    private static class AdjustableSemaphore extends Semaphore {
+
+        AdjustableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
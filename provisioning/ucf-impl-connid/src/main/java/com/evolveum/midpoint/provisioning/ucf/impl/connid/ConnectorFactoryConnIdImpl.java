@@ -99,11 +99,16 @@ public class ConnectorFactoryConnIdImpl implements ConnectorFactory {
     public static final String CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_MAX_OBJECTS = "maxObjects";
     public static final String CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_MAX_WAIT = "maxWait";
     public static final String CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_MAX_IDLE_TIME_MILLIS = "maxIdleTimeMillis";
+    static final String CONNECTOR_SCHEMA_CONNECTOR_POOL_CONFIGURATION_ADAPTIVE_MAX_OBJECTS = "adaptiveMaxObjects";
 
     public static final ItemName CONNECTOR_SCHEMA_PRODUCER_BUFFER_SIZE_ELEMENT =
             ItemName.from(SchemaConstants.NS_ICF_CONFIGURATION, "producerBufferSize");
     public static final QName CONNECTOR_SCHEMA_PRODUCER_BUFFER_SIZE_TYPE = DOMUtil.XSD_INT;
 
+    static final ItemName CONNECTOR_SCHEMA_SEARCH_READ_AHEAD_ELEMENT =
+            ItemName.from(SchemaConstants.NS_ICF_CONFIGURATION, "searchReadAhead");
+    public static final QName CONNECTOR_SCHEMA_SEARCH_READ_AHEAD_TYPE = DOMUtil.XSD_INT;
+
     static final ItemName CONNECTOR_SCHEMA_LEGACY_SCHEMA_ELEMENT =
             ItemName.from(SchemaConstants.NS_ICF_CONFIGURATION, "legacySchema");
     public static final QName CONNECTOR_SCHEMA_LEGACY_SCHEMA_TYPE = DOMUtil.XSD_BOOLEAN;
@@ -453,6 +458,9 @@ public class ConnectorFactoryConnIdImpl implements ConnectorFactory {
         configurationContainerDef.mutator().createPropertyDefinition(
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_PRODUCER_BUFFER_SIZE_ELEMENT,
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_PRODUCER_BUFFER_SIZE_TYPE, 0, 1);
+        configurationContainerDef.mutator().createPropertyDefinition(
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_SEARCH_READ_AHEAD_ELEMENT,
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_SEARCH_READ_AHEAD_TYPE, 0, 1);
         configurationContainerDef.mutator().createContainerDefinition(
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_TIMEOUTS_ELEMENT,
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_TIMEOUTS_TYPE, 0, 1);
@@ -19,6 +19,10 @@ import static com.evolveum.midpoint.schema.reporting.ConnIdOperation.getIdentifi
 import static com.evolveum.midpoint.util.DebugUtil.lazy;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.xml.namespace.QName;
@@ -60,6 +64,7 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.result.OperationResultStatus;
 import com.evolveum.midpoint.schema.statistics.ConnectorOperationalStatus;
 import com.evolveum.midpoint.schema.statistics.ProvisioningOperation;
+import com.evolveum.midpoint.schema.util.ExternalCallsLimiter;
 import com.evolveum.midpoint.schema.util.ShadowUtil;
 import com.evolveum.midpoint.util.Holder;
 import com.evolveum.midpoint.util.PrettyPrinter;
@@ -90,6 +95,14 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
 
     private static final String FACADE_OP_GET_OBJECT = ConnectorFacade.class.getName() + ".getObject";
 
+    /**
+     * Maximal number of concurrent searches with read-ahead for a connector instance. Searches over this limit
+     * run without read-ahead. See {@link #getSearchReadAheadExecutor()}.
+     */
+    private static final int MAX_SEARCH_READ_AHEAD_THREADS = 32;
+
+    private static final long SEARCH_READ_AHEAD_THREAD_KEEP_ALIVE_SECONDS = 60;
+
     /** MidPoint connector definition bean. */
     @NotNull private final ConnectorType connectorBean;
 
@@ -109,9 +122,15 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
     /** ConnId connector configuration. */
     private APIConfiguration connIdConnectorConfig = null;
 
-    /** ConnId connector operations entry point. */
+    /** ConnId connector operations entry point. All operations go through {@link #poolGate}. */
     private ConnectorFacade connIdConnectorFacade;
 
+    /** Class of the ConnId facade behind {@link #connIdConnectorFacade} (which is wrapped by {@link #poolGate}). */
+    private Class<? extends ConnectorFacade> connIdConnectorFacadeClass;
+
+    /** Measures (and limits) the use of the connector pool. Re-created on each configuration. */
+    private ConnIdPoolGate poolGate;
+
     /** Useful Spring beans. */
     @NotNull private final ConnIdBeans b = ConnIdBeans.get();
 
@@ -146,6 +165,12 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
      */
     private Boolean configuredLegacySchema;
 
+    /** How many objects can a search read ahead; zero means no read-ahead. See {@link SearchExecutor}. */
+    private int searchReadAhead;
+
+    /** Runs the connector searches with read-ahead; created on first use, shut down on {@link #dispose()}. Guarded by `this`. */
+    private ThreadPoolExecutor searchReadAheadExecutor;
+
     /** Usually the resource name. */
     @NotNull private final String instanceName;
 
@@ -201,10 +226,9 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
                             configurationPcvRaw.clone().applyDefinition(getConfigurationContainerDefinition()) : null;
 
             // Transform XML configuration from the resource to the ConnId connector configuration
+            var configTransformer = new ConnIdConfigurationTransformer(connectorBean, connIdConnectorInfo, b.protector, options);
             try {
-                connIdConnectorConfig =
-                        new ConnIdConfigurationTransformer(connectorBean, connIdConnectorInfo, b.protector, options)
-                                .transformConnectorConfiguration(configurationPcv);
+                connIdConnectorConfig = configTransformer.transformConnectorConfiguration(configurationPcv);
             } catch (SchemaException e) {
                 result.recordException(e);
                 throw e;
@@ -217,7 +241,10 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             ConnectorFacade oldConnIdConnectorFacade = connIdConnectorFacade;
 
             // Create new connector instance using the transformed configuration
-            connIdConnectorFacade = ConnectorFacadeFactory.getInstance().newInstance(connIdConnectorConfig);
+            poolGate = createPoolGate(configTransformer.getAdaptivePoolSizing());
+            ConnectorFacade newConnIdConnectorFacade = ConnectorFacadeFactory.getInstance().newInstance(connIdConnectorConfig);
+            connIdConnectorFacadeClass = newConnIdConnectorFacade.getClass();
+            connIdConnectorFacade = poolGate.wrap(newConnIdConnectorFacade);
 
             if (oldConnIdConnectorFacade != null) {
                 // Make sure old connector instance is disposed. We do not want to waste resources.
@@ -236,6 +263,13 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             configuredLegacySchema = legacySchemaConfigProperty != null ? legacySchemaConfigProperty.getRealValue() : null;
             LOGGER.trace("Legacy schema (config): {}", configuredLegacySchema);
 
+            PrismProperty<Integer> searchReadAheadProperty =
+                    configurationPcv != null ?
+                            configurationPcv.findProperty(ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_SEARCH_READ_AHEAD_ELEMENT) :
+                            null;
+            Integer searchReadAheadValue = searchReadAheadProperty != null ? searchReadAheadProperty.getRealValue() : null;
+            searchReadAhead = searchReadAheadValue != null ? Math.max(searchReadAheadValue, 0) : 0;
+
         } catch (Throwable ex) {
             Throwable midpointEx = processConnIdException(ex, this, result);
             result.computeStatus("Configuration operation failed");
@@ -287,11 +321,36 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
         return configContainerDef;
     }
 
+    private @NotNull ConnIdPoolGate createPoolGate(@Nullable ConnIdConfigurationTransformer.AdaptivePoolSizing sizing) {
+        ObjectPoolConfiguration poolConfiguration = connIdConnectorConfig.getConnectorPoolConfiguration();
+        boolean pooled;
+        if (connIdConnectorInfo instanceof LocalConnectorInfoImpl localConnectorInfo) {
+            Class<? extends Connector> connectorClass =
+                    new ConnectorOperationalContext(localConnectorInfo, (APIConfigurationImpl) connIdConnectorConfig)
+                            .getConnectorClass();
+            pooled = connectorClass != null && PoolableConnector.class.isAssignableFrom(connectorClass);
+        } else {
+            pooled = false; // the pool is on the connector server, we can only count the operations
+        }
+        return ConnIdPoolGate.create(
+                getInstanceName(),
+                pooled && poolConfiguration != null,
+                sizing != null ? sizing.minObjects() : poolConfiguration != null ? poolConfiguration.getMaxObjects() : 0,
+                sizing != null ? sizing.maxObjects() : null,
+                poolConfiguration != null ? poolConfiguration.getMaxWait() : 0);
+    }
+
+    /**
+     * For a remote connector, the pool (if any) is on the connector server, so only the configuration and the statistics
+     * of our {@link ConnIdPoolGate} are provided.
+     */
     @Override
     public ConnectorOperationalStatus getOperationalStatus() {
 
-        if (!(connIdConnectorInfo instanceof LocalConnectorInfoImpl localConnectorInfo)) {
-            LOGGER.trace("Cannot get operational status of a remote connector {}", connectorBean);
+        boolean local = connIdConnectorInfo instanceof LocalConnectorInfoImpl;
+        if (!local && poolGate == null) {
+            LOGGER.trace("Cannot get operational status of a remote connector {}: connector not yet configured",
+                    connectorBean);
             return null;
         }
 
@@ -302,14 +361,6 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
 
         ConnectorOperationalStatus status = new ConnectorOperationalStatus();
 
-        var connectorOperationalContext =
-                new ConnectorOperationalContext(localConnectorInfo, (APIConfigurationImpl) connIdConnectorConfig);
-
-        Class<? extends Connector> connectorClass = connectorOperationalContext.getConnectorClass();
-        if (connectorClass != null) {
-            status.setConnectorClassName(connectorClass.getName());
-        }
-
         ObjectPoolConfiguration poolConfiguration = connIdConnectorConfig.getConnectorPoolConfiguration();
         if (poolConfiguration != null) {
             status.setPoolConfigMaxSize(poolConfiguration.getMaxObjects());
@@ -320,23 +371,76 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             status.setPoolConfigMaxIdleTime(poolConfiguration.getMaxIdleTimeMillis());
         }
 
-        ObjectPool<PoolableConnector> pool = connectorOperationalContext.getPool();
-        if (pool != null) {
-            Statistics poolStats = pool.getStatistics();
-            if (poolStats != null) {
-                status.setPoolStatusNumActive(poolStats.getNumActive());
-                status.setPoolStatusNumIdle(poolStats.getNumIdle());
+        if (connIdConnectorInfo instanceof LocalConnectorInfoImpl localConnectorInfo) {
+            var connectorOperationalContext =
+                    new ConnectorOperationalContext(localConnectorInfo, (APIConfigurationImpl) connIdConnectorConfig);
+
+            Class<? extends Connector> connectorClass = connectorOperationalContext.getConnectorClass();
+            if (connectorClass != null) {
+                status.setConnectorClassName(connectorClass.getName());
+            }
+
+            ObjectPool<PoolableConnector> pool = connectorOperationalContext.getPool();
+            if (pool != null) {
+                Statistics poolStats = pool.getStatistics();
+                if (poolStats != null) {
+                    status.setPoolStatusNumActive(poolStats.getNumActive());
+                    status.setPoolStatusNumIdle(poolStats.getNumIdle());
+                }
             }
         }
 
+        if (poolGate != null) {
+            poolGate.fillStatus(status);
+        }
+
         return status;
     }
 
+    int getSearchReadAhead() {
+        return searchReadAhead;
+    }
+
+    /**
+     * Returns the executor for searches with read-ahead. It has at most {@link #MAX_SEARCH_READ_AHEAD_THREADS} threads
+     * and no queue: a search that cannot get a thread is rejected, and the caller runs it without read-ahead.
+     */
+    synchronized @NotNull ExecutorService getSearchReadAheadExecutor() {
+        if (searchReadAheadExecutor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            searchReadAheadExecutor = new ThreadPoolExecutor(
+                    0, MAX_SEARCH_READ_AHEAD_THREADS,
+                    SEARCH_READ_AHEAD_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(
+                                runnable, "connid-search-read-ahead-" + instanceName + "-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return searchReadAheadExecutor;
+    }
+
+    /** Running searches are finished (their callers wait for them), the idle threads are terminated. */
+    private synchronized void shutdownSearchReadAheadExecutor() {
+        if (searchReadAheadExecutor != null) {
+            searchReadAheadExecutor.shutdown();
+            searchReadAheadExecutor = null;
+        }
+    }
+
     @NotNull ConnectorFacade getConnIdConnectorFacadeRequired() {
         return stateNonNull(connIdConnectorFacade,
                 "Attempt to use unconfigured connector: %s %s", instanceName, description);
     }
 
+    /** For operation results: the real ConnId facade class, not the proxy created by the pool gate. */
+    private @NotNull Class<? extends ConnectorFacade> getConnIdConnectorFacadeClass() {
+        getConnIdConnectorFacadeRequired();
+        return connIdConnectorFacadeClass;
+    }
+
     @NotNull private ConnectorConfiguration getConfigurationRequired() {
         return stateNonNull(configuration,
                 "Attempt to use unconfigured connector: %s %s", instanceName, description);
@@ -546,7 +650,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
         icfResult.addArbitraryObjectAsParam("objectClass", icfObjectClass);
         icfResult.addParam("uid", uid.getUidValue());
         icfResult.addArbitraryObjectAsParam("options", options);
-        icfResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+        icfResult.addContext("connector", getConnIdConnectorFacadeClass());
 
         InternalMonitor.recordConnectorOperation("getObject");
         ConnIdOperation operation = recordIcfOperationStart(reporter, ProvisioningOperation.ICF_GET, objectDefinition, uid);
@@ -727,7 +831,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             connIdResult.addArbitraryObjectCollectionAsParam("auxiliaryObjectClasses", connIdInfo.auxiliaryObjectClasses());
             connIdResult.addArbitraryObjectCollectionAsParam("attributes", connIdInfo.attributes());
             connIdResult.addArbitraryObjectAsParam("options", options);
-            connIdResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+            connIdResult.addContext("connector", getConnIdConnectorFacadeClass());
 
             // CALL THE ConnId FRAMEWORK
             InternalMonitor.recordConnectorOperation("create");
@@ -889,7 +993,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             connIdResult.addParam("uid", uid.getUidValue());
             connIdResult.addParam("attributesDelta", attributesDelta.toString());
             connIdResult.addArbitraryObjectAsParam("options", connIdOptions);
-            connIdResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+            connIdResult.addContext("connector", getConnIdConnectorFacadeClass());
 
             InternalMonitor.recordConnectorOperation("update");
             InternalMonitor.recordConnectorModification("update");
@@ -1037,7 +1141,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             connIdResult.addParam("uid", uid.getUidValue());
             connIdResult.addArbitraryObjectAsParam("attributes", attributesToAdd);
             connIdResult.addArbitraryObjectAsParam("options", connIdOptions);
-            connIdResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+            connIdResult.addContext("connector", getConnIdConnectorFacadeClass());
 
             InternalMonitor.recordConnectorOperation("addAttributeValues");
             InternalMonitor.recordConnectorModification("addAttributeValues");
@@ -1096,7 +1200,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             connIdResult.addParam("uid", uid==null?"null":uid.getUidValue());
             connIdResult.addArbitraryObjectAsParam("attributes", attributesToUpdate);
             connIdResult.addArbitraryObjectAsParam("options", connIdOptions);
-            connIdResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+            connIdResult.addContext("connector", getConnIdConnectorFacadeClass());
 
             InternalMonitor.recordConnectorOperation("update");
             InternalMonitor.recordConnectorModification("update");
@@ -1155,7 +1259,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             connIdResult.addParam("uid", uid.getUidValue());
             connIdResult.addArbitraryObjectAsParam("attributes", attributesToRemove);
             connIdResult.addArbitraryObjectAsParam("options", connIdOptions);
-            connIdResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+            connIdResult.addContext("connector", getConnIdConnectorFacadeClass());
 
             InternalMonitor.recordConnectorOperation("removeAttributeValues");
             InternalMonitor.recordConnectorModification("removeAttributeValues");
@@ -1327,7 +1431,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             OperationResult icfResult = result.createSubresult(ConnectorFacade.class.getName() + ".delete");
             icfResult.addArbitraryObjectAsParam("uid", uid);
             icfResult.addArbitraryObjectAsParam("objectClass", objClass);
-            icfResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+            icfResult.addContext("connector", getConnIdConnectorFacadeClass());
 
             try {
                 LOGGER.trace("Invoking ConnId delete operation: {}", operation);
@@ -1387,7 +1491,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
         }
 
         OperationResult icfResult = result.createSubresult(ConnectorFacade.class.getName() + ".sync");
-        icfResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+        icfResult.addContext("connector", getConnIdConnectorFacadeClass());
         icfResult.addArbitraryObjectAsParam("icfObjectClass", icfObjectClass);
 
         SyncToken syncToken;
@@ -1474,7 +1578,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             UcfFetchChangesResult fetchChangesResult;
 
             OperationResult connIdResult = result.subresult(ConnectorFacade.class.getName() + ".sync")
-                    .addContext("connector", getConnIdConnectorFacadeRequired().getClass())
+                    .addContext("connector", getConnIdConnectorFacadeClass())
                     .addArbitraryObjectAsParam("objectClass", requestConnIdObjectClass)
                     .addArbitraryObjectAsParam("initialToken", initialToken)
                     .build();
@@ -1765,9 +1869,10 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
         // create result for it
         OperationResult icfResult = result.createSubresult(ConnectorFacade.class.getName() + ".search");
         icfResult.addArbitraryObjectAsParam("objectClass", icfObjectClass);
-        icfResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+        icfResult.addContext("connector", getConnIdConnectorFacadeClass());
 
-        int retval;
+        int fetchedCount;
+        int remainingPagedResults;
 
         InternalMonitor.recordConnectorOperation("search");
         ConnIdOperation operation = recordIcfOperationStart(ctx, ProvisioningOperation.ICF_SEARCH, objectDefinition);
@@ -1793,13 +1898,8 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             SearchResult searchResult = getConnIdConnectorFacadeRequired().search(icfObjectClass, filter, connIdHandler, options);
             recordIcfOperationEnd(ctx, operation, null);
 
-            if (searchResult == null || searchResult.getRemainingPagedResults() == -1) {
-                throw new UnsupportedOperationException("Connector does not seem to support paged searches or does not provide object count information");
-            } else {
-                retval = fetched.getValue() + searchResult.getRemainingPagedResults();
-            }
-
-            icfResult.recordSuccess();
+            fetchedCount = fetched.getValue();
+            remainingPagedResults = searchResult != null ? searchResult.getRemainingPagedResults() : -1;
         } catch (IntermediateSchemaException inEx) {
             recordIcfOperationEnd(ctx, operation, inEx);
             var ex = inEx.getSchemaException();
@@ -1832,11 +1932,21 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
             }
         }
 
+        // Thrown outside the try block above, as the ConnId operation end was already recorded.
+        if (remainingPagedResults == -1) {
+            var uoe = new UnsupportedOperationException(
+                    "Connector does not seem to support paged searches or does not provide object count information");
+            icfResult.recordFatalError(uoe);
+            result.recordFatalError(uoe);
+            throw uoe;
+        }
+        icfResult.recordSuccess();
+
         if (result.isUnknown()) {
             result.recordSuccess();
         }
 
-        return retval;
+        return fetchedCount + remainingPagedResults;
     }
 
     @NotNull ObjectClass objectClassToConnId(ResourceObjectDefinition objectDefinition) {
@@ -1939,7 +2049,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
         ScriptContext scriptContext = convertToScriptContext(scriptOperation);
 
         OperationResult icfResult = parentResult.createSubresult(ConnectorFacade.class.getName() + "." + icfOpName);
-        icfResult.addContext("connector", getConnIdConnectorFacadeRequired().getClass());
+        icfResult.addContext("connector", getConnIdConnectorFacadeClass());
 
         ConnIdOperation operation = recordIcfOperationStart(reporter, ProvisioningOperation.ICF_SCRIPT, null);
 
@@ -2029,6 +2139,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
 
     @Override
     public void dispose() {
+        shutdownSearchReadAheadExecutor();
         if (connIdConnectorFacade != null) {
             LOGGER.debug("Disposing ConnId ConnectorFacade for instance: {} (dispose explicitly invoked on ConnectorInstance)", instanceName);
             connIdConnectorFacade.dispose();
@@ -2036,9 +2147,11 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
         }
     }
 
+    /** Besides recording, the start and end of a ConnId operation delimit an external call for {@link ExternalCallsLimiter}. */
     @Contract("!null, _, _, _ -> !null; null, _, _, _ -> null")
     private @Nullable ConnIdOperation recordIcfOperationStart(
             UcfExecutionContext reporter, ProvisioningOperation operation, ResourceObjectDefinition objectDefinition, Uid uid) {
+        ExternalCallsLimiter.enter();
         if (reporter != null) {
             return reporter.recordIcfOperationStart(operation, objectDefinition, uid != null ? uid.getUidValue() : null);
         } else {
@@ -2069,6 +2182,7 @@ class ConnectorInstanceConnIdImpl implements ConnectorInstance, ConnectorContext
     }
 
     void recordIcfOperationEnd(UcfExecutionContext reporter, ConnIdOperation operation, Throwable ex) {
+        ExternalCallsLimiter.exit();
         if (reporter != null) {
             reporter.recordIcfOperationEnd(operation, ex);
         } else {
@@ -10,6 +10,7 @@ package com.evolveum.midpoint.provisioning.ucf.impl.connid;
 import static com.evolveum.midpoint.provisioning.ucf.impl.connid.ConnIdNameMapper.ucfAttributeNameToConnId;
 import static com.evolveum.midpoint.provisioning.ucf.impl.connid.ConnIdUtil.processConnIdException;
 
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.xml.namespace.QName;
 
@@ -222,12 +223,17 @@ class SearchExecutor {
 
         try {
             LOGGER.trace("Executing ConnId search operation: {}", operation);
-            connIdSearchResult = connectorInstance.getConnIdConnectorFacadeRequired()
-                    .search(
-                            icfObjectClass,
-                            connIdFilter,
-                            new SearchResultsHandler(operation, result),
-                            connIdOptions);
+            int readAhead = connectorInstance.getSearchReadAhead();
+            if (readAhead > 0) {
+                connIdSearchResult = new ReadAheadSearch(readAhead, operation, result).execute(connIdOptions);
+            } else {
+                connIdSearchResult = connectorInstance.getConnIdConnectorFacadeRequired()
+                        .search(
+                                icfObjectClass,
+                                connIdFilter,
+                                new SearchResultsHandler(operation, result),
+                                connIdOptions);
+            }
             recordIcfOperationEnd(operation, null);
 
             result.recordSuccess();
@@ -320,6 +326,42 @@ class SearchExecutor {
         return pagedSearchConfiguration == null;
     }
 
+    /**
+     * Converts the object fetched from the connector and passes it to the {@link #handler}.
+     * Returns `false` if no more objects are wanted.
+     */
+    private boolean handleConnectorObject(
+            ConnectorObject connectorObject, @NotNull ConnIdOperation operation, OperationResult result) {
+        Validate.notNull(connectorObject, "null connector object"); // todo apply error reporting method?
+
+        recordIcfOperationSuspend(operation);
+        try {
+            int number = objectsFetched.getAndIncrement(); // The numbering starts at 0
+            if (isNoConnectorPaging()) {
+                if (query != null && query.getPaging() != null) {
+                    int offset = MoreObjects.firstNonNull(query.getPaging().getOffset(), 0);
+                    Integer maxSize = query.getPaging().getMaxSize();
+                    if (number < offset) {
+                        return true;
+                    }
+                    if (maxSize != null && number >= offset + maxSize) {
+                        return false;
+                    }
+                }
+            }
+
+            var ucfObject = connectorInstance.connIdObjectConvertor.convertToUcfObject(
+                    connectorObject, resourceObjectDefinition, errorReportingMethod, operationContext, result);
+
+            return handler.handle(ucfObject, result);
+
+        } catch (SchemaException e) {
+            throw new IntermediateSchemaException(e);
+        } finally {
+            recordIcfOperationResume(operation);
+        }
+    }
+
     private class SearchResultsHandler implements ResultsHandler {
 
         @NotNull private final ConnIdOperation operation;
@@ -332,39 +374,128 @@ class SearchExecutor {
 
         @Override
         public boolean handle(ConnectorObject connectorObject) {
-            Validate.notNull(connectorObject, "null connector object"); // todo apply error reporting method?
+            return handleConnectorObject(connectorObject, operation, result);
+        }
 
-            recordIcfOperationSuspend(operation);
-            try {
-                int number = objectsFetched.getAndIncrement(); // The numbering starts at 0
-                if (isNoConnectorPaging()) {
-                    if (query != null && query.getPaging() != null) {
-                        int offset = MoreObjects.firstNonNull(query.getPaging().getOffset(), 0);
-                        Integer maxSize = query.getPaging().getMaxSize();
-                        if (number < offset) {
-                            return true;
-                        }
-                        if (maxSize != null && number >= offset + maxSize) {
-                            return false;
-                        }
-                    }
-                }
+        @Override
+        public String toString() {
+            return "(midPoint searching result handler)";
+        }
+    }
+
+    /**
+     * Search that reads ahead: the connector runs in a separate thread and puts the objects into a bounded queue,
+     * from which they are taken and processed in the current thread. So, the connector can fetch the next page
+     * of results (typically, from a directory server) while the objects from the current one are being processed
+     * by the shadowing and model code.
+     *
+     * Only the connector is called in the other thread; everything on the midPoint side (object conversion,
+     * the handler, operation result, and the statistics) stays in the current one, as before.
+     * When the processing stops - because the handler does not want more objects or because of an exception -
+     * the connector is told to stop at the next object, and we wait for it to finish.
+     *
+     * The connector threads come from the (bounded) executor of the connector instance. If none is available,
+     * the search is executed without read-ahead.
+     *
+     * If the current thread is interrupted while waiting for the objects, the search fails with {@link SystemException}
+     * (the interrupt flag is kept), so that the caller does not take the result as complete.
+     */
+    private class ReadAheadSearch {
+
+        /** Marks the end of objects; the connector is done. */
+        private static final Object END = new Object();
+
+        private static final long POLL_INTERVAL_MILLIS = 100;
+
+        @NotNull private final BlockingQueue<Object> queue;
+        @NotNull private final ConnIdOperation operation;
+        private final OperationResult result;
 
-                var ucfObject = connectorInstance.connIdObjectConvertor.convertToUcfObject(
-                        connectorObject, resourceObjectDefinition, errorReportingMethod, operationContext, result);
+        /** Set by the consumer if no more objects are needed. */
+        private volatile boolean stopped;
 
-                return handler.handle(ucfObject, result);
+        /** Set by the producer before {@link #END} is put into the queue. */
+        private volatile SearchResult connIdSearchResult;
+        private volatile Throwable connIdException;
+
+        ReadAheadSearch(int readAhead, @NotNull ConnIdOperation operation, OperationResult result) {
+            this.queue = new ArrayBlockingQueue<>(readAhead);
+            this.operation = operation;
+            this.result = result;
+        }
 
-            } catch (SchemaException e) {
-                throw new IntermediateSchemaException(e);
+        SearchResult execute(OperationOptions connIdOptions) throws Throwable {
+            ConnectorFacade facade = connectorInstance.getConnIdConnectorFacadeRequired();
+            Future<?> producer;
+            try {
+                producer = connectorInstance.getSearchReadAheadExecutor().submit(() -> produce(facade, connIdOptions));
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("No thread available for read-ahead search on {}, searching without read-ahead",
+                        connectorInstance);
+                return facade.search(icfObjectClass, connIdFilter, new SearchResultsHandler(operation, result), connIdOptions);
+            }
+            try {
+                consume();
             } finally {
-                recordIcfOperationResume(operation);
+                stopped = true;
+                queue.clear(); // to unblock the producer, if it's waiting for a free space
+                waitForProducer(producer);
+            }
+            if (connIdException != null) {
+                throw connIdException;
             }
+            return connIdSearchResult;
         }
 
-        @Override
-        public String toString() {
-            return "(midPoint searching result handler)";
+        private void produce(ConnectorFacade facade, OperationOptions connIdOptions) {
+            try {
+                connIdSearchResult = facade.search(icfObjectClass, connIdFilter, this::enqueue, connIdOptions);
+            } catch (Throwable t) {
+                connIdException = t;
+            } finally {
+                enqueue(END);
+            }
+        }
+
+        /** Returns `false` if the consumer is no longer interested in the objects. */
+        private boolean enqueue(Object object) {
+            try {
+                while (!stopped) {
+                    if (queue.offer(object, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void consume() {
+            try {
+                for (;;) {
+                    Object object = queue.take();
+                    if (object == END || !handleConnectorObject((ConnectorObject) object, operation, result)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                LOGGER.debug("Interrupted while waiting for objects from {}, stopping the search", connectorInstance);
+                Thread.currentThread().interrupt();
+                throw new SystemException("Search on " + connectorInstance + " was interrupted", e);
+            }
+        }
+
+        private void waitForProducer(Future<?> producer) {
+            try {
+                producer.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // Should not occur, as all exceptions are caught in the producer.
+                connIdException = e.getCause();
+            }
         }
     }
 }
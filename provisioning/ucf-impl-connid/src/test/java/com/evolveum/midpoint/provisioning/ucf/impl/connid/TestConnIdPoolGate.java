@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.provisioning.ucf.impl.connid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.identityconnectors.framework.api.ConnectorFacade;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.schema.statistics.ConnectorOperationalStatus;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Tests the limiting and adaptive sizing in {@link ConnIdPoolGate}, using a fake connector facade
+ * whose `test` operation blocks until released.
+ */
+public class TestConnIdPoolGate extends AbstractUnitTest {
+
+    private static final long TIMEOUT = 10_000;
+
+    /** Current time for the gate, in millis; moved forward explicitly by the tests. */
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    /** Number of `test` operations that reached the facade. */
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    /** Number of `test` operations currently running in the facade. */
+    private final AtomicInteger running = new AtomicInteger();
+
+    private Semaphore release;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void init() {
+        invocations.set(0);
+        running.set(0);
+        release = new Semaphore(0);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        release.release(1000);
+        executor.shutdownNow();
+    }
+
+    /** Operations over the limit wait for a permit; they proceed as soon as a running one finishes. */
+    @Test
+    public void test100OperationsOverLimitWait() throws Exception {
+        given("a gate with the limit of 2");
+        ConnIdPoolGate gate = createGate(2, 2, 0);
+        ConnectorFacade facade = gate.wrap(createFacade());
+
+        when("three operations are started");
+        List<Future<?>> futures = startOperations(facade, 3);
+
+        then("two are running and one is waiting");
+        waitFor(() -> running.get() == 2 && status(gate).getPoolStatusNumWaiting() == 1);
+        assertThat(invocations.get()).isEqualTo(2);
+        assertThat(status(gate).getPoolStatusNumInUse()).isEqualTo(2);
+
+        when("one operation finishes");
+        release.release();
+
+        then("the waiting one proceeds");
+        waitFor(() -> invocations.get() == 3);
+        assertThat(running.get()).isEqualTo(2);
+        assertThat(status(gate).getPoolStatusNumWaiting()).isEqualTo(0);
+
+        when("all operations finish");
+        release.release(2);
+        getAll(futures);
+
+        then("the statistics are updated");
+        ConnectorOperationalStatus status = status(gate);
+        assertThat(status.getPoolStatusNumInUse()).isEqualTo(0);
+        assertThat(status.getPoolStatusBorrowCount()).isEqualTo(3);
+        assertThat(status.getPoolStatusBorrowWaitCount()).isEqualTo(1);
+        assertThat(status.getPoolStatusLimit()).isEqualTo(2);
+    }
+
+    /** An operation that gets no permit within `maxWait` fails without reaching the connector. */
+    @Test
+    public void test110TimeoutFailsFast() throws Exception {
+        given("a gate with the limit of 1 and short maxWait");
+        ConnIdPoolGate gate = createGate(1, 1, 100);
+        ConnectorFacade facade = gate.wrap(createFacade());
+
+        and("an operation holding the only permit");
+        List<Future<?>> futures = startOperations(facade, 1);
+        waitFor(() -> running.get() == 1);
+
+        expect("another operation fails with the pool exhausted error");
+        assertThatThrownBy(facade::test)
+                .isInstanceOf(ConnectorException.class)
+                .hasMessageContaining("exhausted");
+
+        and("it did not reach the connector");
+        assertThat(invocations.get()).isEqualTo(1);
+        assertThat(status(gate).getPoolStatusNumInUse()).isEqualTo(1);
+        assertThat(status(gate).getPoolStatusNumWaiting()).isEqualTo(0);
+        assertThat(status(gate).getPoolStatusBorrowWaitCount()).isEqualTo(1);
+
+        when("the first operation finishes");
+        release.release();
+        getAll(futures);
+
+        then("the permit is available again");
+        release.release();
+        facade.test();
+        assertThat(invocations.get()).isEqualTo(2);
+        assertThat(status(gate).getPoolStatusNumInUse()).isEqualTo(0);
+    }
+
+    /** Operations that do not borrow a connector are not limited. */
+    @Test
+    public void test120NonBorrowingOperationsAreNotLimited() throws Exception {
+        given("a gate with all permits taken");
+        ConnIdPoolGate gate = createGate(1, 1, 100);
+        ConnectorFacade facade = gate.wrap(createFacade());
+        List<Future<?>> futures = startOperations(facade, 1);
+        waitFor(() -> running.get() == 1);
+
+        expect("a non-borrowing operation goes through");
+        facade.getSupportedOperations();
+        assertThat(status(gate).getPoolStatusBorrowCount()).isEqualTo(1);
+
+        release.release();
+        getAll(futures);
+    }
+
+    /** The limit grows (at most once per grow interval) while there are waiting operations, up to the upper bound. */
+    @Test
+    public void test200AdaptiveGrowth() throws Exception {
+        given("an adaptive gate with limits 1..2");
+        ConnIdPoolGate gate = createGate(1, 2, 0);
+        ConnectorFacade facade = gate.wrap(createFacade());
+
+        when("an operation is running and another one comes in the same second");
+        List<Future<?>> futures = new ArrayList<>(startOperations(facade, 1));
+        waitFor(() -> running.get() == 1);
+        futures.addAll(startOperations(facade, 1));
+
+        then("the other one waits, the limit is not changed yet");
+        waitFor(() -> status(gate).getPoolStatusNumWaiting() == 1);
+        assertThat(status(gate).getPoolStatusLimit()).isEqualTo(1);
+        assertThat(status(gate).getPoolConfigAdaptiveMaxSize()).isEqualTo(2);
+
+        when("time passes and yet another operation comes");
+        clock.addAndGet(1500);
+        futures.addAll(startOperations(facade, 1));
+
+        then("the limit is increased, and one of the waiting operations proceeds");
+        waitFor(() -> running.get() == 2 && status(gate).getPoolStatusNumWaiting() == 1);
+        assertThat(status(gate).getPoolStatusLimit()).isEqualTo(2);
+
+        when("more time passes and another operation comes");
+        clock.addAndGet(1500);
+        futures.addAll(startOperations(facade, 1));
+
+        then("the limit does not grow over the upper bound");
+        waitFor(() -> status(gate).getPoolStatusNumWaiting() == 2);
+        assertThat(running.get()).isEqualTo(2);
+        assertThat(status(gate).getPoolStatusLimit()).isEqualTo(2);
+
+        release.release(4);
+        getAll(futures);
+        assertThat(invocations.get()).isEqualTo(4);
+    }
+
+    /** After the shrink interval without waiting the limit goes back towards the lower bound, and is enforced. */
+    @Test
+    public void test210AdaptiveShrinking() throws Exception {
+        given("an adaptive gate grown to the limit of 2");
+        ConnIdPoolGate gate = createGate(1, 2, 100);
+        ConnectorFacade facade = gate.wrap(createFacade());
+        List<Future<?>> futures = new ArrayList<>(startOperations(facade, 1));
+        waitFor(() -> running.get() == 1);
+        clock.addAndGet(1500);
+        futures.addAll(startOperations(facade, 1));
+        waitFor(() -> running.get() == 2);
+        assertThat(status(gate).getPoolStatusLimit()).isEqualTo(2);
+        release.release(2);
+        getAll(futures);
+
+        when("an operation finishes shortly after");
+        clock.addAndGet(1000);
+        release.release();
+        facade.test();
+
+        then("the limit is kept");
+        assertThat(status(gate).getPoolStatusLimit()).isEqualTo(2);
+
+        when("an operation finishes after a minute without waiting");
+        clock.addAndGet(61_000);
+        release.release();
+        facade.test();
+
+        then("the limit is decreased");
+        assertThat(status(gate).getPoolStatusLimit()).isEqualTo(1);
+
+        and("it is enforced: the second concurrent operation fails");
+        List<Future<?>> moreFutures = startOperations(facade, 1);
+        waitFor(() -> running.get() == 1);
+        assertThatThrownBy(facade::test).isInstanceOf(ConnectorException.class);
+
+        release.release();
+        getAll(moreFutures);
+        assertThat(status(gate).getPoolStatusNumInUse()).isEqualTo(0);
+    }
+
+    /** Many concurrent operations never exceed the limit, and all of them get through. */
+    @Test
+    public void test300ConcurrentOperationsRespectLimit() throws Exception {
+        given("a gate with the limit of 3 and a facade that records the maximal concurrency");
+        int limit = 3;
+        int operations = 50;
+        AtomicInteger maxRunning = new AtomicInteger();
+        ConnIdPoolGate gate = createGate(limit, limit, 0);
+        ConnectorFacade facade = gate.wrap(createFacade(maxRunning));
+
+        when("many operations are run concurrently");
+        List<Future<?>> futures = startOperations(facade, operations);
+        release.release(operations);
+        getAll(futures);
+
+        then("all of them went through, with no more than the limit running at once");
+        assertThat(invocations.get()).isEqualTo(operations);
+        assertThat(maxRunning.get()).isBetween(1, limit);
+        ConnectorOperationalStatus status = status(gate);
+        assertThat(status.getPoolStatusBorrowCount()).isEqualTo(operations);
+        assertThat(status.getPoolStatusNumInUse()).isEqualTo(0);
+        assertThat(status.getPoolStatusNumWaiting()).isEqualTo(0);
+    }
+
+    private ConnIdPoolGate createGate(int minLimit, int maxLimit, long maxWait) {
+        return new ConnIdPoolGate("test", true, minLimit, maxLimit, maxWait, clock::get);
+    }
+
+    private ConnectorFacade createFacade() {
+        return createFacade(new AtomicInteger());
+    }
+
+    /** The `test` operation blocks until {@link #release} is released; other operations return immediately. */
+    private ConnectorFacade createFacade(AtomicInteger maxRunning) {
+        return (ConnectorFacade) Proxy.newProxyInstance(
+                ConnectorFacade.class.getClassLoader(),
+                new Class<?>[] { ConnectorFacade.class },
+                (proxy, method, args) -> {
+                    if ("test".equals(method.getName())) {
+                        invocations.incrementAndGet();
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            if (!release.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS)) {
+                                throw new AssertionError("Operation was not released in time");
+                            }
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+    }
+
+    private List<Future<?>> startOperations(ConnectorFacade facade, int count) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.submit(facade::test));
+        }
+        return futures;
+    }
+
+    private void getAll(List<Future<?>> futures) throws Exception {
+        for (Future<?> future : futures) {
+            future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private ConnectorOperationalStatus status(ConnIdPoolGate gate) {
+        ConnectorOperationalStatus status = new ConnectorOperationalStatus();
+        gate.fillStatus(status);
+        return status;
+    }
+
+    private void waitFor(Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.call()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition was not met in time");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -35,6 +35,7 @@ import org.w3c.dom.Document;
 import com.evolveum.icf.dummy.connector.DummyConnector;
 import com.evolveum.icf.dummy.resource.*;
 import com.evolveum.midpoint.prism.*;
+import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.schema.PrismSchema;
 import com.evolveum.midpoint.prism.schema.SchemaRegistry;
@@ -337,6 +338,88 @@ public class TestUcfDummy extends AbstractUcfDummyTest {
         assertEquals("Unexpected number of search results", 1, searchResults.size());
     }
 
+    /** Search with the connector running in a separate thread, reading ahead. */
+    @Test
+    public void test055SearchWithReadAhead() throws Exception {
+        given("a few more accounts and the connector configured to read ahead");
+        List<String> extraNames = List.of("ra1", "ra2", "ra3", "ra4");
+        for (String name : extraNames) {
+            dummyResource.addAccount(new DummyAccount(name));
+        }
+
+        ConnectorConfigurationType originalConfiguration = resourceBean.getConnectorConfiguration();
+        ConnectorConfigurationType readAheadConfiguration = originalConfiguration.clone();
+        PrismProperty<Integer> readAheadProperty = PrismContext.get().itemFactory().createProperty(
+                new ItemName(NS_ICF_CONFIGURATION, "searchReadAhead"));
+        readAheadProperty.setRealValue(2);
+        readAheadConfiguration.asPrismContainerValue().add(readAheadProperty);
+
+        OperationResult result = createOperationResult();
+        configure(readAheadConfiguration, ResourceTypeUtil.getSchemaGenerationConstraints(resourceBean), result);
+
+        var accountClassDefinition = resourceSchema.findObjectClassDefinitionRequired(RI_ACCOUNT_OBJECT_CLASS);
+        var ctx = createExecutionContext();
+
+        try {
+            when("all objects are requested");
+            List<PrismObject<ShadowType>> allResults = new ArrayList<>();
+            cc.search(
+                    accountClassDefinition, null,
+                    (ucfObject, lResult) -> {
+                        checkUcfObject(ucfObject, accountClassDefinition);
+                        allResults.add(ucfObject.getPrismObject());
+                        return true;
+                    },
+                    null, null, null, null,
+                    ctx, result);
+
+            then("all objects are returned");
+            assertEquals("Unexpected number of search results", 1 + extraNames.size(), allResults.size());
+
+            when("the handler stops after two objects");
+            List<PrismObject<ShadowType>> someResults = new ArrayList<>();
+            cc.search(
+                    accountClassDefinition, null,
+                    (ucfObject, lResult) -> {
+                        someResults.add(ucfObject.getPrismObject());
+                        return someResults.size() < 2;
+                    },
+                    null, null, null, null,
+                    ctx, result);
+
+            then("the search is stopped");
+            assertEquals("Unexpected number of search results", 2, someResults.size());
+
+            when("the thread is interrupted while processing the first object");
+            List<PrismObject<ShadowType>> interruptedResults = new ArrayList<>();
+            OperationResult interruptedResult = result.createSubresult("interrupted");
+            try {
+                cc.search(
+                        accountClassDefinition, null,
+                        (ucfObject, lResult) -> {
+                            interruptedResults.add(ucfObject.getPrismObject());
+                            Thread.currentThread().interrupt();
+                            return true;
+                        },
+                        null, null, null, null,
+                        ctx, interruptedResult);
+                fail("Interrupted search unexpectedly succeeded");
+            } catch (SystemException e) {
+                then("the search fails (it is not reported as complete) and the thread stays interrupted");
+                displayValue("expected exception", e.getMessage());
+                assertTrue("Thread is not interrupted", Thread.interrupted());
+                assertEquals("Unexpected number of search results", 1, interruptedResults.size());
+            } finally {
+                Thread.interrupted();
+            }
+        } finally {
+            for (String name : extraNames) {
+                dummyResource.deleteAccountByName(name);
+            }
+            configure(originalConfiguration, ResourceTypeUtil.getSchemaGenerationConstraints(resourceBean), result);
+        }
+    }
+
     private void checkUcfObject(UcfResourceObject ucfResourceObject, ResourceObjectClassDefinition objectClassDefinition) {
         var object = ucfResourceObject.getPrismObject();
         ShadowType bean = object.asObjectable();
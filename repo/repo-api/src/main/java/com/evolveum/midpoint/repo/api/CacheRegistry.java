@@ -7,6 +7,10 @@
 
 package com.evolveum.midpoint.repo.api;
 
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+
 import com.evolveum.midpoint.xml.ns._public.common.common_3.CachesStateInformationType;
 
 /**
@@ -20,5 +24,11 @@ public interface CacheRegistry {
 
     CachesStateInformationType getStateInformation();
 
+    /**
+     * Estimated memory taken by cached objects, per object type (simple class name), summed over all caches
+     * that are able to provide such information (currently the global repository caches).
+     */
+    @NotNull Map<String, Long> getEstimatedBytesPerType();
+
     void dumpContent();
 }
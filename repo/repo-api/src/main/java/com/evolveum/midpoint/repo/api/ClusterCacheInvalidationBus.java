@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.api;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.util.annotation.Experimental;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Alternative transport for cluster-wide cache invalidation events.
+ *
+ * Instead of calling each node separately (via REST) for each event, the events are coalesced
+ * and sent in batches to all the nodes via a shared channel (e.g. the repository database).
+ * Receiving nodes dispatch them to their local caches via {@link CacheDispatcher} with `clusterwide` set to false.
+ *
+ * Implementations must make sure that a receiving node that could have missed some events
+ * invalidates (at least) the affected object types.
+ */
+@Experimental
+public interface ClusterCacheInvalidationBus {
+
+    /**
+     * Returns true if the bus is configured and running. If not, the events have to be distributed
+     * in the traditional way.
+     */
+    boolean isActive();
+
+    /**
+     * Queues the invalidation event for sending to other nodes. Returns immediately.
+     *
+     * @param type Type of object(s) to be invalidated. Null means 'all types' (implies oid is null as well).
+     * @param oid Object(s) to be invalidated. Null means 'all objects of given type(s)'.
+     */
+    <O extends ObjectType> void publish(@Nullable Class<O> type, @Nullable String oid);
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.api;
+
+import java.util.Collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.util.annotation.Experimental;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * A modification of a single object, to be executed as part of {@link RepositoryService#modifyObjects(Collection, com.evolveum.midpoint.schema.result.OperationResult)}.
+ */
+@Experimental
+public record ObjectModification<T extends ObjectType>(
+        @NotNull Class<T> type,
+        @NotNull String oid,
+        @NotNull Collection<? extends ItemDelta<?, ?>> modifications) {
+}
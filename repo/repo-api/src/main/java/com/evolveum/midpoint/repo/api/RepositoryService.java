@@ -6,7 +6,9 @@
  */
 package com.evolveum.midpoint.repo.api;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import com.evolveum.midpoint.prism.*;
 
@@ -121,10 +123,12 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
 
     String OP_ADD_OBJECT = "addObject";
     String OP_ADD_OBJECT_OVERWRITE = "addObjectOverwrite"; // addObject with overwrite option
+    String OP_ADD_OBJECTS = "addObjects";
     String OP_DELETE_OBJECT = "deleteObject";
     String OP_COUNT_OBJECTS = "countObjects";
     String OP_MODIFY_OBJECT = "modifyObject";
     String OP_MODIFY_OBJECT_DYNAMICALLY = "modifyObjectDynamically";
+    String OP_MODIFY_OBJECTS = "modifyObjects";
     String OP_GET_VERSION = "getVersion";
     String OP_IS_DESCENDANT = "isDescendant";
     String OP_IS_ANCESTOR = "isAncestor";
@@ -136,6 +140,7 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
     String OP_SEARCH_OBJECTS = "searchObjects";
     String OP_SEARCH_OBJECTS_ITERATIVE = "searchObjectsIterative";
     String OP_SEARCH_OBJECTS_ITERATIVE_PAGE = "searchObjectsIterativePage";
+    String OP_SEARCH_OBJECTS_ITERATIVE_STREAM = "searchObjectsIterativeStream";
     String OP_SEARCH_CONTAINERS = "searchContainers";
 
     String OP_SEARCH_CONTAINERS_ITERATIVE = "searchContainersIterative";
@@ -261,6 +266,35 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
             @NotNull OperationResult parentResult)
             throws ObjectAlreadyExistsException, SchemaException;
 
+    /**
+     * Adds a number of new objects at once, e.g. for initial import of data.
+     * This saves the round-trips to the database, and the implementation can insert the rows of all the objects
+     * together (e.g. using multi-row inserts).
+     *
+     * The implementation should add all the objects in a single transaction: either all of them are added,
+     * or none is (and the exception is thrown). The default implementation simply calls
+     * {@link #addObject(PrismObject, RepoAddOptions, OperationResult)} for each object, so it is NOT atomic.
+     * Callers that need to know the outcome for individual objects should fall back to individual adds
+     * when this method fails.
+     *
+     * @param objects objects to create; OIDs are assigned to the objects without them
+     * @return OIDs of the created objects, in the order of the provided objects
+     * @throws ObjectAlreadyExistsException object with specified identifiers already exists, nothing is added
+     * @throws SchemaException error dealing with storage schema, e.g. schema violation
+     */
+    @Experimental
+    default @NotNull List<String> addObjects(
+            @NotNull List<PrismObject<? extends ObjectType>> objects,
+            RepoAddOptions options,
+            @NotNull OperationResult parentResult)
+            throws ObjectAlreadyExistsException, SchemaException {
+        List<String> oids = new ArrayList<>(objects.size());
+        for (PrismObject<? extends ObjectType> object : objects) {
+            oids.add(addObject(object, options, parentResult));
+        }
+        return oids;
+    }
+
     /**
      * <p>Modifies object using relative change description.</p>
      * Must fail if user with provided OID does not exist.
@@ -341,6 +375,28 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
             throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
         throw new UnsupportedOperationException();
     }
+
+    /**
+     * Modifies a number of objects at once, saving the round-trips to the database.
+     *
+     * The implementation should execute all the modifications in a single transaction: either all of them are applied,
+     * or none is (and the exception is thrown). The default implementation simply calls {@link #modifyObject(Class, String,
+     * Collection, OperationResult)} for each modification, so it is NOT atomic. Callers that need to know the outcome
+     * for individual objects should fall back to individual modifications when this method fails.
+     *
+     * @param modifications Modifications to be applied; an object should not be present more than once.
+     * @param parentResult Operation result into which we put our result
+     */
+    @Experimental
+    default void modifyObjects(
+            @NotNull Collection<ObjectModification<?>> modifications,
+            @NotNull OperationResult parentResult)
+            throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+        for (ObjectModification<?> modification : modifications) {
+            modifyObject(modification.type(), modification.oid(), modification.modifications(), parentResult);
+        }
+    }
+
     default void createPartitionsForExistingData(OperationResult parentResult) throws SchemaException {
         // NOOP
     }
@@ -489,6 +545,9 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
      * New repository uses single reliable iteration method similar to strictly sequential paging
      * and supports custom ordering (currently only one).
      * New repository ignores strictlySequential parameter and related get options completely.
+     * The only exception is SINGLE_TRANSACTION iteration method (or `iterativeSearchStreaming` repository configuration
+     * if no iteration method is specified): the objects are then streamed using a server-side cursor.
+     * If the processing takes too long, the iteration continues by pages (see `iterativeSearchStreamingMaxDuration`).
      *
      * In old repository there are three iteration methods (see IterationMethodType):
      *
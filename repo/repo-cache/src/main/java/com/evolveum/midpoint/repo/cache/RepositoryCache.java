@@ -181,6 +181,14 @@ public class RepositoryCache implements RepositoryService, Cache {
         return modificationOpHandler.addObject(object, options, parentResult);
     }
 
+    @Override
+    public @NotNull List<String> addObjects(
+            @NotNull List<PrismObject<? extends ObjectType>> objects, RepoAddOptions options,
+            @NotNull OperationResult parentResult)
+            throws ObjectAlreadyExistsException, SchemaException {
+        return modificationOpHandler.addObjects(objects, options, parentResult);
+    }
+
     @Override
     @NotNull
     public <T extends ObjectType> ModifyObjectResult<T> modifyObject(
@@ -215,6 +223,13 @@ public class RepositoryCache implements RepositoryService, Cache {
         return modificationOpHandler.modifyObject(type, oid, modifications, precondition, options, parentResult);
     }
 
+    @Override
+    public void modifyObjects(
+            @NotNull Collection<ObjectModification<?>> modifications, @NotNull OperationResult parentResult)
+            throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+        modificationOpHandler.modifyObjects(modifications, parentResult);
+    }
+
     @Override
     public @NotNull <T extends ObjectType> ModifyObjectResult<T> modifyObjectDynamically(
             @NotNull Class<T> type,
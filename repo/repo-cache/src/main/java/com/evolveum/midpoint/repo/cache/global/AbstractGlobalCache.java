@@ -7,11 +7,15 @@
 
 package com.evolveum.midpoint.repo.cache.global;
 
+import java.util.function.LongSupplier;
+
 import org.cache2k.expiry.Expiry;
+import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.schema.cache.CacheConfigurationManager;
+import com.evolveum.midpoint.schema.cache.CacheMemoryLimits;
 import com.evolveum.midpoint.schema.cache.CacheType;
 import com.evolveum.midpoint.util.caching.CacheConfiguration;
 import com.evolveum.midpoint.util.caching.CacheConfiguration.CacheObjectTypeConfiguration;
@@ -47,6 +51,25 @@ public abstract class AbstractGlobalCache {
         }
     }
 
+    @NotNull CacheMemoryLimits getMemoryLimits() {
+        return configurationManager.getMemoryLimits(getCacheType());
+    }
+
+    /** True if memory limits are set for this cache, so the sizes of the entries are to be estimated and accounted for. */
+    boolean areMemoryLimitsActive() {
+        return getMemoryLimits().isActive();
+    }
+
+    /**
+     * Returns true if an entry of given type and estimated size would exceed the memory limit for the type.
+     * Such entries are not admitted to the cache. The size is estimated only if there is a limit for the type.
+     */
+    boolean exceedsTypeMemoryLimit(
+            @NotNull Class<?> type, @NotNull LongSupplier estimatedSize, @NotNull CacheMemoryAccounting<?, ?> accounting) {
+        Long maxBytes = getMemoryLimits().getMaxBytes(type);
+        return maxBytes != null && accounting.getBytes(type) + estimatedSize.getAsLong() > maxBytes;
+    }
+
     long getExpiryTime(Class<?> type) {
         CacheObjectTypeConfiguration configuration = getConfiguration(type);
         if (configuration == null) {
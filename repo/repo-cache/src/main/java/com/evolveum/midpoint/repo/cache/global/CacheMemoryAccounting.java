@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.global;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToLongFunction;
+
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.event.CacheEntryCreatedListener;
+import org.cache2k.event.CacheEntryEvictedListener;
+import org.cache2k.event.CacheEntryExpiredListener;
+import org.cache2k.event.CacheEntryRemovedListener;
+import org.cache2k.event.CacheEntryUpdatedListener;
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Keeps the estimated memory taken by the entries of individual object types in a global cache.
+ *
+ * The counters are updated by cache2k entry listeners. As some bulk operations (like `clear`) do not notify
+ * the listeners, the counters are reset on clear, and re-synchronized whenever the whole content of the cache is traversed
+ * (when the state information is collected).
+ *
+ * Nothing is accounted for (and no sizes are estimated) while there are no memory limits for the cache.
+ * If the limits are switched on later, the counters start from zero and get corrected at the next re-synchronization.
+ */
+class CacheMemoryAccounting<K, V> {
+
+    @NotNull private final BiFunction<K, V, Class<?>> typeFunction;
+    @NotNull private final ToLongFunction<V> sizeFunction;
+    @NotNull private final BooleanSupplier activeSupplier;
+
+    private final Map<Class<?>, AtomicLong> bytesPerType = new ConcurrentHashMap<>();
+
+    CacheMemoryAccounting(
+            @NotNull BiFunction<K, V, Class<?>> typeFunction,
+            @NotNull ToLongFunction<V> sizeFunction,
+            @NotNull BooleanSupplier activeSupplier) {
+        this.typeFunction = typeFunction;
+        this.sizeFunction = sizeFunction;
+        this.activeSupplier = activeSupplier;
+    }
+
+    /** Registers the listeners that keep the counters up to date. */
+    void registerListeners(Cache2kBuilder<K, V> builder) {
+        builder.addListener((CacheEntryCreatedListener<K, V>) (cache, entry) ->
+                add(entry.getKey(), entry.getValue(), 1));
+        builder.addListener((CacheEntryUpdatedListener<K, V>) (cache, currentEntry, newEntry) -> {
+            add(currentEntry.getKey(), currentEntry.getValue(), -1);
+            add(newEntry.getKey(), newEntry.getValue(), 1);
+        });
+        builder.addListener((CacheEntryRemovedListener<K, V>) (cache, entry) ->
+                add(entry.getKey(), entry.getValue(), -1));
+        builder.addListener((CacheEntryExpiredListener<K, V>) (cache, entry) ->
+                add(entry.getKey(), entry.getValue(), -1));
+        builder.addListener((CacheEntryEvictedListener<K, V>) (cache, entry) ->
+                add(entry.getKey(), entry.getValue(), -1));
+    }
+
+    private void add(K key, V value, int sign) {
+        if (value != null && activeSupplier.getAsBoolean()) {
+            bytesPerType.computeIfAbsent(getType(key, value), k -> new AtomicLong())
+                    .addAndGet(sign * sizeFunction.applyAsLong(value));
+        }
+    }
+
+    @NotNull Class<?> getType(K key, V value) {
+        return Objects.requireNonNullElse(typeFunction.apply(key, value), ObjectType.class);
+    }
+
+    long getBytes(@NotNull Class<?> type) {
+        AtomicLong bytes = bytesPerType.get(type);
+        return bytes != null ? bytes.get() : 0;
+    }
+
+    /** Replaces the counters by the values obtained by traversing the whole cache. */
+    void resynchronize(@NotNull Map<Class<?>, Long> actualBytesPerType) {
+        bytesPerType.clear();
+        actualBytesPerType.forEach((type, bytes) -> bytesPerType.put(type, new AtomicLong(bytes)));
+    }
+
+    void clear() {
+        bytesPerType.clear();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.global;
+
+import java.util.Collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.Item;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.prism.Visitable;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+
+/**
+ * Rough estimation of the memory taken by cached prism objects.
+ *
+ * It is not meant to be precise: it counts items and values, adding the length of textual and binary values.
+ * The goal is to tell a small role from a user with thousands of assignments or a shadow with large attributes,
+ * not to measure the heap.
+ */
+class CachedObjectSizeEstimator {
+
+    private static final long OBJECT_OVERHEAD = 500;
+    private static final long QUERY_OVERHEAD = 1000;
+    private static final long ITEM_OVERHEAD = 150;
+    private static final long VALUE_OVERHEAD = 100;
+    private static final long OTHER_REAL_VALUE_SIZE = 32;
+
+    static long estimate(@NotNull PrismObject<?> object) {
+        long[] size = { OBJECT_OVERHEAD };
+        object.accept(visitable -> size[0] += estimate(visitable));
+        return size[0];
+    }
+
+    static long estimate(@NotNull Collection<? extends PrismObject<?>> queryResult) {
+        long size = QUERY_OVERHEAD;
+        for (PrismObject<?> object : queryResult) {
+            size += estimate(object);
+        }
+        return size;
+    }
+
+    private static long estimate(Visitable visitable) {
+        if (visitable instanceof Item<?, ?>) {
+            return ITEM_OVERHEAD;
+        } else if (visitable instanceof PrismPropertyValue<?> propertyValue) {
+            return VALUE_OVERHEAD + estimateRealValue(propertyValue.getRealValue());
+        } else {
+            return VALUE_OVERHEAD; // container and reference values
+        }
+    }
+
+    private static long estimateRealValue(Object realValue) {
+        if (realValue instanceof String string) {
+            return 2L * string.length();
+        } else if (realValue instanceof PolyString polyString) {
+            // orig and norm, plus possible translations and lang map that we ignore here
+            return 4L * (polyString.getOrig() != null ? polyString.getOrig().length() : 0);
+        } else if (realValue instanceof byte[] bytes) {
+            return bytes.length;
+        } else {
+            return OTHER_REAL_VALUE_SIZE;
+        }
+    }
+
+    /** Cache2k weights are ints. */
+    static int toWeight(long size) {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+}
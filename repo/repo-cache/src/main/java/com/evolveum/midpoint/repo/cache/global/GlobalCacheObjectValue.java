@@ -8,6 +8,7 @@
 package com.evolveum.midpoint.repo.cache.global;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.VisibleForTesting;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
@@ -21,6 +22,12 @@ public class GlobalCacheObjectValue<T extends ObjectType> extends AbstractGlobal
 
     private volatile long checkVersionTime;
 
+    /**
+     * Estimated memory taken by the object, see {@link CachedObjectSizeEstimator}. Computed on the first use,
+     * i.e. only if memory limits are active or the cache state information is requested. Negative if not computed yet.
+     */
+    private volatile long estimatedSize = -1;
+
     public GlobalCacheObjectValue(@NotNull PrismObject<T> object, long checkVersionTime) {
         this.object = object;
         this.checkVersionTime = checkVersionTime;
@@ -43,6 +50,19 @@ public class GlobalCacheObjectValue<T extends ObjectType> extends AbstractGlobal
         return object;      // cloning is done in RepositoryCache
     }
 
+    long getEstimatedSize() {
+        if (estimatedSize < 0) {
+            // The object is immutable, so concurrent computations give the same value.
+            estimatedSize = CachedObjectSizeEstimator.estimate(object);
+        }
+        return estimatedSize;
+    }
+
+    @VisibleForTesting
+    boolean isEstimatedSizeComputed() {
+        return estimatedSize >= 0;
+    }
+
     public void setCheckVersionTime(long checkVersionTime) {
         this.checkVersionTime = checkVersionTime;
     }
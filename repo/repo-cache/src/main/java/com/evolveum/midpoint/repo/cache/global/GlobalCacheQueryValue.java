@@ -7,8 +7,11 @@
 
 package com.evolveum.midpoint.repo.cache.global;
 
+import java.util.Collection;
+
 import org.jetbrains.annotations.NotNull;
 
+import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
@@ -16,6 +19,12 @@ public class GlobalCacheQueryValue<T extends ObjectType> extends AbstractGlobalC
 
     @NotNull private final SearchResultList<T> result;
 
+    /**
+     * Estimated memory taken by the result, see {@link CachedObjectSizeEstimator}. Computed on the first use,
+     * like in {@link GlobalCacheObjectValue}. Negative if not computed yet.
+     */
+    private volatile long estimatedSize = -1;
+
     GlobalCacheQueryValue(@NotNull SearchResultList<T> result) {
         this.result = result;
     }
@@ -24,6 +33,15 @@ public class GlobalCacheQueryValue<T extends ObjectType> extends AbstractGlobalC
         return result;
     }
 
+    long getEstimatedSize() {
+        if (estimatedSize < 0) {
+            // The list actually contains prism objects, see GlobalQueryCache#put.
+            //noinspection unchecked
+            estimatedSize = CachedObjectSizeEstimator.estimate((Collection<? extends PrismObject<?>>) (Collection<?>) result);
+        }
+        return estimatedSize;
+    }
+
     @Override
     public String toString() {
         return "GlobalCacheQueryValue{" +
@@ -39,6 +39,10 @@ public class GlobalObjectCache extends AbstractGlobalCache {
 
     private org.cache2k.Cache<String, GlobalCacheObjectValue> cache;
 
+    private final CacheMemoryAccounting<String, GlobalCacheObjectValue> memoryAccounting =
+            new CacheMemoryAccounting<>(
+                    (oid, value) -> value.getObjectType(), GlobalCacheObjectValue::getEstimatedSize, this::areMemoryLimitsActive);
+
     public void initialize() {
         if (cache != null) {
             LOGGER.warn("Global object cache was already initialized -- ignoring this request.");
@@ -49,13 +53,25 @@ public class GlobalObjectCache extends AbstractGlobalCache {
             LOGGER.warn("Capacity for " + getCacheType() + " is set to 0; this cache will be disabled (until system restart)");
             cache = null;
         } else {
-            cache = new Cache2kBuilder<String, GlobalCacheObjectValue>() {}
+            Cache2kBuilder<String, GlobalCacheObjectValue> builder = new Cache2kBuilder<String, GlobalCacheObjectValue>() {}
                     .name(CACHE_NAME)
-                    .entryCapacity(capacity)
                     .expiryPolicy(getExpirePolicy())
-                    .storeByReference(true) // this is default in the current version of cache2k; we need this because we update TTL value for cached objects
-                    .build();
-            LOGGER.info("Created global repository object cache with a capacity of {} objects", capacity);
+                    .storeByReference(true); // this is default in the current version of cache2k; we need this because we update TTL value for cached objects
+            memoryAccounting.registerListeners(builder);
+            Long maxBytes = getMemoryLimits().getMaxBytes();
+            if (maxBytes != null) {
+                // entry capacity and maximum weight are mutually exclusive in cache2k
+                cache = builder
+                        .weigher((oid, value) -> CachedObjectSizeEstimator.toWeight(value.getEstimatedSize()))
+                        .maximumWeight(maxBytes)
+                        .build();
+                LOGGER.info("Created global repository object cache with a capacity of {} estimated bytes", maxBytes);
+            } else {
+                cache = builder
+                        .entryCapacity(capacity)
+                        .build();
+                LOGGER.info("Created global repository object cache with a capacity of {} objects", capacity);
+            }
         }
     }
 
@@ -69,6 +85,7 @@ public class GlobalObjectCache extends AbstractGlobalCache {
             cache.close();
             cache = null;
         }
+        memoryAccounting.clear();
     }
 
     public boolean isAvailable() {
@@ -107,6 +124,12 @@ public class GlobalObjectCache extends AbstractGlobalCache {
         if (cache != null) {
             PrismObject<T> prismObject = cacheObject.getObject();
             prismObject.checkImmutable();
+            Class<?> type = memoryAccounting.getType(cacheObject.getObjectOid(), cacheObject);
+            if (exceedsTypeMemoryLimit(type, cacheObject::getEstimatedSize, memoryAccounting)) {
+                LOGGER.trace("Not putting {} into cache, as the memory limit for {} would be exceeded", prismObject, type);
+                cache.remove(cacheObject.getObjectOid()); // the previous version of the object, if present
+                return;
+            }
             LOGGER.trace("Putting {} into cache (v{})", prismObject, prismObject.getVersion());
             cache.put(cacheObject.getObjectOid(), cacheObject);
         }
@@ -122,25 +145,31 @@ public class GlobalObjectCache extends AbstractGlobalCache {
         if (cache != null) {
             cache.clear();
         }
+        memoryAccounting.clear();
     }
 
     public Collection<SingleCacheStateInformationType> getStateInformation() {
         Map<Class<?>, Integer> counts = new HashMap<>();
+        Map<Class<?>, Long> bytes = new HashMap<>();
         AtomicInteger size = new AtomicInteger(0);
         if (cache != null) {
             cache.invokeAll(cache.keys(), e -> {
-                Class<?> objectType = e.getValue().getObjectType();
+                Class<?> objectType = memoryAccounting.getType(e.getKey(), e.getValue());
                 counts.compute(objectType, (type, count) -> count != null ? count+1 : 1);
+                bytes.merge(objectType, e.getValue().getEstimatedSize(), Long::sum);
                 size.incrementAndGet();
                 return null;
             });
+            memoryAccounting.resynchronize(bytes);
             SingleCacheStateInformationType info = new SingleCacheStateInformationType(prismContext)
                     .name(GlobalObjectCache.class.getName())
-                    .size(size.get());
+                    .size(size.get())
+                    .estimatedBytes(bytes.values().stream().mapToLong(Long::longValue).sum());
             counts.forEach((type, count) ->
                     info.beginComponent()
                         .name(type.getSimpleName())
-                        .size(count));
+                        .size(count)
+                        .estimatedBytes(bytes.get(type)));
             return Collections.singleton(info);
         } else {
             return Collections.emptySet();
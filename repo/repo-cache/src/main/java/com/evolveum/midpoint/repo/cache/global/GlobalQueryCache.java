@@ -45,6 +45,10 @@ public class GlobalQueryCache extends AbstractGlobalCache {
 
     private org.cache2k.Cache<QueryKey, GlobalCacheQueryValue> cache;
 
+    private final CacheMemoryAccounting<QueryKey, GlobalCacheQueryValue> memoryAccounting =
+            new CacheMemoryAccounting<>(
+                    (key, value) -> key.getType(), GlobalCacheQueryValue::getEstimatedSize, this::areMemoryLimitsActive);
+
     public void initialize() {
         if (cache != null) {
             LOGGER.warn("Global query cache was already initialized -- ignoring this request.");
@@ -55,12 +59,24 @@ public class GlobalQueryCache extends AbstractGlobalCache {
             LOGGER.warn("Capacity for " + getCacheType() + " is set to 0; this cache will be disabled (until system restart)");
             cache = null;
         } else {
-            cache = new Cache2kBuilder<QueryKey, GlobalCacheQueryValue>() {}
+            Cache2kBuilder<QueryKey, GlobalCacheQueryValue> builder = new Cache2kBuilder<QueryKey, GlobalCacheQueryValue>() {}
                     .name(CACHE_NAME)
-                    .entryCapacity(capacity)
-                    .expiryPolicy(getExpirePolicy())
-                    .build();
-            LOGGER.info("Created global repository query cache with a capacity of {} queries", capacity);
+                    .expiryPolicy(getExpirePolicy());
+            memoryAccounting.registerListeners(builder);
+            Long maxBytes = getMemoryLimits().getMaxBytes();
+            if (maxBytes != null) {
+                // entry capacity and maximum weight are mutually exclusive in cache2k
+                cache = builder
+                        .weigher((key, value) -> CachedObjectSizeEstimator.toWeight(value.getEstimatedSize()))
+                        .maximumWeight(maxBytes)
+                        .build();
+                LOGGER.info("Created global repository query cache with a capacity of {} estimated bytes", maxBytes);
+            } else {
+                cache = builder
+                        .entryCapacity(capacity)
+                        .build();
+                LOGGER.info("Created global repository query cache with a capacity of {} queries", capacity);
+            }
         }
     }
 
@@ -74,6 +90,7 @@ public class GlobalQueryCache extends AbstractGlobalCache {
             cache.close();
             cache = null;
         }
+        memoryAccounting.clear();
     }
 
     public boolean isAvailable() {
@@ -102,8 +119,15 @@ public class GlobalQueryCache extends AbstractGlobalCache {
             if (cacheObject.size() > QUERY_RESULT_SIZE_LIMIT) {
                 throw new IllegalStateException("Trying to cache result list greater than " + QUERY_RESULT_SIZE_LIMIT + ": " + cacheObject.size());
             }
-            //noinspection unchecked
-            cache.put(key, new GlobalCacheQueryValue(cacheObject));
+            //noinspection unchecked,rawtypes
+            GlobalCacheQueryValue value = new GlobalCacheQueryValue(cacheObject);
+            if (exceedsTypeMemoryLimit(key.getType(), value::getEstimatedSize, memoryAccounting)) {
+                LOGGER.trace("Not putting query result for {} into cache, as the memory limit for {} would be exceeded",
+                        key, key.getType());
+                cache.remove(key); // the previous result, if present
+                return;
+            }
+            cache.put(key, value);
         }
     }
 
@@ -127,10 +151,12 @@ public class GlobalQueryCache extends AbstractGlobalCache {
         if (cache != null) {
             cache.clear();
         }
+        memoryAccounting.clear();
     }
 
     public Collection<SingleCacheStateInformationType> getStateInformation() {
         Map<Class<?>, MutablePair<Integer, Integer>> counts = new HashMap<>();
+        Map<Class<?>, Long> bytes = new HashMap<>();
         AtomicInteger queries = new AtomicInteger(0);
         AtomicInteger objects = new AtomicInteger(0);
         if (cache != null) {
@@ -145,19 +171,23 @@ public class GlobalQueryCache extends AbstractGlobalCache {
                 }
                 value.setLeft(value.getLeft() + 1);
                 value.setRight(value.getRight() + resultingObjects);
+                bytes.merge(objectType, e.getValue().getEstimatedSize(), Long::sum);
                 queries.incrementAndGet();
                 objects.addAndGet(resultingObjects);
                 return null;
             });
+            memoryAccounting.resynchronize(bytes);
             SingleCacheStateInformationType info = new SingleCacheStateInformationType(prismContext)
                     .name(GlobalQueryCache.class.getName())
                     .size(queries.get())
-                    .secondarySize(objects.get());
+                    .secondarySize(objects.get())
+                    .estimatedBytes(bytes.values().stream().mapToLong(Long::longValue).sum());
             counts.forEach((type, pair) ->
                     info.beginComponent()
                             .name(type.getSimpleName())
                             .size(pair.getLeft())
-                            .secondarySize(pair.getRight()));
+                            .secondarySize(pair.getRight())
+                            .estimatedBytes(bytes.get(type)));
             return Collections.singleton(info);
         } else {
             return Collections.emptySet();
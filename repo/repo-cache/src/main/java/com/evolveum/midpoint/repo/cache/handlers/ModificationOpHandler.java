@@ -24,6 +24,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 import static com.evolveum.midpoint.repo.cache.RepositoryCache.CLASS_NAME_WITH_DOT;
@@ -38,7 +39,9 @@ import static com.evolveum.midpoint.schema.util.TraceUtil.isAtLeastNormal;
 public class ModificationOpHandler extends BaseOpHandler {
 
     private static final String ADD_OBJECT = CLASS_NAME_WITH_DOT + "addObject";
+    private static final String ADD_OBJECTS = CLASS_NAME_WITH_DOT + "addObjects";
     private static final String MODIFY_OBJECT = CLASS_NAME_WITH_DOT + "modifyObject";
+    private static final String MODIFY_OBJECTS = CLASS_NAME_WITH_DOT + "modifyObjects";
     private static final String DELETE_OBJECT = CLASS_NAME_WITH_DOT + "deleteObject";
     private static final String ADVANCE_SEQUENCE = CLASS_NAME_WITH_DOT + "advanceSequence";
     private static final String RETURN_UNUSED_VALUES_TO_SEQUENCE = CLASS_NAME_WITH_DOT + "returnUnusedValuesToSequence";
@@ -74,17 +77,7 @@ public class ModificationOpHandler extends BaseOpHandler {
             } finally {
                 MonitoringUtil.repoOpEnd(startTime);
             }
-            // DON't cache the object here. The object may not have proper "JAXB" form, e.g. some pieces may be
-            // DOM element instead of JAXB elements. Not to cache it is safer and the performance loss
-            // is acceptable.
-            if (options != null && options.isOverwrite()) {
-                invalidator.invalidateCacheEntries(object.getCompileTimeClass(), oid,
-                        new ModifyObjectResult<>(object.getUserData(RepositoryService.KEY_ORIGINAL_OBJECT), object,
-                                Collections.emptyList(), options.isOverwrite()), result);
-            } else {
-                // just for sure (the object should not be there but ...)
-                invalidator.invalidateCacheEntries(object.getCompileTimeClass(), oid, new AddObjectResult<>(object), result);
-            }
+            invalidateAfterAdd(object, oid, options, result);
             if (trace != null) {
                 trace.setOid(oid);
                 if (isAtLeastNormal(level)) {
@@ -101,6 +94,49 @@ public class ModificationOpHandler extends BaseOpHandler {
         }
     }
 
+    public @NotNull List<String> addObjects(
+            @NotNull List<PrismObject<? extends ObjectType>> objects, RepoAddOptions options, OperationResult parentResult)
+            throws ObjectAlreadyExistsException, SchemaException {
+        OperationResult result = parentResult.subresult(ADD_OBJECTS)
+                .addParam("count", objects.size())
+                .addParam("overwrite", RepoAddOptions.isOverwrite(options))
+                .build();
+
+        try {
+            List<String> oids;
+            Long startTime = MonitoringUtil.repoOpStart();
+            try {
+                oids = repositoryService.addObjects(objects, options, result);
+            } finally {
+                MonitoringUtil.repoOpEnd(startTime);
+            }
+            for (int i = 0; i < objects.size(); i++) {
+                invalidateAfterAdd(objects.get(i), oids.get(i), options, result);
+            }
+            return oids;
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
+    private <T extends ObjectType> void invalidateAfterAdd(
+            PrismObject<T> object, String oid, RepoAddOptions options, OperationResult result) {
+        // DON't cache the object here. The object may not have proper "JAXB" form, e.g. some pieces may be
+        // DOM element instead of JAXB elements. Not to cache it is safer and the performance loss
+        // is acceptable.
+        if (options != null && options.isOverwrite()) {
+            invalidator.invalidateCacheEntries(object.getCompileTimeClass(), oid,
+                    new ModifyObjectResult<>(object.getUserData(RepositoryService.KEY_ORIGINAL_OBJECT), object,
+                            Collections.emptyList(), options.isOverwrite()), result);
+        } else {
+            // just for sure (the object should not be there but ...)
+            invalidator.invalidateCacheEntries(object.getCompileTimeClass(), oid, new AddObjectResult<>(object), result);
+        }
+    }
+
     @NotNull
     public <T extends ObjectType> ModifyObjectResult<T> modifyObject(@NotNull Class<T> type, @NotNull String oid,
             @NotNull Collection<? extends ItemDelta<?, ?>> modifications,
@@ -148,6 +184,33 @@ public class ModificationOpHandler extends BaseOpHandler {
         }
     }
 
+    public void modifyObjects(@NotNull Collection<ObjectModification<?>> modifications, OperationResult parentResult)
+            throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+
+        OperationResult result = parentResult.subresult(MODIFY_OBJECTS)
+                .addParam("count", modifications.size())
+                .build();
+
+        try {
+            randomDelay();
+            Long startTime = MonitoringUtil.repoOpStart();
+            try {
+                repositoryService.modifyObjects(modifications, result);
+            } finally {
+                MonitoringUtil.repoOpEnd(startTime);
+                // We do not have the modification results here, so the invalidation is less precise than for modifyObject.
+                for (ObjectModification<?> modification : modifications) {
+                    invalidator.invalidateCacheEntries(modification.type(), modification.oid(), null, result);
+                }
+            }
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
     @NotNull
     public <T extends ObjectType> DeleteObjectResult deleteObject(Class<T> type, String oid, OperationResult parentResult)
             throws ObjectNotFoundException {
@@ -7,12 +7,17 @@
 
 package com.evolveum.midpoint.repo.cache.invalidation;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.CacheInvalidationContext;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.match.MatchingRuleRegistry;
+import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.DeleteObjectResult;
@@ -86,6 +91,29 @@ public abstract class ChangeDescription {
             this.modifyInfo = modifyInfo;
         }
 
+        /**
+         * If none of the modified items is used in the filter or ordering of the query, the object matches the query
+         * after the change if and only if it matched it before; and we know it was not in the result
+         * (see {@link #mayAffect(QueryKey, SearchResultList, MatchingRuleRegistry)}).
+         *
+         * This is useful mainly for filters that cannot be evaluated in memory (like org filters).
+         */
+        @Override
+        boolean mayChangeItemsOf(@NotNull QueryKey<?> queryKey) {
+            if (modifyInfo.isOverwrite()) {
+                return true; // the whole object may have changed
+            }
+            List<ItemPath> queryPaths = QueryItemPaths.determine(queryKey.getQuery());
+            if (queryPaths == null) {
+                return true;
+            }
+            List<ItemPath> modifiedPaths = new ArrayList<>();
+            for (ItemDelta<?, ?> modification : modifyInfo.getModifications()) {
+                modifiedPaths.add(modification.getPath());
+            }
+            return QueryItemPaths.overlap(modifiedPaths, queryPaths);
+        }
+
         @Override
         public boolean mayMatchAfterChange(@NotNull ObjectFilter filter, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry)
                 throws SchemaException {
@@ -224,6 +252,9 @@ public abstract class ChangeDescription {
             // (In very strange cases, also the object being added -- although this should never happen.)
             return true;
         }
+        if (!mayChangeItemsOf(queryKey)) {
+            return false;
+        }
         try {
             return mayMatchAfterChange(filter, list, matchingRuleRegistry);
         } catch (UnsupportedOperationException e) {
@@ -238,6 +269,14 @@ public abstract class ChangeDescription {
         }
     }
 
+    /**
+     * Returns false if the change certainly does not touch any item the query (filter or ordering) depends on.
+     * Called only for objects that are not in the original query result.
+     */
+    boolean mayChangeItemsOf(@NotNull QueryKey<?> queryKey) {
+        return true;
+    }
+
     public abstract boolean mayMatchAfterChange(@NotNull ObjectFilter filter, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry)
             throws SchemaException;
 
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.invalidation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.query.*;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Determines item paths that the result of an object query depends on: paths used in the filter and in the ordering.
+ *
+ * If an object that is not in the (cached) result of the query is modified, and none of the modified items
+ * overlaps with these paths, the result of the query cannot change.
+ *
+ * For filters that depend on other objects (full text, owned-by, referenced-by, reference target filters)
+ * or on something we do not understand, the paths cannot be determined.
+ */
+class QueryItemPaths {
+
+    /** Returns the paths, or null if they cannot be determined. */
+    static @Nullable List<ItemPath> determine(@Nullable ObjectQuery query) {
+        List<ItemPath> paths = new ArrayList<>();
+        if (query == null) {
+            return paths;
+        }
+        if (!collectFromFilter(query.getFilter(), ItemPath.EMPTY_PATH, paths)) {
+            return null;
+        }
+        ObjectPaging paging = query.getPaging();
+        if (paging != null) {
+            for (ObjectOrdering ordering : paging.getOrderingInstructions()) {
+                paths.add(ordering.getOrderBy());
+            }
+        }
+        for (ItemPath path : paths) {
+            if (!isPlain(path)) {
+                return null; // e.g. dereferencing or parent segments
+            }
+        }
+        return paths;
+    }
+
+    private static boolean collectFromFilter(ObjectFilter filter, ItemPath prefix, List<ItemPath> paths) {
+        if (filter == null
+                || filter instanceof AllFilter
+                || filter instanceof NoneFilter
+                || filter instanceof UndefinedFilter) {
+            return true;
+        } else if (filter instanceof LogicalFilter logicalFilter) {
+            for (ObjectFilter condition : logicalFilter.getConditions()) {
+                if (!collectFromFilter(condition, prefix, paths)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (filter instanceof RefFilter refFilter && refFilter.getFilter() != null) {
+            return false; // depends on the target objects
+        } else if (filter instanceof ValueFilter<?, ?> valueFilter) {
+            paths.add(prefix.append(valueFilter.getFullPath()));
+            if (valueFilter.getRightHandSidePath() != null) {
+                paths.add(prefix.append(valueFilter.getRightHandSidePath()));
+            }
+            return true;
+        } else if (filter instanceof ExistsFilter existsFilter) {
+            ItemPath existsPath = prefix.append(existsFilter.getFullPath());
+            paths.add(existsPath);
+            return collectFromFilter(existsFilter.getFilter(), existsPath, paths);
+        } else if (filter instanceof TypeFilter typeFilter) {
+            return collectFromFilter(typeFilter.getFilter(), prefix, paths);
+        } else if (filter instanceof InOidFilter inOidFilter) {
+            return !inOidFilter.isConsiderOwner(); // OID of an object never changes
+        } else if (filter instanceof OrgFilter) {
+            // Only the object's own parentOrgRef is relevant here; changes in the org structure itself
+            // are changes of other objects that are evaluated separately.
+            paths.add(prefix.append(ObjectType.F_PARENT_ORG_REF));
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private static boolean isPlain(ItemPath path) {
+        for (Object segment : path.getSegments()) {
+            if (!ItemPath.isName(segment) && !ItemPath.isId(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns true if any of the modified paths overlaps with any of the query paths. */
+    static boolean overlap(@NotNull Collection<ItemPath> modifiedPaths, @NotNull Collection<ItemPath> queryPaths) {
+        for (ItemPath modifiedPath : modifiedPaths) {
+            ItemPath modifiedNames = modifiedPath.namedSegmentsOnly();
+            for (ItemPath queryPath : queryPaths) {
+                ItemPath queryNames = queryPath.namedSegmentsOnly();
+                if (modifiedNames.isSubPathOrEquivalent(queryNames) || queryNames.isSubPathOrEquivalent(modifiedNames)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -8,9 +8,12 @@ package com.evolveum.midpoint.repo.cache.registry;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
+import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -21,7 +24,9 @@ import com.evolveum.midpoint.repo.api.CacheDispatcher;
 import com.evolveum.midpoint.repo.api.CacheListener;
 import com.evolveum.midpoint.repo.api.CacheRegistry;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.CachesStateInformationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ComponentSizeInformationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 /**
  * Registry of all local caches (various caching components or services).
@@ -76,6 +81,19 @@ public class CacheRegistryImpl implements CacheListener, CacheRegistry {
         return rv;
     }
 
+    @Override
+    public @NotNull Map<String, Long> getEstimatedBytesPerType() {
+        Map<String, Long> rv = new TreeMap<>();
+        for (SingleCacheStateInformationType entry : getStateInformation().getEntry()) {
+            for (ComponentSizeInformationType component : entry.getComponent()) {
+                if (component.getName() != null && component.getEstimatedBytes() != null) {
+                    rv.merge(component.getName(), component.getEstimatedBytes(), Long::sum);
+                }
+            }
+        }
+        return rv;
+    }
+
     @Override
     public void dumpContent() {
         caches.forEach(Cache::dumpContent);
@@ -35,6 +35,8 @@ import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.repo.api.CacheRegistry;
+import com.evolveum.midpoint.repo.api.ObjectModification;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.api.perf.OperationPerformanceInformation;
 import com.evolveum.midpoint.repo.api.perf.PerformanceInformation;
@@ -57,7 +59,11 @@ import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ArchetypeType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ComponentSizeInformationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OrgType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
@@ -72,6 +78,7 @@ public class TestRepositoryCache extends AbstractSpringTest implements InfraTest
     @Autowired GlobalObjectCache globalObjectCache;
     @Autowired GlobalVersionCache globalVersionCache;
     @Autowired GlobalQueryCache globalQueryCache;
+    @Autowired CacheRegistry cacheRegistry;
     @Autowired PrismContext prismContext;
 
     @SuppressWarnings("unused") // used when heap dumps are uncommented
@@ -307,6 +314,109 @@ public class TestRepositoryCache extends AbstractSpringTest implements InfraTest
         assertThat(data.overSizedQueries.get()).as("over-sized counter").isEqualTo(2); // search + searchIterative
     }
 
+    @Test
+    public void test340EstimatedBytesReported() throws ObjectAlreadyExistsException, SchemaException, ObjectNotFoundException {
+        given("a few archetypes");
+        OperationResult result = createOperationResult();
+        deleteExistingObjects(ArchetypeType.class, result);
+        clearCaches();
+        Set<PrismObject<ArchetypeType>> objects = generateObjects(ArchetypeType.class, 5, result);
+
+        when("they are retrieved via the cache");
+        for (PrismObject<ArchetypeType> object : objects) {
+            repositoryCache.getObject(ArchetypeType.class, object.getOid(), null, result);
+        }
+
+        then("estimated memory taken by them is reported");
+        SingleCacheStateInformationType info = globalObjectCache.getStateInformation().iterator().next();
+        assertThat(info.getEstimatedBytes()).as("estimated bytes for the cache").isPositive();
+        ComponentSizeInformationType archetypes = info.getComponent().stream()
+                .filter(c -> ArchetypeType.class.getSimpleName().equals(c.getName()))
+                .findFirst().orElseThrow();
+        assertThat(archetypes.getSize()).as("cached archetypes").isEqualTo(5);
+        assertThat(archetypes.getEstimatedBytes()).as("estimated bytes for archetypes").isPositive();
+        assertThat(cacheRegistry.getEstimatedBytesPerType())
+                .containsEntry(ArchetypeType.class.getSimpleName(), archetypes.getEstimatedBytes());
+    }
+
+    /**
+     * Org filters cannot be evaluated in memory, so the cached query results used to be evicted by any modification
+     * of any object of given type.
+     */
+    @Test
+    public void test350QueryNotInvalidatedByUnrelatedModification()
+            throws ObjectAlreadyExistsException, SchemaException, ObjectNotFoundException {
+        given("a cached org query for archetypes and an archetype that is not in its result");
+        OperationResult result = createOperationResult();
+        deleteExistingObjects(ArchetypeType.class, result);
+        clearCaches();
+        String archetypeOid = generateObjects(ArchetypeType.class, 1, result).iterator().next().getOid();
+        ObjectQuery query = prismContext.queryFor(ArchetypeType.class)
+                .isChildOf("fc05d2a6-7a34-4d3b-b5f1-04ed0f0e8a3f") // no such org, the result is empty
+                .build();
+        repositoryCache.searchObjects(ArchetypeType.class, query, null, result);
+        assertQueryIsCached(ArchetypeType.class, query);
+
+        when("the archetype description is modified");
+        repositoryCache.modifyObject(ArchetypeType.class, archetypeOid,
+                prismContext.deltaFor(ArchetypeType.class)
+                        .item(ArchetypeType.F_DESCRIPTION).replace("changed")
+                        .asItemDeltas(),
+                result);
+
+        then("the query stays cached");
+        assertQueryIsCached(ArchetypeType.class, query);
+
+        when("the archetype parent org reference is modified");
+        repositoryCache.modifyObject(ArchetypeType.class, archetypeOid,
+                prismContext.deltaFor(ArchetypeType.class)
+                        .item(ArchetypeType.F_PARENT_ORG_REF)
+                        .add(new ObjectReferenceType().oid("fc05d2a6-7a34-4d3b-b5f1-04ed0f0e8a3f").type(OrgType.COMPLEX_TYPE))
+                        .asItemDeltas(),
+                result);
+
+        then("the query is evicted");
+        assertQueryIsNotCached(ArchetypeType.class, query);
+    }
+
+    @Test
+    public void test360ModifyObjectsInvalidatesCachedObjects()
+            throws ObjectAlreadyExistsException, SchemaException, ObjectNotFoundException {
+        given("two archetypes that are cached");
+        OperationResult result = createOperationResult();
+        deleteExistingObjects(ArchetypeType.class, result);
+        clearCaches();
+        List<String> oids = generateObjects(ArchetypeType.class, 2, result).stream()
+                .map(PrismObject::getOid)
+                .toList();
+        for (String oid : oids) {
+            repositoryCache.getObject(ArchetypeType.class, oid, null, result);
+            assertObjectAndVersionCached(oid, true);
+        }
+
+        when("both are modified by modifyObjects");
+        List<ObjectModification<?>> modifications = new ArrayList<>();
+        for (String oid : oids) {
+            modifications.add(new ObjectModification<>(ArchetypeType.class, oid,
+                    prismContext.deltaFor(ArchetypeType.class)
+                            .item(ArchetypeType.F_DESCRIPTION).replace("batch-modified")
+                            .asItemDeltas()));
+        }
+        repositoryCache.modifyObjects(modifications, result);
+
+        then("they are evicted from the cache");
+        for (String oid : oids) {
+            assertObjectAndVersionCached(oid, false);
+        }
+
+        and("subsequent retrieval returns modified objects");
+        for (String oid : oids) {
+            assertThat(repositoryCache.getObject(ArchetypeType.class, oid, null, result).asObjectable().getDescription())
+                    .as("description of " + oid)
+                    .isEqualTo("batch-modified");
+        }
+    }
+
     // Must be executed last, because naive deletion such large number of archetypes fails on OOM
     @Test
     public void test900HeapUsage() throws Exception {
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.cache.global;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.UUID;
+
+import jakarta.annotation.PostConstruct;
+
+import org.cache2k.expiry.ExpiryTimeValues;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.cache.CacheMemoryLimits;
+import com.evolveum.midpoint.test.util.AbstractSpringTest;
+import com.evolveum.midpoint.test.util.InfraTestMixin;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ArchetypeType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests the memory limits of {@link GlobalObjectCache}: the admission of entries under per-type limits,
+ * the eviction under the whole-cache limit, and that no sizes are estimated when there are no limits.
+ *
+ * The caches are created directly (not as Spring beans), with the limits given in bytes.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-repo-cache-test.xml" })
+public class TestGlobalCacheMemoryLimits extends AbstractSpringTest implements InfraTestMixin {
+
+    private static final int DESCRIPTION_LENGTH = 10_000;
+
+    @Autowired PrismContext prismContext;
+
+    private GlobalObjectCache cache;
+
+    @PostConstruct
+    public void initialize() {
+        PrismTestUtil.setPrismContext(prismContext);
+    }
+
+    @AfterMethod
+    public void destroyCache() {
+        if (cache != null) {
+            cache.destroy();
+            cache = null;
+        }
+    }
+
+    @Test
+    public void test100NoSizeEstimationWithoutLimits() throws SchemaException {
+        given("cache without memory limits");
+        cache = createCache(null, Map.of());
+
+        when("an object is put into the cache");
+        GlobalCacheObjectValue<UserType> value = createValue(UserType.class, "user-100");
+        cache.put(value);
+
+        then("the object is cached");
+        assertThat(cache.get(value.getObjectOid())).as("cached value").isSameAs(value);
+
+        and("its size is not estimated");
+        assertThat(value.isEstimatedSizeComputed()).as("estimated size computed").isFalse();
+    }
+
+    @Test
+    public void test110AdmissionUnderTypeLimit() throws SchemaException {
+        given("cache with a limit for users allowing two users to be cached");
+        long userSize = CachedObjectSizeEstimator.estimate(createObject(UserType.class, "user-size"));
+        cache = createCache(null, Map.of(UserType.class, userSize * 5 / 2));
+
+        when("three users and three archetypes are put into the cache");
+        GlobalCacheObjectValue<UserType> user1 = createValue(UserType.class, "user-1");
+        GlobalCacheObjectValue<UserType> user2 = createValue(UserType.class, "user-2");
+        GlobalCacheObjectValue<UserType> user3 = createValue(UserType.class, "user-3");
+        cache.put(user1);
+        cache.put(user2);
+        cache.put(user3);
+        for (int i = 0; i < 3; i++) {
+            cache.put(createValue(ArchetypeType.class, "archetype-" + i));
+        }
+
+        then("only two users are admitted");
+        assertThat(cache.get(user1.getObjectOid())).as("user 1").isNotNull();
+        assertThat(cache.get(user2.getObjectOid())).as("user 2").isNotNull();
+        assertThat(cache.get(user3.getObjectOid())).as("user 3").isNull();
+
+        and("archetypes are not limited");
+        assertThat(getCachedCount(ArchetypeType.class)).as("cached archetypes").isEqualTo(3);
+
+        when("a larger version of user 1 is put into the cache");
+        PrismObject<UserType> user1Larger = createObject(UserType.class, "user-1", user1.getObjectOid(), DESCRIPTION_LENGTH * 2);
+        cache.put(new GlobalCacheObjectValue<>(user1Larger, Long.MAX_VALUE));
+
+        then("it is not admitted, and the previous version is removed");
+        assertThat(cache.get(user1.getObjectOid())).as("user 1").isNull();
+
+        when("user 3 is put into the cache again");
+        cache.put(user3);
+
+        then("it is admitted now, as there is free space for it");
+        assertThat(cache.get(user3.getObjectOid())).as("user 3").isNotNull();
+    }
+
+    @Test
+    public void test120EvictionUnderCacheLimit() throws SchemaException {
+        given("cache with a limit allowing about three objects");
+        long userSize = CachedObjectSizeEstimator.estimate(createObject(UserType.class, "user-size"));
+        long maxBytes = userSize * 3 + userSize / 2;
+        cache = createCache(maxBytes, Map.of());
+
+        when("ten users are put into the cache");
+        for (int i = 0; i < 10; i++) {
+            cache.put(createValue(UserType.class, "user-" + i));
+        }
+
+        then("some of them are evicted so that the estimated size fits the limit");
+        SingleCacheStateInformationType info = getStateInformation();
+        displayValue("Cache state", info);
+        assertThat(info.getSize()).as("cached objects").isBetween(1, 3);
+        assertThat(info.getEstimatedBytes()).as("estimated bytes").isLessThanOrEqualTo(maxBytes);
+    }
+
+    private int getCachedCount(Class<? extends ObjectType> type) {
+        return getStateInformation().getComponent().stream()
+                .filter(c -> type.getSimpleName().equals(c.getName()))
+                .findFirst()
+                .map(c -> c.getSize())
+                .orElse(0);
+    }
+
+    private SingleCacheStateInformationType getStateInformation() {
+        return cache.getStateInformation().iterator().next();
+    }
+
+    /** Creates a cache with given limits (in bytes) and no expiration. */
+    private GlobalObjectCache createCache(@Nullable Long maxBytes, @NotNull Map<Class<?>, Long> maxBytesPerType) {
+        CacheMemoryLimits limits = new CacheMemoryLimits() {
+            @Override
+            public @Nullable Long getMaxBytes() {
+                return maxBytes;
+            }
+
+            @Override
+            public @Nullable Long getMaxBytes(@NotNull Class<?> type) {
+                return maxBytesPerType.get(type);
+            }
+
+            @Override
+            public boolean hasTypeLimits() {
+                return !maxBytesPerType.isEmpty();
+            }
+        };
+        GlobalObjectCache newCache = new GlobalObjectCache() {
+            @Override
+            long getCapacity() {
+                return 1000;
+            }
+
+            @Override
+            @NotNull CacheMemoryLimits getMemoryLimits() {
+                return limits;
+            }
+
+            @Override
+            long getExpiryTime(Class<?> type) {
+                return ExpiryTimeValues.ETERNAL;
+            }
+        };
+        newCache.prismContext = prismContext;
+        newCache.initialize();
+        return newCache;
+    }
+
+    private <T extends ObjectType> GlobalCacheObjectValue<T> createValue(Class<T> type, String name)
+            throws SchemaException {
+        return new GlobalCacheObjectValue<>(createObject(type, name), Long.MAX_VALUE);
+    }
+
+    private <T extends ObjectType> PrismObject<T> createObject(Class<T> type, String name) throws SchemaException {
+        return createObject(type, name, UUID.randomUUID().toString(), DESCRIPTION_LENGTH);
+    }
+
+    private <T extends ObjectType> PrismObject<T> createObject(Class<T> type, String name, String oid, int descriptionLength)
+            throws SchemaException {
+        PrismObject<T> object = prismContext.createObject(type);
+        object.setOid(oid);
+        object.asObjectable()
+                .name(name)
+                .description("x".repeat(descriptionLength));
+        object.freeze();
+        return object;
+    }
+}
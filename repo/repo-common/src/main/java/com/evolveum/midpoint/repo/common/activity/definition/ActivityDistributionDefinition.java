@@ -70,6 +70,14 @@ public class ActivityDistributionDefinition implements DebugDumpable, Cloneable
         return or0(bean.getWorkerThreads());
     }
 
+    public boolean isVirtualWorkerThreads() {
+        return Boolean.TRUE.equals(bean.isVirtualWorkerThreads());
+    }
+
+    public int getMaxConcurrentExternalCalls() {
+        return or0(bean.getMaxConcurrentExternalCalls());
+    }
+
     void applyChangeTailoring(@NotNull ActivityTailoringType tailoring) {
         if (tailoring.getDistribution() != null) {
             bean = TailoringUtil.getTailoredBean(bean, tailoring.getDistribution());
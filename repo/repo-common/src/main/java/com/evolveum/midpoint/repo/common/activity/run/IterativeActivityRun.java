@@ -649,6 +649,10 @@ public abstract class IterativeActivityRun<
         return coordinator.isMultithreaded();
     }
 
+    public final ProcessingCoordinator<I> getCoordinator() {
+        return coordinator;
+    }
+
     private Integer getWorkerThreadsCount() {
         return getActivity().getDistributionDefinition().getWorkerThreads();
     }
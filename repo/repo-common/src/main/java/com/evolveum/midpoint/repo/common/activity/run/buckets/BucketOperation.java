@@ -127,6 +127,28 @@ class BucketOperation implements DebugDumpable {
         }
     }
 
+    static List<ItemDelta<?, ?>> bucketProcessingStartDeltas(ItemPath statePath, WorkBucketType bucket) {
+        try {
+            return PrismContext.get().deltaFor(TaskType.class)
+                    .item(createBucketPath(statePath, bucket).append(WorkBucketType.F_PROCESSING_START_TIMESTAMP))
+                    .replace(bucket.getProcessingStartTimestamp())
+                    .asItemDeltas();
+        } catch (SchemaException e) {
+            throw new IllegalStateException("Unexpected schema exception: " + e.getMessage(), e);
+        }
+    }
+
+    static List<ItemDelta<?, ?>> bucketProcessingEndDeltas(ItemPath statePath, WorkBucketType bucket) {
+        try {
+            return PrismContext.get().deltaFor(TaskType.class)
+                    .item(createBucketPath(statePath, bucket).append(WorkBucketType.F_PROCESSING_END_TIMESTAMP))
+                    .replace(bucket.getProcessingEndTimestamp())
+                    .asItemDeltas();
+        } catch (SchemaException e) {
+            throw new IllegalStateException("Unexpected schema exception: " + e.getMessage(), e);
+        }
+    }
+
     @NotNull
     private static ItemPath createBucketPath(ItemPath statePath, WorkBucketType bucket) {
         return statePath.append(F_BUCKETING, F_BUCKET, bucket.getId());
@@ -22,6 +22,7 @@ import org.jetbrains.annotations.Nullable;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.util.CloneUtil;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.repo.api.ModifyObjectResult;
 import com.evolveum.midpoint.repo.common.activity.run.state.ActivityBucketManagementStatistics;
 import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
@@ -79,9 +80,16 @@ public class CompleteBucketOperation extends BucketOperation {
                         .completeBuckets(BucketingUtil.getCompleteBucketsNumber(buckets) + 1));
 
         ItemPath statePath = ActivityStateUtil.getStateItemPath(task.getActivityState(), activityPath);
-        List<ItemDelta<?, ?>> closingMods = bucketStateChangeDeltas(statePath, bucket, WorkBucketStateType.COMPLETE);
+        List<ItemDelta<?, ?>> closingMods =
+                new ArrayList<>(bucketStateChangeDeltas(statePath, bucket, WorkBucketStateType.COMPLETE));
 
         WorkBucketType bucketBeforeCompletion = bucket.clone();
+
+        if (bucket.getProcessingStartTimestamp() != null) {
+            // Used for adaptive bucket sizing.
+            bucket.processingEndTimestamp(XmlTypeConverter.createXMLGregorianCalendar());
+            closingMods.addAll(bucketProcessingEndDeltas(statePath, bucket));
+        }
         bucket.setState(WorkBucketStateType.COMPLETE); // needed for compressing buckets
 
         Holder<Boolean> recentlyClosedBucketDeleted = new Holder<>();
@@ -7,6 +7,7 @@
 
 package com.evolveum.midpoint.repo.common.activity.run.buckets;
 
+import static com.evolveum.midpoint.repo.common.activity.run.buckets.BucketOperation.bucketProcessingStartDeltas;
 import static com.evolveum.midpoint.repo.common.activity.run.buckets.BucketOperation.bucketStateChangeDeltas;
 import static com.evolveum.midpoint.schema.util.task.ActivityStateUtil.getActivityStateRequired;
 import static com.evolveum.midpoint.schema.util.task.ActivityStateUtil.getStateItemPath;
@@ -31,6 +32,7 @@ import org.jetbrains.annotations.Nullable;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.repo.api.RepoModifyOptions;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.segmentation.BucketFactory;
@@ -258,6 +260,11 @@ class GetBucketOperationAttempt {
                 swallow(bucketStateChangeDeltas(activityStateItemPath, bucket, READY, null));
             }
         }
+        if (bucketFactory.isAdaptiveSizing()) {
+            // The processing of the bucket starts (again) now, even if it was delegated to us before.
+            bucket.processingStartTimestamp(XmlTypeConverter.createXMLGregorianCalendar());
+            swallow(bucketProcessingStartDeltas(activityStateItemPath, bucket));
+        }
         bucketToUse = bucket.clone();
     }
 
@@ -269,6 +276,9 @@ class GetBucketOperationAttempt {
             bucket.state(READY)
                     .workerRef(null);
         }
+        if (bucketFactory.isAdaptiveSizing()) {
+            bucket.processingStartTimestamp(XmlTypeConverter.createXMLGregorianCalendar());
+        }
         swallow(bucket);
         bucketToUse = bucket.clone();
     }
@@ -298,7 +308,7 @@ class GetBucketOperationAttempt {
     }
 
     private void setOrUpdateEstimatedNumberOfBuckets() throws SchemaException {
-        Integer number = bucketFactory.estimateNumberOfBuckets();
+        Integer number = bucketFactory.estimateNumberOfBuckets(currentBuckets);
         if (number != null && !number.equals(getNumberOfBuckets(activityState))) {
             List<ItemDelta<?, ?>> numberOfBucketsMods = PrismContext.get().deltaFor(TaskType.class)
                     .item(activityStateItemPath.append(F_BUCKETING, F_NUMBER_OF_BUCKETS))
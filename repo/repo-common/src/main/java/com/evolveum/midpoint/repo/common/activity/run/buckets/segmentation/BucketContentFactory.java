@@ -7,9 +7,13 @@
 
 package com.evolveum.midpoint.repo.common.activity.run.buckets.segmentation;
 
+import java.math.BigInteger;
+
+import com.evolveum.midpoint.util.annotation.Experimental;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractWorkBucketContentType;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -31,4 +35,44 @@ public interface BucketContentFactory {
      * @return null if the number cannot be determined
      */
     Integer estimateNumberOfBuckets();
+
+    /**
+     * Can this factory create buckets of given size? (This is needed for adaptive bucket sizing.)
+     * If true, {@link #getBucketSize(AbstractWorkBucketContentType)}, {@link #getRemainingSize(AbstractWorkBucketContentType)}
+     * and {@link #createNextBucketContent(AbstractWorkBucketContentType, Integer, BigInteger)} must be supported.
+     */
+    @Experimental
+    default boolean supportsBucketSizing() {
+        return false;
+    }
+
+    /**
+     * Returns the size of the bucket in the units of the segmentation space, e.g. the width of a numeric interval.
+     * The bucket of the default size has the size of 1 for string-based segmentation.
+     */
+    @Experimental
+    default @NotNull BigInteger getBucketSize(@NotNull AbstractWorkBucketContentType bucketContent) {
+        throw new UnsupportedOperationException("Bucket sizing is not supported by " + this);
+    }
+
+    /**
+     * Returns the size of the segmentation space that is not covered by the buckets up to (and including)
+     * the specified one. If the content is null, the size of the whole segmentation space is returned.
+     */
+    @Experimental
+    default @NotNull BigInteger getRemainingSize(@Nullable AbstractWorkBucketContentType lastBucketContent) {
+        throw new UnsupportedOperationException("Bucket sizing is not supported by " + this);
+    }
+
+    /**
+     * Creates a content for the next bucket in a sequence, having the specified size
+     * (or smaller, if this is the last bucket).
+     *
+     * @return null if there is no next bucket
+     */
+    @Experimental
+    default @Nullable AbstractWorkBucketContentType createNextBucketContent(AbstractWorkBucketContentType lastBucketContent,
+            Integer lastBucketSequentialNumber, @NotNull BigInteger bucketSize) throws SchemaException {
+        throw new UnsupportedOperationException("Bucket sizing is not supported by " + this);
+    }
 }
@@ -8,23 +8,40 @@
 package com.evolveum.midpoint.repo.common.activity.run.buckets.segmentation;
 
 import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.repo.common.activity.definition.ActivityDistributionDefinition;
 import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
 import com.evolveum.midpoint.schema.util.task.BucketingUtil;
 import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Creates buckets when needed. See {@link #createNewBuckets(List, int)} method.
+ *
+ * If adaptive bucket sizing is configured (see {@link WorkAllocationDefinitionType#getTargetBucketDuration()}),
+ * the size of new buckets is derived from the processing time of a recently completed bucket.
  */
 public class BucketFactory {
 
+    private static final Trace LOGGER = TraceManager.getTrace(BucketFactory.class);
+
+    /**
+     * How many times can the size of new buckets change relative to the last bucket created.
+     * This is to avoid wild oscillations caused by a single unusual bucket.
+     */
+    private static final BigInteger MAX_SIZE_CHANGE_FACTOR = BigInteger.valueOf(4);
+
     @NotNull private final BucketContentFactory contentFactory;
     private final WorkAllocationDefinitionType allocationDefinition;
 
@@ -76,11 +93,13 @@ public class BucketFactory {
         WorkBucketType lastBucket = BucketingUtil.getLastBucket(currentBuckets);
         AbstractWorkBucketContentType lastContent = lastBucket != null ? lastBucket.getContent() : null;
         Integer lastSequentialNumber = lastBucket != null ? lastBucket.getSequentialNumber() : null;
+        BigInteger bucketSize = computeAdaptiveBucketSize(currentBuckets);
         int count = Math.max(getBucketCreationBatch(), bucketsNeeded);
         List<AbstractWorkBucketContentType> newContentList = new ArrayList<>(count);
         for (int i = 0; i < count; i++) {
-            AbstractWorkBucketContentType newContent = contentFactory
-                    .createNextBucketContent(lastContent, lastSequentialNumber);
+            AbstractWorkBucketContentType newContent = bucketSize != null ?
+                    contentFactory.createNextBucketContent(lastContent, lastSequentialNumber, bucketSize) :
+                    contentFactory.createNextBucketContent(lastContent, lastSequentialNumber);
             if (newContent == null) {
                 break;
             }
@@ -91,6 +110,64 @@ public class BucketFactory {
         return newContentList;
     }
 
+    /**
+     * Is the size of new buckets adapted to the processing time of the completed ones?
+     */
+    public boolean isAdaptiveSizing() {
+        return getTargetBucketDuration() != null && contentFactory.supportsBucketSizing();
+    }
+
+    /**
+     * Computes the size of the buckets that follow the current ones. The size of the most recently completed bucket
+     * (with known processing time) is scaled by the ratio of the target and the actual duration. The result
+     * is limited relative to the size of the last bucket created.
+     *
+     * @return null if the default (configured) bucket size is to be used
+     */
+    private @Nullable BigInteger computeAdaptiveBucketSize(@NotNull List<WorkBucketType> currentBuckets) {
+        WorkBucketType lastBucket = BucketingUtil.getLastBucket(currentBuckets);
+        if (!isAdaptiveSizing() || lastBucket == null) {
+            return null;
+        }
+        BigInteger lastSize = contentFactory.getBucketSize(lastBucket.getContent());
+        WorkBucketType measuredBucket = getMostRecentlyCompletedBucket(currentBuckets);
+        if (measuredBucket == null) {
+            return lastSize;
+        }
+        long duration = Math.max(1, XmlTypeConverter.toMillis(measuredBucket.getProcessingEndTimestamp())
+                - XmlTypeConverter.toMillis(measuredBucket.getProcessingStartTimestamp()));
+        BigInteger measuredSize = contentFactory.getBucketSize(measuredBucket.getContent());
+        BigInteger idealSize = new BigDecimal(measuredSize)
+                .multiply(BigDecimal.valueOf(getTargetBucketDuration()))
+                .divide(BigDecimal.valueOf(duration), 0, RoundingMode.HALF_UP)
+                .toBigInteger();
+        BigInteger newSize = idealSize
+                .max(lastSize.divide(MAX_SIZE_CHANGE_FACTOR))
+                .min(lastSize.multiply(MAX_SIZE_CHANGE_FACTOR))
+                .max(BigInteger.ONE);
+        LOGGER.debug("Adaptive bucket size: {} (bucket #{} of size {} took {} ms, last bucket size: {})",
+                newSize, measuredBucket.getSequentialNumber(), measuredSize, duration, lastSize);
+        return newSize;
+    }
+
+    private @Nullable WorkBucketType getMostRecentlyCompletedBucket(@NotNull List<WorkBucketType> currentBuckets) {
+        WorkBucketType mostRecent = null;
+        for (WorkBucketType bucket : currentBuckets) {
+            if (bucket.getState() == WorkBucketStateType.COMPLETE
+                    && bucket.getProcessingStartTimestamp() != null
+                    && bucket.getProcessingEndTimestamp() != null
+                    && (mostRecent == null
+                    || bucket.getProcessingEndTimestamp().compare(mostRecent.getProcessingEndTimestamp()) > 0)) {
+                mostRecent = bucket;
+            }
+        }
+        return mostRecent;
+    }
+
+    private Long getTargetBucketDuration() {
+        return allocationDefinition != null ? allocationDefinition.getTargetBucketDuration() : null;
+    }
+
     private int getBucketCreationBatch() {
         if (allocationDefinition != null && allocationDefinition.getBucketCreationBatch() != null) {
             return allocationDefinition.getBucketCreationBatch();
@@ -106,4 +183,22 @@ public class BucketFactory {
     public Integer estimateNumberOfBuckets() {
         return contentFactory.estimateNumberOfBuckets();
     }
+
+    /**
+     * Estimates total number of buckets, taking the current buckets into account. This differs from
+     * {@link #estimateNumberOfBuckets()} only if adaptive sizing is used: then the remaining part of the segmentation
+     * space is expected to be divided into buckets of the current adaptive size.
+     */
+    public Integer estimateNumberOfBuckets(@NotNull List<WorkBucketType> currentBuckets) {
+        BigInteger bucketSize = computeAdaptiveBucketSize(currentBuckets);
+        if (bucketSize == null) {
+            return estimateNumberOfBuckets();
+        }
+        WorkBucketType lastBucket = BucketingUtil.getLastBucket(currentBuckets);
+        assert lastBucket != null;
+        BigInteger[] divideAndRemainder = contentFactory.getRemainingSize(lastBucket.getContent())
+                .divideAndRemainder(bucketSize);
+        int remainingBuckets = divideAndRemainder[0].intValue() + (divideAndRemainder[1].signum() > 0 ? 1 : 0);
+        return lastBucket.getSequentialNumber() + remainingBuckets;
+    }
 }
@@ -28,15 +28,17 @@ public class NumericBucketContentFactory extends BaseBucketContentFactory<Numeri
     @Override
     public NumericIntervalWorkBucketContentType createNextBucketContent(AbstractWorkBucketContentType lastBucketContent,
             Integer lastBucketSequentialNumber) {
-        BigInteger bucketSize = getOrComputeBucketSize();
+        return createNextBucketContent(lastBucketContent, lastBucketSequentialNumber, getOrComputeBucketSize());
+    }
+
+    @Override
+    public NumericIntervalWorkBucketContentType createNextBucketContent(AbstractWorkBucketContentType lastBucketContent,
+            Integer lastBucketSequentialNumber, @NotNull BigInteger bucketSize) {
         BigInteger from = getFrom();
         BigInteger to = getOrComputeTo();
 
         if (lastBucketSequentialNumber != null) {
-            if (!(lastBucketContent instanceof NumericIntervalWorkBucketContentType)) {
-                throw new IllegalStateException("Null or unsupported bucket content: " + lastBucketContent);
-            }
-            NumericIntervalWorkBucketContentType lastContent = (NumericIntervalWorkBucketContentType) lastBucketContent;
+            NumericIntervalWorkBucketContentType lastContent = castContent(lastBucketContent);
             if (lastContent.getTo() == null || lastContent.getTo().compareTo(to) >= 0) {
                 return null; // no more buckets
             }
@@ -54,6 +56,40 @@ public class NumericBucketContentFactory extends BaseBucketContentFactory<Numeri
         }
     }
 
+    @Override
+    public boolean supportsBucketSizing() {
+        return true;
+    }
+
+    @Override
+    public @NotNull BigInteger getBucketSize(@NotNull AbstractWorkBucketContentType bucketContent) {
+        NumericIntervalWorkBucketContentType content = castContent(bucketContent);
+        BigInteger from = content.getFrom() != null ? content.getFrom() : BigInteger.ZERO;
+        BigInteger to = content.getTo() != null ? content.getTo() : getOrComputeTo();
+        return to.subtract(from);
+    }
+
+    @Override
+    public @NotNull BigInteger getRemainingSize(AbstractWorkBucketContentType lastBucketContent) {
+        if (lastBucketContent == null) {
+            return computeIntervalSpan();
+        }
+        NumericIntervalWorkBucketContentType lastContent = castContent(lastBucketContent);
+        if (lastContent.getTo() == null) {
+            return BigInteger.ZERO;
+        } else {
+            return getOrComputeTo().subtract(lastContent.getTo()).max(BigInteger.ZERO);
+        }
+    }
+
+    private NumericIntervalWorkBucketContentType castContent(AbstractWorkBucketContentType bucketContent) {
+        if (bucketContent instanceof NumericIntervalWorkBucketContentType numericContent) {
+            return numericContent;
+        } else {
+            throw new IllegalStateException("Null or unsupported bucket content: " + bucketContent);
+        }
+    }
+
     @NotNull
     private BigInteger getOrComputeBucketSize() {
         if (segmentationConfig.getBucketSize() != null) {
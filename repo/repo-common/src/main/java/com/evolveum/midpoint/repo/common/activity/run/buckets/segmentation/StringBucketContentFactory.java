@@ -13,6 +13,7 @@ import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 import org.jetbrains.annotations.NotNull;
 
+import java.math.BigInteger;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -81,6 +82,98 @@ public class StringBucketContentFactory extends BaseBucketContentFactory<StringW
                 .to(computeNextBoundary(lastBoundary));
     }
 
+    /**
+     * Buckets of the interval marking are sized by the number of boundaries they span. Each boundary has its ordinal
+     * number (0 for the first one, {@link #countBoundaryValues()} - 1 for the last one). The missing lower bound
+     * of the first bucket has the ordinal number of -1, the missing upper bound of the last bucket has the number
+     * equal to the count of boundary values.
+     */
+    @Override
+    public boolean supportsBucketSizing() {
+        return marking == INTERVAL;
+    }
+
+    @Override
+    public @NotNull BigInteger getBucketSize(@NotNull AbstractWorkBucketContentType bucketContent) {
+        StringIntervalWorkBucketContentType content = castIntervalContent(bucketContent);
+        BigInteger from = content.getFrom() != null ? boundaryToOrdinal(content.getFrom()) : BigInteger.ONE.negate();
+        BigInteger to = content.getTo() != null ? boundaryToOrdinal(content.getTo()) : countBoundaryValues();
+        return to.subtract(from);
+    }
+
+    @Override
+    public @NotNull BigInteger getRemainingSize(AbstractWorkBucketContentType lastBucketContent) {
+        if (lastBucketContent == null) {
+            return countBoundaryValues().add(BigInteger.ONE);
+        }
+        StringIntervalWorkBucketContentType lastContent = castIntervalContent(lastBucketContent);
+        if (lastContent.getTo() == null) {
+            return BigInteger.ZERO;
+        } else {
+            return countBoundaryValues().subtract(boundaryToOrdinal(lastContent.getTo()));
+        }
+    }
+
+    @Override
+    public AbstractWorkBucketContentType createNextBucketContent(AbstractWorkBucketContentType lastBucketContent,
+            Integer lastBucketSequentialNumber, @NotNull BigInteger bucketSize) {
+        argCheck(marking == INTERVAL, "Bucket sizing is not supported for %s marking", marking);
+        String lastBoundary;
+        BigInteger lastOrdinal;
+        if (lastBucketSequentialNumber != null) {
+            StringIntervalWorkBucketContentType lastContent = castIntervalContent(lastBucketContent);
+            if (lastContent.getTo() == null) {
+                return null;
+            }
+            lastBoundary = lastContent.getTo();
+            lastOrdinal = boundaryToOrdinal(lastBoundary);
+        } else {
+            lastBoundary = null;
+            lastOrdinal = BigInteger.ONE.negate();
+        }
+        BigInteger nextOrdinal = lastOrdinal.add(bucketSize.max(BigInteger.ONE));
+        return new StringIntervalWorkBucketContentType()
+                .from(lastBoundary)
+                .to(nextOrdinal.compareTo(countBoundaryValues()) < 0 ? ordinalToBoundary(nextOrdinal) : null);
+    }
+
+    private StringIntervalWorkBucketContentType castIntervalContent(AbstractWorkBucketContentType bucketContent) {
+        if (bucketContent instanceof StringIntervalWorkBucketContentType intervalContent) {
+            return intervalContent;
+        } else {
+            throw new IllegalStateException("Null or unsupported bucket content: " + bucketContent);
+        }
+    }
+
+    private @NotNull BigInteger countBoundaryValues() {
+        BigInteger count = BigInteger.ONE;
+        for (String boundary : boundaries) {
+            count = count.multiply(BigInteger.valueOf(boundary.length()));
+        }
+        return count;
+    }
+
+    private @NotNull BigInteger boundaryToOrdinal(@NotNull String boundary) {
+        List<Integer> indices = stringToIndices(boundary);
+        BigInteger ordinal = BigInteger.ZERO;
+        for (int i = 0; i < indices.size(); i++) {
+            ordinal = ordinal.multiply(BigInteger.valueOf(boundaries.get(i).length()))
+                    .add(BigInteger.valueOf(indices.get(i)));
+        }
+        return ordinal;
+    }
+
+    private @NotNull String ordinalToBoundary(@NotNull BigInteger ordinal) {
+        Integer[] indices = new Integer[boundaries.size()];
+        BigInteger remaining = ordinal;
+        for (int i = boundaries.size() - 1; i >= 0; i--) {
+            BigInteger[] divideAndRemainder = remaining.divideAndRemainder(BigInteger.valueOf(boundaries.get(i).length()));
+            indices[i] = divideAndRemainder[1].intValue();
+            remaining = divideAndRemainder[0];
+        }
+        return indicesToString(Arrays.asList(indices));
+    }
+
     private AbstractWorkBucketContentType createAdditionalPrefixBucket(AbstractWorkBucketContentType lastBucketContent,
             Integer lastBucketSequentialNumber) {
         String lastBoundary;
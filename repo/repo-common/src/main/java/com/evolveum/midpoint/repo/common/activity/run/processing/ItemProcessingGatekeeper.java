@@ -467,8 +467,13 @@ class ItemProcessingGatekeeper<I> {
 
         OperationExecutionRecorderForTasks.Target target = request.getOperationExecutionRecordingTarget();
         if (target != null) {
-            getOperationExecutionRecorder().recordOperationExecution(target, coordinatorTask,
-                    activityRun.getActivityPath(), processingResult.operationResult, result);
+            OperationExecutionRecorderForTasks.Batch batch = activityRun.getCoordinator().getOperationExecutionRecordsBatch(workerTask);
+            if (batch != null) {
+                batch.add(target, coordinatorTask, activityRun.getActivityPath(), processingResult.operationResult, result);
+            } else {
+                getOperationExecutionRecorder().recordOperationExecution(target, coordinatorTask,
+                        activityRun.getActivityPath(), processingResult.operationResult, result);
+            }
         } else {
             LOGGER.trace("No target to write operation execution record to.");
         }
@@ -9,9 +9,15 @@ package com.evolveum.midpoint.repo.common.activity.run.processing;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.evolveum.midpoint.repo.common.activity.definition.ActivityDistributionDefinition;
 import com.evolveum.midpoint.repo.common.activity.run.IterativeActivityRun;
+import com.evolveum.midpoint.repo.common.util.OperationExecutionRecorderForTasks;
+import com.evolveum.midpoint.schema.util.ExternalCallsLimiter;
 import com.evolveum.midpoint.task.api.RunningLightweightTask;
 
 import com.evolveum.midpoint.util.exception.ConfigurationException;
@@ -21,6 +27,7 @@ import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.TraceManager;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.prism.util.CloneUtil;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -36,8 +43,18 @@ public class ProcessingCoordinator<I> {
 
     private static final Trace LOGGER = TraceManager.getTrace(ProcessingCoordinator.class);
 
+    /**
+     * Maximal time a worker waits for a request before re-checking whether it can still run.
+     * Workers are woken up immediately when a request arrives, so this is not a polling interval.
+     */
     private static final long WORKER_THREAD_WAIT_FOR_REQUEST = 100L;
 
+    /** How long the coordinator waits for a free slot in the buffer before re-checking whether it can still run. */
+    private static final long REQUEST_QUEUE_OFFER_TIMEOUT = 1000L;
+
+    /** Minimal interval between coordinator task statistics updates carried out from {@link #submit(ItemProcessingRequest, OperationResult)}. */
+    private static final long STATISTICS_UPDATE_INTERVAL = 1000L;
+
     private static final String OP_HANDLE_ASYNCHRONOUSLY = ProcessingCoordinator.class.getName() + ".handleAsynchronously";
     private static final String OP_EXECUTE_WORKER = ProcessingCoordinator.class.getName() + ".executeWorker";
 
@@ -46,10 +63,33 @@ public class ProcessingCoordinator<I> {
     private final int threadsCount;
     private final boolean multithreaded;
     private final List<OperationResult> workerSpecificResults;
-    private final RequestsBuffer<I> requestsBuffer;
+    private final RequestsBuffer<ItemProcessingRequest<I>> requestsBuffer;
+
+    /** Should the workers run in virtual threads? */
+    private final boolean virtualThreads;
+
+    /**
+     * Limits the number of repository and connector calls executed concurrently by the workers.
+     * Null if there is no such limit. See {@link ExternalCallsLimiter}.
+     */
+    @Nullable private final Semaphore externalCallsSemaphore;
+
+    /**
+     * When were the coordinator task statistics last updated from {@link #submit(ItemProcessingRequest, OperationResult)}.
+     * Accessed only from the coordinator thread.
+     */
+    private long lastStatisticsUpdate;
 
     @NotNull private final IterativeActivityRun<I, ?, ?, ?> activityRun;
 
+    /**
+     * Batches of operation execution records, keyed by the identifier of the task that does the processing
+     * (worker task or coordinator task in single-threaded case). Each batch is accessed only by its own task,
+     * except for the final flush in {@link #finishProcessing(OperationResult)} that occurs after workers are done.
+     */
+    @NotNull private final Map<String, OperationExecutionRecorderForTasks.Batch> operationExecutionRecordsBatches =
+            new ConcurrentHashMap<>();
+
     /**
      * True if any worker requested the processing to be stopped.
      * Currently this is possible only by returning false from the {@link ItemProcessingRequest#process(RunningTask, OperationResult)} method.
@@ -68,14 +108,20 @@ public class ProcessingCoordinator<I> {
         this.activityRun = activityRun;
 
         this.threadsCount = threadsCount;
+        ActivityDistributionDefinition distributionDefinition = activityRun.getActivity().getDistributionDefinition();
         if (threadsCount > 0) {
             multithreaded = true;
             workerSpecificResults = new ArrayList<>(threadsCount);
             requestsBuffer = new RequestsBuffer<>(threadsCount);
+            virtualThreads = distributionDefinition.isVirtualWorkerThreads();
+            int maxConcurrentExternalCalls = distributionDefinition.getMaxConcurrentExternalCalls();
+            externalCallsSemaphore = maxConcurrentExternalCalls > 0 ? new Semaphore(maxConcurrentExternalCalls, true) : null;
         } else {
             multithreaded = false;
             workerSpecificResults = null;
             requestsBuffer = null;
+            virtualThreads = false;
+            externalCallsSemaphore = null;
         }
     }
 
@@ -89,16 +135,16 @@ public class ProcessingCoordinator<I> {
         if (multithreaded) {
             assert requestsBuffer != null;
             try {
-                while (!requestsBuffer.offer(request)) {
+                while (!requestsBuffer.offer(request, REQUEST_QUEUE_OFFER_TIMEOUT)) {
                     if (!canRun()) {
                         recordInterrupted(request, result);
                         request.acknowledge(false, result);
                         return false;
                     } else {
-                        updateCoordinatorTaskStatistics(result);
+                        updateCoordinatorTaskStatisticsIfTimePassed(result);
                     }
                 }
-                updateCoordinatorTaskStatistics(result);
+                updateCoordinatorTaskStatisticsIfTimePassed(result);
             } catch (InterruptedException e) {
                 recordInterrupted(request, result);
                 request.acknowledge(false, result);
@@ -115,6 +161,18 @@ public class ProcessingCoordinator<I> {
         }
     }
 
+    /**
+     * Updates the coordinator task statistics, but not more often than {@link #STATISTICS_UPDATE_INTERVAL}.
+     * Updating them on each submitted request would be too expensive.
+     */
+    private void updateCoordinatorTaskStatisticsIfTimePassed(OperationResult result) {
+        long now = System.currentTimeMillis();
+        if (now - lastStatisticsUpdate >= STATISTICS_UPDATE_INTERVAL) {
+            updateCoordinatorTaskStatistics(result);
+            lastStatisticsUpdate = now;
+        }
+    }
+
     /**
      * This method updates coordinator task statistics. It's here to ensure regular update
      * even in cases when item processing takes too long, so the update in {@link ItemProcessingGatekeeper}
@@ -170,7 +228,11 @@ public class ProcessingCoordinator<I> {
             subtask.setName("Worker thread " + (i+1) + " of " + threadsCount);
             subtask.setExecutionEnvironment(CloneUtil.clone(coordinatorTask.getExecutionEnvironment()));
             subtask.setExecutionMode(activityRun.getTaskExecutionMode());
-            subtask.startLightweightHandler();
+            if (virtualThreads) {
+                subtask.startLightweightHandlerInVirtualThread();
+            } else {
+                subtask.startLightweightHandler();
+            }
             LOGGER.trace("Worker subtask {} created", subtask);
         }
     }
@@ -179,6 +241,25 @@ public class ProcessingCoordinator<I> {
         return multithreaded;
     }
 
+    /**
+     * Returns the batch of operation execution records for given (worker or coordinator) task.
+     * Returns null if the records should not be batched.
+     */
+    public @Nullable OperationExecutionRecorderForTasks.Batch getOperationExecutionRecordsBatch(@NotNull RunningTask task) {
+        // If batching is not configured, the function returns null, and nothing is put into the map.
+        return operationExecutionRecordsBatches.computeIfAbsent(
+                task.getTaskIdentifier(),
+                k -> activityRun.getBeans().operationExecutionRecorder.createBatchIfConfigured());
+    }
+
+    /** Writes pending operation execution records for given (worker or coordinator) task, if there are any. */
+    private void flushOperationExecutionRecords(@NotNull RunningTask task, OperationResult result) {
+        OperationExecutionRecorderForTasks.Batch batch = operationExecutionRecordsBatches.get(task.getTaskIdentifier());
+        if (batch != null) {
+            batch.flush(result);
+        }
+    }
+
     /**
      * Tells the workers that they should not expect any more work and waits for their completion
      * (which can occur either because of queue is empty or because canRun is false).
@@ -188,8 +269,21 @@ public class ProcessingCoordinator<I> {
         LOGGER.trace("ProcessingCoordinator: finishing processing. Coordinator task canRun = {}", coordinatorTask.canRun());
 
         allItemsSubmitted.set(true);
+        if (multithreaded) {
+            assert requestsBuffer != null;
+            requestsBuffer.close();
+        }
         waitForWorkersFinish(result);
         nackQueuedRequests(result);
+        flushAllOperationExecutionRecords(result);
+    }
+
+    /** Workers flush their own batches; this is for the coordinator one, and for any leftovers. */
+    private void flushAllOperationExecutionRecords(OperationResult result) {
+        for (OperationExecutionRecorderForTasks.Batch batch : operationExecutionRecordsBatches.values()) {
+            batch.flush(result);
+        }
+        operationExecutionRecordsBatches.clear();
     }
 
     private void waitForWorkersFinish(OperationResult result) {
@@ -227,10 +321,33 @@ public class ProcessingCoordinator<I> {
 
             String taskIdentifier = workerTask.getTaskIdentifier();
 
+            ExternalCallsLimiter.setThreadLocal(externalCallsSemaphore);
+            try {
+                processRequests(workerTask, taskIdentifier);
+                flushOperationExecutionRecords(workerTask, workerSpecificResult);
+            } finally {
+                ExternalCallsLimiter.unsetThreadLocal();
+            }
+
+            int reservedRequests = requestsBuffer.getReservedRequestsCount(taskIdentifier);
+            if (reservedRequests > 0) {
+                LOGGER.warn("Worker task exiting but it has {} reserved (pre-assigned) change requests", reservedRequests);
+            }
+            workerTask.refreshThreadLocalStatistics();
+        }
+
+        private void processRequests(RunningLightweightTask workerTask, String taskIdentifier) {
+            assert requestsBuffer != null;
             while (canRun(workerTask)) {
 
                 workerTask.refreshThreadLocalStatistics();
-                ItemProcessingRequest<I> request = requestsBuffer.poll(taskIdentifier);
+                ItemProcessingRequest<I> request;
+                try {
+                    request = requestsBuffer.poll(taskIdentifier, WORKER_THREAD_WAIT_FOR_REQUEST);
+                } catch (InterruptedException e) {
+                    LOGGER.trace("Waiting interrupted, exiting");
+                    break;
+                }
 
                 if (request != null) {
                     try {
@@ -241,29 +358,15 @@ public class ProcessingCoordinator<I> {
                         requestsBuffer.markProcessed(request, taskIdentifier);
                         treatOperationResultAfterOperation();
                     }
+                } else if (allItemsSubmitted.get()) {
+                    LOGGER.trace("Queue is empty and nothing more is expected - exiting");
+                    break;
                 } else {
-                    if (allItemsSubmitted.get()) {
-                        LOGGER.trace("Queue is empty and nothing more is expected - exiting");
-                        break;
-                    } else {
-                        LOGGER.trace("No requests to be processed but expecting some to come. Waiting for {} msecs",
-                                WORKER_THREAD_WAIT_FOR_REQUEST);
-                        try {
-                            //noinspection BusyWait
-                            Thread.sleep(WORKER_THREAD_WAIT_FOR_REQUEST);
-                        } catch (InterruptedException e) {
-                            LOGGER.trace("Waiting interrupted, exiting");
-                            break;
-                        }
-                    }
+                    LOGGER.trace("No request arrived within {} msecs, re-checking the state", WORKER_THREAD_WAIT_FOR_REQUEST);
+                    // Not keeping the records unwritten while idle (e.g. in live sync or async update).
+                    flushOperationExecutionRecords(workerTask, workerSpecificResult);
                 }
             }
-
-            int reservedRequests = requestsBuffer.getReservedRequestsCount(taskIdentifier);
-            if (reservedRequests > 0) {
-                LOGGER.warn("Worker task exiting but it has {} reserved (pre-assigned) change requests", reservedRequests);
-            }
-            workerTask.refreshThreadLocalStatistics();
         }
 
         private void treatOperationResultAfterOperation() {
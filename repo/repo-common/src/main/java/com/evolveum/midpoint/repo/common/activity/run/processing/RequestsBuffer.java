@@ -8,43 +8,62 @@
 package com.evolveum.midpoint.repo.common.activity.run.processing;
 
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+import com.evolveum.midpoint.schema.AcknowledgementSink;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 
 /**
- * TODO fix the description
+ * <p>Stores requests to be processed and hands them over from the coordinator to worker threads.</p>
  *
- * <p>Stores requests to be processed.</p>
+ * <p>The handoff is push-based: workers block in {@link #poll(String, long)} until a request is available
+ * (or the buffer is closed), and the coordinator blocks in {@link #offer(AcknowledgementSink, long)} while the buffer
+ * is full. This provides the backpressure without any busy waiting on either side.</p>
  *
- * <p>Its primary responsibility is that it has to ensure that changes related to given primary identifier are processed exactly
- * in the order in which they were fetched from the resource (recorded as {@link com.evolveum.midpoint.provisioning.ucf.api.Change#localSequenceNumber}).
+ * <p>Another responsibility is that it has to ensure that requests related to given correlation value (e.g. primary identifier)
+ * are processed exactly in the order in which they were fetched from the source (recorded as
+ * {@link com.evolveum.midpoint.provisioning.ucf.api.Change#localSequenceNumber}).
  * This responsibility is ensured by the concepts of binding and reservation.</p>
  *
- * <p>Primary identifier I is said to be _bound_ to task T if an object with this identifier it is being currently processed by T
- * or is waiting to be processed by T (reserved for T). See {@link #bind(ProcessChangeRequest, String)} and {@link #unbind(ProcessChangeRequest, String)}
- * methods.</p>
+ * <p>Correlation value V is said to be _bound_ to task T if a request with this value it is being currently processed by T
+ * or is waiting to be processed by T (reserved for T). See {@link #bind(AcknowledgementSink, String)} and
+ * {@link #unbind(AcknowledgementSink, String)} methods. This gives the per-worker affinity for correlated requests.</p>
  *
  * <p>Reservation is represented by a queue of requests waiting to be processed by specified subtask. A request gets
  * onto this queue if it's fetched from the global queue but cannot be processed because it is bound to a subtask different
- * from the current one. So it's put into "owning" task reserved requests queue. See {@link #reserve(ProcessChangeRequest, String)}.</p>
+ * from the current one. So it's put into "owning" task reserved requests queue. See {@link #reserve(AcknowledgementSink, String)}.</p>
+ *
+ * <p>All the state is guarded by a single {@link #lock}.</p>
  */
 @SuppressWarnings("JavadocReference")
-class RequestsBuffer<I> {
+class RequestsBuffer<R extends AcknowledgementSink> {
 
     private static final Trace LOGGER = TraceManager.getTrace(RequestsBuffer.class);
 
-    private static final long REQUEST_QUEUE_OFFER_TIMEOUT = 1000L;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when a request is put into the global queue or a reserved queue, or when the buffer is closed. */
+    private final Condition requestAvailable = lock.newCondition();
+
+    /** Signalled when a request is taken from the global queue. */
+    private final Condition spaceAvailable = lock.newCondition();
+
+    /**
+     * Global queue of waiting requests. Bounded by {@link #capacity}.
+     */
+    private final Deque<R> globalQueue;
+
+    private final int capacity;
 
     /**
-     * Global queue of waiting requests.
+     * Set when no more requests are going to be offered. Waiting workers are woken up and they do not wait anymore.
      */
-    private final BlockingQueue<ItemProcessingRequest<I>> globalQueue;
+    private boolean closed;
 
     /**
      * Current bindings of resource objects (their identifiers) to subtasks.
@@ -60,35 +79,71 @@ class RequestsBuffer<I> {
      * Entry key: task identifier.
      * Entry value: queue of requests. The requests are sorted by change identifier, to ensure processing in the correct order.
      */
-    private final Map<String, PriorityQueue<ItemProcessingRequest<I>>> reservedRequestsQueueMap = new HashMap<>();
+    private final Map<String, PriorityQueue<R>> reservedRequestsQueueMap = new HashMap<>();
 
     RequestsBuffer(int threadsCount) {
-        int globalQueueSize = threadsCount*2; // actually, size of threadsCount should be sufficient but it doesn't hurt if queue is larger
-        globalQueue = new ArrayBlockingQueue<>(globalQueueSize);
+        capacity = threadsCount*2; // actually, size of threadsCount should be sufficient but it doesn't hurt if queue is larger
+        globalQueue = new ArrayDeque<>(capacity);
     }
 
     /**
-     * Offers a request for processing.
-     *
-     * This method is intentionally NOT synchronized.
+     * Offers a request for processing. Waits (at most specified time) if the buffer is full.
      *
+     * @return true if the request was put into the buffer, false if the waiting time elapsed
      * @throws InterruptedException If present, the request was not put into the queue.
      */
-    boolean offer(ItemProcessingRequest<I> request) throws InterruptedException {
-        return globalQueue.offer(request, REQUEST_QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
+    boolean offer(R request, long timeout) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (globalQueue.size() >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = spaceAvailable.awaitNanos(nanos);
+            }
+            globalQueue.addLast(request);
+            requestAvailable.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Tries to obtain a request to be processed by the specified subtask.
-     * Does NOT wait, it just checks reserved requests and global queues.
+     * Obtains a request to be processed by the specified subtask. Checks reserved requests and global queue;
+     * if there is nothing available, waits (at most specified time) until something arrives or the buffer is closed.
      *
      * Post-conditions:
-     * - Returns null only if there are no reserved nor globally available requests.
+     * - Returns null only if there are no reserved nor globally available requests (after the waiting).
      * - If the request is not null, the primary identifier of the request is (successfully) bound to the specified task.
+     *
+     * @throws InterruptedException If present, no request was taken.
+     */
+    R poll(String taskIdentifier, long timeout) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                R request = pollAvailable(taskIdentifier);
+                if (request != null || closed || nanos <= 0) {
+                    return request;
+                }
+                LOGGER.trace("No requests to be processed but expecting some to come. Waiting for at most {} msecs",
+                        TimeUnit.NANOSECONDS.toMillis(nanos));
+                nanos = requestAvailable.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Does NOT wait, it just checks reserved requests and global queues. Must be called under the lock.
      */
-    synchronized ItemProcessingRequest<I> poll(String taskIdentifier) {
+    private R pollAvailable(String taskIdentifier) {
 
-        ItemProcessingRequest<I> reserved = getNextReservedRequest(taskIdentifier);
+        R reserved = getNextReservedRequest(taskIdentifier);
         if (reserved != null) {
             LOGGER.trace("Got reserved (pre-assigned) request: {}", reserved);
             if (bind(reserved, taskIdentifier)) {
@@ -100,14 +155,16 @@ class RequestsBuffer<I> {
         }
 
         for (;;) {
-            ItemProcessingRequest<I> request = globalQueue.poll();
+            R request = globalQueue.pollFirst();
             LOGGER.trace("Got request from global queue: {}", request);
 
             if (request == null) {
-                // Nothing in the queue for now. OK, let's try next time.
+                // Nothing in the queue for now.
                 return null;
             }
 
+            spaceAvailable.signal();
+
             if (bind(request, taskIdentifier)) {
                 return request;
             } else {
@@ -123,7 +180,7 @@ class RequestsBuffer<I> {
      * @return true if the request was successfully bound to the current task;
      *         false if it was reassigned (so this task has to fetch another request).
      */
-    private boolean bind(ItemProcessingRequest<I> request, String taskIdentifier) {
+    private boolean bind(R request, String taskIdentifier) {
         if (!(request instanceof CorrelatableProcessingRequest)) {
             return true;
         }
@@ -158,8 +215,8 @@ class RequestsBuffer<I> {
      *
      * @return Change reserved for given task; or null if there's nothing there.
      */
-    private ItemProcessingRequest<I> getNextReservedRequest(String taskIdentifier) {
-        Queue<ItemProcessingRequest<I>> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
+    private R getNextReservedRequest(String taskIdentifier) {
+        Queue<R> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
         if (reservedRequests != null) {
             return reservedRequests.poll();
         } else {
@@ -167,20 +224,27 @@ class RequestsBuffer<I> {
         }
     }
 
-    private void reserve(ItemProcessingRequest<I> request, String owningTaskIdentifier) {
+    private void reserve(R request, String owningTaskIdentifier) {
         reservedRequestsQueueMap
                 .computeIfAbsent(owningTaskIdentifier, key -> new PriorityQueue<>())
                 .offer(request);
+        // We do not know which of the waiting workers is the owner, so we have to wake them all.
+        requestAvailable.signalAll();
     }
 
     /**
      * Marks specified request as processed: Unbinds its primary identifier from the calling subtask.
      */
-    synchronized void markProcessed(ItemProcessingRequest<I> request, String taskIdentifier) {
-        unbind(request, taskIdentifier);
+    void markProcessed(R request, String taskIdentifier) {
+        lock.lock();
+        try {
+            unbind(request, taskIdentifier);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private void unbind(ItemProcessingRequest<I> request, String taskIdentifier) {
+    private void unbind(R request, String taskIdentifier) {
         if (!(request instanceof CorrelatableProcessingRequest)) {
             return;
         }
@@ -203,9 +267,9 @@ class RequestsBuffer<I> {
     }
 
     private boolean isReserved(Object primaryIdentifier, String taskIdentifier) {
-        Queue<ItemProcessingRequest<I>> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
+        Queue<R> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
         if (reservedRequests != null) {
-            for (ItemProcessingRequest<I> request : reservedRequests) {
+            for (R request : reservedRequests) {
                 if (request instanceof CorrelatableProcessingRequest &&
                         primaryIdentifier.equals(((CorrelatableProcessingRequest) request).getCorrelationValue())) {
                     return true;
@@ -215,9 +279,27 @@ class RequestsBuffer<I> {
         return false;
     }
 
-    synchronized int getReservedRequestsCount(String taskIdentifier) {
-        Queue<ItemProcessingRequest<I>> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
-        return reservedRequests != null ? reservedRequests.size() : 0;
+    /**
+     * Tells the buffer that no more requests will be offered. Workers waiting for requests are woken up.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            requestAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getReservedRequestsCount(String taskIdentifier) {
+        lock.lock();
+        try {
+            Queue<R> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
+            return reservedRequests != null ? reservedRequests.size() : 0;
+        } finally {
+            lock.unlock();
+        }
     }
 
     // should be called when there's no concurrency
@@ -230,9 +312,9 @@ class RequestsBuffer<I> {
         return nackCounter.get();
     }
 
-    private void nackAll(Queue<ItemProcessingRequest<I>> queue, AtomicInteger counter, OperationResult result) {
+    private void nackAll(Queue<R> queue, AtomicInteger counter, OperationResult result) {
         for (;;) {
-            ItemProcessingRequest<I> request = queue.poll();
+            R request = queue.poll();
             if (request == null) {
                 break;
             } else {
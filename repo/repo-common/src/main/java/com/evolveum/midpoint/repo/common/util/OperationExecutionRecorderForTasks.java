@@ -7,11 +7,16 @@
 
 package com.evolveum.midpoint.repo.common.util;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.xml.namespace.QName;
 
+import com.evolveum.midpoint.repo.api.ObjectModification;
+
 import com.evolveum.midpoint.schema.util.task.ActivityPath;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -68,6 +73,17 @@ public class OperationExecutionRecorderForTasks {
         }
     }
 
+    /**
+     * Creates a batch for writing operation execution records, if batching is configured (see `batchSize` in
+     * the recording strategy for complex records).
+     *
+     * @return null if the records should be written one by one
+     */
+    public @Nullable Batch createBatchIfConfigured() {
+        int batchSize = writer.getBatchSize(OperationExecutionRecordTypeType.COMPLEX);
+        return batchSize > 1 ? new Batch(batchSize) : null;
+    }
+
     private void recordOperationExecutionToOwner(Target target, OperationExecutionType recordToAdd,
             RunningTask task, OperationResult result) {
         ObjectType owner = target.ownerObject.asObjectable();
@@ -114,6 +130,98 @@ public class OperationExecutionRecorderForTasks {
         return operation;
     }
 
+    /**
+     * Collects operation execution records destined to their owners and writes them to the repository
+     * using a single {@link OperationExecutionWriter#writeBatch(java.util.Collection, OperationResult)} call.
+     *
+     * Records that have to go to the backup holder are written immediately, as well as all records in case the batch write
+     * fails.
+     *
+     * Not thread-safe: each worker should use its own instance, and must not forget to {@link #flush(OperationResult)} it.
+     */
+    public class Batch {
+
+        private final int maxSize;
+        @NotNull private final List<PendingRecord> pendingRecords = new ArrayList<>();
+
+        private Batch(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * The same as {@link #recordOperationExecution(Target, RunningTask, ActivityPath, OperationResult, OperationResult)}
+         * but the record can be written later.
+         */
+        public void add(@NotNull Target target, @NotNull RunningTask task, @NotNull ActivityPath activityPath,
+                @NotNull OperationResult resultToRecord, @NotNull OperationResult result) {
+            OperationExecutionType recordToAdd = createExecutionRecord(task, activityPath, resultToRecord);
+            if (target.canWriteToObject()) {
+                pendingRecords.add(new PendingRecord(target, recordToAdd, task));
+                if (pendingRecords.size() >= maxSize) {
+                    flush(result);
+                }
+            } else {
+                recordOperationExecutionToBackupHolder(target, recordToAdd, task, result);
+            }
+        }
+
+        /** Writes all pending records. */
+        public void flush(@NotNull OperationResult result) {
+            if (pendingRecords.isEmpty()) {
+                return;
+            }
+            List<PendingRecord> batched = new ArrayList<>(pendingRecords.size());
+            List<ObjectModification<?>> modifications = new ArrayList<>(pendingRecords.size());
+            for (PendingRecord pendingRecord : pendingRecords) {
+                try {
+                    ObjectModification<?> modification = writer.prepareModification(pendingRecord.createRequest(), result);
+                    if (modification != null) {
+                        batched.add(pendingRecord);
+                        modifications.add(modification);
+                    }
+                } catch (Exception e) {
+                    LOGGER.debug("Couldn't prepare operation execution for {}, will write it separately",
+                            pendingRecord.owner(), e);
+                    writeIndividually(pendingRecord, result);
+                }
+            }
+            pendingRecords.clear();
+
+            if (modifications.isEmpty()) {
+                return;
+            }
+            try {
+                writer.writeBatch(modifications, result);
+                LOGGER.trace("Written {} operation execution records in a batch", modifications.size());
+            } catch (Exception e) {
+                // E.g. one of the objects was deleted in the meanwhile. Individual writes will sort this out.
+                LOGGER.debug("Couldn't write a batch of {} operation execution records, writing them one by one",
+                        modifications.size(), e);
+                result.muteLastSubresultError();
+                for (PendingRecord pendingRecord : batched) {
+                    writeIndividually(pendingRecord, result);
+                }
+            }
+        }
+
+        private void writeIndividually(PendingRecord pendingRecord, OperationResult result) {
+            recordOperationExecutionToOwner(pendingRecord.target(), pendingRecord.recordToAdd(), pendingRecord.task(), result);
+        }
+    }
+
+    private record PendingRecord(@NotNull Target target, @NotNull OperationExecutionType recordToAdd, @NotNull RunningTask task) {
+
+        private ObjectType owner() {
+            return target.ownerObject.asObjectable();
+        }
+
+        private OperationExecutionWriter.Request<? extends ObjectType> createRequest() {
+            ObjectType owner = owner();
+            return new OperationExecutionWriter.Request<>(
+                    owner.getClass(), owner.getOid(), recordToAdd, owner.getOperationExecution(), true);
+        }
+    }
+
     /**
      * Specification of where to write operation execution record.
      */
@@ -12,6 +12,7 @@ import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.util.CloneUtil;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.repo.api.ObjectModification;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.api.SystemConfigurationChangeDispatcher;
 import com.evolveum.midpoint.repo.api.SystemConfigurationChangeListener;
@@ -69,6 +70,7 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
     private static final int DEFAULT_NUMBER_OF_RESULTS_TO_KEEP = 5;
 
     private static final String OP_WRITE = OperationExecutionWriter.class.getName() + ".write";
+    private static final String OP_WRITE_BATCH = OperationExecutionWriter.class.getName() + ".writeBatch";
 
     /** Extracted recorded strategy for simple OpExec records (from system configuration). */
     private volatile OperationExecutionRecordingStrategyType simpleExecsRecordingStrategy;
@@ -89,35 +91,16 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
     public <O extends ObjectType> void write(Request<O> request, OperationResult parentResult)
             throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
 
-        OperationExecutionRecordTypeType currentRecordType = toNotNull(request.recordToAdd.getRecordType());
-
         OperationResult result = parentResult.subresult(OP_WRITE)
                 .setMinor()
                 .build();
         try {
-            if (shouldSkipOperationExecutionRecording(currentRecordType)) {
-                LOGGER.trace("Skipping operation execution recording because it's turned off.");
-                return;
-            }
-
-            CleaningSpecification cleaningSpec = CleaningSpecification.createFrom(selectCleanupPolicy(currentRecordType));
-
-            boolean addingRecord;
-            if (cleaningSpec.isKeepNone()) {
-                LOGGER.trace("Will skip operation execution recording because it's turned off (recordsToKeep is set to 0).");
-                addingRecord = false;
-            } else if (request.recordToAdd.getStatus() == OperationResultStatusType.SUCCESS &&
-                    shouldSkipOperationExecutionRecordingWhenSuccess(currentRecordType)) {
-                LOGGER.trace("Will skip operation execution recording because it's turned off for successful processing.");
-                addingRecord = false;
-            } else {
-                addingRecord = true;
-            }
-
             try {
-                List<OperationExecutionType> recordsToAdd = addingRecord ? singletonList(request.recordToAdd) : emptyList();
-                List<OperationExecutionType> recordsToDelete = getRecordsToDelete(request, cleaningSpec, addingRecord, result);
-                executeChanges(request, recordsToAdd, recordsToDelete, result);
+                ObjectModification<O> modification = prepareModification(request, result);
+                if (modification != null) {
+                    repositoryService.modifyObject(
+                            modification.type(), modification.oid(), modification.modifications(), result);
+                }
             } catch (ObjectNotFoundException e) {
                 if (!request.deletedOk) {
                     throw e;
@@ -135,6 +118,61 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
         }
     }
 
+    /**
+     * Computes the modification that writes the operation execution record and deletes the one(s) that have to be deleted,
+     * but does not execute it.
+     *
+     * @return null if the recording is turned off
+     */
+    public <O extends ObjectType> @Nullable ObjectModification<O> prepareModification(
+            Request<O> request, OperationResult result) throws SchemaException, ObjectNotFoundException {
+
+        OperationExecutionRecordTypeType currentRecordType = toNotNull(request.recordToAdd.getRecordType());
+
+        if (shouldSkipOperationExecutionRecording(currentRecordType)) {
+            LOGGER.trace("Skipping operation execution recording because it's turned off.");
+            return null;
+        }
+
+        CleaningSpecification cleaningSpec = CleaningSpecification.createFrom(selectCleanupPolicy(currentRecordType));
+
+        boolean addingRecord;
+        if (cleaningSpec.isKeepNone()) {
+            LOGGER.trace("Will skip operation execution recording because it's turned off (recordsToKeep is set to 0).");
+            addingRecord = false;
+        } else if (request.recordToAdd.getStatus() == OperationResultStatusType.SUCCESS &&
+                shouldSkipOperationExecutionRecordingWhenSuccess(currentRecordType)) {
+            LOGGER.trace("Will skip operation execution recording because it's turned off for successful processing.");
+            addingRecord = false;
+        } else {
+            addingRecord = true;
+        }
+
+        List<OperationExecutionType> recordsToAdd = addingRecord ? singletonList(request.recordToAdd) : emptyList();
+        List<OperationExecutionType> recordsToDelete = getRecordsToDelete(request, cleaningSpec, addingRecord, result);
+        return new ObjectModification<>(request.objectType, request.oid, createDeltas(request, recordsToAdd, recordsToDelete));
+    }
+
+    /**
+     * Executes modifications prepared by {@link #prepareModification(Request, OperationResult)} in a single repository call.
+     * If this fails, none or only some of the modifications may be applied; the caller should retry them one by one.
+     */
+    public void writeBatch(Collection<ObjectModification<?>> modifications, OperationResult parentResult)
+            throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
+        OperationResult result = parentResult.subresult(OP_WRITE_BATCH)
+                .setMinor()
+                .addParam("count", modifications.size())
+                .build();
+        try {
+            repositoryService.modifyObjects(modifications, result);
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.close();
+        }
+    }
+
     private OperationExecutionRecordTypeType toNotNull(OperationExecutionRecordTypeType recordType) {
         return MoreObjects.firstNonNull(recordType, SIMPLE);
     }
@@ -156,9 +194,9 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
         return toNotNull(recordType) == SIMPLE ? simpleVersion : complexVersion;
     }
 
-    private <O extends ObjectType> void executeChanges(Request<O> request,
-            List<OperationExecutionType> recordsToAdd, List<OperationExecutionType> recordsToDelete, OperationResult result)
-            throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
+    private <O extends ObjectType> List<ItemDelta<?, ?>> createDeltas(Request<O> request,
+            List<OperationExecutionType> recordsToAdd, List<OperationExecutionType> recordsToDelete)
+            throws SchemaException {
         // Note that even recordToAdd can have a parent: e.g. if the write to primary owner fails, and we try
         // the secondary one - the recordToAdd would be already inserted in the respective delta! Hence always cloning it.
         List<ItemDelta<?, ?>> deltas = prismContext.deltaFor(request.objectType)
@@ -167,7 +205,7 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
                 .add(PrismContainerValue.toPcvList(CloneUtil.cloneCollectionMembers(recordsToAdd)))
                 .asItemDeltas();
         LOGGER.trace("Operation execution delta:\n{}", DebugUtil.debugDumpLazily(deltas));
-        repositoryService.modifyObject(request.objectType, request.oid, deltas, result);
+        return deltas;
     }
 
     private <O extends ObjectType> List<OperationExecutionType> getRecordsToDelete(Request<O> request,
@@ -301,6 +339,14 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
         return recordingStrategy != null && Boolean.TRUE.equals(recordingStrategy.isSkip());
     }
 
+    /**
+     * How many records should be collected before they are written in a single batch. Values lower than 2 mean no batching.
+     */
+    public int getBatchSize(OperationExecutionRecordTypeType recordType) {
+        OperationExecutionRecordingStrategyType recordingStrategy = selectRecordingStrategy(recordType);
+        return recordingStrategy != null && recordingStrategy.getBatchSize() != null ? recordingStrategy.getBatchSize() : 1;
+    }
+
     private boolean shouldSkipOperationExecutionRecordingWhenSuccess(OperationExecutionRecordTypeType recordType) {
         OperationExecutionRecordingStrategyType recordingStrategy = selectRecordingStrategy(recordType);
         return recordingStrategy != null && Boolean.TRUE.equals(recordingStrategy.isSkipWhenSuccess());
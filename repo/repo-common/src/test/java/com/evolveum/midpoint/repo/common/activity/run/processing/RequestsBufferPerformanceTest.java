@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.common.activity.run.processing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.schema.AcknowledgementSink;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Measures items/sec of the request handoff in {@link RequestsBuffer}, with many workers and correlated requests.
+ *
+ * The producer is slightly slower than the workers (as is usual for resource searches), so the buffer
+ * is frequently empty, and the idle latency of the workers shows up in the throughput.
+ * Functional aspects are covered by {@link RequestsBufferTest}.
+ *
+ * Currently not a part of automated test suite.
+ */
+public class RequestsBufferPerformanceTest extends AbstractUnitTest {
+
+    private static final int THREADS = 32;
+    private static final int ITEMS = 20_000;
+    private static final int CORRELATION_VALUES = 1_000;
+
+    private static final long PRODUCE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long PROCESS_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void test100Handoff() throws Exception {
+        given();
+        RequestsBuffer<MockRequest> buffer = new RequestsBuffer<>(THREADS);
+        AtomicBoolean allItemsSubmitted = new AtomicBoolean();
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger acknowledged = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String taskIdentifier = "worker-" + i;
+            Thread worker = new Thread(
+                    () -> runWorker(buffer, taskIdentifier, allItemsSubmitted, processed),
+                    taskIdentifier);
+            workers.add(worker);
+        }
+
+        when();
+        long start = System.nanoTime();
+        workers.forEach(Thread::start);
+        for (int i = 0; i < ITEMS; i++) {
+            LockSupport.parkNanos(PRODUCE_NANOS);
+            MockRequest request = new MockRequest(i, acknowledged);
+            while (!buffer.offer(request, 1000L)) {
+                // just try again
+            }
+        }
+        allItemsSubmitted.set(true);
+        buffer.close();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long duration = System.nanoTime() - start;
+
+        then();
+        double itemsPerSecond = ITEMS * 1e9 / duration;
+        display(String.format("%,d items in %,d ms: %,.1f items/sec",
+                ITEMS, TimeUnit.NANOSECONDS.toMillis(duration), itemsPerSecond));
+        assertThat(processed.get()).as("processed items").isEqualTo(ITEMS);
+        assertThat(buffer.nackAllRequests(new OperationResult("dummy"))).as("pending requests").isZero();
+        assertThat(acknowledged.get()).as("nacked requests").isZero();
+    }
+
+    private void runWorker(
+            RequestsBuffer<MockRequest> buffer, String taskIdentifier,
+            AtomicBoolean allItemsSubmitted, AtomicInteger processed) {
+        try {
+            for (;;) {
+                MockRequest request = buffer.poll(taskIdentifier, 100L);
+                if (request != null) {
+                    LockSupport.parkNanos(PROCESS_NANOS);
+                    processed.incrementAndGet();
+                    buffer.markProcessed(request, taskIdentifier);
+                } else if (allItemsSubmitted.get()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static class MockRequest
+            implements AcknowledgementSink, CorrelatableProcessingRequest, Comparable<MockRequest> {
+
+        private final int sequentialNumber;
+        private final AtomicInteger acknowledged;
+
+        private MockRequest(int sequentialNumber, AtomicInteger acknowledged) {
+            this.sequentialNumber = sequentialNumber;
+            this.acknowledged = acknowledged;
+        }
+
+        @Override
+        public Object getCorrelationValue() {
+            return sequentialNumber % CORRELATION_VALUES;
+        }
+
+        @Override
+        public void acknowledge(boolean release, OperationResult result) {
+            acknowledged.incrementAndGet();
+        }
+
+        @Override
+        public int compareTo(@NotNull MockRequest o) {
+            return Integer.compare(sequentialNumber, o.sequentialNumber);
+        }
+
+        @Override
+        public String toString() {
+            return "MockRequest#" + sequentialNumber;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.common.activity.run.processing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.schema.AcknowledgementSink;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Functional tests for {@link RequestsBuffer}: ordering, correlation, waking up the waiting threads, and closing.
+ */
+public class RequestsBufferTest extends AbstractUnitTest {
+
+    private static final String WORKER_1 = "worker-1";
+    private static final String WORKER_2 = "worker-2";
+
+    /** Long enough not to elapse in the tests; if it does, the respective waiting thread was not woken up. */
+    private static final long LONG_TIMEOUT = 30_000L;
+
+    /** The threads are expected to be woken up much sooner than this. */
+    private static final long WAKE_UP_LIMIT = 10_000L;
+
+    @Test
+    public void test100GlobalQueueOrder() throws Exception {
+        given("a buffer with uncorrelated requests");
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(2);
+        for (int i = 0; i < 3; i++) {
+            assertThat(buffer.offer(new TestRequest(i), 0)).as("offered").isTrue();
+        }
+
+        expect("requests are returned in the order they were offered");
+        assertThat(buffer.poll(WORKER_1, 0)).extracting(r -> r.sequentialNumber).isEqualTo(0);
+        assertThat(buffer.poll(WORKER_2, 0)).extracting(r -> r.sequentialNumber).isEqualTo(1);
+        assertThat(buffer.poll(WORKER_1, 0)).extracting(r -> r.sequentialNumber).isEqualTo(2);
+
+        and("nothing is returned when the buffer is empty and no waiting is requested");
+        assertThat(buffer.poll(WORKER_1, 0)).isNull();
+    }
+
+    /** Requests with the same correlation value are processed by the same worker, in the order of their sequence numbers. */
+    @Test
+    public void test110CorrelatedRequests() throws Exception {
+        given("a buffer with requests, some of them correlated");
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(2);
+        TestRequest x1 = new TestRequest(1, "x");
+        TestRequest y2 = new TestRequest(2, "y");
+        TestRequest x3 = new TestRequest(3, "x");
+        TestRequest x4 = new TestRequest(4, "x");
+        buffer.offer(x1, 0);
+        buffer.offer(y2, 0);
+        buffer.offer(x3, 0);
+        buffer.offer(x4, 0);
+
+        when("the first worker takes the first request, and the second worker takes all it can");
+        assertThat(buffer.poll(WORKER_1, 0)).isSameAs(x1);
+        assertThat(buffer.poll(WORKER_2, 0)).isSameAs(y2);
+        assertThat(buffer.poll(WORKER_2, 0)).as("request for the second worker").isNull();
+
+        then("the correlated requests are reserved for the first worker");
+        assertThat(buffer.getReservedRequestsCount(WORKER_1)).isEqualTo(2);
+        assertThat(buffer.getReservedRequestsCount(WORKER_2)).isZero();
+
+        when("the first worker finishes the request");
+        buffer.markProcessed(x1, WORKER_1);
+
+        then("the correlated requests go to the first worker in the order, even if the other worker asks first");
+        assertThat(buffer.poll(WORKER_2, 0)).isNull();
+        assertThat(buffer.poll(WORKER_1, 0)).isSameAs(x3);
+        buffer.markProcessed(x3, WORKER_1);
+        assertThat(buffer.poll(WORKER_1, 0)).isSameAs(x4);
+        buffer.markProcessed(x4, WORKER_1);
+
+        and("after all of them are processed, the correlation value is free for any worker");
+        TestRequest x5 = new TestRequest(5, "x");
+        buffer.offer(x5, 0);
+        assertThat(buffer.poll(WORKER_2, 0)).isSameAs(x5);
+    }
+
+    /** A worker waiting for a request is woken up when the request is offered (not after the timeout). */
+    @Test
+    public void test120WorkerIsWokenUpByOffer() throws Exception {
+        given("a worker waiting for a request");
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(1);
+        CompletableFuture<TestRequest> polled = pollAsync(buffer, WORKER_1);
+
+        when("a request is offered");
+        TestRequest request = new TestRequest(1);
+        buffer.offer(request, 0);
+
+        then("the worker gets it");
+        assertThat(polled.get(WAKE_UP_LIMIT, TimeUnit.MILLISECONDS)).isSameAs(request);
+    }
+
+    /** A worker waiting for a request is woken up when a request is reserved for it by another worker. */
+    @Test
+    public void test130WorkerIsWokenUpByReservation() throws Exception {
+        given("a worker processing a request, and then waiting for another one");
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(2);
+        TestRequest x1 = new TestRequest(1, "x");
+        buffer.offer(x1, 0);
+        assertThat(buffer.poll(WORKER_1, 0)).isSameAs(x1);
+        CompletableFuture<TestRequest> polled = pollAsync(buffer, WORKER_1);
+
+        when("a correlated request is offered and taken by the other worker");
+        TestRequest x2 = new TestRequest(2, "x");
+        buffer.offer(x2, 0);
+        // Either the waiting worker or this one gets the request from the global queue; in both cases it ends up
+        // with the waiting worker.
+        assertThat(buffer.poll(WORKER_2, 0)).isNull();
+
+        then("the waiting worker gets it");
+        assertThat(polled.get(WAKE_UP_LIMIT, TimeUnit.MILLISECONDS)).isSameAs(x2);
+    }
+
+    /** The producer waits while the buffer is full, and continues when a worker takes a request. */
+    @Test
+    public void test140OfferWaitsForSpace() throws Exception {
+        given("a full buffer");
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(1); // capacity is 2
+        assertThat(buffer.offer(new TestRequest(1), 0)).isTrue();
+        assertThat(buffer.offer(new TestRequest(2), 0)).isTrue();
+
+        expect("no more requests are accepted without waiting");
+        assertThat(buffer.offer(new TestRequest(3), 10)).as("offered").isFalse();
+
+        when("a producer is waiting, and a worker takes a request");
+        CompletableFuture<Boolean> offered = CompletableFuture.supplyAsync(() -> {
+            try {
+                return buffer.offer(new TestRequest(3), LONG_TIMEOUT);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertThat(buffer.poll(WORKER_1, 0)).extracting(r -> r.sequentialNumber).isEqualTo(1);
+
+        then("the request of the producer is accepted");
+        assertThat(offered.get(WAKE_UP_LIMIT, TimeUnit.MILLISECONDS)).as("offered").isTrue();
+        assertThat(buffer.poll(WORKER_1, 0)).extracting(r -> r.sequentialNumber).isEqualTo(2);
+        assertThat(buffer.poll(WORKER_1, 0)).extracting(r -> r.sequentialNumber).isEqualTo(3);
+    }
+
+    /** Closing the buffer wakes up waiting workers; the requests already in the buffer are still handed out. */
+    @Test
+    public void test150Close() throws Exception {
+        given("a worker waiting for a request");
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(2);
+        CompletableFuture<TestRequest> polled = pollAsync(buffer, WORKER_1);
+
+        when("the buffer is closed");
+        buffer.close();
+
+        then("the worker gets nothing, without waiting for the timeout");
+        assertThat(polled.get(WAKE_UP_LIMIT, TimeUnit.MILLISECONDS)).isNull();
+
+        and("requests that are in the buffer are handed out, and then the workers do not wait");
+        TestRequest request = new TestRequest(1);
+        buffer.offer(request, 0);
+        assertThat(buffer.poll(WORKER_2, LONG_TIMEOUT)).isSameAs(request);
+        long start = System.currentTimeMillis();
+        assertThat(buffer.poll(WORKER_2, LONG_TIMEOUT)).isNull();
+        assertThat(System.currentTimeMillis() - start).as("time spent in poll").isLessThan(WAKE_UP_LIMIT);
+    }
+
+    /** Requests that were not processed (both global and reserved) are negatively acknowledged. */
+    @Test
+    public void test160NackAllRequests() throws Exception {
+        given("a buffer with a global and a reserved request");
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(2);
+        TestRequest x1 = new TestRequest(1, "x");
+        TestRequest x2 = new TestRequest(2, "x");
+        TestRequest y3 = new TestRequest(3, "y");
+        buffer.offer(x1, 0);
+        buffer.offer(x2, 0);
+        buffer.offer(y3, 0);
+        assertThat(buffer.poll(WORKER_1, 0)).isSameAs(x1);
+        assertThat(buffer.poll(WORKER_2, 0)).isSameAs(y3); // x2 is reserved for worker 1 on the way
+        buffer.offer(new TestRequest(4, "z"), 0);
+
+        when("all requests are nacked");
+        int nacked = buffer.nackAllRequests(new OperationResult("nack"));
+
+        then("the reserved and the global requests are nacked");
+        assertThat(nacked).isEqualTo(2);
+        assertThat(x2.nacked).isTrue();
+        assertThat(x1.nacked).isFalse();
+        assertThat(buffer.poll(WORKER_1, 0)).isNull();
+    }
+
+    private CompletableFuture<TestRequest> pollAsync(RequestsBuffer<TestRequest> buffer, String taskIdentifier) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return buffer.poll(taskIdentifier, LONG_TIMEOUT);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    private static class TestRequest
+            implements AcknowledgementSink, CorrelatableProcessingRequest, Comparable<TestRequest> {
+
+        private final int sequentialNumber;
+        private final Object correlationValue;
+        private boolean nacked;
+
+        /** Not correlated with other requests. */
+        private TestRequest(int sequentialNumber) {
+            this(sequentialNumber, "uncorrelated-" + sequentialNumber);
+        }
+
+        private TestRequest(int sequentialNumber, Object correlationValue) {
+            this.sequentialNumber = sequentialNumber;
+            this.correlationValue = correlationValue;
+        }
+
+        @Override
+        public Object getCorrelationValue() {
+            return correlationValue;
+        }
+
+        @Override
+        public void acknowledge(boolean release, OperationResult result) {
+            nacked = true;
+        }
+
+        @Override
+        public int compareTo(@NotNull TestRequest o) {
+            return Integer.compare(sequentialNumber, o.sequentialNumber);
+        }
+
+        @Override
+        public String toString() {
+            return "TestRequest#" + sequentialNumber + "(" + correlationValue + ")";
+        }
+    }
+}
@@ -27,6 +27,7 @@ import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
 import com.evolveum.midpoint.repo.common.activity.run.reports.ActivityReportUtil;
 import com.evolveum.midpoint.repo.common.activity.run.reports.SimpleReportReader;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.BucketingConfigurationOverrides;
+import com.evolveum.midpoint.repo.common.util.OperationExecutionWriter;
 import com.evolveum.midpoint.schema.statistics.ActionsExecutedInformationUtil;
 import com.evolveum.midpoint.schema.util.task.*;
 import com.evolveum.midpoint.schema.util.task.work.WorkDefinitionUtil;
@@ -97,6 +98,7 @@ public class TestActivities extends AbstractRepoCommonTest {
     private static final TestObject<TaskType> TASK_150_MOCK_ITERATIVE = TestObject.file(TEST_DIR, "task-150-mock-iterative.xml", "c21785e9-1c67-492f-bc79-0c51f74561a1");
     private static final TestObject<TaskType> TASK_155_MOCK_ITERATIVE_BUCKETED = TestObject.file(TEST_DIR, "task-155-mock-iterative-bucketed.xml", "02a94071-2eff-4ca0-aa63-3fdf9d540064");
     private static final TestObject<TaskType> TASK_160_MOCK_SEARCH_ITERATIVE = TestObject.file(TEST_DIR, "task-160-mock-search-iterative.xml", "9d8384b3-a007-44e2-a9f7-084a64bdc285");
+    private static final TestObject<TaskType> TASK_165_MOCK_SEARCH_ITERATIVE_BATCHED = TestObject.file(TEST_DIR, "task-165-mock-search-iterative-batched.xml", "3f0e4a52-5a3c-4d0e-9d0b-3b9b0e8f7c65");
     private static final TestObject<TaskType> TASK_170_MOCK_BUCKETED = TestObject.file(TEST_DIR, "task-170-mock-bucketed.xml", "04e257d1-bb25-4675-8e00-f248f164fbc3");
     private static final TestObject<TaskType> TASK_180_BUCKETED_TREE = TestObject.file(TEST_DIR, "task-180-bucketed-tree.xml", "ac3220c5-6ded-4b94-894e-9ed39c05db66");
     private static final TestObject<TaskType> TASK_185_BUCKETED_TREE_ANALYSIS = TestObject.file(TEST_DIR, "task-185-bucketed-tree-analysis.xml", "12f07ab1-41c3-4dba-bf47-3d2a032fa555");
@@ -110,6 +112,7 @@ public class TestActivities extends AbstractRepoCommonTest {
 
     @Autowired private MockRecorder recorder;
     @Autowired private CommonTaskBeans beans;
+    @Autowired private OperationExecutionWriter operationExecutionWriter;
 
     private static final int ROLES = 100;
     private static final String ROLE_NAME_PATTERN = "r%02d";
@@ -728,6 +731,54 @@ public class TestActivities extends AbstractRepoCommonTest {
                 .assertHasWallClockTime();
     }
 
+    /**
+     * Runs mock search-based activity with operation execution records written in batches by two worker threads.
+     * The batch size is chosen so that the records left over are written at the end of the bucket.
+     */
+    @Test
+    public void test165RunMockSearchBasedTaskWithBatchedOperationExecutionRecords() throws Exception {
+        given();
+
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        recorder.reset();
+        operationExecutionWriter.update(
+                new SystemConfigurationType()
+                        .internals(new InternalsConfigurationType()
+                                .complexOperationExecutionRecording(new OperationExecutionRecordingStrategyType()
+                                        .batchSize(7))));
+
+        try {
+            Task task1 = taskAdd(TASK_165_MOCK_SEARCH_ITERATIVE_BATCHED, result);
+
+            when();
+
+            waitForTaskClose(task1.getOid(), result, 10000);
+
+            then();
+
+            task1.refresh(result);
+            assertTask(task1, "after")
+                    .display()
+                    .assertSuccess()
+                    .assertClosed();
+            assertThat(recorder.getExecutions()).as("recorder").hasSize(ROLES);
+
+            and("each role has exactly one operation execution record from the task");
+            List<PrismObject<RoleType>> roles = repositoryService.searchObjects(RoleType.class, null, null, result);
+            assertThat(roles).as("roles").hasSize(ROLES);
+            for (PrismObject<RoleType> role : roles) {
+                long records = role.asObjectable().getOperationExecution().stream()
+                        .filter(r -> r.getTaskRef() != null && task1.getOid().equals(r.getTaskRef().getOid()))
+                        .count();
+                assertThat(records).as("operation execution records in " + role).isEqualTo(1);
+            }
+        } finally {
+            operationExecutionWriter.update(null);
+        }
+    }
+
     /**
      * Runs mock search-based activity with buckets.
      */
@@ -32,6 +32,7 @@ import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.util.PrismAsserts;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.repo.common.AbstractRepoCommonTest;
 import com.evolveum.midpoint.repo.common.activity.definition.ActivityDistributionDefinition;
 import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
@@ -80,6 +81,8 @@ public class TestBucketingStatic extends AbstractRepoCommonTest {
     private static final TestObject<TaskType> TASK_030 = TestObject.file(TEST_DIR, "task-030.xml", "6fdcfd71-ded8-4ce1-8197-0a785695fe70");
     private static final TestObject<TaskType> TASK_040 = TestObject.file(TEST_DIR, "task-040.xml", "31d5e04a-871e-42cf-8ec1-35fab4f0d706");
     private static final TestObject<TaskType> TASK_050 = TestObject.file(TEST_DIR, "task-050.xml", "7c86fb96-b959-4469-9c26-1e7fc5bc79ef");
+    private static final TestObject<TaskType> TASK_060 = TestObject.file(TEST_DIR, "task-060.xml", "e0a4c2b6-5a4d-4b8e-9f1e-2d3c6a1b7f60");
+    private static final TestObject<TaskType> TASK_070 = TestObject.file(TEST_DIR, "task-070.xml", "3f9b1d27-8c64-4e0a-b5d2-71c9e4a80f70");
 
     private static final TestObject<TaskType> TASK_100 = TestObject.file(TEST_DIR, "task-100.xml", "b19b16ff-fe18-40ac-bf70-859f546a67ea");
     private static final TestObject<TaskType> TASK_110 = TestObject.file(TEST_DIR, "task-110.xml", "a4de3ebf-c9bb-4d25-bbaf-e73d89eea873");
@@ -98,6 +101,9 @@ public class TestBucketingStatic extends AbstractRepoCommonTest {
     private static final TestObject<TaskType> TASK_210_WORKER_4 = TestObject.file(TEST_DIR, "task-210-4.xml", "f1bb0e85-abac-4e61-8a3a-f72d40f3e8d6");
     private static final TestObject<TaskType> TASK_210_WORKER_5 = TestObject.file(TEST_DIR, "task-210-5.xml", "81e31c90-6546-4055-8371-a34ef79f5117");
 
+    /** Simulated end of the processing of the last bucket, see {@link #setLastBucketProcessingTime(ActivityStateType, long)}. */
+    private long lastProcessingEnd;
+
     @PostConstruct
     public void initialize() throws Exception {
         displayTestTitle("Initializing TEST CLASS: " + getClass().getName());
@@ -303,6 +309,92 @@ public class TestBucketingStatic extends AbstractRepoCommonTest {
         assertBoundaries(contentFactory, Arrays.asList("0123456789abcdef", "0123456789abcdef"));
     }
 
+    /**
+     * Tests adaptive sizing of numeric buckets: the size of new buckets follows the processing time
+     * of the last completed bucket, but changes at most 4 times at once.
+     */
+    @Test
+    public void test060NumericAdaptiveBuckets() throws Exception {
+        OperationResult result = createOperationResult();
+        taskAdd(TASK_060, result);
+
+        Task task = taskManager.getTaskPlain(TASK_060.oid, result);
+        ActivityStateType workState = new ActivityStateType();
+
+        when();
+
+        BucketFactory bucketFactory = BucketFactory.create(getDistributionDefinition(task), null, beans);
+
+        then();
+
+        assertThat(bucketFactory.isAdaptiveSizing()).as("adaptive sizing").isTrue();
+
+        assumeNextNumericInterval(bucketFactory, workState, 0, 100, 1);
+        setLastBucketProcessingTime(workState, 4000);
+
+        // 4x slower than the target
+        assumeNextNumericInterval(bucketFactory, workState, 100, 125, 2);
+        setLastBucketProcessingTime(workState, 100);
+
+        // 10x faster than the target, but the size can grow only 4x
+        assertThat(bucketFactory.estimateNumberOfBuckets(getBuckets(workState)))
+                .as("estimated # of buckets")
+                .isEqualTo(2 + 99);
+        assumeNextNumericInterval(bucketFactory, workState, 125, 225, 3);
+        setLastBucketProcessingTime(workState, 1000);
+
+        // exactly the target
+        assumeNextNumericInterval(bucketFactory, workState, 225, 325, 4);
+    }
+
+    /**
+     * Tests adaptive sizing of OID interval buckets: buckets are merged when they are processed fast,
+     * but they are never split beyond the configured boundaries.
+     */
+    @Test
+    public void test070OidAdaptiveBuckets() throws Exception {
+        OperationResult result = createOperationResult();
+        taskAdd(TASK_070, result);
+
+        Task task = taskManager.getTaskPlain(TASK_070.oid, result);
+        ActivityStateType workState = new ActivityStateType();
+
+        when();
+
+        BucketFactory bucketFactory = BucketFactory.create(getDistributionDefinition(task), null, beans);
+
+        then();
+
+        assertThat(bucketFactory.isAdaptiveSizing()).as("adaptive sizing").isTrue();
+
+        assumeNextInterval(bucketFactory, workState, null, "00", 1);
+        setLastBucketProcessingTime(workState, 250);
+
+        assumeNextInterval(bucketFactory, workState, "00", "04", 2); // 4 boundaries
+        setLastBucketProcessingTime(workState, 100);
+
+        assumeNextInterval(bucketFactory, workState, "04", "14", 3); // 16 boundaries (limited from 40)
+        setLastBucketProcessingTime(workState, 4000);
+
+        assumeNextInterval(bucketFactory, workState, "14", "18", 4); // 4 boundaries
+        setLastBucketProcessingTime(workState, 60000);
+
+        assumeNextInterval(bucketFactory, workState, "18", "19", 5); // 1 boundary (cannot go lower)
+        setLastBucketProcessingTime(workState, 1);
+
+        assumeNextInterval(bucketFactory, workState, "19", "1d", 6);
+        setLastBucketProcessingTime(workState, 1);
+
+        assumeNextInterval(bucketFactory, workState, "1d", "2d", 7);
+        setLastBucketProcessingTime(workState, 1);
+
+        assumeNextInterval(bucketFactory, workState, "2d", "6d", 8);
+        setLastBucketProcessingTime(workState, 1);
+
+        assumeNextInterval(bucketFactory, workState, "6d", null, 9); // 256 boundaries would go beyond the end
+        assumeNoNextBucket(bucketFactory, workState);
+    }
+
     /**
      * Tests the get-complete cycle (4x) with explicit, numeric interval segmentation providing 3 buckets.
      */
@@ -888,6 +980,25 @@ public class TestBucketingStatic extends AbstractRepoCommonTest {
         return newBucket;
     }
 
+    private void assumeNextNumericInterval(BucketFactory bucketFactory, ActivityStateType workState,
+            Integer expectedNextFrom, Integer expectedNextTo, int expectedSequentialNumber) throws SchemaException {
+        WorkBucketType newBucket = getNextBucket(bucketFactory, workState, expectedSequentialNumber);
+        assertNumericBucket(newBucket, null, expectedSequentialNumber, expectedNextFrom, expectedNextTo);
+
+        getOrCreateBuckets(workState)
+                .add(newBucket.clone().state(WorkBucketStateType.COMPLETE));
+    }
+
+    /** Sets the processing start and end timestamps of the last bucket; each bucket ends later than the previous one. */
+    private void setLastBucketProcessingTime(ActivityStateType workState, long duration) {
+        List<WorkBucketType> buckets = getBuckets(workState);
+        WorkBucketType lastBucket = buckets.get(buckets.size() - 1);
+        long start = Math.max(System.currentTimeMillis(), lastProcessingEnd);
+        lastProcessingEnd = start + duration;
+        lastBucket.setProcessingStartTimestamp(XmlTypeConverter.createXMLGregorianCalendar(start));
+        lastBucket.setProcessingEndTimestamp(XmlTypeConverter.createXMLGregorianCalendar(lastProcessingEnd));
+    }
+
     @NotNull
     private WorkBucketType getNextBucket(BucketFactory bucketFactory, ActivityStateType workState,
             int expectedSequentialNumber) throws SchemaException {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import java.util.*;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Payload of a notification sent by {@link SqaleCacheInvalidationBus}.
+ *
+ * Format (lines are separated by `\n`):
+ *
+ * . sender ID and the sequence number of the message, separated by space;
+ * . sender's counters of messages sent for each type so far, including this message (`type=count`, comma-separated);
+ * . entries, one per line: `type oid` for a single object, `type` for all objects of the type, `*` for everything.
+ *
+ * Types are represented by their REST names, just like in the REST-based invalidation.
+ * The counters allow the receiver to find out which types were touched by messages it has missed.
+ */
+class CacheInvalidationMessage {
+
+    /** Entry (and counter) meaning "invalidate everything". */
+    static final String ALL = "*";
+
+    private static final char LINE_SEPARATOR = '\n';
+    private static final char OID_SEPARATOR = ' ';
+
+    @NotNull final String senderId;
+    final long sequence;
+    @NotNull final Map<String, Long> counters;
+    @NotNull final List<Entry> entries;
+
+    CacheInvalidationMessage(
+            @NotNull String senderId, long sequence, @NotNull Map<String, Long> counters, @NotNull List<Entry> entries) {
+        this.senderId = senderId;
+        this.sequence = sequence;
+        this.counters = counters;
+        this.entries = entries;
+    }
+
+    /** Types present in {@link #entries} (including {@link #ALL} if present). */
+    @NotNull Set<String> getTypes() {
+        Set<String> types = new HashSet<>();
+        for (Entry entry : entries) {
+            types.add(entry.type());
+        }
+        return types;
+    }
+
+    @NotNull String encode() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(senderId).append(OID_SEPARATOR).append(sequence).append(LINE_SEPARATOR);
+        boolean first = true;
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            sb.append(counter.getKey()).append('=').append(counter.getValue());
+            first = false;
+        }
+        for (Entry entry : entries) {
+            sb.append(LINE_SEPARATOR).append(entry.type());
+            if (entry.oid() != null) {
+                sb.append(OID_SEPARATOR).append(entry.oid());
+            }
+        }
+        return sb.toString();
+    }
+
+    static @NotNull CacheInvalidationMessage parse(@NotNull String payload) {
+        String[] lines = payload.split(String.valueOf(LINE_SEPARATOR));
+        if (lines.length < 2) {
+            throw new IllegalArgumentException("Missing header or counters in cache invalidation message: " + payload);
+        }
+        String[] header = lines[0].split(String.valueOf(OID_SEPARATOR));
+        if (header.length != 2) {
+            throw new IllegalArgumentException("Wrong header in cache invalidation message: " + lines[0]);
+        }
+        Map<String, Long> counters = new HashMap<>();
+        if (!lines[1].isEmpty()) {
+            for (String counter : lines[1].split(",")) {
+                int i = counter.indexOf('=');
+                if (i <= 0) {
+                    throw new IllegalArgumentException("Wrong counter in cache invalidation message: " + counter);
+                }
+                counters.put(counter.substring(0, i), Long.parseLong(counter.substring(i + 1)));
+            }
+        }
+        List<Entry> entries = new ArrayList<>(lines.length - 2);
+        for (int l = 2; l < lines.length; l++) {
+            String line = lines[l];
+            int i = line.indexOf(OID_SEPARATOR);
+            entries.add(i < 0
+                    ? new Entry(line, null)
+                    : new Entry(line.substring(0, i), line.substring(i + 1)));
+        }
+        return new CacheInvalidationMessage(header[0], Long.parseLong(header[1]), counters, entries);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidationMessage{" +
+                "senderId=" + senderId +
+                ", sequence=" + sequence +
+                ", entries=" + entries.size() +
+                '}';
+    }
+
+    /** Invalidation of a single object (if OID is present), all objects of given type, or everything (type = `*`). */
+    record Entry(@NotNull String type, @Nullable String oid) {
+    }
+}
@@ -14,8 +14,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import com.google.common.collect.SetMultimap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -27,6 +27,9 @@ import com.evolveum.midpoint.util.logging.TraceManager;
 
 /**
  * Cache for {@link MExtItem} catalog.
+ *
+ * Reads of already cached items do not lock, as they are on the hot path of every insert and
+ * every extension filter. Only the slow path (unknown item, going to the database) is synchronized.
  */
 public class ExtItemCache {
 
@@ -35,10 +38,11 @@ public class ExtItemCache {
     private final Map<Integer, MExtItem> idToExtItem = new ConcurrentHashMap<>();
     private final Map<MExtItem.Key, MExtItem> keyToExtItem = new ConcurrentHashMap<>();
 
-    private final Multimap<String, MExtItem> nameToExtItem = HashMultimap.create();
+    /** Always access the collections returned from this multimap under its lock. */
+    private final SetMultimap<String, MExtItem> nameToExtItem = Multimaps.synchronizedSetMultimap(HashMultimap.create());
 
     // WARNING: Each .get() creates new connection, always use in try-with-resource block!
-    private Supplier<JdbcSession> jdbcSessionSupplier;
+    private volatile Supplier<JdbcSession> jdbcSessionSupplier;
 
     /**
      * Initializes the ext-item cache.
@@ -50,6 +54,7 @@ public class ExtItemCache {
         // this can be called repeatedly in tests, so the clear may be necessary
         idToExtItem.clear();
         keyToExtItem.clear();
+        nameToExtItem.clear();
 
         QExtItem uri = QExtItem.DEFAULT;
         List<MExtItem> result;
@@ -71,14 +76,20 @@ public class ExtItemCache {
         idToExtItem.put(row.id, row);
         keyToExtItem.put(row.key(), row);
         nameToExtItem.put(row.itemName, row);
-
     }
 
-    public synchronized @NotNull MExtItem resolveExtensionItem(@NotNull MExtItem.Key extItemKey) {
-        if (jdbcSessionSupplier == null) {
-            throw new IllegalStateException("Ext item cache was not initialized yet!");
+    public @NotNull MExtItem resolveExtensionItem(@NotNull MExtItem.Key extItemKey) {
+        checkInitialized();
+
+        MExtItem extItem = keyToExtItem.get(extItemKey);
+        if (extItem != null) {
+            return extItem;
         }
+        return resolveExtensionItemSlow(extItemKey);
+    }
 
+    private synchronized @NotNull MExtItem resolveExtensionItemSlow(@NotNull MExtItem.Key extItemKey) {
+        // Another thread could have added it while we were waiting for the lock.
         MExtItem extItem = keyToExtItem.get(extItemKey);
         if (extItem != null) {
             return extItem;
@@ -127,11 +138,17 @@ public class ExtItemCache {
         return row;
     }
 
-    public synchronized @Nullable MExtItem getExtensionItem(Integer id) {
-        if (jdbcSessionSupplier == null) {
-            throw new IllegalStateException("Ext item cache was not initialized yet!");
+    public @Nullable MExtItem getExtensionItem(Integer id) {
+        checkInitialized();
+
+        MExtItem extItem = idToExtItem.get(id);
+        if (extItem != null) {
+            return extItem;
         }
+        return getExtensionItemSlow(id);
+    }
 
+    private synchronized @Nullable MExtItem getExtensionItemSlow(Integer id) {
         MExtItem extItem = idToExtItem.get(id);
         if (extItem != null) {
             return extItem;
@@ -156,15 +173,22 @@ public class ExtItemCache {
      * Use with care, because this is not multi-node safe.
      */
     public @Nullable MExtItem getExtensionItem(MExtItem.Key extItemKey) {
+        checkInitialized();
+
+        return keyToExtItem.get(extItemKey);
+    }
+
+    private void checkInitialized() {
         if (jdbcSessionSupplier == null) {
             throw new IllegalStateException("Ext item cache was not initialized yet!");
         }
-
-        return keyToExtItem.get(extItemKey);
     }
 
     public Collection<MExtItem> findConflictingExtensions(MExtItem extItemInfo) {
-        var conflicting = new ArrayList<>(nameToExtItem.get(extItemInfo.itemName));
+        List<MExtItem> conflicting;
+        synchronized (nameToExtItem) {
+            conflicting = new ArrayList<>(nameToExtItem.get(extItemInfo.itemName));
+        }
         // Remove self from conflicting, all other items are conflicting
         conflicting.remove(extItemInfo);
         return conflicting;
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.util.exception.SchemaException;
+
+/**
+ * Encodes the serialized form of objects/containers stored in `fullObject` columns.
+ *
+ * The plain encoding is just the UTF-8 bytes of the serialized form (JSON, XML or YAML), as it was always stored.
+ * The compressed encoding starts with a header, so both encodings can be mixed in the same table and the
+ * existing rows stay readable:
+ *
+ * . header marker byte ({@link #HEADER_MARKER}), which never starts a textual serialized form;
+ * . codec ID byte, which determines the compression and its dictionary (see {@link #CODEC_DEFLATE_V1});
+ * . length of the uncompressed serialized form in bytes (4 bytes, big-endian), so it can be inflated at once;
+ * . compressed data.
+ *
+ * The dictionary contains the namespaces, item names and values repeated in virtually all the objects
+ * (e.g. `"@ns"`, `"relation" : "org:default"`, `"targetRef"`), so they are encoded as short back-references
+ * even in the smaller objects, where a plain deflate would not help much.
+ * The dictionary of an existing codec ID must never change, otherwise the stored data would be unreadable.
+ * To use a different dictionary, a new codec ID must be added.
+ *
+ * The compression trades CPU for size: each write deflates and each read inflates the serialized form,
+ * while less data is stored, transferred from the DB and kept in its cache.
+ * Whether it pays off depends on the object sizes and on how busy the DB is compared to midPoint nodes,
+ * hence it is not used by default. Use `FullObjectCodecPerfTest` to compare the sizes and the serialization
+ * and parsing times for users of various sizes.
+ */
+public class FullObjectCodec {
+
+    public static final byte HEADER_MARKER = 0x01;
+
+    /** Deflate with {@link #DICTIONARY_V1}. */
+    public static final byte CODEC_DEFLATE_V1 = 1;
+
+    private static final int HEADER_LENGTH = 6;
+
+    /**
+     * Preset dictionary for {@link #CODEC_DEFLATE_V1}; the most frequent strings are at the end,
+     * as they are closer to the data and their back-references are shorter.
+     */
+    private static final byte[] DICTIONARY_V1 = String.join("",
+            "http://midpoint.evolveum.com/xml/ns/public/resource/instance-3",
+            "http://midpoint.evolveum.com/xml/ns/public/connector/icf-1/resource-schema-3",
+            "http://midpoint.evolveum.com/xml/ns/public/common/channels-3#",
+            "http://prism.evolveum.com/xml/ns/public/types-3",
+            "http://prism.evolveum.com/xml/ns/public/query-3",
+            "http://midpoint.evolveum.com/xml/ns/public/common/org-3",
+            "\"lifecycleState\":\"active\"",
+            "\"administrativeStatus\":\"enabled\"",
+            "\"effectiveStatus\":\"enabled\"",
+            "\"enableTimestamp\":\"",
+            "\"activation\":{",
+            "\"operationExecution\":[{",
+            "\"executionResult\":{",
+            "\"recordType\":\"simple\"",
+            "\"status\":\"success\"",
+            "\"importance\":\"normal\"",
+            "\"changeType\":\"modify\"",
+            "\"objectType\":\"c:UserType\"",
+            "\"channel\":\"",
+            "\"credentials\":{\"password\":{\"value\":{",
+            "\"extension\":{",
+            "\"inducement\":[{",
+            "\"assignment\":[{",
+            "\"archetypeRef\":{",
+            "\"roleMembershipRef\":[{",
+            "\"parentOrgRef\":[{",
+            "\"linkRef\":[{",
+            "\"initiatorRef\":{",
+            "\"taskRef\":{",
+            "\"requestTimestamp\":\"",
+            "\"requestorRef\":{",
+            "\"createChannel\":\"",
+            "\"createTaskRef\":{",
+            "\"modifyTimestamp\":\"",
+            "\"modifierRef\":{",
+            "\"modifyChannel\":\"",
+            "\"createTimestamp\":\"",
+            "\"creatorRef\":{",
+            "\"storage\":{",
+            "\"provenance\":{",
+            "\"process\":{",
+            "\"_metadata\":[{",
+            "\"metadata\":{",
+            "\"version\":\"",
+            "\"name\":\"",
+            "\"fullName\":\"",
+            "\"description\":\"",
+            "\"type\":\"c:ArchetypeType\"",
+            "\"type\":\"c:TaskType\"",
+            "\"type\":\"c:OrgType\"",
+            "\"type\":\"c:RoleType\"",
+            "\"type\":\"c:ShadowType\"",
+            "\"type\":\"c:UserType\"",
+            "\"targetRef\":{",
+            "\"@id\":",
+            "\"oid\":\"",
+            "\"relation\":\"org:default\"",
+            "\"@ns\":\"http://midpoint.evolveum.com/xml/ns/public/common/common-3\"")
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Returns bytes to be stored in the `fullObject` column.
+     *
+     * @param compress false for the plain encoding (no header), true for the compressed one (with header)
+     */
+    public static byte[] encode(@NotNull String serializedForm, boolean compress) {
+        byte[] plain = serializedForm.getBytes(StandardCharsets.UTF_8);
+        if (!compress) {
+            return plain;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setDictionary(DICTIONARY_V1);
+            deflater.setInput(plain);
+            deflater.finish();
+
+            // compressed data is practically never longer than the input, but the buffer grows if needed
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + plain.length / 2 + 64)
+                    .put(HEADER_MARKER)
+                    .put(CODEC_DEFLATE_V1)
+                    .putInt(plain.length);
+            while (!deflater.finished()) {
+                if (!buffer.hasRemaining()) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                }
+                int written = deflater.deflate(buffer.array(), buffer.position(), buffer.remaining());
+                buffer.position(buffer.position() + written);
+            }
+            byte[] result = new byte[buffer.position()];
+            System.arraycopy(buffer.array(), 0, result, 0, result.length);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Returns the serialized form from the value of the `fullObject` column, regardless of the encoding. */
+    public static @NotNull String decode(byte @NotNull [] fullObject) throws SchemaException {
+        if (!isCompressed(fullObject)) {
+            return new String(fullObject, StandardCharsets.UTF_8);
+        }
+        if (fullObject.length < HEADER_LENGTH) {
+            throw new SchemaException("Full object data are too short: " + fullObject.length + " bytes");
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(fullObject, 1, HEADER_LENGTH - 1);
+        byte codec = header.get();
+        int length = header.getInt();
+        if (codec != CODEC_DEFLATE_V1) {
+            throw new SchemaException("Unknown codec " + codec + " of the full object data");
+        }
+        if (length < 0) {
+            throw new SchemaException("Full object data are corrupted, invalid length " + length);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(fullObject, HEADER_LENGTH, fullObject.length - HEADER_LENGTH);
+            byte[] plain = new byte[length + 1]; // one byte more to detect longer data
+            int position = 0;
+            while (!inflater.finished()) {
+                int read = inflater.inflate(plain, position, plain.length - position);
+                if (read == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY_V1);
+                    } else {
+                        break; // truncated or longer data, reported below
+                    }
+                }
+                position += read;
+            }
+            if (position != length || !inflater.finished()) {
+                throw new SchemaException("Full object data are corrupted, expected " + length
+                        + " bytes of serialized form, got " + position);
+            }
+            return new String(plain, 0, length, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new SchemaException("Full object data are corrupted: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Returns true if the value of the `fullObject` column uses the compressed encoding (has a header). */
+    public static boolean isCompressed(byte @NotNull [] fullObject) {
+        return fullObject.length > 0 && fullObject[0] == HEADER_MARKER;
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.repo.api.CacheDispatcher;
+import com.evolveum.midpoint.repo.api.ClusterCacheInvalidationBus;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Distributes cache invalidation events among cluster nodes using PostgreSQL `LISTEN`/`NOTIFY`
+ * on the repository database.
+ *
+ * Events published on this node are collected for {@link SqaleRepositoryConfiguration#getCacheInvalidationBatchInterval()}
+ * milliseconds, coalesced (duplicate OIDs are dropped, too many OIDs of the same type are replaced
+ * by the invalidation of the whole type), and sent as one or more {@link CacheInvalidationMessage}s.
+ *
+ * Each node listens on a dedicated connection taken from the repository connection pool.
+ * Messages carry per-type counters, so that a receiver that missed a message (e.g. because of a failed send)
+ * can invalidate the whole types that were affected by it. After the listening connection is re-established,
+ * all caches are invalidated, as anything could have been missed in the meantime.
+ *
+ * Turned off by default; see {@link SqaleRepositoryConfiguration#isCacheInvalidationNotifications()}.
+ */
+public class SqaleCacheInvalidationBus implements ClusterCacheInvalidationBus {
+
+    private static final Trace LOGGER = TraceManager.getTrace(SqaleCacheInvalidationBus.class);
+
+    static final String CHANNEL = "mp_cache_invalidation";
+
+    /** PostgreSQL limits the payload to 8000 bytes. Our payload is ASCII only, so characters are bytes. */
+    private static final int MAX_PAYLOAD_LENGTH = 7500;
+
+    /** If more objects of the same type are invalidated during one batch interval, the whole type is invalidated instead. */
+    static final int MAX_OIDS_PER_TYPE = 100;
+
+    private static final int LISTEN_TIMEOUT = 1000;
+    private static final long RECONNECT_DELAY = 5000L;
+
+    /** Senders (node runs) we keep the counters for. Restarted nodes get new IDs, so this must be limited. */
+    private static final int MAX_KNOWN_SENDERS = 100;
+
+    /** Identifies this node run; we do not need node ID here, and we do not want to mix counters of different runs. */
+    @NotNull private final String senderId = UUID.randomUUID().toString();
+
+    private final boolean enabled;
+    private final long batchInterval;
+    @NotNull private final DataSource dataSource;
+    @NotNull private final Supplier<CacheDispatcher> cacheDispatcherSupplier;
+
+    /** Invalidations waiting to be sent: type -> OIDs, null value meaning the whole type. Guarded by itself. */
+    private final Map<String, Set<String>> pendingInvalidations = new HashMap<>();
+
+    /** True if everything is to be invalidated. Guarded by {@link #pendingInvalidations}. */
+    private boolean pendingInvalidationOfAll;
+
+    /** Counters of messages sent, per type. Accessed only from the sender thread. */
+    private Map<String, Long> sentCounters = new HashMap<>();
+    private long sentSequence;
+
+    /** Last known counters for other senders. Accessed only from the listener thread. */
+    private final Map<String, Map<String, Long>> receivedCounters = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, Long>> eldest) {
+            return size() > MAX_KNOWN_SENDERS;
+        }
+    };
+
+    private ScheduledExecutorService sender;
+    private Thread listener;
+    private volatile boolean running;
+
+    public SqaleCacheInvalidationBus(
+            @NotNull SqaleRepositoryConfiguration repositoryConfiguration,
+            @NotNull DataSource dataSource,
+            @NotNull Supplier<CacheDispatcher> cacheDispatcherSupplier) {
+        this(repositoryConfiguration.isCacheInvalidationNotifications(),
+                repositoryConfiguration.getCacheInvalidationBatchInterval(),
+                dataSource, cacheDispatcherSupplier);
+    }
+
+    SqaleCacheInvalidationBus(boolean enabled, long batchInterval,
+            @NotNull DataSource dataSource, @NotNull Supplier<CacheDispatcher> cacheDispatcherSupplier) {
+        this.enabled = enabled;
+        this.batchInterval = batchInterval;
+        this.dataSource = dataSource;
+        this.cacheDispatcherSupplier = cacheDispatcherSupplier;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            LOGGER.debug("Cache invalidation using database notifications is not enabled");
+            return;
+        }
+        running = true;
+        sender = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-invalidation-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleWithFixedDelay(this::sendPendingInvalidations, batchInterval, batchInterval, TimeUnit.MILLISECONDS);
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+        LOGGER.info("Started cache invalidation using database notifications, sender ID: {}", senderId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        sender.shutdown();
+        try {
+            if (!sender.awaitTermination(LISTEN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Cache invalidation sender did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sendPendingInvalidations(); // the last ones, if any
+        listener.interrupt();
+        LOGGER.info("Stopped cache invalidation using database notifications");
+    }
+
+    @Override
+    public boolean isActive() {
+        return running;
+    }
+
+    @Override
+    public <O extends ObjectType> void publish(@Nullable Class<O> type, @Nullable String oid) {
+        synchronized (pendingInvalidations) {
+            if (pendingInvalidationOfAll) {
+                return;
+            }
+            if (type == null) {
+                pendingInvalidationOfAll = true;
+                pendingInvalidations.clear();
+                return;
+            }
+            String typeName = ObjectTypes.getRestTypeFromClass(type);
+            if (oid == null) {
+                pendingInvalidations.put(typeName, null);
+                return;
+            }
+            if (!pendingInvalidations.containsKey(typeName)) {
+                pendingInvalidations.put(typeName, new HashSet<>());
+            }
+            Set<String> oids = pendingInvalidations.get(typeName);
+            if (oids != null) {
+                oids.add(oid);
+                if (oids.size() > MAX_OIDS_PER_TYPE) {
+                    pendingInvalidations.put(typeName, null);
+                }
+            }
+        }
+    }
+
+    // region Sending
+    private void sendPendingInvalidations() {
+        try {
+            List<CacheInvalidationMessage.Entry> entries = drainPendingInvalidations();
+            if (!entries.isEmpty()) {
+                send(entries);
+            }
+        } catch (Throwable t) {
+            // Must not propagate, as that would stop the scheduled sending.
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't send cache invalidation events", t);
+        }
+    }
+
+    private List<CacheInvalidationMessage.Entry> drainPendingInvalidations() {
+        List<CacheInvalidationMessage.Entry> entries = new ArrayList<>();
+        synchronized (pendingInvalidations) {
+            if (pendingInvalidationOfAll) {
+                entries.add(new CacheInvalidationMessage.Entry(CacheInvalidationMessage.ALL, null));
+                pendingInvalidationOfAll = false;
+            } else {
+                for (Map.Entry<String, Set<String>> typeEntry : pendingInvalidations.entrySet()) {
+                    if (typeEntry.getValue() == null) {
+                        entries.add(new CacheInvalidationMessage.Entry(typeEntry.getKey(), null));
+                    } else {
+                        for (String oid : typeEntry.getValue()) {
+                            entries.add(new CacheInvalidationMessage.Entry(typeEntry.getKey(), oid));
+                        }
+                    }
+                }
+            }
+            pendingInvalidations.clear();
+        }
+        return entries;
+    }
+
+    /** Sends the entries, splitting them into more messages if needed. */
+    private void send(List<CacheInvalidationMessage.Entry> entries) {
+        CacheInvalidationMessage message = createMessage(entries);
+        String payload = message.encode();
+        if (payload.length() > MAX_PAYLOAD_LENGTH && entries.size() > 1) {
+            int half = entries.size() / 2;
+            send(entries.subList(0, half));
+            send(entries.subList(half, entries.size()));
+            return;
+        }
+
+        // Counters are moved on even if the sending fails; receivers will detect the gap with the next message.
+        sentCounters = message.counters;
+        sentSequence = message.sequence;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                statement.setString(1, CHANNEL);
+                statement.setString(2, payload);
+                statement.execute();
+            }
+            LOGGER.trace("Sent {}", message);
+        } catch (SQLException e) {
+            LOGGER.warn("Couldn't send cache invalidation message {}: {}", message, e.getMessage(), e);
+        }
+    }
+
+    private CacheInvalidationMessage createMessage(List<CacheInvalidationMessage.Entry> entries) {
+        CacheInvalidationMessage message = new CacheInvalidationMessage(
+                senderId, sentSequence + 1, new HashMap<>(sentCounters), List.copyOf(entries));
+        for (String type : message.getTypes()) {
+            message.counters.merge(type, 1L, Long::sum);
+        }
+        return message;
+    }
+    // endregion
+
+    // region Receiving
+    private void listen() {
+        boolean firstConnection = true;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                LOGGER.debug("Listening for cache invalidation messages");
+                if (!firstConnection) {
+                    // Anything could have been sent while we were disconnected.
+                    receivedCounters.clear();
+                    dispatch(null, null);
+                }
+                firstConnection = false;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(LISTEN_TIMEOUT);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            processNotification(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                if (running) {
+                    LOGGER.warn("Error while listening for cache invalidation messages, reconnecting in {} ms: {}",
+                            RECONNECT_DELAY, t.getMessage(), t);
+                    try {
+                        //noinspection BusyWait
+                        Thread.sleep(RECONNECT_DELAY);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        LOGGER.debug("Stopped listening for cache invalidation messages");
+    }
+
+    void processNotification(String payload) {
+        CacheInvalidationMessage message;
+        try {
+            message = CacheInvalidationMessage.parse(payload);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Couldn't parse cache invalidation message, invalidating everything: {}", payload, e);
+            dispatch(null, null);
+            return;
+        }
+        if (senderId.equals(message.senderId)) {
+            return; // our own message
+        }
+        LOGGER.trace("Received {}", message);
+
+        Set<String> typesInMessage = message.getTypes();
+        Set<String> missedTypes = new HashSet<>();
+        Map<String, Long> knownCounters = receivedCounters.get(message.senderId);
+        if (knownCounters != null) {
+            for (Map.Entry<String, Long> counter : message.counters.entrySet()) {
+                long expected = knownCounters.getOrDefault(counter.getKey(), 0L)
+                        + (typesInMessage.contains(counter.getKey()) ? 1 : 0);
+                if (counter.getValue() > expected) {
+                    missedTypes.add(counter.getKey());
+                }
+            }
+        }
+        receivedCounters.put(message.senderId, message.counters);
+
+        if (missedTypes.contains(CacheInvalidationMessage.ALL) || typesInMessage.contains(CacheInvalidationMessage.ALL)) {
+            dispatch(null, null);
+            return;
+        }
+        for (String missedType : missedTypes) {
+            LOGGER.debug("Missed cache invalidation message(s) for {} from {}, invalidating the whole type",
+                    missedType, message.senderId);
+            dispatch(missedType, null);
+        }
+        for (CacheInvalidationMessage.Entry entry : message.entries) {
+            if (!missedTypes.contains(entry.type())) {
+                dispatch(entry.type(), entry.oid());
+            }
+        }
+    }
+
+    private void dispatch(@Nullable String typeName, @Nullable String oid) {
+        CacheDispatcher cacheDispatcher = cacheDispatcherSupplier.get();
+        if (cacheDispatcher == null) {
+            LOGGER.trace("No cache dispatcher, ignoring invalidation of {}:{}", typeName, oid);
+            return;
+        }
+        Class<? extends ObjectType> type;
+        try {
+            type = typeName != null ? ObjectTypes.getClassFromRestType(typeName) : null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unknown type '{}' in cache invalidation message, invalidating everything", typeName);
+            type = null;
+            oid = null;
+        }
+        // clusterwide is false: we got this from another node, so we must not redistribute it
+        cacheDispatcher.dispatchInvalidation(type, oid, false, new CacheInvalidationContext(true, null));
+    }
+    // endregion
+}
@@ -7,6 +7,7 @@
 package com.evolveum.midpoint.repo.sqale;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import javax.xml.namespace.QName;
 
@@ -14,12 +15,18 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.RepositoryConfigurat
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
 import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
 import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.RelationalPathBase;
 import com.querydsl.sql.SQLQuery;
 import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.query.*;
 import com.evolveum.midpoint.prism.query.FuzzyStringMatchFilter.FuzzyMatchingMethod;
 import com.evolveum.midpoint.prism.query.FuzzyStringMatchFilter.Levenshtein;
@@ -27,6 +34,7 @@ import com.evolveum.midpoint.prism.query.FuzzyStringMatchFilter.Similarity;
 import com.evolveum.midpoint.repo.sqale.filtering.*;
 import com.evolveum.midpoint.repo.sqale.mapping.SqaleNestedMapping;
 import com.evolveum.midpoint.repo.sqale.mapping.SqaleTableMapping;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.QObject;
 import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
 import com.evolveum.midpoint.repo.sqlbase.QueryException;
 import com.evolveum.midpoint.repo.sqlbase.RepositoryException;
@@ -47,12 +55,6 @@ import org.jetbrains.annotations.Nullable;
 public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
         extends SqlQueryContext<S, Q, R> {
 
-    /**
-     * Flag guarding whether we need to refresh organization closure before executing
-     * the actual query.
-     */
-    private boolean containsOrgFilter = false;
-
     /**
      * Enables {@link #loadObject} method that is used to fetch additional objects,
      * e.g. container owners (parents) or references targets.
@@ -154,6 +156,105 @@ public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
         }
     }
 
+    /**
+     * Interprets the paging cookie as a seek cursor, which is the OID of the last object of the previous page.
+     * Instead of the offset, which makes the database read and throw away all the preceding rows,
+     * the page continues right after that object, using `(orderKey, oid) > (last.orderKey, last.oid)`
+     * (or `<` for descending order), which can be satisfied by an index on the order key and OID.
+     * The order key of the last object is read by a subquery, the cookie does not need to contain it.
+     * Without ordering instruction, this is simply `oid > lastOid`, just like in the old repository.
+     *
+     * At most one ordering instruction is supported, optionally followed by ordering by OID
+     * in the same direction.
+     * Ordering by OID is added if not provided, because the total order is necessary for seeking.
+     *
+     * Null values of the order key are sorted as PostgreSQL sorts them by default (last for ascending
+     * order, first for descending); these are covered by additional condition, unless the column is not null.
+     * If the last object does not exist anymore, only objects with null order key can be found,
+     * so the client should start from the first page in that case.
+     */
+    @Override
+    protected void processPagingCookie(
+            ObjectPaging paging, List<Expression<?>> orderingExpressions) throws RepositoryException {
+        if (!(entityPath instanceof QObject<?> qObject)) {
+            throw new QueryException("Paging cookie is supported only for objects, not for "
+                    + mapping().schemaType().getSimpleName());
+        }
+        UUID lastOid;
+        try {
+            lastOid = UUID.fromString(paging.getCookie());
+        } catch (IllegalArgumentException e) {
+            throw new QueryException("Paging cookie must be OID of the last object from the previous page, "
+                    + "provided cookie: " + paging.getCookie());
+        }
+
+        List<? extends ObjectOrdering> orderings = paging.getOrderingInstructions();
+        int keyOrderings = orderings.size();
+        boolean orderedByOid = keyOrderings > 0 && qObject.oid.equals(orderingExpressions.get(keyOrderings - 1));
+        if (orderedByOid) {
+            keyOrderings -= 1;
+        }
+        if (keyOrderings > 1) {
+            throw new QueryException("Paging cookie can be used only with ordering by a single item"
+                    + " (optionally followed by OID), used ordering: " + orderings);
+        }
+        boolean descending = !orderings.isEmpty()
+                && orderings.get(0).getDirection() == OrderDirection.DESCENDING;
+        if (orderings.stream().anyMatch(o -> (o.getDirection() == OrderDirection.DESCENDING) != descending)) {
+            throw new QueryException("Paging cookie can't be used with ordering in different directions: "
+                    + orderings);
+        }
+        if (!orderedByOid) {
+            sqlQuery.orderBy(descending ? qObject.oid.desc() : qObject.oid.asc());
+        }
+
+        if (keyOrderings == 0) {
+            sqlQuery.where(descending ? qObject.oid.lt(lastOid) : qObject.oid.gt(lastOid));
+            return;
+        }
+
+        ItemPath orderBy = orderings.get(0).getOrderBy();
+        Expression<?> orderKey = orderingExpressions.get(0);
+        if (!(orderKey instanceof ComparableExpressionBase)) {
+            throw new QueryException("Paging cookie can't be used with ordering by " + orderBy);
+        }
+        BooleanExpression condition = Expressions.booleanTemplate(
+                descending ? "({0}, {1}) < {2}" : "({0}, {1}) > {2}",
+                orderKey, qObject.oid, lastObjectSubquery(orderBy, lastOid, true));
+        if (!isNotNullColumn(orderKey)) {
+            BooleanExpression lastKeyIsNull =
+                    Expressions.booleanTemplate("{0} is null", lastObjectSubquery(orderBy, lastOid, false));
+            BooleanExpression orderKeyIsNull = Expressions.booleanTemplate("{0} is null", orderKey);
+            condition = descending
+                    // nulls first: the rest of nulls after the last null, then all the non-nulls
+                    ? condition.or(lastKeyIsNull.and(orderKeyIsNull.not().or(qObject.oid.lt(lastOid))))
+                    // nulls last: all the nulls after the last non-null, or the rest of nulls after the last null
+                    : condition.or(orderKeyIsNull.and(lastKeyIsNull.not().or(qObject.oid.gt(lastOid))));
+        }
+        sqlQuery.where(condition);
+    }
+
+    /** Returns subquery selecting the order key (and OID if requested) of the last object for the paging cookie. */
+    private SQLQuery<?> lastObjectSubquery(ItemPath orderBy, UUID lastOid, boolean withOid)
+            throws RepositoryException {
+        SqaleQueryContext<?, ?, ?> lastObjectContext = (SqaleQueryContext<?, ?, ?>) subquery(mapping());
+        Expression<?> lastOrderKey = lastObjectContext.orderingPath(orderBy);
+        QObject<?> lastObject = (QObject<?>) lastObjectContext.path();
+        SQLQuery<?> subquery = withOid
+                ? lastObjectContext.sqlQuery().select(lastOrderKey, lastObject.oid)
+                : lastObjectContext.sqlQuery().select(lastOrderKey);
+        return subquery.where(lastObject.oid.eq(lastOid));
+    }
+
+    private boolean isNotNullColumn(Expression<?> expression) {
+        if (expression instanceof Path<?> path
+                && path.getMetadata().getParent() instanceof RelationalPathBase<?> table) {
+            ColumnMetadata column = table.getMetadata(path);
+            return column != null && !column.isNullable();
+        }
+        return false;
+    }
+
     @Override
     public SqaleRepoContext repositoryContext() {
         return (SqaleRepoContext) super.repositoryContext();
@@ -163,14 +264,6 @@ public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
         return repositoryContext().searchCachedRelationId(qName);
     }
 
-    public void markContainsOrgFilter() {
-        containsOrgFilter = true;
-        SqaleQueryContext<?, ?, ?> parentContext = parentContext();
-        if (parentContext != null) {
-            parentContext.markContainsOrgFilter();
-        }
-    }
-
     /** Returns derived {@link SqaleQueryContext} for JOIN. */
     @Override
     public <TS, TQ extends FlexibleRelationalPathBase<TR>, TR> SqlQueryContext<TS, TQ, TR>
@@ -210,16 +303,6 @@ public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
         return (SqaleQueryContext<?, ?, ?>) super.parentContext();
     }
 
-    @Override
-    public void beforeQuery() {
-        if (containsOrgFilter) {
-            try (JdbcSession jdbcSession = repositoryContext().newJdbcSession().startTransaction()) {
-                jdbcSession.executeStatement("CALL m_refresh_org_closure()");
-                jdbcSession.commit();
-            }
-        }
-    }
-
     @Override
     public QueryModelMapping<S, Q, R> queryMapping() {
         return queryMapping;
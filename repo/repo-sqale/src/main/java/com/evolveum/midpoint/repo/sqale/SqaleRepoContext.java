@@ -253,6 +253,16 @@ public class SqaleRepoContext extends SqlRepoContext {
                 fullTextSearchConfig, prismObject.getCompileTimeClass(), modifications);
     }
 
+    /**
+     * Encodes the serialized form of an object or a container for the `fullObject` column.
+     * It is compressed if configured so for the schema type, see {@link FullObjectCodec}.
+     */
+    public byte[] encodeFullObject(String serializedForm, Class<?> schemaType) {
+        boolean compress = getJdbcRepositoryConfiguration() instanceof SqaleRepositoryConfiguration config
+                && config.isFullObjectCompressed(schemaType);
+        return FullObjectCodec.encode(serializedForm, compress);
+    }
+
     public byte[] createFullResult(OperationResultType operationResult) {
         try {
             // Note that escaping invalid characters and using toString for unsupported types
@@ -13,6 +13,7 @@ import com.evolveum.midpoint.repo.sqale.qmodel.mining.outlier.QOutlierMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.mining.outlier.QOutlierPartitionMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.role.*;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
@@ -21,6 +22,7 @@ import org.springframework.context.annotation.Configuration;
 
 import com.evolveum.midpoint.audit.api.AuditServiceFactory;
 import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
+import com.evolveum.midpoint.repo.api.CacheDispatcher;
 import com.evolveum.midpoint.repo.api.RepositoryServiceFactoryException;
 import com.evolveum.midpoint.repo.api.SqlPerformanceMonitorsCollection;
 import com.evolveum.midpoint.repo.api.SystemConfigurationChangeDispatcher;
@@ -225,6 +227,16 @@ public class SqaleRepositoryBeanConfig {
                 sqlPerformanceMonitorsCollection);
     }
 
+    @Bean
+    public SqaleCacheInvalidationBus cacheInvalidationBus(
+            SqaleRepositoryConfiguration repositoryConfiguration,
+            DataSource dataSource,
+            ObjectProvider<CacheDispatcher> cacheDispatcherProvider) {
+        // Cache dispatcher is not available in all contexts (e.g. repo tests); this also avoids a dependency cycle.
+        return new SqaleCacheInvalidationBus(
+                repositoryConfiguration, dataSource, cacheDispatcherProvider::getIfAvailable);
+    }
+
     @Bean
     public AuditServiceFactory sqlAuditServiceFactory(
             SqaleRepositoryConfiguration sqaleRepositoryConfiguration,
@@ -9,12 +9,16 @@ package com.evolveum.midpoint.repo.sqale;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
 import jakarta.annotation.PostConstruct;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
+import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.repo.api.RepositoryServiceFactoryException;
 import com.evolveum.midpoint.repo.sqlbase.JdbcRepositoryConfiguration;
@@ -22,6 +26,7 @@ import com.evolveum.midpoint.repo.sqlbase.SupportedDatabase;
 import com.evolveum.midpoint.repo.sqlbase.TransactionIsolation;
 import com.evolveum.midpoint.repo.sqlbase.perfmon.SqlPerformanceMonitorImpl;
 import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 /**
  * Common part of the SQL-based repository configuration.
@@ -30,6 +35,15 @@ import com.evolveum.midpoint.util.exception.SystemException;
 public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration {
 
     private static final String PROPERTY_SQL_DURATION_WARNING_MS = "sqlDurationWarningMs";
+    private static final String PROPERTY_CACHE_INVALIDATION_NOTIFICATIONS = "cacheInvalidationNotifications";
+    private static final String PROPERTY_CACHE_INVALIDATION_BATCH_INTERVAL = "cacheInvalidationBatchInterval";
+    private static final String PROPERTY_ITERATIVE_SEARCH_STREAMING = "iterativeSearchStreaming";
+    private static final String PROPERTY_ITERATIVE_SEARCH_STREAMING_MAX_DURATION = "iterativeSearchStreamingMaxDuration";
+    private static final String PROPERTY_FULL_OBJECT_COMPRESSION = "fullObjectCompression";
+    private static final String PROPERTY_FULL_OBJECT_COMPRESSION_TYPES = "fullObjectCompressionTypes";
+
+    private static final String FULL_OBJECT_COMPRESSION_NONE = "none";
+    private static final String FULL_OBJECT_COMPRESSION_DEFLATE = "deflate";
 
     private static final String DEFAULT_DRIVER = "org.postgresql.Driver";
     private static final SupportedDatabase DEFAULT_DATABASE = SupportedDatabase.POSTGRESQL;
@@ -61,6 +75,11 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
 
     private static final int DEFAULT_SQL_DURATION_WARNING_MS = 0; // 0 or less means no warning
 
+    private static final long DEFAULT_CACHE_INVALIDATION_BATCH_INTERVAL = 100L;
+
+    /** Long-open transactions hold back vacuum, that's why the cursor is not kept open indefinitely. */
+    private static final long DEFAULT_ITERATIVE_SEARCH_STREAMING_MAX_DURATION = 60_000L;
+
     @NotNull private final Configuration configuration;
 
     // either dataSource or JDBC URL must be set
@@ -80,6 +99,9 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
     private Long leakDetectionThreshold;
 
     private String fullObjectFormat;
+    private boolean fullObjectCompression;
+    /** Simple names of schema types using the compression; empty means all types. */
+    @NotNull private Set<String> fullObjectCompressionTypes = Set.of();
 
     private String performanceStatisticsFile;
     private int performanceStatisticsLevel;
@@ -89,6 +111,12 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
 
     private long sqlDurationWarningMs; // 0 or less means no warning
 
+    private boolean cacheInvalidationNotifications;
+    private long cacheInvalidationBatchInterval;
+
+    private boolean iterativeSearchStreaming;
+    private long iterativeSearchStreamingMaxDuration;
+
     // Provided with configuration node "midpoint.repository".
     public SqaleRepositoryConfiguration(@NotNull Configuration configuration) {
         this.configuration = configuration;
@@ -130,6 +158,15 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
 
         fullObjectFormat = configuration.getString(PROPERTY_FULL_OBJECT_FORMAT, DEFAULT_FULL_OBJECT_FORMAT)
                 .toLowerCase(); // all language string constants are lower-cases
+        String compression = configuration.getString(PROPERTY_FULL_OBJECT_COMPRESSION, FULL_OBJECT_COMPRESSION_NONE);
+        if (!FULL_OBJECT_COMPRESSION_NONE.equals(compression) && !FULL_OBJECT_COMPRESSION_DEFLATE.equals(compression)) {
+            throw new RepositoryServiceFactoryException("Unsupported value of " + PROPERTY_FULL_OBJECT_COMPRESSION
+                    + ": '" + compression + "', use '" + FULL_OBJECT_COMPRESSION_NONE
+                    + "' or '" + FULL_OBJECT_COMPRESSION_DEFLATE + "'");
+        }
+        fullObjectCompression = FULL_OBJECT_COMPRESSION_DEFLATE.equals(compression);
+        fullObjectCompressionTypes = parseFullObjectCompressionTypes(
+                configuration.getString(PROPERTY_FULL_OBJECT_COMPRESSION_TYPES, ""));
 
         performanceStatisticsFile = configuration.getString(PROPERTY_PERFORMANCE_STATISTICS_FILE);
         performanceStatisticsLevel = configuration.getInt(PROPERTY_PERFORMANCE_STATISTICS_LEVEL,
@@ -143,9 +180,47 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
         sqlDurationWarningMs = configuration.getLong(
                 PROPERTY_SQL_DURATION_WARNING_MS, DEFAULT_SQL_DURATION_WARNING_MS);
 
+        cacheInvalidationNotifications =
+                configuration.getBoolean(PROPERTY_CACHE_INVALIDATION_NOTIFICATIONS, false);
+        cacheInvalidationBatchInterval = Math.max(1L, configuration.getLong(
+                PROPERTY_CACHE_INVALIDATION_BATCH_INTERVAL, DEFAULT_CACHE_INVALIDATION_BATCH_INTERVAL));
+
+        iterativeSearchStreaming = configuration.getBoolean(PROPERTY_ITERATIVE_SEARCH_STREAMING, false);
+        iterativeSearchStreamingMaxDuration = configuration.getLong(
+                PROPERTY_ITERATIVE_SEARCH_STREAMING_MAX_DURATION, DEFAULT_ITERATIVE_SEARCH_STREAMING_MAX_DURATION);
+
         validateConfiguration();
     }
 
+    /**
+     * Parses the comma-separated list of schema type names; each must be a known object or container type,
+     * otherwise a typo would silently turn the compression off for the type.
+     */
+    private @NotNull Set<String> parseFullObjectCompressionTypes(@NotNull String value)
+            throws RepositoryServiceFactoryException {
+        Set<String> types = Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(type -> !type.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        for (String type : types) {
+            if (!isContainerableSchemaType(type)) {
+                throw new RepositoryServiceFactoryException("Unknown schema type '" + type + "' in "
+                        + PROPERTY_FULL_OBJECT_COMPRESSION_TYPES + ", use simple names of object or container"
+                        + " types, e.g. UserType or AssignmentType");
+            }
+        }
+        return types;
+    }
+
+    private boolean isContainerableSchemaType(@NotNull String simpleName) {
+        try {
+            return Containerable.class.isAssignableFrom(
+                    Class.forName(ObjectType.class.getPackageName() + '.' + simpleName));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
     private void validateConfiguration() throws RepositoryServiceFactoryException {
         if (dataSource == null) {
             notEmpty(jdbcUrl, "JDBC URL is empty or not defined.");
@@ -214,6 +289,22 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
         return fullObjectFormat;
     }
 
+    /**
+     * Returns true if `fullObject` of the specified schema type (object or container) should be stored compressed,
+     * see {@link FullObjectCodec}. Existing values are readable regardless of this setting.
+     */
+    public boolean isFullObjectCompressed(@NotNull Class<?> schemaType) {
+        return fullObjectCompression
+                && (fullObjectCompressionTypes.isEmpty()
+                || fullObjectCompressionTypes.contains(schemaType.getSimpleName()));
+    }
+
+    // exists because of testing
+    public void setFullObjectCompression(boolean fullObjectCompression, @NotNull Set<String> types) {
+        this.fullObjectCompression = fullObjectCompression;
+        this.fullObjectCompressionTypes = Set.copyOf(types);
+    }
+
     @Override
     public boolean isUsing(SupportedDatabase db) {
         return DEFAULT_DATABASE == db;
@@ -300,6 +391,46 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
         return sqlDurationWarningMs;
     }
 
+    /**
+     * Returns true if cluster-wide cache invalidation events should be distributed using database notifications
+     * (`LISTEN`/`NOTIFY`) instead of REST calls to individual nodes.
+     * All nodes in the cluster must have the same setting.
+     */
+    public boolean isCacheInvalidationNotifications() {
+        return cacheInvalidationNotifications;
+    }
+
+    /** How long (in milliseconds) are cache invalidation events collected before they are sent in one notification. */
+    public long getCacheInvalidationBatchInterval() {
+        return cacheInvalidationBatchInterval;
+    }
+
+    /**
+     * Returns true if iterative search of objects should use a server-side cursor (streaming)
+     * instead of a sequence of page queries by default.
+     */
+    public boolean isIterativeSearchStreaming() {
+        return iterativeSearchStreaming;
+    }
+
+    // exists because of testing
+    public void setIterativeSearchStreaming(boolean iterativeSearchStreaming) {
+        this.iterativeSearchStreaming = iterativeSearchStreaming;
+    }
+
+    /**
+     * How long (in milliseconds) can the streaming iterative search keep the cursor (and its transaction) open.
+     * When this time elapses, the remaining objects are processed page by page.
+     */
+    public long getIterativeSearchStreamingMaxDuration() {
+        return iterativeSearchStreamingMaxDuration;
+    }
+
+    // exists because of testing
+    public void setIterativeSearchStreamingMaxDuration(long iterativeSearchStreamingMaxDuration) {
+        this.iterativeSearchStreamingMaxDuration = iterativeSearchStreamingMaxDuration;
+    }
+
     /**
      * Creates a copy of provided configuration for audit and applies override from config.xml.
      * This is used when the same data source is used by audit and repository.
@@ -10,7 +10,6 @@ import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 
 import static com.evolveum.midpoint.schema.GetOperationOptions.isAllowNotFound;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -30,7 +29,6 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ObjectArrays;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Path;
-import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.sql.SQLQuery;
 import org.apache.commons.lang3.Validate;
 import org.jetbrains.annotations.NotNull;
@@ -333,26 +331,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                 .build();
 
         try {
-            PolyString name = object.getName();
-            if (name == null || Strings.isNullOrEmpty(name.getOrig())) {
-                throw new SchemaException("Attempt to add object without name.");
-            }
-
-            //noinspection ConstantConditions
-            logger.debug(
-                    "Adding object type '{}', overwrite={}, allowUnencryptedValues={}, name={} - {}",
-                    object.getCompileTimeClass().getSimpleName(), options.isOverwrite(),
-                    options.isAllowUnencryptedValues(), name.getOrig(), name.getNorm());
-
-            if (InternalsConfig.encryptionChecks && !RepoAddOptions.isAllowUnencryptedValues(options)) {
-                CryptoUtil.checkEncrypted(object);
-            }
-
-            if (InternalsConfig.consistencyChecks) {
-                object.checkConsistence(ConsistencyCheckScope.THOROUGH);
-            } else {
-                object.checkConsistence(ConsistencyCheckScope.MANDATORY_CHECKS_ONLY);
-            }
+            checkObjectToAdd(object, options);
 
             return object.getOid() == null || !options.isOverwrite()
                     ? executeAddObject(object)
@@ -368,6 +347,30 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    private void checkObjectToAdd(@NotNull PrismObject<? extends ObjectType> object, @NotNull RepoAddOptions options)
+            throws SchemaException {
+        PolyString name = object.getName();
+        if (name == null || Strings.isNullOrEmpty(name.getOrig())) {
+            throw new SchemaException("Attempt to add object without name.");
+        }
+
+        //noinspection ConstantConditions
+        logger.debug(
+                "Adding object type '{}', overwrite={}, allowUnencryptedValues={}, name={} - {}",
+                object.getCompileTimeClass().getSimpleName(), options.isOverwrite(),
+                options.isAllowUnencryptedValues(), name.getOrig(), name.getNorm());
+
+        if (InternalsConfig.encryptionChecks && !RepoAddOptions.isAllowUnencryptedValues(options)) {
+            CryptoUtil.checkEncrypted(object);
+        }
+
+        if (InternalsConfig.consistencyChecks) {
+            object.checkConsistence(ConsistencyCheckScope.THOROUGH);
+        } else {
+            object.checkConsistence(ConsistencyCheckScope.MANDATORY_CHECKS_ONLY);
+        }
+    }
+
     private <T extends ObjectType> String executeAddObject(
             @NotNull PrismObject<T> object)
             throws SchemaException, ObjectAlreadyExistsException {
@@ -442,6 +445,97 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    /**
+     * All the objects are added in a single transaction and the rows of their containers and references
+     * are inserted by multi-row inserts, see {@link JdbcSession#deferInserts()}.
+     * This is much faster than {@link #addObject} for each object, e.g. for the initial import.
+     * Overwrite is not supported by the bulk add, objects are added one by one in that case.
+     */
+    @Override
+    public @NotNull List<String> addObjects(
+            @NotNull List<PrismObject<? extends ObjectType>> objects,
+            @Nullable RepoAddOptions options,
+            @NotNull OperationResult parentResult)
+            throws ObjectAlreadyExistsException, SchemaException {
+
+        Objects.requireNonNull(objects, "Objects must not be null.");
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        if (options == null) {
+            options = new RepoAddOptions();
+        }
+        if (options.isOverwrite()) {
+            // Overwrite is more like modify, it can't be done by inserts.
+            return RepositoryService.super.addObjects(objects, options, parentResult);
+        }
+
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_ADD_OBJECTS)
+                .addParam("count", objects.size())
+                .addParam(OperationResult.PARAM_OPTIONS, options.toString())
+                .build();
+
+        try {
+            for (PrismObject<? extends ObjectType> object : objects) {
+                checkObjectToAdd(object, options);
+            }
+
+            return objects.isEmpty() ? List.of() : executeAddObjects(objects);
+        } catch (RepositoryException | RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            operationResult.close();
+            for (PrismObject<? extends ObjectType> object : objects) {
+                OperationLogger.logAdd(object, options, operationResult);
+            }
+        }
+    }
+
+    private List<String> executeAddObjects(@NotNull List<PrismObject<? extends ObjectType>> objects)
+            throws SchemaException, ObjectAlreadyExistsException, RepositoryException {
+        // Rows of a container table can be owned by objects of different types (e.g. assignments and inducements).
+        // Deferred inserts are flushed before each type, so the owner rows are always inserted first.
+        List<PrismObject<? extends ObjectType>> sortedObjects = new ArrayList<>(objects);
+        sortedObjects.sort(Comparator.comparing(o -> o.getCompileTimeClass().getName()));
+
+        long opHandle = registerOperationStart(OP_ADD_OBJECTS, ObjectType.class);
+        try {
+            executeRetriable(OP_ADD_OBJECTS, null, opHandle, () -> {
+                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction().deferInserts()) {
+                    Class<?> previousType = null;
+                    for (PrismObject<? extends ObjectType> object : sortedObjects) {
+                        if (object.getCompileTimeClass() != previousType) {
+                            jdbcSession.flushDeferredInserts();
+                            previousType = object.getCompileTimeClass();
+                        }
+                        new AddObjectContext<>(sqlRepoContext, object)
+                                .executeDeferrable(jdbcSession);
+                    }
+                    jdbcSession.flushDeferredInserts();
+                    jdbcSession.commit();
+                    return null;
+                }
+            });
+        } catch (ObjectNotFoundException e) {
+            throw new SystemException("Should not happen", e);
+        } catch (RuntimeException e) {
+            SqaleUtils.handlePostgresException(e);
+            throw e;
+        } finally {
+            registerOperationFinish(opHandle);
+        }
+
+        List<String> oids = new ArrayList<>(objects.size());
+        for (PrismObject<? extends ObjectType> object : objects) {
+            String oid = object.getOid();
+            invokeConflictWatchers((w) -> w.afterAddObject(oid, object));
+            oids.add(oid);
+        }
+        return oids;
+    }
+
     @Override
     @NotNull
     public <T extends ObjectType> ModifyObjectResult<T> modifyObject(
@@ -505,6 +599,70 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    @Override
+    public void modifyObjects(
+            @NotNull Collection<ObjectModification<?>> modifications,
+            @NotNull OperationResult parentResult)
+            throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+        Objects.requireNonNull(modifications, "Modifications must not be null.");
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_MODIFY_OBJECTS)
+                .addParam("count", modifications.size())
+                .build();
+
+        if (modifications.isEmpty()) {
+            operationResult.close();
+            return;
+        }
+
+        // Rows are locked in the order of OIDs to avoid deadlocks with concurrently executed batches.
+        List<ObjectModification<?>> sortedModifications = new ArrayList<>(modifications);
+        sortedModifications.sort(Comparator.comparing(ObjectModification::oid));
+
+        long opHandle = registerOperationStart(OP_MODIFY_OBJECTS, ObjectType.class);
+        try {
+            executeRetriable(OP_MODIFY_OBJECTS, null, opHandle, () -> {
+                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+                    for (ObjectModification<?> modification : sortedModifications) {
+                        executeModifyObjectInSession(jdbcSession, modification, operationResult);
+                    }
+                    jdbcSession.commit();
+                    return null;
+                }
+            });
+        } catch (RepositoryException | RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            registerOperationFinish(opHandle);
+            operationResult.close();
+            // Logged after the transaction is over (as for modifyObject), so it's not repeated on retries.
+            for (ObjectModification<?> modification : sortedModifications) {
+                OperationLogger.logModify(
+                        modification.type(), modification.oid(), modification.modifications(), null, null, operationResult);
+            }
+        }
+    }
+
+    /** Executes a single modification from {@link #modifyObjects(Collection, OperationResult)} within a shared session. */
+    private <T extends ObjectType> void executeModifyObjectInSession(
+            @NotNull JdbcSession jdbcSession,
+            @NotNull ObjectModification<T> modification,
+            @NotNull OperationResult operationResult)
+            throws SchemaException, ObjectNotFoundException, RepositoryException {
+        UUID oidUuid = SqaleUtils.oidToUuidMandatory(modification.oid());
+        RootUpdateContext<T, QObject<MObject>, MObject> updateContext =
+                prepareUpdateContext(jdbcSession, modification.type(), modification.modifications(), oidUuid, null);
+        try {
+            modifyObjectInternal(updateContext, modification.modifications(), null, null, operationResult);
+        } catch (PreconditionViolationException e) {
+            throw new AssertionError(e); // with null precondition we couldn't get this exception
+        }
+    }
+
     @NotNull
     private <T extends ObjectType> ModifyObjectResult<T> executeModifyObject(
             @NotNull Class<T> type,
@@ -919,7 +1077,11 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                 .where(entityPath.oid.eq(oid))
                 .execute();
 
-        return new DeleteObjectResult(new String(fullObject, StandardCharsets.UTF_8));
+        try {
+            return new DeleteObjectResult(FullObjectCodec.decode(fullObject));
+        } catch (SchemaException e) {
+            throw new SystemException("Couldn't decode full object of deleted " + type.getSimpleName() + " " + oid, e);
+        }
     }
     // endregion
 
@@ -1021,6 +1183,10 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                     SqaleQueryContext.from(type, sqlRepoContext),
                     query,
                     options));
+            if (!result.isEmpty() && result.getMetadata() != null) {
+                // OID of the last object can be used as a paging cookie to get the next page, see SqaleQueryContext
+                result.getMetadata().setPagingCookie(result.get(result.size() - 1).getOid());
+            }
             //noinspection unchecked
             return result.map(
                     o -> (PrismObject<T>) o.asPrismObject());
@@ -1114,6 +1280,35 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
             PrismObject<T> lastProcessedObject = null;
             int handledObjectsTotal = 0;
 
+            if (isIterativeSearchStreaming(type, options)) {
+                ObjectQuery streamedQuery = prismContext().queryFactory().createQuery(
+                        originalQuery != null ? originalQuery.getFilter() : null);
+                ObjectPaging streamedPaging = paging.clone();
+                streamedPaging.setMaxSize(maxSize);
+                streamedPaging.setOffset(offset);
+                streamedQuery.setPaging(streamedPaging);
+
+                StreamedObjects<T> streamed = streamObjects(
+                        type, streamedQuery, maxSize, pageSize, handler, options, operationResult);
+                lastProcessedObject = streamed.lastProcessedObject;
+                handledObjectsTotal = streamed.handledObjects;
+                if (streamed.stoppedByHandler) {
+                    return new SearchResultMetadata()
+                            .approxNumberOfAllResults(handledObjectsTotal + 1)
+                            .pagingCookie(lastProcessedObject.getOid())
+                            .partialResults(true);
+                } else if (streamed.complete || maxSize != null && handledObjectsTotal >= maxSize) {
+                    return new SearchResultMetadata()
+                            .approxNumberOfAllResults(handledObjectsTotal)
+                            .pagingCookie(lastProcessedObject != null
+                                    ? lastProcessedObject.getOid() : null);
+                }
+                // Streaming took too long, the rest is processed page by page after the last processed object.
+                if (lastProcessedObject != null) {
+                    pagedQuery.getPaging().setOffset(null);
+                }
+            }
+
             while (true) {
                 if (maxSize != null && maxSize - handledObjectsTotal < pageSize) {
                     // relevant only for the last page
@@ -1166,6 +1361,75 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    private boolean isIterativeSearchStreaming(
+            Class<? extends ObjectType> type, Collection<SelectorOptions<GetOperationOptions>> options) {
+        IterationMethodType iterationMethod =
+                GetOperationOptions.getIterationMethod(SelectorOptions.findRootOptions(options));
+        boolean streaming = iterationMethod == null || iterationMethod == IterationMethodType.DEFAULT
+                ? repositoryConfiguration().isIterativeSearchStreaming()
+                : iterationMethod == IterationMethodType.SINGLE_TRANSACTION;
+        // Detail fetches would require additional queries for each batch, paging is better for these.
+        return streaming && sqlRepoContext.getMappingBySchemaType(type).detailFetchMappers().isEmpty();
+    }
+
+    /**
+     * Processes the objects using a server-side cursor, which is faster than a sequence of page queries
+     * and does not need the continuation conditions (that may be costly with custom ordering).
+     *
+     * The transaction is open during the whole processing, so it is stopped after
+     * {@link SqaleRepositoryConfiguration#getIterativeSearchStreamingMaxDuration()};
+     * the caller then continues with paging after the last processed object.
+     */
+    private <T extends ObjectType> StreamedObjects<T> streamObjects(
+            Class<T> type,
+            ObjectQuery query,
+            Integer maxSize,
+            int fetchSize,
+            ResultHandler<T> handler,
+            Collection<SelectorOptions<GetOperationOptions>> options,
+            OperationResult operationResult) throws SchemaException, RepositoryException {
+        logSearchInputParameters(type, query, "Search object iterative stream");
+
+        StreamedObjects<T> streamed = new StreamedObjects<>();
+        long deadline = System.currentTimeMillis() + repositoryConfiguration().getIterativeSearchStreamingMaxDuration();
+        try {
+            streamed.complete = sqlQueryExecutor.stream(
+                    SqaleQueryContext.from(type, sqlRepoContext), query, options, fetchSize,
+                    o -> {
+                        //noinspection unchecked
+                        PrismObject<T> object = (PrismObject<T>) o.asPrismObject();
+                        streamed.lastProcessedObject = object;
+                        if (!handler.handle(object, operationResult)) {
+                            streamed.stoppedByHandler = true;
+                            return false;
+                        }
+                        streamed.handledObjects += 1;
+                        if (maxSize != null && streamed.handledObjects >= maxSize) {
+                            return false;
+                        }
+                        if (System.currentTimeMillis() > deadline) {
+                            logger.debug("Streaming of {} objects takes too long, continuing by paging after {} objects",
+                                    type.getSimpleName(), streamed.handledObjects);
+                            return false;
+                        }
+                        return true;
+                    });
+        } finally {
+            // Just counting, as with the whole iterative search, the duration would include the handler.
+            long opHandle = registerOperationStart(OP_SEARCH_OBJECTS_ITERATIVE_STREAM, type);
+            registerOperationFinish(opHandle);
+        }
+        return streamed;
+    }
+
+    /** State of the streaming part of the iterative search. */
+    private static class StreamedObjects<T extends ObjectType> {
+        PrismObject<T> lastProcessedObject;
+        int handledObjects;
+        boolean stoppedByHandler;
+        boolean complete;
+    }
+
     /**
      * Without requested ordering, this is easy: `WHERE oid > lastOid`
      *
@@ -1969,9 +2233,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         long opHandle = registerOperationStart(OP_IS_DESCENDANT, OrgType.class);
         try {
             return executeRetriable(OP_IS_DESCENDANT, SqaleUtils.oidToUuid(object.getOid()), opHandle, () -> {
-                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
-                    jdbcSession.executeStatement("CALL m_refresh_org_closure()");
-
+                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
                     QOrgClosure oc = new QOrgClosure();
                     long count = jdbcSession.newQuery()
                             .from(oc)
@@ -2003,9 +2265,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         long opHandle = registerOperationStart(OP_IS_ANCESTOR, OrgType.class);
         try {
             return executeRetriable(OP_IS_ANCESTOR, SqaleUtils.oidToUuid(object.getOid()), opHandle, () -> {
-                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
-                    jdbcSession.executeStatement("CALL m_refresh_org_closure()");
-
+                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
                     QOrgClosure oc = new QOrgClosure();
                     long count = jdbcSession.newQuery()
                             .from(oc)
@@ -2234,22 +2494,16 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                     sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
                 QOrgClosure oc = new QOrgClosure();
                 closureCount = jdbcSession.newQuery().from(oc).fetchCount();
-                // this is CTE used also for m_org_closure materialized view (here with count)
+                // this is CTE used also for m_org_closure rebuild (here with count)
                 QOrg o = QOrgMapping.getOrgMapping().defaultAlias();
-                QObjectReference<?> ref = QObjectReferenceMapping.getForParentOrg().newAlias("ref");
                 QObjectReference<?> par = QObjectReferenceMapping.getForParentOrg().newAlias("par");
                 //noinspection unchecked
                 expectedCount = jdbcSession.newQuery()
                         .withRecursive(oc, oc.ancestorOid, oc.descendantOid)
                         .as(new SQLQuery<>().union(
-                                // non-recursive term: initial select
+                                // non-recursive term: identity rows for all orgs
                                 new SQLQuery<>().select(o.oid, o.oid)
-                                        .from(o)
-                                        .where(new SQLQuery<>().select(Expressions.ONE)
-                                                .from(ref)
-                                                .where(ref.targetOid.eq(o.oid)
-                                                        .or(ref.ownerOid.eq(o.oid)))
-                                                .exists()),
+                                        .from(o),
                                 new SQLQuery<>().select(par.targetOid, oc.descendantOid)
                                         .from(par, oc)
                                         .where(par.ownerOid.eq(oc.ancestorOid))))
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Manages the monthly timestamp partitions of the audit tables, as created by `audit_create_monthly_partitions`
+ * procedure (see `postgres-audit.sql`).
+ *
+ * * Expired partitions are detached and dropped as a whole, which is much cheaper than deleting their rows
+ * (no WAL for each row, no vacuum afterwards).
+ * Rows of the partition containing the boundary (and of the default partition) must still be deleted the usual way.
+ * * Partitions can be created ahead of time, so that new audit records do not end up in the default partition.
+ *
+ * Only partitions named by the procedure convention (`ma_audit_event_YYYYMM` and related `ma_audit_delta_YYYYMM`
+ * and `ma_audit_ref_YYYYMM`) are considered; the default partitions and any custom partitions are never dropped.
+ */
+class AuditPartitionManager {
+
+    private static final Trace LOGGER = TraceManager.getTrace(AuditPartitionManager.class);
+
+    private static final String EVENT_TABLE_PREFIX = "ma_audit_event_";
+    private static final String DELTA_TABLE_PREFIX = "ma_audit_delta_";
+    private static final String REF_TABLE_PREFIX = "ma_audit_ref_";
+
+    private static final Pattern MONTHLY_SUFFIX = Pattern.compile("\\d{6}");
+
+    /** Lists range partitions of the event table, with their upper bound (exclusive), oldest first. */
+    private static final String LIST_PARTITIONS_SQL = "SELECT c.relname,"
+            + " (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz"
+            + " FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+            + " WHERE i.inhparent = 'ma_audit_event'::regclass"
+            + " ORDER BY 2";
+
+    /**
+     * Drops partitions containing only records older than the specified timestamp.
+     *
+     * @return number of dropped partitions (each consisting of event, delta and reference table)
+     */
+    int dropPartitionsOlderThan(@NotNull JdbcSession jdbcSession, @NotNull Instant olderThan) {
+        int dropped = 0;
+        for (AuditPartition partition : listMonthlyPartitions(jdbcSession)) {
+            if (partition.upperBound().isAfter(olderThan)) {
+                break; // partitions are sorted
+            }
+            dropPartition(jdbcSession, partition);
+            dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * Drops partitions containing only records with ID lower or equal to the specified one.
+     * Empty partitions are not dropped, as they may be prepared for the future.
+     *
+     * @return number of dropped partitions (each consisting of event, delta and reference table)
+     */
+    int dropPartitionsUpToId(@NotNull JdbcSession jdbcSession, long maxId) {
+        int dropped = 0;
+        for (AuditPartition partition : listMonthlyPartitions(jdbcSession)) {
+            Long partitionMaxId = selectMaxId(jdbcSession, partition);
+            if (partitionMaxId != null && partitionMaxId <= maxId) {
+                dropPartition(jdbcSession, partition);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Creates monthly partitions for the current month and the specified number of following months,
+     * unless they already exist. Does nothing for non-positive count.
+     * The creation of a partition fails if there are already rows for its range in the default partition;
+     * this is only logged, as the audit works without the partitions as well.
+     */
+    void createPartitionsAhead(@NotNull JdbcSession jdbcSession, int monthsAhead) {
+        if (monthsAhead <= 0) {
+            return;
+        }
+        try {
+            // the current month is included by the procedure, hence +1
+            jdbcSession.executeStatement("CALL audit_create_monthly_partitions(" + (monthsAhead + 1) + ")");
+            jdbcSession.commit();
+        } catch (SystemException e) {
+            jdbcSession.rollback();
+            LOGGER.warn("Couldn't create audit partitions for {} months ahead: {}", monthsAhead, e.getMessage(), e);
+        }
+    }
+
+    private @NotNull List<AuditPartition> listMonthlyPartitions(@NotNull JdbcSession jdbcSession) {
+        List<AuditPartition> partitions = new ArrayList<>();
+        try (PreparedStatement stmt = jdbcSession.connection().prepareStatement(LIST_PARTITIONS_SQL);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String tableName = rs.getString(1);
+                Timestamp upperBound = rs.getTimestamp(2);
+                if (upperBound == null || !tableName.startsWith(EVENT_TABLE_PREFIX)) {
+                    continue; // e.g. default or custom partition
+                }
+                String suffix = tableName.substring(EVENT_TABLE_PREFIX.length());
+                if (MONTHLY_SUFFIX.matcher(suffix).matches()) {
+                    partitions.add(new AuditPartition(suffix, upperBound.toInstant()));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SystemException("Couldn't list audit partitions", e);
+        }
+        return partitions;
+    }
+
+    private @Nullable Long selectMaxId(@NotNull JdbcSession jdbcSession, @NotNull AuditPartition partition) {
+        // the suffix is checked to be numeric, so the concatenation is safe
+        try (PreparedStatement stmt = jdbcSession.connection().prepareStatement(
+                "SELECT max(id) FROM " + EVENT_TABLE_PREFIX + partition.suffix());
+                ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            long maxId = rs.getLong(1);
+            return rs.wasNull() ? null : maxId;
+        } catch (SQLException e) {
+            throw new SystemException("Couldn't determine max ID in audit partition " + partition.suffix(), e);
+        }
+    }
+
+    /** Detaches and drops the tables of the partition; tables referencing the event table go first. */
+    private void dropPartition(@NotNull JdbcSession jdbcSession, @NotNull AuditPartition partition) {
+        LOGGER.info("Dropping audit partition {} (records before {})", partition.suffix(), partition.upperBound());
+        detachAndDrop(jdbcSession, "ma_audit_ref", REF_TABLE_PREFIX + partition.suffix());
+        detachAndDrop(jdbcSession, "ma_audit_delta", DELTA_TABLE_PREFIX + partition.suffix());
+        detachAndDrop(jdbcSession, "ma_audit_event", EVENT_TABLE_PREFIX + partition.suffix());
+    }
+
+    private void detachAndDrop(@NotNull JdbcSession jdbcSession, String parentTable, String partitionTable) {
+        jdbcSession.executeStatement("ALTER TABLE " + parentTable + " DETACH PARTITION " + partitionTable);
+        jdbcSession.executeStatement("DROP TABLE " + partitionTable);
+    }
+
+    /** Monthly partition identified by its table name suffix (`YYYYMM`). */
+    private record AuditPartition(@NotNull String suffix, @NotNull Instant upperBound) {
+    }
+}
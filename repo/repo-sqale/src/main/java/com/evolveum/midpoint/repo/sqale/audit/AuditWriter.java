@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import javax.xml.namespace.QName;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.audit.SqaleAuditService.PreparedAuditRecord;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventRecordType;
+
+/**
+ * Writes audit records for {@link SqaleAuditService} in batches: records submitted by (typically) multiple threads
+ * are put into a bounded queue, from which a single writer thread takes them and inserts up to `batchSize` records
+ * in one transaction, using multi-row inserts (see {@link SqaleAuditService#insertAuditRecords(List)}).
+ * There is no waiting for more records, the batches grow naturally while the previous batch is being written.
+ *
+ * The durability depends on the {@link Mode}:
+ *
+ * * {@link Mode#GROUP_COMMIT}: the submitting thread waits until the batch with its record is committed,
+ * so the callers see the same semantics as with the synchronous insertion (including the assigned ID).
+ * * {@link Mode#ASYNCHRONOUS}: the submitting thread does not wait, the record is lost if it fails to be written
+ * (the failure is logged), or if the node crashes before the record is written.
+ * If the queue is full and the spool directory is configured, the record is written to a file there
+ * and inserted later, when the writer is idle. Without the spool directory the submitting thread waits for
+ * a free place in the queue.
+ *
+ * If a batch fails, its records are written one by one, so that a single bad record does not affect the others.
+ * All queued records are written when the writer is stopped; spooled records stay in the spool directory
+ * and are written after the next start. Records submitted after the stop are rejected.
+ */
+class AuditWriter {
+
+    private static final Trace LOGGER = TraceManager.getTrace(AuditWriter.class);
+
+    /** How often the writer thread checks the spool directory and whether it should stop. */
+    private static final long IDLE_POLL_MILLIS = 1000;
+
+    /** How long the stopping waits for the writer thread to write the queued records. */
+    private static final long STOP_TIMEOUT_MILLIS = 60_000;
+
+    /** How long the submitting thread waits for its record to be written in {@link Mode#GROUP_COMMIT} mode. */
+    private static final long WRITE_TIMEOUT_MILLIS = 60_000;
+
+    private static final String SPOOL_FILE_PREFIX = "audit-";
+    private static final String SPOOL_FILE_SUFFIX = ".spool";
+    private static final String SPOOL_FILE_FAILED_SUFFIX = ".failed";
+    private static final QName SPOOL_ELEMENT_NAME =
+            new QName(AuditEventRecordType.COMPLEX_TYPE.getNamespaceURI(), "auditEventRecord");
+
+    /** Write modes, the values are used in the configuration (`writeMode` property of the audit). */
+    enum Mode {
+
+        /** Records are inserted by the calling thread, each in its own transaction; no writer is used. */
+        SYNCHRONOUS("synchronous"),
+
+        /** Records are inserted in batches by the writer thread, the calling thread waits for the commit. */
+        GROUP_COMMIT("groupCommit"),
+
+        /** Records are inserted in batches by the writer thread, the calling thread does not wait. */
+        ASYNCHRONOUS("asynchronous");
+
+        private final String value;
+
+        Mode(String value) {
+            this.value = value;
+        }
+
+        static @NotNull Mode fromValue(@NotNull String value) {
+            for (Mode mode : values()) {
+                if (mode.value.equals(value)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("Unknown audit write mode '" + value + "'");
+        }
+    }
+
+    @NotNull private final SqaleAuditService auditService;
+    @NotNull private final SqaleRepoContext repoContext;
+    @NotNull private final Mode mode;
+    private final int batchSize;
+    @Nullable private final Path spoolDirectory;
+
+    @NotNull private final BlockingQueue<QueuedRecord> queue;
+    @NotNull private final Thread writerThread;
+
+    /**
+     * Submitting threads hold the read lock while checking {@link #stopped} and queueing the record,
+     * the stopping holds the write lock while setting it. Hence, no record can be queued after the final draining.
+     */
+    @NotNull private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+    private volatile boolean stopped;
+
+    /** Makes the spool file names unique (and ordered) for records spooled within the same millisecond. */
+    private final AtomicLong spoolCounter = new AtomicLong();
+
+    AuditWriter(
+            @NotNull SqaleAuditService auditService,
+            @NotNull SqaleRepoContext repoContext,
+            @NotNull Mode mode,
+            int queueSize,
+            int batchSize,
+            @Nullable Path spoolDirectory) {
+        this.auditService = auditService;
+        this.repoContext = repoContext;
+        this.mode = mode;
+        this.batchSize = Math.max(1, batchSize);
+        this.spoolDirectory = spoolDirectory;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        if (spoolDirectory != null) {
+            try {
+                Files.createDirectories(spoolDirectory);
+            } catch (IOException e) {
+                throw new SystemException("Couldn't create audit spool directory " + spoolDirectory, e);
+            }
+        }
+        this.writerThread = new Thread(this::run, "audit-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        LOGGER.info("Started audit writer in {} mode, queue size {}, batch size {}, spool directory: {}",
+                mode.value, queue.remainingCapacity(), this.batchSize, spoolDirectory);
+    }
+
+    /** Submits the record for writing; for {@link Mode#GROUP_COMMIT} returns after the record is committed. */
+    void write(@NotNull PreparedAuditRecord record) {
+        QueuedRecord queued = new QueuedRecord(record, mode == Mode.GROUP_COMMIT ? new CompletableFuture<>() : null);
+        stopLock.readLock().lock();
+        try {
+            if (stopped) {
+                throw new IllegalStateException("The audit writer is stopped");
+            }
+            // Waiting for a place in the queue under the read lock is safe, as the writer thread is still running.
+            if (mode == Mode.GROUP_COMMIT) {
+                put(queued);
+            } else if (!queue.offer(queued)) {
+                if (spoolDirectory != null) {
+                    spool(record.record());
+                } else {
+                    put(queued);
+                }
+            }
+        } finally {
+            stopLock.readLock().unlock();
+        }
+        if (queued.completion() != null) {
+            waitForCompletion(queued);
+        }
+    }
+
+    private void put(@NotNull QueuedRecord queued) {
+        try {
+            queue.put(queued);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for a place in the audit queue", e);
+        }
+    }
+
+    private void waitForCompletion(@NotNull QueuedRecord queued) {
+        assert queued.completion() != null;
+        try {
+            queued.completion().get(WRITE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SystemException("The audit record " + queued.record().row().eventIdentifier
+                    + " was not written within " + WRITE_TIMEOUT_MILLIS + " ms; it may still be written later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for the audit record to be written", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else {
+                throw new SystemException(
+                        "Couldn't write the audit record: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /** Stops the writer thread after the queued records are written. */
+    void stop() {
+        stopLock.writeLock().lock();
+        try {
+            stopped = true;
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+        try {
+            writerThread.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            LOGGER.warn("Audit writer didn't finish in {} ms, writing the remaining {} queued records directly",
+                    STOP_TIMEOUT_MILLIS, queue.size());
+            writerThread.interrupt();
+        }
+        List<QueuedRecord> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            writeBatch(remaining);
+            remaining.clear();
+        }
+        LOGGER.info("Audit writer stopped");
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                QueuedRecord first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null && stopped) {
+                    break;
+                }
+                try {
+                    if (first != null) {
+                        writeBatch(collectBatch(first));
+                    } else {
+                        writeSpooledRecords();
+                    }
+                } catch (RuntimeException e) {
+                    LoggingUtils.logUnexpectedException(LOGGER, "Unexpected problem in audit writer, continuing", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.trace("Audit writer thread was interrupted, stopping");
+        }
+    }
+
+    private @NotNull List<QueuedRecord> collectBatch(@NotNull QueuedRecord first) {
+        List<QueuedRecord> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        return batch;
+    }
+
+    private void writeBatch(@NotNull List<QueuedRecord> batch) {
+        try {
+            auditService.insertAuditRecords(batch.stream().map(QueuedRecord::record).toList());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                recordFailed(batch.get(0), e);
+                return;
+            }
+            LoggingUtils.logException(LOGGER,
+                    "Couldn't write a batch of {} audit records, writing them one by one", e, batch.size());
+            for (QueuedRecord queued : batch) {
+                try {
+                    auditService.insertAuditRecords(List.of(queued.record()));
+                } catch (RuntimeException e1) {
+                    recordFailed(queued, e1);
+                    continue;
+                }
+                recordWritten(queued);
+            }
+            return;
+        }
+        LOGGER.trace("Written a batch of {} audit records", batch.size());
+        batch.forEach(this::recordWritten);
+    }
+
+    private void recordWritten(@NotNull QueuedRecord queued) {
+        if (queued.completion() != null) {
+            // the caller waits for the completion, so it sees the ID when it continues
+            queued.record().record().setRepoId(queued.record().row().id);
+            queued.completion().complete(null);
+        }
+    }
+
+    private void recordFailed(@NotNull QueuedRecord queued, @NotNull RuntimeException e) {
+        if (queued.completion() != null) {
+            queued.completion().completeExceptionally(e);
+        } else {
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't write audit record {}, it is lost", e,
+                    queued.record().row().eventIdentifier);
+        }
+    }
+
+    /**
+     * Writes the record to a new file in the spool directory.
+     * The file is written under a temporary name first, so that incomplete files are never read.
+     */
+    private void spool(@NotNull AuditEventRecord record) {
+        assert spoolDirectory != null;
+        String fileName = String.format("%s%013d-%09d", SPOOL_FILE_PREFIX,
+                System.currentTimeMillis(), spoolCounter.incrementAndGet() % 1_000_000_000);
+        Path tempFile = spoolDirectory.resolve(fileName + ".tmp");
+        try {
+            String serialized = repoContext.createStringSerializer()
+                    .serializeRealValue(record.createAuditEventRecordType(true), SPOOL_ELEMENT_NAME);
+            Files.writeString(tempFile, serialized);
+            Files.move(tempFile, spoolDirectory.resolve(fileName + SPOOL_FILE_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (SchemaException | IOException e) {
+            throw new SystemException("Couldn't write audit record to spool directory " + spoolDirectory, e);
+        }
+        LOGGER.debug("Audit queue is full, record {} was spooled to {}", record.getEventIdentifier(), fileName);
+    }
+
+    /**
+     * Inserts the spooled records, oldest first, until a new record is queued (the queued records have priority).
+     * Stops on the first DB failure, the remaining files are tried again later.
+     * Files that cannot be read are renamed, so they are not tried again.
+     */
+    private void writeSpooledRecords() {
+        if (spoolDirectory == null) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(spoolDirectory)) {
+            files = stream
+                    .filter(p -> p.getFileName().toString().startsWith(SPOOL_FILE_PREFIX)
+                            && p.getFileName().toString().endsWith(SPOOL_FILE_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't list audit spool directory {}: {}", spoolDirectory, e.getMessage());
+            return;
+        }
+
+        for (Path file : files) {
+            if (!queue.isEmpty()) {
+                return; // the queued records have priority
+            }
+            AuditEventRecordType record;
+            try {
+                record = repoContext.parsePrismObject(Files.readString(file), AuditEventRecordType.class).prismValue;
+            } catch (SchemaException | IOException e) {
+                LoggingUtils.logException(LOGGER, "Couldn't read spooled audit record {}, it will be renamed to {}", e,
+                        file, file.getFileName() + SPOOL_FILE_FAILED_SUFFIX);
+                moveToFailed(file);
+                continue;
+            }
+            try {
+                auditService.executeAudit(record);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Couldn't write spooled audit record {}, will try again later: {}", file, e.getMessage());
+                return;
+            }
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                // the record is written already, it must not be written again
+                LoggingUtils.logException(LOGGER,
+                        "Couldn't delete spooled audit record {} after it was written, renaming it", e, file);
+                moveToFailed(file);
+            }
+        }
+    }
+
+    /** Moves the file out of the way; if even that fails, the spool processing stops until the next round. */
+    private void moveToFailed(@NotNull Path file) {
+        try {
+            Files.move(file, file.resolveSibling(file.getFileName() + SPOOL_FILE_FAILED_SUFFIX));
+        } catch (IOException e) {
+            throw new SystemException("Couldn't rename spooled audit record " + file, e);
+        }
+    }
+
+    /** Record waiting for the writer; the completion is present only if the submitting thread waits for it. */
+    private record QueuedRecord(
+            @NotNull PreparedAuditRecord record, @Nullable CompletableFuture<Void> completion) {
+    }
+}
@@ -16,6 +16,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.Instant;
 import java.util.*;
 import javax.xml.datatype.Duration;
@@ -69,6 +73,13 @@ import com.evolveum.prism.xml.ns._public.types_3.ObjectDeltaType;
 public class SqaleAuditService extends SqaleServiceBase implements AuditService {
 
     private final SqlQueryExecutor sqlQueryExecutor;
+    private final AuditPartitionManager partitionManager = new AuditPartitionManager();
+
+    /** How many monthly partitions ahead should be created, see {@link #createPartitionsAhead()}; 0 means none. */
+    private int partitionsAhead;
+
+    /** Writer used for non-synchronous write modes, null if the records are inserted by the calling thread. */
+    @Nullable private volatile AuditWriter auditWriter;
 
     // set from SystemConfigurationAuditType
     private boolean escapeIllegalCharacters = false;
@@ -100,14 +111,22 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
     }
 
     private void executeAudit(AuditEventRecord record) {
+        AuditWriter writer = auditWriter;
+        if (writer != null) {
+            record.setRepoId(null); // ID is assigned by the writer
+            writer.write(prepareAuditRecord(record));
+            return;
+        }
+
         long opHandle = registerOperationStart(OP_AUDIT);
         try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
             record.setRepoId(null); // we want DB to assign the ID
-            MAuditEventRecord auditRow = insertAuditEventRecord(jdbcSession, record);
+            PreparedAuditRecord prepared = prepareAuditRecord(record);
+            MAuditEventRecord auditRow = insertAuditEventRecord(jdbcSession, prepared);
             record.setRepoId(auditRow.id);
 
-            insertAuditDeltas(jdbcSession, auditRow);
-            insertReferences(jdbcSession, auditRow, record.getReferences());
+            insertAuditDeltas(jdbcSession, List.of(auditRow));
+            insertReferences(jdbcSession, List.of(prepared));
 
             jdbcSession.commit();
         } finally {
@@ -116,19 +135,72 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
     }
 
     /**
-     * Inserts audit event record aggregate root without any subentities.
-     * Traditional Sqale "insert root first, then insert children" is not optimal here,
-     * because to insert root we need to collect some information from children anyway.
-     * So we prepare the subentities in collections, gather the needed information
-     * (e.g. changed item paths) and then insert root entity.
-     * Subentities are inserted later out of this method.
-     *
-     * @return inserted row with transient deltas prepared for insertion
+     * Inserts the prepared audit records in a single transaction, using multi-row inserts.
+     * IDs are obtained from the event ID sequence upfront, so the subentities of all records
+     * can be inserted in one batch as well.
+     * Used by {@link AuditWriter}.
+     */
+    void insertAuditRecords(List<PreparedAuditRecord> records) {
+        long opHandle = registerOperationStart(OP_AUDIT);
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            List<Long> ids = nextAuditEventIds(jdbcSession, records.size());
+
+            QAuditEventRecordMapping aerMapping = QAuditEventRecordMapping.get();
+            QAuditEventRecord aer = aerMapping.defaultAlias();
+            Set<String> customColumns = aerMapping.getExtensionColumns().keySet();
+            SQLInsertClause insertBatch = jdbcSession.newInsert(aer);
+            List<MAuditEventRecord> auditRows = new ArrayList<>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                PreparedAuditRecord prepared = records.get(i);
+                MAuditEventRecord row = prepared.row();
+                row.id = ids.get(i);
+                auditRows.add(row);
+
+                // NULLs are important to keep the value count consistent during the batch,
+                // hence all the custom columns are set for each record.
+                insertBatch.populate(row, DefaultMapper.WITH_NULL_BINDINGS);
+                for (String propertyName : customColumns) {
+                    insertBatch.columns(aer.getPath(propertyName))
+                            .values((Object) prepared.customColumns().get(propertyName));
+                }
+                insertBatch.addBatch();
+            }
+            insertBatch.setBatchToBulk(true);
+            insertBatch.execute();
+
+            insertAuditDeltas(jdbcSession, auditRows);
+            insertReferences(jdbcSession, records);
+
+            jdbcSession.commit();
+        } finally {
+            registerOperationFinish(opHandle);
+        }
+    }
+
+    private List<Long> nextAuditEventIds(JdbcSession jdbcSession, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        try (PreparedStatement stmt = jdbcSession.connection().prepareStatement(
+                "SELECT nextval('ma_audit_event_id_seq') FROM generate_series(1, ?)")) {
+            stmt.setInt(1, count);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SystemException("Couldn't obtain audit event IDs", e);
+        }
+        return ids;
+    }
+
+    /**
+     * Converts the audit record to the rows to be inserted, without touching the DB.
+     * Deltas are prepared in collections first, because to insert the root row we need to collect
+     * some information from them anyway (e.g. changed item paths).
+     * The result does not depend on the record anymore, so the record can be changed after this.
      */
-    private MAuditEventRecord insertAuditEventRecord(JdbcSession jdbcSession, AuditEventRecord record) {
-        QAuditEventRecordMapping aerMapping = QAuditEventRecordMapping.get();
-        QAuditEventRecord aer = aerMapping.defaultAlias();
-        MAuditEventRecord row = aerMapping.toRowObject(record);
+    private PreparedAuditRecord prepareAuditRecord(AuditEventRecord record) {
+        MAuditEventRecord row = QAuditEventRecordMapping.get().toRowObject(record);
 
         Collection<MAuditDelta> deltaRows = prepareDeltas(record.getDeltas());
         row.deltas = deltaRows;
@@ -136,21 +208,42 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         Set<String> changedItemPaths = collectChangedItemPaths(deltaRows);
         row.changedItemPaths = changedItemPaths.isEmpty() ? null : changedItemPaths.toArray(String[]::new);
 
-        SQLInsertClause insert = jdbcSession.newInsert(aer).populate(row);
-        Map<String, ColumnMetadata> customColumns = aerMapping.getExtensionColumns();
-        for (Map.Entry<String, String> property : record.getCustomColumnProperty().entrySet()) {
-            String propertyName = property.getKey();
+        Map<String, ColumnMetadata> customColumns = QAuditEventRecordMapping.get().getExtensionColumns();
+        for (String propertyName : record.getCustomColumnProperty().keySet()) {
             if (!customColumns.containsKey(propertyName)) {
                 throw new IllegalArgumentException("Audit event record table doesn't"
                         + " contains column for property " + propertyName);
             }
+        }
+
+        Map<String, Set<AuditReferenceValue>> references = new HashMap<>();
+        record.getReferences().forEach((name, values) -> references.put(name, new HashSet<>(values)));
+
+        return new PreparedAuditRecord(record, row, new HashMap<>(record.getCustomColumnProperty()), references);
+    }
+
+    /**
+     * Inserts audit event record aggregate root without any subentities.
+     * Traditional Sqale "insert root first, then insert children" is not optimal here,
+     * because to insert root we need to collect some information from children anyway.
+     * This is done in {@link #prepareAuditRecord(AuditEventRecord)}.
+     * Subentities are inserted later out of this method.
+     *
+     * @return inserted row with transient deltas prepared for insertion
+     */
+    private MAuditEventRecord insertAuditEventRecord(JdbcSession jdbcSession, PreparedAuditRecord prepared) {
+        QAuditEventRecord aer = QAuditEventRecordMapping.get().defaultAlias();
+        MAuditEventRecord row = prepared.row();
+
+        SQLInsertClause insert = jdbcSession.newInsert(aer).populate(row);
+        for (Map.Entry<String, String> property : prepared.customColumns().entrySet()) {
             // Like insert.set, but that one is too parameter-type-safe for our generic usage here.
-            insert.columns(aer.getPath(propertyName)).values(property.getValue());
+            insert.columns(aer.getPath(property.getKey())).values(property.getValue());
         }
 
         Long returnedId = insert.executeWithKey(aer.id);
         // If returned ID is null, it was likely provided, so we use that one.
-        row.id = returnedId != null ? returnedId : record.getRepoId();
+        row.id = returnedId != null ? returnedId : row.id;
         return row;
     }
 
@@ -309,11 +402,11 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
     }
 
     private void insertAuditDeltas(
-            JdbcSession jdbcSession, MAuditEventRecord auditRow) {
+            JdbcSession jdbcSession, Collection<MAuditEventRecord> auditRows) {
 
-        if (!auditRow.deltas.isEmpty()) {
-            SQLInsertClause insertBatch = jdbcSession.newInsert(
-                    QAuditDeltaMapping.get().defaultAlias());
+        SQLInsertClause insertBatch = jdbcSession.newInsert(
+                QAuditDeltaMapping.get().defaultAlias());
+        for (MAuditEventRecord auditRow : auditRows) {
             for (MAuditDelta deltaRow : auditRow.deltas) {
                 deltaRow.recordId = auditRow.id;
                 deltaRow.timestamp = auditRow.timestamp;
@@ -321,36 +414,39 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
                 // NULLs are important to keep the value count consistent during the batch
                 insertBatch.populate(deltaRow, DefaultMapper.WITH_NULL_BINDINGS).addBatch();
             }
-            insertBatch.setBatchToBulk(true);
-            insertBatch.execute();
         }
-    }
-
-    private void insertReferences(JdbcSession jdbcSession,
-            MAuditEventRecord auditRow, Map<String, Set<AuditReferenceValue>> references) {
-        if (references.isEmpty()) {
+        if (insertBatch.getBatchCount() == 0) {
             return;
         }
 
+        insertBatch.setBatchToBulk(true);
+        insertBatch.execute();
+    }
+
+    private void insertReferences(JdbcSession jdbcSession, Collection<PreparedAuditRecord> records) {
         QAuditRefValue qr = QAuditRefValueMapping.get().defaultAlias();
         SQLInsertClause insertBatch = jdbcSession.newInsert(qr);
-        for (String refName : references.keySet()) {
-            for (AuditReferenceValue refValue : references.get(refName)) {
-                // id will be generated, but we're not interested in those here
-                PolyString targetName = refValue.getTargetName();
-                insertBatch.set(qr.recordId, auditRow.id)
-                        .set(qr.timestamp, auditRow.timestamp)
-                        .set(qr.name, refName)
-                        .set(qr.targetOid, SqaleUtils.oidToUuid(refValue.getOid()))
-                        .set(qr.targetType, refValue.getType() != null
-                                ? MObjectType.fromTypeQName(refValue.getType()) : null)
-                        .set(qr.targetNameOrig, PolyString.getOrig(targetName))
-                        .set(qr.targetNameNorm, PolyString.getNorm(targetName))
-                        .addBatch();
+        for (PreparedAuditRecord record : records) {
+            MAuditEventRecord auditRow = record.row();
+            Map<String, Set<AuditReferenceValue>> references = record.references();
+            for (String refName : references.keySet()) {
+                for (AuditReferenceValue refValue : references.get(refName)) {
+                    // id will be generated, but we're not interested in those here
+                    PolyString targetName = refValue.getTargetName();
+                    insertBatch.set(qr.recordId, auditRow.id)
+                            .set(qr.timestamp, auditRow.timestamp)
+                            .set(qr.name, refName)
+                            .set(qr.targetOid, SqaleUtils.oidToUuid(refValue.getOid()))
+                            .set(qr.targetType, refValue.getType() != null
+                                    ? MObjectType.fromTypeQName(refValue.getType()) : null)
+                            .set(qr.targetNameOrig, PolyString.getOrig(targetName))
+                            .set(qr.targetNameNorm, PolyString.getNorm(targetName))
+                            .addBatch();
+                }
             }
         }
         if (insertBatch.getBatchCount() == 0) {
-            return; // strange, no values anywhere?
+            return; // no references, or strange, no values anywhere?
         }
 
         insertBatch.setBatchToBulk(true);
@@ -375,7 +471,8 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         }
     }
 
-    private void executeAudit(AuditEventRecordType record) {
+    /** Inserts the record in its own transaction, synchronously. Also used for spooled records by {@link AuditWriter}. */
+    void executeAudit(AuditEventRecordType record) {
         long opHandle = registerOperationStart(OP_AUDIT);
         try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
             // plenty of parameters, but it's better to have a short-lived stateful worker for it
@@ -388,6 +485,26 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         }
     }
 
+    /**
+     * Starts the writer for the specified write mode, see {@link AuditWriter} for details.
+     * Nothing is started for the synchronous mode, records are inserted by the calling thread then.
+     */
+    void startAuditWriter(@NotNull AuditWriter.Mode mode,
+            int queueSize, int batchSize, @Nullable Path spoolDirectory) {
+        if (mode != AuditWriter.Mode.SYNCHRONOUS) {
+            auditWriter = new AuditWriter(this, sqlRepoContext, mode, queueSize, batchSize, spoolDirectory);
+        }
+    }
+
+    /** Stops the writer (if any) after all the queued records are written; the following records are synchronous. */
+    void stopAuditWriter() {
+        AuditWriter writer = auditWriter;
+        if (writer != null) {
+            auditWriter = null;
+            writer.stop();
+        }
+    }
+
     @Override
     public void cleanupAudit(CleanupPolicyType policy, OperationResult parentResult) {
         Objects.requireNonNull(policy, "Cleanup policy must not be null.");
@@ -397,6 +514,32 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         // It looks like the attempts (and wasted time) are not counted correctly
         cleanupAuditMaxRecords(policy, parentResult);
         cleanupAuditMaxAge(policy, parentResult);
+
+        // cleanup is executed regularly, so it's a good opportunity to keep the partitions ready
+        createPartitionsAhead();
+    }
+
+    /**
+     * Sets how many monthly partitions ahead (after the current month) should be maintained.
+     * This should be used only if the audit tables are partitioned, i.e. `audit_create_monthly_partitions` was used.
+     */
+    public void setPartitionsAhead(int partitionsAhead) {
+        this.partitionsAhead = partitionsAhead;
+    }
+
+    /**
+     * Creates monthly partitions of the audit tables ahead of time, if configured (see {@link #setPartitionsAhead(int)}).
+     * Called on startup and after each audit cleanup. Any problems are logged, but otherwise ignored.
+     */
+    public void createPartitionsAhead() {
+        if (partitionsAhead <= 0) {
+            return;
+        }
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            partitionManager.createPartitionsAhead(jdbcSession, partitionsAhead);
+        } catch (RuntimeException e) {
+            logger.warn("Couldn't create audit partitions ahead: {}", e.getMessage(), e);
+        }
     }
 
     private void cleanupAuditMaxAge(CleanupPolicyType policy, OperationResult parentResult) {
@@ -430,10 +573,16 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         Instant olderThan = Instant.ofEpochMilli(minValue.getTime());
 
         long start = System.currentTimeMillis();
+        int droppedPartitions = 0;
         long deletedCount = 0;
         try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
             logger.info("Audit cleanup, deleting records older than {}.", olderThan);
 
+            // Whole partitions are dropped first (committed right away, as it locks the audit tables),
+            // only the rest (boundary partition, default partition) is deleted row by row.
+            droppedPartitions = partitionManager.dropPartitionsOlderThan(jdbcSession, olderThan);
+            jdbcSession.commit();
+
             QAuditEventRecord qae = QAuditEventRecordMapping.get().defaultAlias();
             deletedCount = jdbcSession.newDelete(qae)
                     .where(qae.timestamp.lt(olderThan))
@@ -441,13 +590,14 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
             jdbcSession.commit();
         } finally {
             registerOperationFinish(opHandle);
-            logger.info("Audit cleanup based on age finished; deleted {} entries in {} seconds.",
-                    deletedCount, (System.currentTimeMillis() - start) / 1000L);
+            logger.info("Audit cleanup based on age finished; dropped {} partitions and deleted {} other entries"
+                            + " in {} seconds.",
+                    droppedPartitions, deletedCount, (System.currentTimeMillis() - start) / 1000L);
         }
     }
 
-    // TODO: Document that this is less efficient with current timestamp-partitioned repo.
-    //  Not necessarily inefficient per se, just less efficient than using timestamp.
+    // Less efficient than the age-based cleanup with timestamp-partitioned audit, as partitions that can be
+    // dropped as a whole must be found by their max ID; still, only the remaining rows are deleted one by one.
     private void cleanupAuditMaxRecords(CleanupPolicyType policy, OperationResult parentResult) {
         Integer maxRecords = policy.getMaxRecords();
         if (maxRecords == null) {
@@ -472,6 +622,7 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         long opHandle = registerOperationStart(OP_CLEANUP_AUDIT_MAX_RECORDS);
 
         long start = System.currentTimeMillis();
+        int droppedPartitions = 0;
         long deletedCount = 0;
         try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
             logger.info("Audit cleanup, deleting to leave only {} records.", maxRecords);
@@ -487,14 +638,18 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
                 return;
             }
 
+            droppedPartitions = partitionManager.dropPartitionsUpToId(jdbcSession, deleteFromId);
+            jdbcSession.commit();
+
             deletedCount = jdbcSession.newDelete(qae)
                     .where(qae.id.loe(deleteFromId))
                     .execute();
             jdbcSession.commit();
         } finally {
             registerOperationFinish(opHandle);
-            logger.info("Audit cleanup based on record count finished; deleted {} entries in {} seconds.",
-                    deletedCount, (System.currentTimeMillis() - start) / 1000L);
+            logger.info("Audit cleanup based on record count finished; dropped {} partitions and deleted {} other entries"
+                            + " in {} seconds.",
+                    droppedPartitions, deletedCount, (System.currentTimeMillis() - start) / 1000L);
         }
     }
 
@@ -799,4 +954,22 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
     protected long registerOperationStart(String kind) {
         return registerOperationStart(kind, AuditEventRecordType.class);
     }
+
+    /** Writes all the queued audit records (if {@link AuditWriter} is used) before releasing the resources. */
+    @Override
+    public void destroy() {
+        stopAuditWriter();
+        super.destroy();
+    }
+
+    /**
+     * Audit record converted to rows ready to be inserted; the ID of the event row is set during the insertion.
+     * The original record is kept only to report the assigned ID back.
+     */
+    record PreparedAuditRecord(
+            @NotNull AuditEventRecord record,
+            @NotNull MAuditEventRecord row,
+            @NotNull Map<String, String> customColumns,
+            @NotNull Map<String, Set<AuditReferenceValue>> references) {
+    }
 }
@@ -8,6 +8,7 @@ package com.evolveum.midpoint.repo.sqale.audit;
 
 import static com.evolveum.midpoint.repo.sqlbase.JdbcRepositoryConfiguration.*;
 
+import java.nio.file.Path;
 import java.sql.Types;
 import java.util.List;
 import javax.sql.DataSource;
@@ -58,6 +59,14 @@ public class SqaleAuditServiceFactory implements AuditServiceFactory {
     private static final String CONF_AUDIT_SERVICE_COLUMNS = "customColumn";
     private static final String CONF_AUDIT_SERVICE_COLUMN_NAME = "columnName";
     private static final String CONF_AUDIT_SERVICE_EVENT_RECORD_PROPERTY_NAME = "eventRecordPropertyName";
+    private static final String CONF_AUDIT_SERVICE_CREATE_PARTITIONS_AHEAD = "createPartitionsAhead";
+    private static final String CONF_AUDIT_SERVICE_WRITE_MODE = "writeMode";
+    private static final String CONF_AUDIT_SERVICE_WRITE_QUEUE_SIZE = "writeQueueSize";
+    private static final String CONF_AUDIT_SERVICE_WRITE_BATCH_SIZE = "writeBatchSize";
+    private static final String CONF_AUDIT_SERVICE_SPOOL_DIRECTORY = "spoolDirectory";
+
+    private static final int DEFAULT_WRITE_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_WRITE_BATCH_SIZE = 100;
 
     private final SqaleRepositoryConfiguration sqaleRepositoryConfiguration;
     private final SchemaService schemaService;
@@ -84,6 +93,9 @@ public class SqaleAuditServiceFactory implements AuditServiceFactory {
             SqaleRepoContext sqlRepoContext = createSqaleRepoContext(configuration);
             auditService = new SqaleAuditService(sqlRepoContext, sqlPerformanceMonitorsCollection);
             initCustomColumns(configuration, sqlRepoContext);
+            auditService.setPartitionsAhead(configuration.getInt(CONF_AUDIT_SERVICE_CREATE_PARTITIONS_AHEAD, 0));
+            auditService.createPartitionsAhead();
+            initAuditWriter(configuration);
         } catch (RepositoryServiceFactoryException ex) {
             throw new AuditServiceFactoryException(ex.getMessage(), ex);
         }
@@ -170,6 +182,16 @@ public class SqaleAuditServiceFactory implements AuditServiceFactory {
         }
     }
 
+    private void initAuditWriter(@NotNull Configuration configuration) {
+        AuditWriter.Mode writeMode = AuditWriter.Mode.fromValue(
+                configuration.getString(CONF_AUDIT_SERVICE_WRITE_MODE, "synchronous"));
+        String spoolDirectory = configuration.getString(CONF_AUDIT_SERVICE_SPOOL_DIRECTORY);
+        auditService.startAuditWriter(writeMode,
+                configuration.getInt(CONF_AUDIT_SERVICE_WRITE_QUEUE_SIZE, DEFAULT_WRITE_QUEUE_SIZE),
+                configuration.getInt(CONF_AUDIT_SERVICE_WRITE_BATCH_SIZE, DEFAULT_WRITE_BATCH_SIZE),
+                Strings.isNullOrEmpty(spoolDirectory) ? null : Path.of(spoolDirectory));
+    }
+
     private String getStringFromConfig(Configuration config, String key) {
         String value = config.getString(key);
         if (Strings.isNullOrEmpty(value)) {
@@ -6,7 +6,6 @@
  */
 package com.evolveum.midpoint.repo.sqale.mapping;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -34,6 +33,7 @@ import com.evolveum.midpoint.prism.SerializationOptions;
 import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.path.PathSet;
 import com.evolveum.midpoint.repo.sqale.ExtensionProcessor;
+import com.evolveum.midpoint.repo.sqale.FullObjectCodec;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
 import com.evolveum.midpoint.repo.sqale.SqaleUtils;
 import com.evolveum.midpoint.repo.sqale.delta.item.*;
@@ -462,11 +462,12 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
         return strings.toArray(String[]::new);
     }
 
-    /** Convenient insert shortcut when the row is fully populated. */
+    /**
+     * Convenient insert shortcut when the row is fully populated.
+     * The insert may be deferred, see {@link JdbcSession#deferInserts()}.
+     */
     protected void insert(R row, JdbcSession jdbcSession) {
-        jdbcSession.newInsert(defaultAlias())
-                .populate(row)
-                .execute();
+        jdbcSession.insertRow(defaultAlias(), row);
     }
 
     /**
@@ -494,10 +495,9 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
     }
 
     public <T> T parseSchemaObject(byte[] fullObject, String identifier, Class<T> clazz) throws SchemaException {
-        String serializedForm = fullObject != null
-                ? new String(fullObject, StandardCharsets.UTF_8)
-                : null;
+        String serializedForm = null;
         try {
+            serializedForm = fullObject != null ? FullObjectCodec.decode(fullObject) : null;
             var definition = getDefinition();
             RepositoryObjectParseResult<T> result = definition != null ?
                     repositoryContext().parsePrismObject(serializedForm, definition,  clazz)
@@ -527,7 +527,7 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
 
         ItemDefinition<?> definition = (ItemDefinition<?>) getDefinition();
 
-        return repositoryContext().createStringSerializer()
+        String serializedForm = repositoryContext().createStringSerializer()
                 .definition(definition)
                 .itemsToSkip(fullObjectItemsToSkip())
                 .options(SerializationOptions
@@ -535,8 +535,8 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
                         .skipIndexOnly(true)
                         .skipTransient(true)
                         .skipWhitespaces(true))
-                .serialize(container.asPrismContainerValue())
-                .getBytes(StandardCharsets.UTF_8);
+                .serialize(container.asPrismContainerValue());
+        return repositoryContext().encodeFullObject(serializedForm, schemaType());
     }
 
     protected PathSet fullObjectItemsToSkip() {
@@ -84,6 +84,8 @@ public class QLookupTableRowMapping
     protected void insert(MLookupTableRow row, JdbcSession jdbcSession) {
         // This is bit weird, but according to https://docs.evolveum.com/midpoint/devel/guides/development-with-lookuptable/
         // Insert into lookup table is actually insert or replace based on key
+        // Upsert can't be deferred, but the owner lookup table row can be, so it must be inserted first.
+        jdbcSession.flushDeferredInserts();
         jdbcSession.newInsert(defaultAlias())
         .populate(row)
         // QueryDSL does not support PostgreSQL syntax for upsert so it needs to be added as positional flag at the end of query
@@ -18,12 +18,8 @@ import com.evolveum.midpoint.repo.sqlbase.querydsl.UuidPath;
  * Can also be used for common table expression (CTE) representing org hierarchy on the fly.
  * This does not have to be under {@link FlexibleRelationalPathBase}, but is for convenience.
  *
- * [IMPORTANT]
- * *Be aware that the materialized view is refreshed only on demand!*
- * This is executed when {@link com.evolveum.midpoint.prism.query.OrgFilter} is used in
- * {@link SqaleQueryContext#beforeQuery()} or when executing
- * {@link SqaleRepositoryService#isAnySubordinate(java.lang.String, java.util.Collection)}.
- * If any access via other paths is done, use statement `CALL m_refresh_org_closure()` before.
+ * The table is maintained by database triggers in the same transaction as the changes of parent-org references,
+ * so it is always current; statement `CALL m_refresh_org_closure(true)` rebuilds it from scratch (for repairs only).
  */
 @SuppressWarnings("unused")
 public class QOrgClosure extends FlexibleRelationalPathBase<MOrgClosure> {
@@ -77,15 +77,29 @@ public class AddObjectContext<S extends ObjectType, Q extends QObject<R>, R exte
             return addObjectWithoutOid(jdbcSession);
         } else {
             // this also handles overwrite after ObjectNotFoundException
-            return addObjectWithOid(jdbcSession);
+            return addObjectWithOid(jdbcSession, false);
         }
     }
 
+    /**
+     * Like {@link #execute(JdbcSession)}, but all the rows are inserted by {@link JdbcSession#insertRow},
+     * so they are deferred if the session defers the inserts (see {@link JdbcSession#deferInserts()}).
+     * As the OID is not returned by the database in that case, it is generated here, if the object has none.
+     */
+    public String executeDeferrable(JdbcSession jdbcSession) throws SchemaException {
+        object.setVersion(INITIAL_VERSION_STRING);
+        if (object.getOid() == null) {
+            object.setOid(UUID.randomUUID().toString());
+        }
+        initContexts();
+        return addObjectWithOid(jdbcSession, true);
+    }
+
     public void executeReindexed(JdbcSession jdbcSession)
             throws SchemaException, ObjectAlreadyExistsException {
         try {
             initContexts();
-            addObjectWithOid(jdbcSession);
+            addObjectWithOid(jdbcSession, false);
         } catch (QueryException e) { // Querydsl exception, not ours
             Throwable cause = e.getCause();
             if (cause instanceof PSQLException) {
@@ -102,17 +116,24 @@ public class AddObjectContext<S extends ObjectType, Q extends QObject<R>, R exte
         root = rootMapping.defaultAlias();
     }
 
-    private String addObjectWithOid(JdbcSession jdbcSession) throws SchemaException {
+    private String addObjectWithOid(JdbcSession jdbcSession, boolean deferrable) throws SchemaException {
         long lastCid = new ContainerValueIdGenerator(object).generateForNewObject();
         S schemaObject = object.asObjectable();
         R row = rootMapping.toRowObjectWithoutFullObject(schemaObject, jdbcSession);
         row.containerIdSeq = lastCid + 1;
         rootMapping.setFullObject(row, schemaObject);
         PartitionManager.ensurePartitionExistsBeforeAdd(rootMapping, row, jdbcSession);
-        UUID oid = jdbcSession.newInsert(root)
-                // default populate mapper ignores null, that's good, especially for objectType
-                .populate(row)
-                .executeWithKey(root.oid);
+        UUID oid;
+        if (deferrable) {
+            // insertRow also ignores nulls, the OID is known already
+            jdbcSession.insertRow(root, row);
+            oid = row.oid;
+        } else {
+            oid = jdbcSession.newInsert(root)
+                    // default populate mapper ignores null, that's good, especially for objectType
+                    .populate(row)
+                    .executeWithKey(root.oid);
+        }
 
         row.objectType = objectType; // sub-entities can use it, now it's safe to set it
         rootMapping.storeRelatedEntities(row, schemaObject, jdbcSession);
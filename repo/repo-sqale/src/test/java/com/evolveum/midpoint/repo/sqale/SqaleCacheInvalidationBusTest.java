@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.repo.api.CacheDispatcher;
+import com.evolveum.midpoint.repo.api.CacheInvalidationListener;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests {@link SqaleCacheInvalidationBus} using two bus instances simulating two nodes,
+ * similar to `UriCacheTest`.
+ */
+public class SqaleCacheInvalidationBusTest extends SqaleRepoBaseTest {
+
+    private static final long BATCH_INTERVAL = 200L;
+    private static final long RECEIVE_TIMEOUT = 10000L;
+
+    @Autowired private DataSource dataSource;
+
+    private final RecordingCacheDispatcher dispatcher1 = new RecordingCacheDispatcher();
+    private final RecordingCacheDispatcher dispatcher2 = new RecordingCacheDispatcher();
+
+    private SqaleCacheInvalidationBus bus1;
+    private SqaleCacheInvalidationBus bus2;
+
+    @BeforeClass
+    public void init() throws InterruptedException {
+        bus1 = new SqaleCacheInvalidationBus(true, BATCH_INTERVAL, dataSource, () -> dispatcher1);
+        bus1.start();
+        bus2 = new SqaleCacheInvalidationBus(true, BATCH_INTERVAL, dataSource, () -> dispatcher2);
+        bus2.start();
+        Thread.sleep(1000); // to let the listeners connect
+    }
+
+    @AfterClass
+    public void cleanup() {
+        bus1.stop();
+        bus2.stop();
+    }
+
+    @BeforeMethod
+    public void clearDispatchers() {
+        dispatcher1.clear();
+        dispatcher2.clear();
+    }
+
+    @Test
+    public void test100PublishedInvalidationsAreReceivedByOtherNode() throws InterruptedException {
+        when("invalidations are published on node 1");
+        bus1.publish(UserType.class, "00000000-0000-0000-0000-000000000001");
+        bus1.publish(UserType.class, "00000000-0000-0000-0000-000000000001"); // duplicate
+        bus1.publish(UserType.class, "00000000-0000-0000-0000-000000000002");
+        bus1.publish(RoleType.class, null);
+
+        then("node 2 receives them, without duplicates");
+        assertThat(dispatcher2.waitForEvents(3))
+                .containsExactlyInAnyOrder(
+                        "UserType:00000000-0000-0000-0000-000000000001",
+                        "UserType:00000000-0000-0000-0000-000000000002",
+                        "RoleType:null");
+
+        and("node 1 ignores its own invalidations");
+        assertThat(dispatcher1.getEvents()).isEmpty();
+    }
+
+    @Test
+    public void test110TooManyOidsAreCoalescedToTypeInvalidation() throws InterruptedException {
+        when("many shadows are invalidated on node 2");
+        for (int i = 0; i <= SqaleCacheInvalidationBus.MAX_OIDS_PER_TYPE; i++) {
+            bus2.publish(ShadowType.class, "shadow-" + i);
+        }
+
+        then("node 1 receives a single invalidation of the whole type");
+        assertThat(dispatcher1.waitForEvents(1)).containsExactly("ShadowType:null");
+        Thread.sleep(BATCH_INTERVAL * 4);
+        assertThat(dispatcher1.getEvents()).hasSize(1);
+    }
+
+    @Test
+    public void test120GlobalInvalidation() throws InterruptedException {
+        when("everything is invalidated on node 1");
+        bus1.publish(null, null);
+
+        then("node 2 invalidates everything");
+        assertThat(dispatcher2.waitForEvents(1)).containsExactly("null:null");
+    }
+
+    @Test
+    public void test200MissedMessageInvalidatesAffectedTypes() {
+        given("a receiver that has seen the first message of a sender");
+        SqaleCacheInvalidationBus bus = new SqaleCacheInvalidationBus(true, BATCH_INTERVAL, dataSource, () -> dispatcher1);
+        processNotification(bus, message(1, Map.of("users", 1L),
+                new CacheInvalidationMessage.Entry("users", "u1")));
+        assertThat(dispatcher1.getEvents()).containsExactly("UserType:u1");
+        dispatcher1.clear();
+
+        when("the third message arrives, the second one (for users and roles) being lost");
+        processNotification(bus, message(3, Map.of("users", 2L, "roles", 2L),
+                new CacheInvalidationMessage.Entry("roles", "r2")));
+
+        then("users and roles are invalidated as a whole");
+        assertThat(dispatcher1.getEvents())
+                .containsExactlyInAnyOrder("UserType:null", "RoleType:null");
+        dispatcher1.clear();
+
+        when("the fourth message arrives without any gap");
+        processNotification(bus, message(4, Map.of("users", 3L, "roles", 2L),
+                new CacheInvalidationMessage.Entry("users", "u4")));
+
+        then("only the specific object is invalidated");
+        assertThat(dispatcher1.getEvents()).containsExactly("UserType:u4");
+    }
+
+    @Test
+    public void test210MessageEncodingRoundTrip() {
+        given("a message");
+        CacheInvalidationMessage message = message(7, Map.of("users", 5L, "*", 1L),
+                new CacheInvalidationMessage.Entry("users", "u1"),
+                new CacheInvalidationMessage.Entry("roles", null));
+
+        when("it is encoded and parsed");
+        CacheInvalidationMessage parsed = CacheInvalidationMessage.parse(message.encode());
+
+        then("the result is the same");
+        assertThat(parsed.senderId).isEqualTo(message.senderId);
+        assertThat(parsed.sequence).isEqualTo(7);
+        assertThat(parsed.counters).isEqualTo(message.counters);
+        assertThat(parsed.entries).isEqualTo(message.entries);
+    }
+
+    private CacheInvalidationMessage message(long sequence, Map<String, Long> counters,
+            CacheInvalidationMessage.Entry... entries) {
+        return new CacheInvalidationMessage("test-sender", sequence, counters, List.of(entries));
+    }
+
+    private void processNotification(SqaleCacheInvalidationBus bus, CacheInvalidationMessage message) {
+        bus.processNotification(message.encode());
+    }
+
+    private static class RecordingCacheDispatcher implements CacheDispatcher {
+
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void registerCacheInvalidationListener(CacheInvalidationListener cacheListener) {
+        }
+
+        @Override
+        public void unregisterCacheInvalidationListener(CacheInvalidationListener cacheListener) {
+        }
+
+        @Override
+        public synchronized <O extends ObjectType> void dispatchInvalidation(@Nullable Class<O> type, @Nullable String oid,
+                boolean clusterwide, @Nullable CacheInvalidationContext context) {
+            assertThat(clusterwide).isFalse();
+            assertThat(context).isNotNull();
+            assertThat(context.isFromRemoteNode()).isTrue();
+            events.add((type != null ? type.getSimpleName() : null) + ":" + oid);
+            notifyAll();
+        }
+
+        synchronized List<String> getEvents() {
+            return new ArrayList<>(events);
+        }
+
+        synchronized List<String> waitForEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + RECEIVE_TIMEOUT;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            return getEvents();
+        }
+
+        synchronized void clear() {
+            events.clear();
+        }
+    }
+}
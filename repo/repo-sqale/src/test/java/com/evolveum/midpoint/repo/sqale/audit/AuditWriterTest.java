@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.init.AuditServiceProxy;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditDelta;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditEventRecord;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditRefValue;
+import com.evolveum.midpoint.schema.ObjectDeltaOperation;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.task.api.test.NullTaskImpl;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests of {@link AuditWriter} used for non-synchronous write modes of {@link SqaleAuditService}.
+ */
+public class AuditWriterTest extends SqaleRepoBaseTest {
+
+    private SqaleAuditService sqaleAuditService;
+
+    @BeforeClass
+    public void initObjects() {
+        sqaleAuditService = ((AuditServiceProxy) auditService).getImplementation(SqaleAuditService.class);
+    }
+
+    @AfterMethod
+    public void stopAuditWriter() {
+        sqaleAuditService.stopAuditWriter();
+    }
+
+    @Test
+    public void test100GroupCommitWritesRecordBeforeReturning() throws SchemaException {
+        OperationResult result = createOperationResult();
+        clearAudit();
+
+        given("audit writer in group commit mode");
+        sqaleAuditService.startAuditWriter(AuditWriter.Mode.GROUP_COMMIT, 100, 10, null);
+
+        when("records with deltas and references are audited");
+        AuditEventRecord record1 = auditRecord(1, result);
+        AuditEventRecord record2 = auditRecord(2, result);
+
+        then("records are stored with all their subentities when audit returns, with IDs assigned");
+        assertThat(record1.getRepoId()).isNotNull();
+        assertThat(record2.getRepoId()).isNotNull().isNotEqualTo(record1.getRepoId());
+        assertCount(QAuditEventRecord.class, 2);
+        assertCount(QAuditDelta.class, 2);
+        assertCount(QAuditRefValue.class, 2);
+        QAuditEventRecord qae = aliasFor(QAuditEventRecord.class);
+        assertThat(selectOne(qae, qae.id.eq(record2.getRepoId())).parameter).isEqualTo("2");
+    }
+
+    @Test
+    public void test200AsynchronousModeWritesQueuedRecordsOnStop() throws SchemaException {
+        OperationResult result = createOperationResult();
+        clearAudit();
+
+        given("audit writer in asynchronous mode with a small queue");
+        sqaleAuditService.startAuditWriter(AuditWriter.Mode.ASYNCHRONOUS, 5, 3, null);
+
+        when("more records than the queue size are audited and the writer is stopped");
+        for (int i = 1; i <= 50; i++) {
+            auditRecord(i, result);
+        }
+        sqaleAuditService.stopAuditWriter();
+
+        then("all the records are stored");
+        assertCount(QAuditEventRecord.class, 50);
+        assertCount(QAuditDelta.class, 50);
+        assertCount(QAuditRefValue.class, 50);
+    }
+
+    @Test
+    public void test300AsynchronousModeSpoolsRecordsWhenQueueIsFull() throws Exception {
+        OperationResult result = createOperationResult();
+        clearAudit();
+        Path spoolDirectory = Files.createTempDirectory("audit-spool");
+
+        given("audit writer in asynchronous mode with a minimal queue and spool directory");
+        sqaleAuditService.startAuditWriter(AuditWriter.Mode.ASYNCHRONOUS, 1, 1, spoolDirectory);
+
+        when("many records are audited at once");
+        int count = 100;
+        for (int i = 1; i <= count; i++) {
+            auditRecord(i, result);
+        }
+
+        then("all the records are eventually stored and the spool directory is emptied");
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (count(aliasFor(QAuditEventRecord.class)) < count && System.currentTimeMillis() < deadline) {
+            //noinspection BusyWait
+            Thread.sleep(200);
+        }
+        assertCount(QAuditEventRecord.class, count);
+        assertCount(QAuditRefValue.class, count);
+        assertThat(listFiles(spoolDirectory)).isZero();
+    }
+
+    @Test
+    public void test400GroupCommitStopWhileRecordsAreSubmitted() throws Exception {
+        OperationResult result = createOperationResult();
+        clearAudit();
+
+        given("audit writer in group commit mode and threads auditing records");
+        sqaleAuditService.startAuditWriter(AuditWriter.Mode.GROUP_COMMIT, 10, 5, null);
+        int threads = 4;
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                int i = 0;
+                while (running.get()) {
+                    try {
+                        auditRecord(++i, createOperationResult());
+                        written.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        rejected.incrementAndGet(); // submitted to the writer after it was stopped
+                    }
+                }
+                return null;
+            }));
+        }
+
+        when("the writer is stopped while the records are being submitted");
+        Thread.sleep(500);
+        sqaleAuditService.stopAuditWriter();
+        Thread.sleep(200);
+        running.set(false);
+
+        then("no submitting thread hangs, and each accepted record is stored");
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).as("threads finished").isTrue();
+        for (Future<?> future : futures) {
+            future.get(); // no unexpected exceptions
+        }
+        display("Written: " + written.get() + ", rejected: " + rejected.get());
+        assertThat(written.get()).isPositive();
+        assertCount(QAuditEventRecord.class, written.get());
+    }
+
+    private AuditEventRecord auditRecord(int i, OperationResult result) throws SchemaException {
+        AuditEventRecord record = new AuditEventRecord();
+        record.setParameter(String.valueOf(i));
+        record.getCustomColumnProperty().put("foo", "foo-value");
+
+        ObjectDeltaOperation<UserType> delta = new ObjectDeltaOperation<>();
+        delta.setObjectDelta(prismContext.deltaFor(UserType.class)
+                .item(UserType.F_FULL_NAME).replace(PolyString.fromOrig("newVal"))
+                .asObjectDelta(UUID.randomUUID().toString()));
+        record.addDelta(delta);
+
+        record.addReferenceValue("ref1",
+                ObjectTypeUtil.createObjectRef(UUID.randomUUID().toString(), ObjectTypes.USER)
+                        .asReferenceValue());
+
+        auditService.audit(record, NullTaskImpl.INSTANCE, result);
+        return record;
+    }
+
+    private long listFiles(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -8,6 +8,9 @@ package com.evolveum.midpoint.repo.sqale.func;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Instant;
 import java.util.UUID;
 
@@ -15,9 +18,11 @@ import com.querydsl.core.types.dsl.NumberExpression;
 import org.testng.annotations.Test;
 
 import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.init.AuditServiceProxy;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.audit.SqaleAuditService;
 import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditEventRecord;
 import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditEventRecordMapping;
 import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
@@ -44,7 +49,12 @@ public class AuditCleanupTest extends SqaleRepoBaseTest {
     private void prepareAuditRecords(long startTimestamp, int count, OperationResult result)
             throws SchemaException {
         clearAudit();
+        addAuditRecords(startTimestamp, count, result);
+    }
 
+    /** Like {@link #prepareAuditRecords(long, int, OperationResult)}, but keeps the existing records. */
+    private void addAuditRecords(long startTimestamp, int count, OperationResult result)
+            throws SchemaException {
         long timestamp = startTimestamp;
         for (int i = 1; i <= count; i++) {
             AuditEventRecord record = new AuditEventRecord();
@@ -146,6 +156,139 @@ public class AuditCleanupTest extends SqaleRepoBaseTest {
                 .isZero(); // start + 40s should be < now - 60s, it should be all gone
     }
 
+    @Test
+    public void test300CleanupByAgeDropsExpiredPartitions() throws Exception {
+        given("audit has monthly partitions and records in the partition from two months ago");
+        OperationResult operationResult = createOperationResult();
+        clearAudit();
+        try (JdbcSession jdbcSession = startTransaction()) {
+            jdbcSession.executeStatement("CALL audit_create_monthly_partitions(-3)");
+            jdbcSession.commit();
+        }
+        long oldTimestamp;
+        String partitionTable;
+        try (JdbcSession jdbcSession = startReadOnlyTransaction();
+                Statement stmt = jdbcSession.connection().createStatement();
+                // surely inside the month before the previous one
+                ResultSet rs = stmt.executeQuery("SELECT ts, to_char(ts, 'YYYYMM')"
+                        + " FROM (SELECT date_trunc('month', current_timestamp) - interval '45 days' AS ts) t")) {
+            rs.next();
+            oldTimestamp = rs.getTimestamp(1).getTime();
+            partitionTable = "ma_audit_event_" + rs.getString(2);
+        }
+        assertThat(tableExists(partitionTable)).isTrue();
+        prepareAuditRecords(oldTimestamp, 10, operationResult);
+        QAuditEventRecord qae = QAuditEventRecordMapping.get().defaultAlias();
+
+        when("audit cleanup is called to leave just last month");
+        auditService.cleanupAudit(new CleanupPolicyType()
+                .maxAge(XmlTypeConverter.createDuration("P1M")), operationResult);
+
+        then("operation is success, the records are gone and so is their partition");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertCount(qae, 0);
+        assertThat(tableExists(partitionTable)).isFalse();
+    }
+
+    @Test
+    public void test310CleanupByCountDropsPartitionsOfDeletedRecords() throws Exception {
+        given("audit has monthly partitions, with old records in the partition from two months ago");
+        OperationResult operationResult = createOperationResult();
+        clearAudit();
+        try (JdbcSession jdbcSession = startTransaction()) {
+            jdbcSession.executeStatement("CALL audit_create_monthly_partitions(-3)");
+            jdbcSession.commit();
+        }
+        String oldPartitionTable = "ma_audit_event_" + selectMonthSuffix(-2);
+        String previousPartitionTable = "ma_audit_event_" + selectMonthSuffix(-1);
+        String currentPartitionTable = "ma_audit_event_" + selectMonthSuffix(0);
+        assertThat(tableExists(oldPartitionTable)).isTrue();
+        prepareAuditRecords(selectMonthStart(-2) + 86_400_000L, 10, operationResult);
+
+        and("new records in the current month");
+        addAuditRecords(System.currentTimeMillis() - 20_000, 10, operationResult);
+        QAuditEventRecord qae = QAuditEventRecordMapping.get().defaultAlias();
+
+        when("audit cleanup is called to leave only 10 records");
+        auditService.cleanupAudit(new CleanupPolicyType().maxRecords(10), operationResult);
+
+        then("operation is success and only the new records are left");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertCount(qae, 10);
+        assertThat(count(qae, qae.timestamp.lt(Instant.ofEpochMilli(selectMonthStart(0))))).isZero();
+
+        and("the partition of the old records is dropped, the empty and the current ones are kept");
+        assertThat(tableExists(oldPartitionTable)).isFalse();
+        assertThat(tableExists(previousPartitionTable)).isTrue();
+        assertThat(tableExists(currentPartitionTable)).isTrue();
+    }
+
+    @Test
+    public void test320CreatePartitionsAhead() throws Exception {
+        given("audit service configured to create partitions for two months ahead");
+        SqaleAuditService sqaleAuditService =
+                ((AuditServiceProxy) auditService).getImplementation(SqaleAuditService.class);
+        String nextPartitionTable = "ma_audit_event_" + selectMonthSuffix(1);
+        String secondNextPartitionTable = "ma_audit_event_" + selectMonthSuffix(2);
+        String thirdNextPartitionTable = "ma_audit_event_" + selectMonthSuffix(3);
+        assertThat(tableExists(thirdNextPartitionTable)).isFalse();
+
+        try {
+            sqaleAuditService.setPartitionsAhead(2);
+
+            when("partitions ahead are created");
+            sqaleAuditService.createPartitionsAhead();
+
+            then("partitions for the current and next two months exist (with delta and ref tables)");
+            assertThat(tableExists("ma_audit_event_" + selectMonthSuffix(0))).isTrue();
+            assertThat(tableExists(nextPartitionTable)).isTrue();
+            assertThat(tableExists(secondNextPartitionTable)).isTrue();
+            assertThat(tableExists("ma_audit_delta_" + selectMonthSuffix(2))).isTrue();
+            assertThat(tableExists("ma_audit_ref_" + selectMonthSuffix(2))).isTrue();
+            assertThat(tableExists(thirdNextPartitionTable)).isFalse();
+
+            when("partitions ahead are created again");
+            sqaleAuditService.createPartitionsAhead();
+
+            then("nothing fails, existing partitions are kept");
+            assertThat(tableExists(secondNextPartitionTable)).isTrue();
+            assertThat(tableExists(thirdNextPartitionTable)).isFalse();
+        } finally {
+            sqaleAuditService.setPartitionsAhead(0);
+        }
+    }
+
+    /** Returns `YYYYMM` suffix of the month shifted by the specified number of months from the current one. */
+    private String selectMonthSuffix(int monthOffset) throws SQLException {
+        try (JdbcSession jdbcSession = startReadOnlyTransaction();
+                Statement stmt = jdbcSession.connection().createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT to_char(date_trunc('month', current_timestamp)"
+                        + " + interval '" + monthOffset + " month', 'YYYYMM')")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    /** Returns the start of the month shifted by the specified number of months from the current one (epoch millis). */
+    private long selectMonthStart(int monthOffset) throws SQLException {
+        try (JdbcSession jdbcSession = startReadOnlyTransaction();
+                Statement stmt = jdbcSession.connection().createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT date_trunc('month', current_timestamp)"
+                        + " + interval '" + monthOffset + " month'")) {
+            rs.next();
+            return rs.getTimestamp(1).getTime();
+        }
+    }
+
+    private boolean tableExists(String tableName) throws SQLException {
+        try (JdbcSession jdbcSession = startReadOnlyTransaction();
+                Statement stmt = jdbcSession.connection().createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT to_regclass('" + tableName + "') IS NOT NULL")) {
+            rs.next();
+            return rs.getBoolean(1);
+        }
+    }
+
     private long selectMinMaxId(QAuditEventRecord qae, NumberExpression<Long> minMaxPath) {
         try (JdbcSession jdbcSession = startReadOnlyTransaction()) {
             return jdbcSession.newQuery()
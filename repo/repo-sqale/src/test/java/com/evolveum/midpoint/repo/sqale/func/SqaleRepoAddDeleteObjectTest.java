@@ -20,6 +20,7 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import javax.xml.namespace.QName;
 
@@ -38,6 +39,7 @@ import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.repo.api.DeleteObjectResult;
 import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.sqale.FullObjectCodec;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
 import com.evolveum.midpoint.repo.sqale.SqaleRepositoryService;
 import com.evolveum.midpoint.repo.sqale.jsonb.Jsonb;
@@ -1178,6 +1180,98 @@ public class SqaleRepoAddDeleteObjectTest extends SqaleRepoBaseTest {
 
 
 
+    }
+    // endregion
+
+    // region bulk add
+    @Test
+    public void test500AddObjectsOfVariousTypesInBulk() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("users with assignments and refs, role with inducement and lookup table with rows");
+        String namePrefix = "bulk" + getTestNumber() + "-";
+        String targetOid = UUID.randomUUID().toString();
+        String userWithOid = UUID.randomUUID().toString();
+        List<PrismObject<? extends ObjectType>> objects = List.of(
+                new UserType()
+                        .name(namePrefix + "user1")
+                        .assignment(new AssignmentType().targetRef(targetOid, RoleType.COMPLEX_TYPE))
+                        .roleMembershipRef(targetOid, RoleType.COMPLEX_TYPE)
+                        .asPrismObject(),
+                new RoleType()
+                        .name(namePrefix + "role")
+                        .inducement(new AssignmentType().targetRef(targetOid, RoleType.COMPLEX_TYPE))
+                        .asPrismObject(),
+                new UserType()
+                        .oid(userWithOid)
+                        .name(namePrefix + "user2")
+                        .emailAddress("user2@example.com") // different columns than user1
+                        .assignment(new AssignmentType().targetRef(targetOid, RoleType.COMPLEX_TYPE))
+                        .assignment(new AssignmentType().description("no target"))
+                        .asPrismObject(),
+                new LookupTableType()
+                        .name(namePrefix + "lookup")
+                        .row(new LookupTableRowType().key("row1").value("value1"))
+                        .row(new LookupTableRowType().key("row2"))
+                        .asPrismObject());
+
+        when("adding them to the repository at once");
+        List<String> oids = repositoryService.addObjects(objects, null, result);
+
+        then("operation is successful and OIDs are returned in the order of objects");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(oids).hasSize(4)
+                .doesNotContainNull()
+                .containsExactly(objects.stream().map(o -> o.getOid()).toArray(String[]::new));
+        assertThat(oids.get(2)).isEqualTo(userWithOid);
+
+        and("rows of the objects and their containers and references are stored");
+        QUser u = aliasFor(QUser.class);
+        assertThat(select(u, u.nameOrig.startsWith(namePrefix))).hasSize(2)
+                .allMatch(row -> row.version == SqaleRepositoryService.INITIAL_VERSION_NUMBER);
+        assertThat(selectObjectByOid(QUser.class, userWithOid).emailAddress).isEqualTo("user2@example.com");
+
+        QAssignment<?> qa = QAssignmentMapping.getAssignmentMapping().defaultAlias();
+        assertThat(count(qa, qa.ownerOid.eq(UUID.fromString(oids.get(0))))).isEqualTo(1);
+        assertThat(count(qa, qa.ownerOid.eq(UUID.fromString(oids.get(1))))).isEqualTo(1); // inducement
+        assertThat(count(qa, qa.ownerOid.eq(UUID.fromString(userWithOid)))).isEqualTo(2);
+
+        QObjectReference<?> or = QObjectReferenceMapping.getForRoleMembership().defaultAlias();
+        assertThat(select(or, or.ownerOid.eq(UUID.fromString(oids.get(0)))))
+                .singleElement()
+                .matches(row -> row.targetOid.toString().equals(targetOid));
+
+        QLookupTableRow ltRow = aliasFor(QLookupTableRow.class);
+        assertThat(count(ltRow, ltRow.ownerOid.eq(UUID.fromString(oids.get(3))))).isEqualTo(2);
+
+        and("objects can be read");
+        UserType user1 = repositoryService.getObject(UserType.class, oids.get(0), null, result).asObjectable();
+        assertThat(user1.getAssignment()).singleElement()
+                .matches(a -> a.getId() != null && a.getTargetRef().getOid().equals(targetOid));
+    }
+
+    @Test
+    public void test510AddObjectsWithExistingOidAddsNothing() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("existing user");
+        String namePrefix = "bulk" + getTestNumber() + "-";
+        String existingOid = repositoryService.addObject(
+                new UserType().name(namePrefix + "existing").asPrismObject(), null, result);
+        long baseCount = count(QUser.class);
+
+        when("adding batch of users with one of them using the OID of the existing user");
+        List<PrismObject<? extends ObjectType>> objects = List.of(
+                new UserType().name(namePrefix + "user1").asPrismObject(),
+                new UserType().oid(existingOid).name(namePrefix + "user2").asPrismObject(),
+                new UserType().name(namePrefix + "user3").asPrismObject());
+        OperationResult bulkResult = createOperationResult();
+
+        then("exception is thrown and no user is added");
+        assertThatThrownBy(() -> repositoryService.addObjects(objects, null, bulkResult))
+                .isInstanceOf(ObjectAlreadyExistsException.class);
+        assertThatOperationResult(bulkResult).isFatalError();
+        assertCount(QUser.class, baseCount);
     }
     // endregion
 
@@ -2754,6 +2848,49 @@ public class SqaleRepoAddDeleteObjectTest extends SqaleRepoBaseTest {
         assertThat(selectNullableObjectByOid(QUser.class, userOid)).isNull();
     }
 
+    @Test
+    public void test915CompressedFullObjectIsReadableAlongWithPlainOnes() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("full object compression enabled for users and their operation executions");
+        UUID plainUserOid = randomExistingOid(QUser.class);
+        repositoryConfiguration.setFullObjectCompression(true, Set.of("UserType", "OperationExecutionType"));
+        try {
+            when("user with operation execution is added");
+            String objectName = "user" + getTestNumber();
+            UserType user = new UserType()
+                    .name(objectName)
+                    .description("description " + "repeated ".repeat(100))
+                    .operationExecution(new OperationExecutionType()
+                            .status(OperationResultStatusType.SUCCESS)
+                            .timestamp(MiscUtil.asXMLGregorianCalendar(1L)));
+            String oid = repositoryService.addObject(user.asPrismObject(), null, result);
+
+            then("full object is stored compressed");
+            assertThatOperationResult(result).isSuccess();
+            MUser row = selectObjectByOid(QUser.class, oid);
+            assertThat(FullObjectCodec.isCompressed(row.fullObject)).isTrue();
+            assertThat(row.fullObject.length).isLessThan(user.getDescription().length());
+            QOperationExecution<?> oe = aliasFor(QOperationExecution.CLASS);
+            MOperationExecution oeRow = selectOne(oe, oe.ownerOid.eq(UUID.fromString(oid)));
+            assertThat(FullObjectCodec.isCompressed(oeRow.fullObject)).isTrue();
+
+            and("both compressed and plain objects can be read");
+            UserType userFromRepo = repositoryService.getObject(UserType.class, oid, null, result).asObjectable();
+            assertThat(userFromRepo.getName().getOrig()).isEqualTo(objectName);
+            assertThat(userFromRepo.getDescription()).isEqualTo(user.getDescription());
+            assertThat(FullObjectCodec.isCompressed(selectObjectByOid(QUser.class, plainUserOid).fullObject)).isFalse();
+            assertThat(repositoryService.getObject(UserType.class, plainUserOid.toString(), null, result))
+                    .isNotNull();
+
+            and("delete result provides the textual representation");
+            DeleteObjectResult deleteResult = repositoryService.deleteObject(UserType.class, oid, result);
+            assertThat(deleteResult.getObjectTextRepresentation()).contains(objectName);
+        } finally {
+            repositoryConfiguration.setFullObjectCompression(false, Set.of());
+        }
+    }
+
     @Test
     public void test920DeleteOperationUpdatesPerformanceMonitor()
             throws ObjectNotFoundException {
@@ -46,6 +46,7 @@ import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.repo.api.ObjectModification;
 import com.evolveum.midpoint.repo.api.RepoModifyOptions;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
@@ -4041,6 +4042,86 @@ public class SqaleRepoModifyObjectTest extends SqaleRepoBaseTest {
 
     // endregion
 
+    // region modify objects (batch)
+    @Test
+    public void test850ModifyObjectsInBatch() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("two users");
+        String oid1 = repositoryService.addObject(
+                new UserType().name("user-batch-1").asPrismObject(), null, result);
+        String oid2 = repositoryService.addObject(
+                new UserType().name("user-batch-2").asPrismObject(), null, result);
+        MUser originalRow1 = selectObjectByOid(QUser.class, oid1);
+        MUser originalRow2 = selectObjectByOid(QUser.class, oid2);
+
+        when("modifyObjects is called for both users");
+        repositoryService.modifyObjects(List.of(
+                        new ObjectModification<>(UserType.class, oid2, prismContext.deltaFor(UserType.class)
+                                .item(UserType.F_EMPLOYEE_NUMBER).replace("batch-2")
+                                .asItemDeltas()),
+                        new ObjectModification<>(UserType.class, oid1, prismContext.deltaFor(UserType.class)
+                                .item(UserType.F_EMPLOYEE_NUMBER).replace("batch-1")
+                                .asItemDeltas())),
+                result);
+
+        then("operation is successful");
+        assertThatOperationResult(result).isSuccess();
+
+        and("both objects are updated");
+        MUser row1 = selectObjectByOid(QUser.class, oid1);
+        assertThat(row1.employeeNumber).isEqualTo("batch-1");
+        assertThat(row1.version).isEqualTo(originalRow1.version + 1);
+        MUser row2 = selectObjectByOid(QUser.class, oid2);
+        assertThat(row2.employeeNumber).isEqualTo("batch-2");
+        assertThat(row2.version).isEqualTo(originalRow2.version + 1);
+        assertThat(repositoryService.getObject(UserType.class, oid1, null, result).asObjectable().getEmployeeNumber())
+                .isEqualTo("batch-1");
+    }
+
+    @Test
+    public void test851ModifyObjectsWithMissingObjectRollsBackWholeBatch() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("an existing user and an OID of a non-existent one");
+        String oid = repositoryService.addObject(
+                new UserType().name("user-batch-3").asPrismObject(), null, result);
+        MUser originalRow = selectObjectByOid(QUser.class, oid);
+
+        expect("modifyObjects for both fails");
+        Assertions.assertThatThrownBy(() ->
+                        repositoryService.modifyObjects(List.of(
+                                        new ObjectModification<>(UserType.class, oid, prismContext.deltaFor(UserType.class)
+                                                .item(UserType.F_EMPLOYEE_NUMBER).replace("batch-3")
+                                                .asItemDeltas()),
+                                        new ObjectModification<>(UserType.class, TestUtil.NON_EXISTENT_OID,
+                                                prismContext.deltaFor(UserType.class)
+                                                        .item(UserType.F_EMPLOYEE_NUMBER).replace("non-existent")
+                                                        .asItemDeltas())),
+                                result))
+                .isInstanceOf(ObjectNotFoundException.class);
+
+        and("operation is fatal error");
+        assertThatOperationResult(result).isFatalError();
+
+        and("the existing object is not modified");
+        MUser row = selectObjectByOid(QUser.class, oid);
+        assertThat(row.employeeNumber).isNull();
+        assertThat(row.version).isEqualTo(originalRow.version);
+    }
+
+    @Test
+    public void test852ModifyObjectsWithEmptyCollectionDoesNothing() throws Exception {
+        OperationResult result = createOperationResult();
+
+        when("modifyObjects is called with no modifications");
+        repositoryService.modifyObjects(List.of(), result);
+
+        then("operation is successful");
+        assertThatOperationResult(result).isSuccess();
+    }
+    // endregion
+
     // region other tests
     @Test
     public void test900ModificationsMustNotBeNull() {
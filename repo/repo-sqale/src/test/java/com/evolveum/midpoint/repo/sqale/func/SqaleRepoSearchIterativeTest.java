@@ -35,6 +35,7 @@ import com.evolveum.midpoint.schema.SearchResultMetadata;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.IterationMethodType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 
 /**
@@ -75,6 +76,8 @@ public class SqaleRepoSearchIterativeTest extends SqaleRepoBaseTest {
     public void resetTestHandler() {
         testHandler.reset();
         repositoryConfiguration.setIterativeSearchByPagingBatchSize(ITERATION_PAGE_SIZE);
+        repositoryConfiguration.setIterativeSearchStreaming(false);
+        repositoryConfiguration.setIterativeSearchStreamingMaxDuration(60_000);
     }
 
     @AfterMethod
@@ -391,6 +394,125 @@ public class SqaleRepoSearchIterativeTest extends SqaleRepoBaseTest {
         assertThat(testHandler.getCounter()).isEqualTo(COUNT_OF_CREATED_USERS - 100);
     }
 
+    @Test
+    public void test200SearchIterativeStreaming() throws Exception {
+        OperationResult operationResult = createOperationResult();
+        SqlPerformanceMonitorImpl pm = getPerformanceMonitor();
+        pm.clearGlobalPerformanceInformation();
+
+        given("streaming of iterative search is enabled");
+        repositoryConfiguration.setIterativeSearchStreaming(true);
+
+        when("calling search iterative with custom ordering");
+        SearchResultMetadata metadata = searchObjectsIterative(
+                prismContext.queryFor(UserType.class)
+                        .asc(UserType.F_NAME)
+                        .build(),
+                operationResult);
+
+        then("result metadata is not null and not partial result");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(metadata).isNotNull();
+        assertThat(metadata.getApproxNumberOfAllResults()).isEqualTo(testHandler.getCounter());
+        assertThat(metadata.isPartialResults()).isFalse();
+
+        and("single stream operation was used, no pages");
+        assertOperationRecordedCount(
+                REPO_OP_PREFIX + RepositoryService.OP_SEARCH_OBJECTS_ITERATIVE_STREAM, 1);
+        assertOperationRecordedCount(
+                REPO_OP_PREFIX + RepositoryService.OP_SEARCH_OBJECTS_ITERATIVE_PAGE, 0);
+
+        and("all objects were processed in the requested order");
+        assertThat(testHandler.getCounter()).isEqualTo(count(QUser.class));
+        QUser u = aliasFor(QUser.class);
+        try (JdbcSession jdbcSession = startReadOnlyTransaction()) {
+            List<String> result = jdbcSession.newQuery()
+                    .from(u)
+                    .orderBy(u.nameOrig.asc(), u.oid.asc())
+                    .select(u.employeeNumber)
+                    .fetch();
+
+            for (int i = 0; i < result.size(); i++) {
+                assertThat(result.get(i)).isEqualTo(getTestNumber() + "-" + i);
+            }
+        }
+    }
+
+    @Test
+    public void test210SearchIterativeStreamingByIterationMethodWithMaxSize() throws Exception {
+        OperationResult operationResult = createOperationResult();
+        SqlPerformanceMonitorImpl pm = getPerformanceMonitor();
+        pm.clearGlobalPerformanceInformation();
+
+        given("query with maxSize and offset");
+        ObjectQuery query = prismContext.queryFor(UserType.class)
+                .offset(10)
+                .maxSize(101)
+                .build();
+
+        when("calling search iterative with single transaction iteration method");
+        SearchResultMetadata metadata = searchObjectsIterative(query, operationResult,
+                SelectorOptions.create(
+                        GetOperationOptions.createIterationMethod(IterationMethodType.SINGLE_TRANSACTION)));
+
+        then("specified amount of objects was processed by streaming");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(metadata.getApproxNumberOfAllResults()).isEqualTo(101);
+        assertThat(metadata.isPartialResults()).isFalse();
+        assertThat(testHandler.getCounter()).isEqualTo(101);
+        assertOperationRecordedCount(
+                REPO_OP_PREFIX + RepositoryService.OP_SEARCH_OBJECTS_ITERATIVE_STREAM, 1);
+        assertOperationRecordedCount(
+                REPO_OP_PREFIX + RepositoryService.OP_SEARCH_OBJECTS_ITERATIVE_PAGE, 0);
+    }
+
+    @Test
+    public void test220SearchIterativeStreamingFallsBackToPaging() throws Exception {
+        OperationResult operationResult = createOperationResult();
+        SqlPerformanceMonitorImpl pm = getPerformanceMonitor();
+        pm.clearGlobalPerformanceInformation();
+
+        given("streaming is enabled, but it can't take any time");
+        repositoryConfiguration.setIterativeSearchStreaming(true);
+        repositoryConfiguration.setIterativeSearchStreamingMaxDuration(-1);
+
+        when("calling search iterative");
+        SearchResultMetadata metadata = searchObjectsIterative(null, operationResult);
+
+        then("streaming is stopped after the first object and the rest is processed by paging");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(metadata.isPartialResults()).isFalse();
+        assertOperationRecordedCount(
+                REPO_OP_PREFIX + RepositoryService.OP_SEARCH_OBJECTS_ITERATIVE_STREAM, 1);
+        assertOperationRecordedCount(
+                REPO_OP_PREFIX + RepositoryService.OP_SEARCH_OBJECTS_ITERATIVE_PAGE,
+                (COUNT_OF_CREATED_USERS - 1) / getConfiguredPageSize() + 1);
+
+        and("all objects were processed exactly once");
+        assertThat(testHandler.getCounter()).isEqualTo(count(QUser.class));
+        QUser u = aliasFor(QUser.class);
+        assertThat(count(u, u.employeeNumber.startsWith(getTestNumber() + '-')))
+                .isEqualTo(count(QUser.class));
+    }
+
+    @Test
+    public void test230SearchIterativeStreamingStoppedByHandler() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("streaming is enabled and handler stops after some objects");
+        repositoryConfiguration.setIterativeSearchStreaming(true);
+        testHandler.setStoppingPredicate(u -> testHandler.getCounter() >= 50);
+
+        when("calling search iterative");
+        SearchResultMetadata metadata = searchObjectsIterative(null, operationResult);
+
+        then("result metadata indicates partial result");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(metadata.isPartialResults()).isTrue();
+        assertThat(metadata.getApproxNumberOfAllResults()).isEqualTo(testHandler.getCounter());
+        assertThat(testHandler.getCounter()).isEqualTo(50);
+    }
+
     @SafeVarargs
     private SearchResultMetadata searchObjectsIterative(
             ObjectQuery query,
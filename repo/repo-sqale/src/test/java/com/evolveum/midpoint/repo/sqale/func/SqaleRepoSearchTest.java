@@ -22,6 +22,7 @@ import static com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType.F_
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -45,6 +46,7 @@ import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.path.ObjectReferencePathSegment;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.OrderDirection;
 import com.evolveum.midpoint.prism.query.builder.S_FilterEntryOrEmpty;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
@@ -1673,6 +1675,100 @@ public class SqaleRepoSearchTest extends SqaleRepoBaseTest {
                         user1Oid, user2Oid);
         assertThat(result.get(0).getOid()).isEqualTo(user1Oid);
     }
+
+    @Test
+    public void test455SearchWithPagingCookieWithoutOrdering() throws SchemaException {
+        given("query for all users ordered by OID");
+        OperationResult operationResult = createOperationResult();
+        ObjectQuery query = prismContext.queryFor(UserType.class)
+                .asc(T_ID)
+                .build();
+        List<String> expectedOids = searchObjects(UserType.class, query, operationResult)
+                .stream().map(o -> o.getOid()).toList();
+
+        expect("pages read using the paging cookie without ordering return all users in OID order");
+        assertThat(searchAllPagesWithPagingCookie(
+                prismContext.queryFor(UserType.class).build(), 2, operationResult))
+                .containsExactlyElementsOf(expectedOids);
+    }
+
+    @Test
+    public void test456SearchWithPagingCookieOrderedByName() throws SchemaException {
+        OperationResult operationResult = createOperationResult();
+        for (boolean ascending : new boolean[] { true, false }) {
+            given("query for all users ordered by name " + (ascending ? "ascending" : "descending"));
+            ObjectQuery query = ascending
+                    ? prismContext.queryFor(UserType.class).asc(F_NAME).build()
+                    : prismContext.queryFor(UserType.class).desc(F_NAME).build();
+            List<String> expectedOids = searchObjects(UserType.class, query, operationResult)
+                    .stream().map(o -> o.getOid()).toList();
+
+            expect("pages read using the paging cookie return the same users in the same order");
+            assertThat(searchAllPagesWithPagingCookie(query, 2, operationResult))
+                    .containsExactlyElementsOf(expectedOids);
+        }
+    }
+
+    @Test
+    public void test457SearchWithPagingCookieOrderedByNullableItem() throws SchemaException {
+        OperationResult operationResult = createOperationResult();
+        for (boolean ascending : new boolean[] { true, false }) {
+            given("query for all users ordered by family name (some are null) "
+                    + (ascending ? "ascending" : "descending") + " and OID");
+            OrderDirection direction = ascending ? OrderDirection.ASCENDING : OrderDirection.DESCENDING;
+            ObjectQuery query = prismContext.queryFor(UserType.class).build();
+            query.setPaging(prismContext.queryFactory().createPaging());
+            query.getPaging().addOrderingInstruction(UserType.F_FAMILY_NAME, direction);
+            query.getPaging().addOrderingInstruction(T_ID, direction);
+            List<String> expectedOids = searchObjects(UserType.class, query, operationResult)
+                    .stream().map(o -> o.getOid()).toList();
+
+            expect("pages of single user read using the paging cookie return all users in the same order,"
+                    + " including those with null family name");
+            assertThat(searchAllPagesWithPagingCookie(query, 1, operationResult))
+                    .containsExactlyElementsOf(expectedOids);
+        }
+    }
+
+    @Test
+    public void test458SearchWithPagingCookieAndMultipleOrderingsIsNotSupported() {
+        given("query ordered by family and given name with paging cookie");
+        OperationResult operationResult = createOperationResult();
+        ObjectQuery query = prismContext.queryFor(UserType.class)
+                .asc(UserType.F_FAMILY_NAME).asc(UserType.F_GIVEN_NAME)
+                .build();
+        query.getPaging().setCookie(user1Oid);
+
+        expect("repository throws exception because only single ordering is supported with the cookie");
+        assertThatThrownBy(() -> searchObjects(UserType.class, query, operationResult))
+                .isInstanceOf(SystemException.class)
+                .hasMessageStartingWith("Paging cookie can be used only with ordering by a single item");
+    }
+
+    /**
+     * Reads all the pages of the query (which must not have any offset) using the paging cookie
+     * returned with the previous page, returns OIDs of all the found objects.
+     */
+    private List<String> searchAllPagesWithPagingCookie(
+            ObjectQuery query, int pageSize, OperationResult operationResult) throws SchemaException {
+        List<String> oids = new ArrayList<>();
+        String cookie = null;
+        while (true) {
+            ObjectQuery pageQuery = query.clone();
+            if (pageQuery.getPaging() == null) {
+                pageQuery.setPaging(prismContext.queryFactory().createPaging());
+            }
+            pageQuery.getPaging().setMaxSize(pageSize);
+            pageQuery.getPaging().setCookie(cookie);
+            SearchResultList<UserType> page = searchObjects(UserType.class, pageQuery, operationResult);
+            page.forEach(o -> oids.add(o.getOid()));
+            if (page.size() < pageSize) {
+                return oids;
+            }
+            cookie = page.getMetadata().getPagingCookie();
+            assertThat(cookie).isEqualTo(page.get(page.size() - 1).getOid());
+        }
+    }
     // endregion
 
     // region extension queries
@@ -147,21 +147,18 @@ public class SqaleRepoSmokeTest extends SqaleRepoBaseTest {
         when("testOrgClosureConsistency() is called with rebuild flag");
         repositoryService.testOrgClosureConsistency(true, result);
 
-        expect("operation is successful and contains info about closure");
+        expect("operation is successful and closure is consistent without rebuild");
         assertThatOperationResult(result).isSuccess();
         OperationResult subresult = result.getLastSubresult();
-        assertThat(subresult.getReturnSingle("closure-count")).isEqualTo(String.valueOf(baseCount));
-        assertThat(subresult.getReturnSingle("expected-count"))
+        assertThat(subresult.getReturnSingle("closure-count"))
                 // two equality rows for each org + 1 for parent reference
                 .isEqualTo(String.valueOf(baseCount + 3));
-        assertThat(subresult.getReturnSingle("rebuild-done")).isEqualTo("true");
-
-        and("closure is rebuilt");
-        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 3); // as explained above
+        assertThat(subresult.getReturnSingle("expected-count")).isEqualTo(String.valueOf(baseCount + 3));
+        assertThat(subresult.getReturnSingle("rebuild-done")).isEqualTo("false");
     }
 
     @Test
-    public void test021OrgClosureIsRefreshedBeforeOrgFilterQuery() throws Exception {
+    public void test021OrgClosureIsUpdatedWithParentOrgChanges() throws Exception {
         OperationResult result = createOperationResult();
 
         given("reset closure");
@@ -177,7 +174,7 @@ public class SqaleRepoSmokeTest extends SqaleRepoBaseTest {
         UserType user = new UserType().name("user" + getTestNumber())
                 .parentOrgRef(orgOid, OrgType.COMPLEX_TYPE);
         String userOid = repositoryService.addObject(user.asPrismObject(), null, result);
-        assertThat(count(new QOrgClosure())).isEqualTo(baseCount); // not refreshed yet
+        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 3); // see previous test
 
         when("query with org filter is used");
         SearchResultList<PrismObject<UserType>> users = repositoryService.searchObjects(
@@ -190,8 +187,71 @@ public class SqaleRepoSmokeTest extends SqaleRepoBaseTest {
                 .extracting(p -> p.asObjectable().getOid())
                 .containsExactlyInAnyOrder(userOid);
 
-        and("closure is rebuilt");
-        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 3); // see previous test
+        when("the org is moved out of the root");
+        repositoryService.modifyObject(OrgType.class, orgOid,
+                prismContext.deltaFor(OrgType.class)
+                        .item(OrgType.F_PARENT_ORG_REF)
+                        .delete(new ObjectReferenceType().oid(rootOid).type(OrgType.COMPLEX_TYPE))
+                        .asItemDeltas(),
+                result);
+
+        then("closure does not contain the parent reference and the user is not under the root anymore");
+        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 2);
+        assertThat(repositoryService.searchObjects(
+                UserType.class, prismContext.queryFor(UserType.class).isChildOf(rootOid).build(),
+                null, result))
+                .isEmpty();
+    }
+
+    @Test
+    public void test022OrgClosureWithMultipleParents() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("reset closure");
+        refreshOrgClosureForce();
+        long baseCount = count(new QOrgClosure());
+
+        given("org with two parents under the same root (diamond) and user in it");
+        OrgType orgRoot = new OrgType().name("orgRoot" + getTestNumber());
+        String rootOid = repositoryService.addObject(orgRoot.asPrismObject(), null, result);
+        OrgType parentA = new OrgType().name("orgA" + getTestNumber())
+                .parentOrgRef(rootOid, OrgType.COMPLEX_TYPE);
+        String parentAOid = repositoryService.addObject(parentA.asPrismObject(), null, result);
+        OrgType parentB = new OrgType().name("orgB" + getTestNumber())
+                .parentOrgRef(rootOid, OrgType.COMPLEX_TYPE);
+        String parentBOid = repositoryService.addObject(parentB.asPrismObject(), null, result);
+        OrgType org = new OrgType().name("org" + getTestNumber())
+                .parentOrgRef(parentAOid, OrgType.COMPLEX_TYPE)
+                .parentOrgRef(parentBOid, OrgType.COMPLEX_TYPE);
+        String orgOid = repositoryService.addObject(org.asPrismObject(), null, result);
+        UserType user = new UserType().name("user" + getTestNumber())
+                .parentOrgRef(orgOid, OrgType.COMPLEX_TYPE);
+        String userOid = repositoryService.addObject(user.asPrismObject(), null, result);
+        // 4 equality rows + A->root, B->root, org->A, org->B and (only once) org->root
+        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 9);
+
+        when("one of the parent references of the org is removed");
+        repositoryService.modifyObject(OrgType.class, orgOid,
+                prismContext.deltaFor(OrgType.class)
+                        .item(OrgType.F_PARENT_ORG_REF)
+                        .delete(new ObjectReferenceType().oid(parentAOid).type(OrgType.COMPLEX_TYPE))
+                        .asItemDeltas(),
+                result);
+
+        then("only the removed edge is gone, the root is still reachable via the other parent");
+        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 8);
+        PrismObject<UserType> userObject = repositoryService.getObject(UserType.class, userOid, null, result);
+        assertThat(repositoryService.isDescendant(userObject, orgOid)).isTrue();
+        assertThat(repositoryService.isDescendant(userObject, parentAOid)).isFalse();
+        assertThat(repositoryService.isDescendant(userObject, parentBOid)).isTrue();
+        assertThat(repositoryService.isDescendant(userObject, rootOid)).isTrue();
+
+        and("the closure is consistent with the full rebuild");
+        repositoryService.testOrgClosureConsistency(false, result);
+        assertThatOperationResult(result).isSuccess();
+        OperationResult subresult = result.getLastSubresult();
+        assertThat(subresult.getReturnSingle("closure-count"))
+                .isEqualTo(subresult.getReturnSingle("expected-count"));
     }
 
     @Test
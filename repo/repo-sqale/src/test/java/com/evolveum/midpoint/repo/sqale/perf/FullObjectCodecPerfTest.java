@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.perf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import java.util.UUID;
+
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.repo.sqale.FullObjectCodec;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.qmodel.focus.QUserMapping;
+import com.evolveum.midpoint.tools.testng.PerformanceTestMethodMixin;
+import com.evolveum.midpoint.util.MiscUtil;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ * Compares the cost of serialization and parsing of `fullObject` and its size, with and without compression
+ * (see {@link FullObjectCodec}), for users of various sizes.
+ * No DB access is involved, only the mapping methods used to write and read `fullObject` are measured.
+ */
+public class FullObjectCodecPerfTest extends SqaleRepoBaseTest
+        implements PerformanceTestMethodMixin {
+
+    private static final int REPETITIONS = 5000;
+
+    @AfterClass
+    public void resetCompression() {
+        repositoryConfiguration.setFullObjectCompression(false, Set.of());
+    }
+
+    @Test
+    public void test100SmallUser() throws Exception {
+        measure(createUser(1, 2));
+    }
+
+    @Test
+    public void test200MediumUser() throws Exception {
+        measure(createUser(50, 10));
+    }
+
+    @Test
+    public void test300LargeUser() throws Exception {
+        measure(createUser(1000, 50));
+    }
+
+    private void measure(UserType user) throws Exception {
+        QUserMapping mapping = QUserMapping.getUserMapping();
+        for (boolean compress : new boolean[] { false, true }) {
+            repositoryConfiguration.setFullObjectCompression(compress, Set.of());
+            String label = compress ? "compressed" : "plain";
+
+            byte[] fullObject = mapping.createFullObject(user);
+            assertThat(FullObjectCodec.isCompressed(fullObject)).isEqualTo(compress);
+            display(String.format("%-10s fullObject size: %,10d bytes", label, fullObject.length));
+
+            Stopwatch serialize = stopwatch("serialize." + label, "createFullObject, " + label);
+            for (int i = 0; i < REPETITIONS; i++) {
+                try (Split ignored = serialize.start()) {
+                    mapping.createFullObject(user);
+                }
+            }
+
+            Stopwatch parse = stopwatch("parse." + label, "parseSchemaObject, " + label);
+            for (int i = 0; i < REPETITIONS; i++) {
+                try (Split ignored = parse.start()) {
+                    mapping.parseSchemaObject(fullObject, user.getOid());
+                }
+            }
+        }
+    }
+
+    private UserType createUser(int assignments, int operationExecutions) {
+        UserType user = new UserType()
+                .oid(UUID.randomUUID().toString())
+                .name("user-" + getTestNumber())
+                .fullName("Full Name")
+                .emailAddress("user@example.com")
+                .activation(new ActivationType()
+                        .administrativeStatus(ActivationStatusType.ENABLED)
+                        .effectiveStatus(ActivationStatusType.ENABLED));
+        for (int i = 0; i < assignments; i++) {
+            String roleOid = UUID.randomUUID().toString();
+            user.assignment(new AssignmentType()
+                    .id((long) i + 1)
+                    .targetRef(roleOid, RoleType.COMPLEX_TYPE));
+            user.roleMembershipRef(roleOid, RoleType.COMPLEX_TYPE);
+        }
+        for (int i = 0; i < operationExecutions; i++) {
+            user.operationExecution(new OperationExecutionType()
+                    .id((long) assignments + i + 1)
+                    .status(OperationResultStatusType.SUCCESS)
+                    .recordType(OperationExecutionRecordTypeType.SIMPLE)
+                    .timestamp(MiscUtil.asXMLGregorianCalendar(System.currentTimeMillis()))
+                    .taskRef(UUID.randomUUID().toString(), TaskType.COMPLEX_TYPE));
+        }
+        return user;
+    }
+}
@@ -88,11 +88,11 @@ public class OrgHierarchyPerfTest extends SqaleRepoBaseTest {
 
     @Test
     public void test100Xxx() throws Exception {
-        given("there are orgs and users, closure is not yet updated");
+        given("there are orgs and users, closure is updated along with them");
         OperationResult operationResult = createOperationResult();
         display("Orgs: " + count(QOrg.CLASS));
         display("Users: " + count(QUser.class));
-        assertThat(count(new QOrgClosure())).isZero();
+        assertThat(count(new QOrgClosure())).isPositive();
         OrgType org1x1x1 = searchObjects(OrgType.class,
                 prismContext.queryFor(OrgType.class)
                         .item(ObjectType.F_NAME).eq(PolyString.fromOrig("org1x1x1"))
@@ -106,7 +106,7 @@ public class OrgHierarchyPerfTest extends SqaleRepoBaseTest {
                         .build(),
                 operationResult);
 
-        then("non-empty result is returned and org closure has been initialized");
+        then("non-empty result is returned");
         assertThat(result).isNotEmpty();
         assertThat(count(new QOrgClosure())).isPositive();
         display("Orgs: " + count(QOrg.CLASS));
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.perf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.repo.sqale.ExtItemCache;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.UriCache;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItem;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemCardinality;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemHolderType;
+
+/**
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ * Measures the throughput of {@link UriCache} and {@link ExtItemCache} lookups of already cached entries
+ * under contention, which is what every insert and every query with extension filter does.
+ */
+public class SqaleCachesContentionTest extends SqaleRepoBaseTest {
+
+    private static final int ENTRIES = 200;
+    private static final int[] THREADS = { 1, 8, 64 };
+    private static final int LOOKUPS_PER_THREAD = 2_000_000;
+
+    private final UriCache uriCache = new UriCache();
+    private final ExtItemCache extItemCache = new ExtItemCache();
+
+    private final List<String> uris = new ArrayList<>();
+    private final List<MExtItem.Key> extItemKeys = new ArrayList<>();
+
+    @BeforeClass
+    public void init() {
+        uriCache.initialize(sqlRepoContext::newJdbcSession);
+        extItemCache.initialize(sqlRepoContext::newJdbcSession);
+
+        for (int i = 0; i < ENTRIES; i++) {
+            String uri = "perf-uri-" + i;
+            uriCache.processCacheableUri(uri);
+            uris.add(uri);
+
+            MExtItem.Key key = new MExtItem.Key();
+            key.itemName = "perf-ext-item-" + i;
+            key.valueType = "http://www.w3.org/2001/XMLSchema#string";
+            key.holderType = MExtItemHolderType.EXTENSION;
+            key.cardinality = MExtItemCardinality.SCALAR;
+            extItemCache.resolveExtensionItem(key);
+            extItemKeys.add(key);
+        }
+    }
+
+    @Test
+    public void test100ProcessCacheableUri() throws Exception {
+        for (int threads : THREADS) {
+            measure("UriCache.processCacheableUri", threads,
+                    i -> assertFound(uriCache.processCacheableUri(uris.get(i % ENTRIES))));
+        }
+    }
+
+    @Test
+    public void test200ResolveExtensionItem() throws Exception {
+        for (int threads : THREADS) {
+            measure("ExtItemCache.resolveExtensionItem", threads,
+                    i -> assertFound(extItemCache.resolveExtensionItem(extItemKeys.get(i % ENTRIES))));
+        }
+    }
+
+    @Test
+    public void test300GetExtensionItemById() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (MExtItem.Key key : extItemKeys) {
+            ids.add(extItemCache.resolveExtensionItem(key).id);
+        }
+        for (int threads : THREADS) {
+            measure("ExtItemCache.getExtensionItem(id)", threads,
+                    i -> assertFound(extItemCache.getExtensionItem(ids.get(i % ENTRIES))));
+        }
+    }
+
+    /** Cheap check, not to measure the assertion library; it also keeps the lookup from being optimized away. */
+    private static void assertFound(Object value) {
+        if (value == null) {
+            throw new AssertionError("Cached entry not found");
+        }
+    }
+
+    private void measure(String label, int threads, IntConsumer lookup) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+                        lookup.accept(i + offset);
+                    }
+                    return null;
+                }));
+            }
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long duration = System.nanoTime() - startTime;
+            long lookups = (long) threads * LOOKUPS_PER_THREAD;
+            display(String.format("%s: %d threads, %,d lookups in %,d ms, %,.0f lookups/s",
+                    label, threads, lookups, duration / 1_000_000, lookups * 1e9 / duration));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
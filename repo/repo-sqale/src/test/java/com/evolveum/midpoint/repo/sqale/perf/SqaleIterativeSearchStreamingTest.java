@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.perf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.qmodel.focus.QUser;
+import com.evolveum.midpoint.schema.SearchResultMetadata;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ * Compares iterative search of all users by pages and by streaming (server-side cursor).
+ * Number of users is set by `-Dusers=...` system property, the default is 5M (creation takes a while).
+ * If the users already exist in the database (e.g. from the previous run), they are not created again.
+ * The handler does nothing, so the test measures the repository part of the iteration only.
+ */
+public class SqaleIterativeSearchStreamingTest extends SqaleRepoBaseTest {
+
+    private static final int USERS = Integer.getInteger("users", 5_000_000);
+
+    @BeforeClass
+    public void initObjects() throws Exception {
+        OperationResult result = createOperationResult();
+        long existing = count(QUser.class);
+        long start = System.currentTimeMillis();
+        for (long i = existing + 1; i <= USERS; i++) {
+            repositoryService.addObject(new UserType()
+                    .name(String.format("user-%08d", i))
+                    .costCenter(String.valueOf(i % 1000))
+                    .asPrismObject(), null, result);
+            if (i % 100_000 == 0) {
+                display("Created " + i + " users in " + (System.currentTimeMillis() - start) + " ms");
+            }
+        }
+    }
+
+    @AfterMethod
+    public void resetConfiguration() {
+        repositoryConfiguration.setIterativeSearchStreaming(false);
+    }
+
+    @Test
+    public void test100IterateByPaging() throws Exception {
+        repositoryConfiguration.setIterativeSearchStreaming(false);
+        iterateAllUsers("paging");
+    }
+
+    @Test
+    public void test200IterateByStreaming() throws Exception {
+        repositoryConfiguration.setIterativeSearchStreaming(true);
+        iterateAllUsers("streaming");
+    }
+
+    @Test
+    public void test300IterateByPagingWithCustomOrdering() throws Exception {
+        repositoryConfiguration.setIterativeSearchStreaming(false);
+        iterateAllUsersOrderedByCostCenter("paging");
+    }
+
+    @Test
+    public void test400IterateByStreamingWithCustomOrdering() throws Exception {
+        repositoryConfiguration.setIterativeSearchStreaming(true);
+        iterateAllUsersOrderedByCostCenter("streaming");
+    }
+
+    private void iterateAllUsers(String label) throws Exception {
+        iterate(label, null);
+    }
+
+    private void iterateAllUsersOrderedByCostCenter(String label) throws Exception {
+        iterate(label + " ordered by cost center",
+                prismContext.queryFor(UserType.class).asc(UserType.F_COST_CENTER).build());
+    }
+
+    private void iterate(String label, ObjectQuery query) throws Exception {
+        OperationResult result = createOperationResult();
+        AtomicInteger counter = new AtomicInteger();
+        long[] maxUsedMemory = { 0 };
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+
+        long start = System.currentTimeMillis();
+        SearchResultMetadata metadata = repositoryService.searchObjectsIterative(UserType.class, query,
+                (object, parentResult) -> {
+                    if (counter.incrementAndGet() % 10_000 == 0) {
+                        maxUsedMemory[0] = Math.max(maxUsedMemory[0], runtime.totalMemory() - runtime.freeMemory());
+                    }
+                    return true;
+                }, null, true, result);
+        long duration = System.currentTimeMillis() - start;
+
+        display(String.format("%s: %,d users in %,d ms, %,.0f users/s, max used heap %,d MB",
+                label, counter.get(), duration, counter.get() * 1000.0 / Math.max(duration, 1),
+                maxUsedMemory[0] / 1024 / 1024));
+        assertThat(metadata.getApproxNumberOfAllResults()).isEqualTo(counter.get());
+        assertThat(counter.get()).isGreaterThanOrEqualTo(USERS);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqlbase;
+
+import java.util.*;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.sql.RelationalPath;
+import com.querydsl.sql.dml.DefaultMapper;
+import com.querydsl.sql.dml.SQLInsertClause;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Rows collected by {@link JdbcSession#insertRow} when the inserts are deferred.
+ * Rows are grouped by table and by the set of non-null columns and each group is inserted
+ * using multi-row insert statements.
+ *
+ * Tables are flushed in the order in which their first row was added.
+ * Because a row of a child table (e.g. container or reference) is always added after its owner row,
+ * owner tables are flushed before the child tables and foreign keys are satisfied.
+ * This does not hold if rows of a single child table are owned by rows of different owner tables added later,
+ * the caller must flush in between in such a case (e.g. before adding objects of another type).
+ */
+class DeferredInserts {
+
+    /** PostgreSQL does not allow more bind parameters in a single statement. */
+    private static final int MAX_PARAMETERS_PER_STATEMENT = 65535;
+
+    private final Map<RelationalPath<?>, Map<Set<Path<?>>, RowGroup>> rowsByTable = new LinkedHashMap<>();
+
+    void add(@NotNull RelationalPath<?> entity, @NotNull Object row) {
+        // Default mapper ignores nulls, the same as populate() used for a single row.
+        Map<Path<?>, Object> values = DefaultMapper.DEFAULT.createMap(entity, row);
+        rowsByTable.computeIfAbsent(entity, k -> new LinkedHashMap<>())
+                .computeIfAbsent(Set.copyOf(values.keySet()), k -> new RowGroup(new ArrayList<>(values.keySet())))
+                .rows.add(values);
+    }
+
+    boolean isEmpty() {
+        return rowsByTable.isEmpty();
+    }
+
+    void flush(@NotNull JdbcSession jdbcSession) {
+        for (Map.Entry<RelationalPath<?>, Map<Set<Path<?>>, RowGroup>> tableEntry : rowsByTable.entrySet()) {
+            for (RowGroup group : tableEntry.getValue().values()) {
+                group.insert(tableEntry.getKey(), jdbcSession);
+            }
+        }
+        rowsByTable.clear();
+    }
+
+    /** Rows of a single table with the same non-null columns. */
+    private record RowGroup(@NotNull List<Path<?>> columns, @NotNull List<Map<Path<?>, Object>> rows) {
+
+        RowGroup(@NotNull List<Path<?>> columns) {
+            this(columns, new ArrayList<>());
+        }
+
+        void insert(RelationalPath<?> entity, JdbcSession jdbcSession) {
+            int rowsPerStatement = Math.max(1, MAX_PARAMETERS_PER_STATEMENT / Math.max(1, columns.size()));
+            for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+                SQLInsertClause insert = jdbcSession.newInsert(entity);
+                for (Map<Path<?>, Object> row : rows.subList(from, Math.min(from + rowsPerStatement, rows.size()))) {
+                    // Columns are always set in the same order, the bulk statement requires it.
+                    for (Path<?> column : columns) {
+                        //noinspection unchecked
+                        insert.set((Path<Object>) column, row.get(column));
+                    }
+                    insert.addBatch();
+                }
+                insert.setBatchToBulk(true);
+                insert.execute();
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.querydsl.sql.dml.SQLUpdateClause;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.jetbrains.annotations.NotNull;
 
+import com.evolveum.midpoint.schema.util.ExternalCallsLimiter;
 import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
@@ -59,6 +60,12 @@ public class JdbcSession implements AutoCloseable {
 
     private boolean rollbackForReadOnly;
 
+    /** Not null if the inserts using {@link #insertRow} are deferred, see {@link #deferInserts()}. */
+    private DeferredInserts deferredInserts;
+
+    /** True if the session was created as an external call (see {@link ExternalCallsLimiter}). */
+    boolean exitExternalCallOnClose;
+
     public JdbcSession(
             @NotNull Connection connection,
             @NotNull JdbcRepositoryConfiguration jdbcRepositoryConfiguration,
@@ -244,6 +251,41 @@ public class JdbcSession implements AutoCloseable {
         return sqlRepoContext.newInsert(connection, entity);
     }
 
+    /**
+     * Inserts the row populating all its non-null values; or, if the inserts are deferred, just collects the row.
+     * Use this for rows that are not needed by other statements before {@link #flushDeferredInserts()}.
+     */
+    public void insertRow(RelationalPath<?> entity, Object row) {
+        if (deferredInserts != null) {
+            deferredInserts.add(entity, row);
+        } else {
+            newInsert(entity)
+                    .populate(row)
+                    .execute();
+        }
+    }
+
+    /**
+     * Rows provided to {@link #insertRow} are from now on collected and inserted by multi-row inserts
+     * only when {@link #flushDeferredInserts()} is called.
+     * This is useful when many rows are inserted into a few tables, e.g. for bulk import of objects.
+     * *Do not forget to flush the rows* before the commit, otherwise they are lost.
+     */
+    public JdbcSession deferInserts() {
+        if (deferredInserts == null) {
+            deferredInserts = new DeferredInserts();
+        }
+        return this;
+    }
+
+    /** Inserts the rows collected so far, if the inserts are deferred; does nothing otherwise. */
+    public void flushDeferredInserts() {
+        if (deferredInserts != null && !deferredInserts.isEmpty()) {
+            LOGGER.trace("Flushing deferred inserts (session {})", sessionId);
+            deferredInserts.flush(this);
+        }
+    }
+
     public SQLUpdateClause newUpdate(RelationalPath<?> entity) {
         return sqlRepoContext.newUpdate(connection, entity);
     }
@@ -275,6 +317,11 @@ public class JdbcSession implements AutoCloseable {
             connection.close();
         } catch (SQLException e) {
             throw new SystemException(e);
+        } finally {
+            if (exitExternalCallOnClose) {
+                exitExternalCallOnClose = false;
+                ExternalCallsLimiter.exit();
+            }
         }
     }
 }
@@ -11,6 +11,7 @@ import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import javax.xml.namespace.QName;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.QueryMetadata;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Expression;
@@ -19,6 +20,7 @@ import com.querydsl.core.types.Path;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.ComparableExpressionBase;
 import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.StatementOptions;
 import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
 
@@ -217,7 +219,10 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
             return;
         }
 
-        processOrdering(paging.getOrderingInstructions());
+        List<Expression<?>> orderingExpressions = processOrdering(paging.getOrderingInstructions());
+        if (paging.hasCookie()) {
+            processPagingCookie(paging, orderingExpressions);
+        }
 
         Integer offset = paging.getOffset();
         Integer maxSize = paging.getMaxSize();
@@ -231,11 +236,17 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
         }
     }
 
-    private void processOrdering(List<? extends ObjectOrdering> orderings)
+    /**
+     * Adds ORDER BY for the provided orderings and returns the ordering expressions
+     * in the same order, so they can be used for other purposes, e.g. for the paging cookie.
+     */
+    private List<Expression<?>> processOrdering(List<? extends ObjectOrdering> orderings)
             throws RepositoryException {
+        List<Expression<?>> expressions = new ArrayList<>();
         for (ObjectOrdering ordering : orderings) {
             ItemPath orderByItemPath = ordering.getOrderBy();
             Expression<?> expression = orderingPath(orderByItemPath);
+            expressions.add(expression);
             if (expression instanceof ComparableExpressionBase) {
                 if (ordering.getDirection() == OrderDirection.DESCENDING) {
                     sqlQuery.orderBy(((ComparableExpressionBase<?>) expression).desc());
@@ -250,6 +261,21 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
                         "ORDER BY is not possible for non-comparable path: " + orderByItemPath);
             }
         }
+        return expressions;
+    }
+
+    /**
+     * Processes {@link ObjectPaging#getCookie()}, which is not supported by default.
+     * Subclasses supporting the cookie must add the related conditions (and ordering, if needed)
+     * to the query.
+     *
+     * @param orderingExpressions expressions for the ordering instructions of the paging, already
+     * used in ORDER BY, in the same order as the instructions
+     */
+    protected void processPagingCookie(
+            ObjectPaging paging, List<Expression<?>> orderingExpressions) throws RepositoryException {
+        throw new QueryException("Paging cookie is not supported for "
+                + entityPathMapping.schemaType().getSimpleName());
     }
 
     public <CQ extends FlexibleRelationalPathBase<CR>, CR> ResolveResult<CQ, CR> resolvePathWithJoins(ItemPath inputPath) throws RepositoryException {
@@ -312,7 +338,7 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
      * @param <CR> row type related to {@link CQ}
      */
     @SuppressWarnings("unchecked")
-    private <CQ extends FlexibleRelationalPathBase<CR>, CR> Expression<?> orderingPath(
+    protected <CQ extends FlexibleRelationalPathBase<CR>, CR> Expression<?> orderingPath(
             ItemPath orderByItemPath) throws RepositoryException {
 
         ItemPath path = orderByItemPath;
@@ -434,6 +460,24 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
         return new PageOf<>(data, PageOf.PAGE_NO_PAGINATION, 0);
     }
 
+    /**
+     * Executes the query using a server-side cursor, fetching `fetchSize` rows at once.
+     * Unlike {@link #executeQuery}, no implicit limit is applied.
+     * JDBC session must be in a transaction (non-autocommit mode), otherwise PostgreSQL driver fetches all the rows.
+     * Detail fetch mappers are not supported here, the caller must check {@link QueryTableMapping#detailFetchMappers()}.
+     *
+     * Returned iterator must be closed.
+     */
+    public CloseableIterator<Tuple> executeQueryWithCursor(JdbcSession jdbcSession, int fetchSize) {
+        SQLQuery<?> query = sqlQuery.clone(jdbcSession.connection());
+        query.setStatementOptions(StatementOptions.builder()
+                .setFetchSize(fetchSize)
+                .build());
+        return query
+                .select(buildSelectExpressions(root(), query))
+                .iterate();
+    }
+
     private @NotNull Expression<?>[] buildSelectExpressions(Q entity, SQLQuery<?> query) {
         Path<?>[] defaultExpressions = entityPathMapping.selectExpressions(entity, options);
         QueryMetadata metadata = query.getMetadata();
@@ -6,8 +6,12 @@
  */
 package com.evolveum.midpoint.repo.sqlbase;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.Tuple;
 import org.jetbrains.annotations.NotNull;
 
@@ -74,6 +78,55 @@ public class SqlQueryExecutor {
         }
     }
 
+    /**
+     * Streams the results of the query to the consumer using a server-side cursor in a single read-only transaction.
+     * Rows are fetched from the database and transformed to schema objects in batches of `fetchSize`,
+     * so the memory used does not depend on the size of the result.
+     * The consumer returns false if the iteration should stop.
+     *
+     * Note that the transaction is open during the whole iteration, including the time spent in the consumer.
+     * Callers should limit the duration of the iteration, if the consumer can be slow.
+     *
+     * @return true if all the rows were consumed, false if the consumer stopped the iteration
+     */
+    public <S, Q extends FlexibleRelationalPathBase<R>, R> boolean stream(
+            @NotNull SqlQueryContext<S, Q, R> context,
+            ObjectQuery query,
+            Collection<SelectorOptions<GetOperationOptions>> options,
+            int fetchSize,
+            @NotNull Predicate<S> consumer)
+            throws RepositoryException, SchemaException {
+
+        if (!context.mapping().detailFetchMappers().isEmpty()) {
+            throw new UnsupportedOperationException("Streaming is not supported for " + context.mapping());
+        }
+        if (query != null) {
+            context.processFilter(query.getFilter());
+            context.processObjectPaging(query.getPaging());
+        }
+        context.processOptions(options);
+
+        context.beforeQuery();
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction();
+                CloseableIterator<Tuple> rows = context.executeQueryWithCursor(jdbcSession, fetchSize)) {
+            List<Tuple> batch = new ArrayList<>(fetchSize);
+            while (rows.hasNext()) {
+                batch.add(rows.next());
+                if (batch.size() >= fetchSize || !rows.hasNext()) {
+                    // Transformation may fetch additional data in the same session, that's why it's done in batches.
+                    PageOf<S> transformed = context.transformToSchemaType(new PageOf<>(batch), jdbcSession);
+                    for (S object : transformed) {
+                        if (!consumer.test(object)) {
+                            return false;
+                        }
+                    }
+                    batch = new ArrayList<>(fetchSize);
+                }
+            }
+            return true;
+        }
+    }
+
     @NotNull
     private <T> SearchResultList<T> createSearchResultList(PageOf<T> result) {
         SearchResultMetadata metadata = new SearchResultMetadata();
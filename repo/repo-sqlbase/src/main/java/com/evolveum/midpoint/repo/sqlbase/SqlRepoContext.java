@@ -27,6 +27,7 @@ import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
 import com.evolveum.midpoint.repo.sqlbase.querydsl.QuerydslUtils;
 import com.evolveum.midpoint.schema.RelationRegistry;
 import com.evolveum.midpoint.schema.SchemaService;
+import com.evolveum.midpoint.schema.util.ExternalCallsLimiter;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.exception.SystemException;
@@ -125,12 +126,21 @@ public class SqlRepoContext {
      * This call be followed by {@link JdbcSession#startTransaction()} (or one of its variants).
      * If the transaction is not started the connection will likely be in auto-commit mode.
      * *We want to start transaction for any work in production code* but for tests it's ok not to.
+     *
+     * The session counts as an external call for {@link ExternalCallsLimiter} until it's closed.
      */
     public JdbcSession newJdbcSession() {
+        ExternalCallsLimiter.enter();
         try {
-            return new JdbcSession(dataSource.getConnection(), jdbcRepositoryConfiguration, this);
+            JdbcSession jdbcSession = new JdbcSession(dataSource.getConnection(), jdbcRepositoryConfiguration, this);
+            jdbcSession.exitExternalCallOnClose = true;
+            return jdbcSession;
         } catch (SQLException e) {
+            ExternalCallsLimiter.exit();
             throw new SystemException("Cannot create JDBC connection", e);
+        } catch (RuntimeException e) {
+            ExternalCallsLimiter.exit();
+            throw e;
         }
     }
 
@@ -26,4 +26,5 @@ class Beans {
     @Autowired public ExpressionFactory expressionFactory;
     @Autowired public PrismContext prismContext;
     @Autowired public RelationRegistry relationRegistry;
+    @Autowired public CompiledAuthorizationsCache compiledAuthorizationsCache;
 }
@@ -54,9 +54,9 @@ class CompileConstraintsOperation<O extends ObjectType> extends EnforcerOperatio
         argCheck(object != null, "Cannot compile security constraints of null object");
         traceCompileObjectSecurityConstraintStarted(object);
         var objectSecurityConstraints = new ObjectSecurityConstraintsImpl();
-        int i = 0;
-        for (Authorization autz : getAuthorizations()) {
-            var evaluation = new AuthorizationEvaluation(i++, autz, this, result);
+        for (var candidate : getCandidateAuthorizations(null, null, object.getValue())) {
+            Authorization autz = candidate.authorization();
+            var evaluation = new AuthorizationEvaluation(candidate.index(), autz, this, result);
             evaluation.traceStart();
             if (evaluation.isApplicableToObject(object)) {
                 objectSecurityConstraints.applyAuthorization(autz);
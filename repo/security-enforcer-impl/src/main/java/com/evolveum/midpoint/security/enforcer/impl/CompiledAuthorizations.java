@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.security.enforcer.impl;
+
+import static com.evolveum.midpoint.security.api.AuthorizationConstants.AUTZ_ALL_URL;
+import static com.evolveum.midpoint.security.enforcer.impl.PhaseSelector.nonStrict;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.namespace.QName;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.PrismValue;
+import com.evolveum.midpoint.schema.selector.spec.ValueSelector;
+import com.evolveum.midpoint.security.api.Authorization;
+import com.evolveum.midpoint.util.exception.ConfigurationException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType;
+
+/**
+ * Authorizations of a principal, indexed by action, phase and the type of the object (value) they are applied to.
+ *
+ * For a given combination of these, it provides the authorizations that _may_ be applicable; all other ones are
+ * certainly not applicable, so they need not be evaluated. (For example, when deciding on access to 1000 users,
+ * authorizations for roles or for other actions are skipped without evaluating their selectors for each user.)
+ * The candidates still have to be fully evaluated, as their applicability depends on the object content.
+ *
+ * The lists of candidates are computed on demand and then kept. The structure is immutable from the outside
+ * and safe to be used by multiple threads.
+ *
+ * @see CompiledAuthorizationsCache
+ */
+class CompiledAuthorizations {
+
+    /** Snapshot of the authorizations this structure was compiled from, see {@link #isUpToDate(Collection)}. */
+    @NotNull private final List<Authorization> authorizations;
+
+    @NotNull private final List<IndexedAuthorization> all;
+
+    @NotNull private final Map<CandidatesKey, List<IndexedAuthorization>> candidatesMap = new ConcurrentHashMap<>();
+
+    private CompiledAuthorizations(@NotNull Collection<Authorization> authorizations) {
+        this.authorizations = List.copyOf(authorizations);
+        this.all = index(this.authorizations);
+    }
+
+    static @NotNull CompiledAuthorizations compile(@NotNull Collection<Authorization> authorizations) {
+        return new CompiledAuthorizations(authorizations);
+    }
+
+    /** Just numbers the authorizations, without compiling anything. The numbers are used for tracing. */
+    static @NotNull List<IndexedAuthorization> index(@NotNull Collection<Authorization> authorizations) {
+        List<IndexedAuthorization> indexed = new ArrayList<>(authorizations.size());
+        int i = 0;
+        for (Authorization authorization : authorizations) {
+            indexed.add(new IndexedAuthorization(i++, authorization));
+        }
+        return indexed;
+    }
+
+    /**
+     * Are the authorizations the same (identical) as the ones we were compiled from? They change e.g. when the principal
+     * is refreshed after a change of its assignments or of the roles; or when an extra authorization is added.
+     */
+    boolean isUpToDate(@NotNull Collection<Authorization> currentAuthorizations) {
+        if (currentAuthorizations.size() != authorizations.size()) {
+            return false;
+        }
+        Iterator<Authorization> iterator = currentAuthorizations.iterator();
+        for (Authorization authorization : authorizations) {
+            if (!iterator.hasNext() || iterator.next() != authorization) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull List<IndexedAuthorization> getAll() {
+        return all;
+    }
+
+    /**
+     * Returns the authorizations that may be applicable to given action, phase (matched non-strictly) and object or value.
+     * Null values mean "any action", "any phase", "any (or unknown) object type", respectively.
+     */
+    @NotNull List<IndexedAuthorization> getCandidates(
+            @Nullable String actionUrl, @Nullable AuthorizationPhaseType phase, @Nullable PrismValue value) {
+        QName typeName = value != null ? value.getTypeName() : null;
+        if (actionUrl == null && phase == null && typeName == null) {
+            return all;
+        }
+        return candidatesMap.computeIfAbsent(
+                new CandidatesKey(actionUrl, phase, typeName),
+                key -> selectCandidates(key, value));
+    }
+
+    private @NotNull List<IndexedAuthorization> selectCandidates(@NotNull CandidatesKey key, @Nullable PrismValue value) {
+        List<IndexedAuthorization> candidates = new ArrayList<>();
+        for (IndexedAuthorization indexed : all) {
+            Authorization authorization = indexed.authorization();
+            if (key.actionUrl() != null
+                    && !authorization.getAction().contains(key.actionUrl())
+                    && !authorization.getAction().contains(AUTZ_ALL_URL)) {
+                continue;
+            }
+            if (key.phase() != null && !nonStrict(key.phase()).matches(authorization.getPhase())) {
+                continue;
+            }
+            if (key.typeName() != null && value != null && !mayApplyToType(authorization, value)) {
+                continue;
+            }
+            candidates.add(indexed);
+        }
+        return List.copyOf(candidates);
+    }
+
+    /**
+     * Returns `false` if no object selector of the authorization can match values of the type of given value,
+     * because of its `type` clause. The other clauses are not considered here.
+     *
+     * Values of the same type name are assumed to be of the same type hierarchy, so the result can be shared among them.
+     */
+    private static boolean mayApplyToType(@NotNull Authorization authorization, @NotNull PrismValue value) {
+        List<ValueSelector> selectors;
+        try {
+            selectors = authorization.getParsedObjectSelectors();
+        } catch (ConfigurationException e) {
+            return true; // the error will be reported when the authorization is evaluated
+        }
+        if (selectors.isEmpty()) {
+            return true;
+        }
+        for (ValueSelector selector : selectors) {
+            QName selectorTypeName = selector.getTypeName();
+            if (selectorTypeName == null || selector.getParentClause() != null || value.isOfType(selectorTypeName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{authorizations=" + authorizations.size()
+                + ", candidateLists=" + candidatesMap.size() + "}";
+    }
+
+    /** Authorization along with its position among the principal's authorizations (used for tracing). */
+    record IndexedAuthorization(int index, @NotNull Authorization authorization) {
+    }
+
+    private record CandidatesKey(
+            @Nullable String actionUrl, @Nullable AuthorizationPhaseType phase, @Nullable QName typeName) {
+    }
+}
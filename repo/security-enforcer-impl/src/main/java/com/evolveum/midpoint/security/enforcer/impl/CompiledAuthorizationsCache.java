@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.security.enforcer.impl;
+
+import java.util.Collection;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.security.api.Authorization;
+import com.evolveum.midpoint.security.api.MidPointPrincipal;
+
+/**
+ * Keeps {@link CompiledAuthorizations} for principals, so they are not compiled for each enforcer operation.
+ *
+ * Principals are weakly referenced (compared by identity), so the entries disappear along with the principals,
+ * e.g. when a GUI session ends. The compiled authorizations are re-created whenever the authorizations of the principal
+ * change; typically, that is when the principal is refreshed after a change of its roles or their authorizations.
+ * Therefore, no explicit invalidation is needed.
+ */
+@Component
+class CompiledAuthorizationsCache {
+
+    private final Cache<MidPointPrincipal, CompiledAuthorizations> cache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    @NotNull CompiledAuthorizations get(@NotNull MidPointPrincipal principal) {
+        Collection<Authorization> authorizations = principal.getAuthorities();
+        CompiledAuthorizations compiled = cache.getIfPresent(principal);
+        if (compiled != null && compiled.isUpToDate(authorizations)) {
+            return compiled;
+        }
+        CompiledAuthorizations fresh = CompiledAuthorizations.compile(authorizations);
+        cache.put(principal, fresh);
+        return fresh;
+    }
+}
@@ -7,6 +7,7 @@
 
 package com.evolveum.midpoint.security.enforcer.impl;
 
+import static com.evolveum.midpoint.schema.util.ObjectTypeUtil.getValue;
 import static com.evolveum.midpoint.security.enforcer.impl.PhaseSelector.nonStrict;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType.EXECUTION;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType.REQUEST;
@@ -16,12 +17,15 @@ import com.evolveum.midpoint.security.enforcer.api.SecurityEnforcer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import com.evolveum.midpoint.prism.PrismValue;
 import com.evolveum.midpoint.schema.AccessDecision;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.security.api.Authorization;
 import com.evolveum.midpoint.security.api.AuthorizationConstants;
 import com.evolveum.midpoint.security.api.MidPointPrincipal;
 import com.evolveum.midpoint.security.enforcer.api.AbstractAuthorizationParameters;
+import com.evolveum.midpoint.security.enforcer.api.AuthorizationParameters;
+import com.evolveum.midpoint.security.enforcer.api.ValueAuthorizationParameters;
 import com.evolveum.midpoint.security.enforcer.impl.SecurityTraceEvent.PhasedDecisionOperationFinished;
 import com.evolveum.midpoint.security.enforcer.impl.SecurityTraceEvent.PhasedDecisionOperationNote;
 import com.evolveum.midpoint.security.enforcer.impl.SecurityTraceEvent.PhasedDecisionOperationStarted;
@@ -80,9 +84,9 @@ class EnforcerDecisionOperation extends EnforcerOperation {
 
         AccessDecision overallDecision = AccessDecision.DEFAULT;
         AutzItemPaths allowedItems = new AutzItemPaths();
-        int i = 0;
-        for (Authorization authorization : getAuthorizations()) {
-            var evaluation = new AuthorizationEvaluation(i++, authorization, this, result);
+        for (var candidate : getCandidateAuthorizations(operationUrl, phase, getObjectValue())) {
+            Authorization authorization = candidate.authorization();
+            var evaluation = new AuthorizationEvaluation(candidate.index(), authorization, this, result);
             evaluation.traceStart();
             if (!evaluation.isApplicableToAction(operationUrl)
                     || !evaluation.isApplicableToPhase(nonStrict(phase))
@@ -143,6 +147,17 @@ class EnforcerDecisionOperation extends EnforcerOperation {
         return overallDecision;
     }
 
+    /** The object or value the authorizations are applied to; used to skip authorizations for other types. */
+    private @Nullable PrismValue getObjectValue() {
+        if (params instanceof AuthorizationParameters<?, ?> objectParams) {
+            return getValue(objectParams.getAnyObject());
+        } else if (params instanceof ValueAuthorizationParameters<?> valueParams) {
+            return valueParams.getValue();
+        } else {
+            return null;
+        }
+    }
+
     private void tracePhasedDecisionOperationStart(@NotNull AuthorizationPhaseType phase) {
         if (tracer.isEnabled()) {
             tracer.trace(
@@ -17,6 +17,7 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import com.evolveum.midpoint.prism.PrismValue;
 import com.evolveum.midpoint.schema.RelationRegistry;
 import com.evolveum.midpoint.schema.SchemaService;
 import com.evolveum.midpoint.schema.selector.eval.OwnerResolver;
@@ -27,6 +28,7 @@ import com.evolveum.midpoint.security.api.MidPointPrincipal;
 import com.evolveum.midpoint.security.api.OtherPrivilegesLimitations;
 import com.evolveum.midpoint.security.enforcer.api.SecurityEnforcer;
 import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
 
 /**
@@ -77,6 +79,25 @@ class EnforcerOperation {
         return SecurityEnforcerUtil.getAuthorizations(principal);
     }
 
+    /**
+     * Returns the authorizations that may be applicable to given action, phase and object/value (nulls mean "any"),
+     * see {@link CompiledAuthorizations}. All the others are certainly not applicable.
+     *
+     * When tracing, all authorizations are returned, so that the trace shows why the others are not applicable.
+     */
+    @NotNull List<CompiledAuthorizations.IndexedAuthorization> getCandidateAuthorizations(
+            @Nullable String actionUrl, @Nullable AuthorizationPhaseType phase, @Nullable PrismValue value) {
+        if (principal == null) {
+            return CompiledAuthorizations.index(getAuthorizations()); // authorizations from the security context
+        }
+        var compiled = b.compiledAuthorizationsCache.get(principal);
+        if (tracer.isEnabled()) {
+            return compiled.getAll();
+        } else {
+            return compiled.getCandidates(actionUrl, phase, value);
+        }
+    }
+
     String getPrincipalOid() {
         return principal != null ? principal.getOid() : null;
     }
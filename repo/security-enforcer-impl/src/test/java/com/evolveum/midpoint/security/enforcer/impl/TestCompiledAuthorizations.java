@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.security.enforcer.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.security.api.AuthorizationConstants.AUTZ_ALL_URL;
+
+import java.util.List;
+import javax.xml.namespace.QName;
+
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismValue;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.security.api.Authorization;
+import com.evolveum.midpoint.security.api.MidPointPrincipal;
+import com.evolveum.midpoint.security.enforcer.impl.CompiledAuthorizations.IndexedAuthorization;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+import com.evolveum.prism.xml.ns._public.types_3.ItemPathType;
+
+/**
+ * Tests the selection of candidate authorizations in {@link CompiledAuthorizations}
+ * and their caching in {@link CompiledAuthorizationsCache}.
+ */
+public class TestCompiledAuthorizations extends AbstractUnitTest {
+
+    private static final String ACTION_READ = "http://midpoint.evolveum.com/xml/ns/test/authorization#read";
+    private static final String ACTION_MODIFY = "http://midpoint.evolveum.com/xml/ns/test/authorization#modify";
+
+    @BeforeSuite
+    public void setup() throws Exception {
+        PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+    }
+
+    /** Type-specific selectors exclude other types; type-less selectors and authorizations without selectors do not. */
+    @Test
+    public void test100TypeSpecificAndTypeLessSelectors() {
+        given("authorizations with various object selectors");
+        Authorization users = authorization(ACTION_READ, null, selector(UserType.COMPLEX_TYPE));
+        Authorization roles = authorization(ACTION_READ, null, selector(RoleType.COMPLEX_TYPE));
+        Authorization focuses = authorization(ACTION_READ, null, selector(FocusType.COMPLEX_TYPE));
+        Authorization anyObject = authorization(ACTION_READ, null, new OwnedObjectSelectorType());
+        Authorization noSelector = authorization(ACTION_READ, null);
+        Authorization usersOrRoles = authorization(
+                ACTION_READ, null, selector(UserType.COMPLEX_TYPE), selector(RoleType.COMPLEX_TYPE));
+        var compiled = CompiledAuthorizations.compile(
+                List.of(users, roles, focuses, anyObject, noSelector, usersOrRoles));
+
+        expect("only authorizations that may apply to a user are candidates for it");
+        assertThat(candidates(compiled, ACTION_READ, null, userValue()))
+                .containsExactly(users, focuses, anyObject, noSelector, usersOrRoles);
+
+        and("similarly for roles");
+        assertThat(candidates(compiled, ACTION_READ, null, roleValue()))
+                .containsExactly(roles, focuses, anyObject, noSelector, usersOrRoles);
+
+        and("all of them are candidates if the value is not known");
+        assertThat(candidates(compiled, ACTION_READ, null, null))
+                .containsExactly(users, roles, focuses, anyObject, noSelector, usersOrRoles);
+    }
+
+    /**
+     * Selectors with parent clause are kept regardless of the type, as the value may be a part of a parent object.
+     * Owner clause does not change anything about the type of the object itself.
+     */
+    @Test
+    public void test110ParentAndOwnerClauses() {
+        given("authorizations with parent and owner clauses");
+        Authorization workItems = authorization(ACTION_READ, null,
+                new OwnedObjectSelectorType()
+                        .type(CaseWorkItemType.COMPLEX_TYPE)
+                        .parent(new ObjectParentSelectorType()
+                                .type(CaseType.COMPLEX_TYPE)
+                                .path(new ItemPathType(CaseType.F_WORK_ITEM))));
+        Authorization ownedShadows = authorization(ACTION_READ, null,
+                selector(ShadowType.COMPLEX_TYPE)
+                        .owner(new SubjectedObjectSelectorType().special(SpecialObjectSpecificationType.SELF)));
+        var compiled = CompiledAuthorizations.compile(List.of(workItems, ownedShadows));
+
+        expect("the work items authorization is a candidate for work items");
+        assertThat(candidates(compiled, ACTION_READ, null, new CaseWorkItemType().asPrismContainerValue()))
+                .containsExactly(workItems);
+
+        and("it is a candidate also for other values (the parent clause is not evaluated here)");
+        assertThat(candidates(compiled, ACTION_READ, null, userValue()))
+                .containsExactly(workItems);
+
+        and("the owned shadows authorization is a candidate for shadows only");
+        assertThat(candidates(compiled, ACTION_READ, null, new ShadowType().asPrismObject().getValue()))
+                .containsExactly(workItems, ownedShadows);
+    }
+
+    /** The "all" action matches any action; the phase is matched non-strictly. */
+    @Test
+    public void test120ActionsAndPhases() {
+        given("authorizations for various actions and phases");
+        Authorization read = authorization(ACTION_READ, null);
+        Authorization modify = authorization(ACTION_MODIFY, null);
+        Authorization all = authorization(AUTZ_ALL_URL, null);
+        Authorization readRequest = authorization(ACTION_READ, AuthorizationPhaseType.REQUEST);
+        Authorization readExecution = authorization(ACTION_READ, AuthorizationPhaseType.EXECUTION);
+        var compiled = CompiledAuthorizations.compile(List.of(read, modify, all, readRequest, readExecution));
+
+        expect("candidates for 'read' in any phase");
+        assertThat(candidates(compiled, ACTION_READ, null, userValue()))
+                .containsExactly(read, all, readRequest, readExecution);
+
+        and("candidates for 'read' in the request phase");
+        assertThat(candidates(compiled, ACTION_READ, AuthorizationPhaseType.REQUEST, userValue()))
+                .containsExactly(read, all, readRequest);
+
+        and("candidates for 'modify' in the execution phase");
+        assertThat(candidates(compiled, ACTION_MODIFY, AuthorizationPhaseType.EXECUTION, userValue()))
+                .containsExactly(modify, all);
+
+        and("candidates for an unknown action");
+        assertThat(candidates(compiled, "http://unknown", null, userValue()))
+                .containsExactly(all);
+    }
+
+    /** Deny authorizations are selected just like the allow ones, and their order is kept. */
+    @Test
+    public void test130DenyAuthorizations() {
+        given("allow and deny authorizations");
+        Authorization allowUsers = authorization(ACTION_READ, null, selector(UserType.COMPLEX_TYPE));
+        Authorization denyUsers = deny(ACTION_READ, selector(UserType.COMPLEX_TYPE));
+        Authorization denyRoles = deny(ACTION_READ, selector(RoleType.COMPLEX_TYPE));
+        Authorization denyAll = deny(AUTZ_ALL_URL);
+        var compiled = CompiledAuthorizations.compile(List.of(allowUsers, denyUsers, denyRoles, denyAll));
+
+        expect("deny authorizations applicable to users are candidates");
+        List<IndexedAuthorization> candidates = compiled.getCandidates(ACTION_READ, null, userValue());
+        assertThat(candidates.stream().map(IndexedAuthorization::authorization))
+                .containsExactly(allowUsers, denyUsers, denyAll);
+
+        and("their original positions are kept (for tracing)");
+        assertThat(candidates.stream().map(IndexedAuthorization::index))
+                .containsExactly(0, 1, 3);
+    }
+
+    /** The candidate lists are computed once per action, phase and type. */
+    @Test
+    public void test140CandidatesAreReused() {
+        given("compiled authorizations");
+        var compiled = CompiledAuthorizations.compile(List.of(
+                authorization(ACTION_READ, null, selector(UserType.COMPLEX_TYPE)),
+                authorization(ACTION_READ, null, selector(RoleType.COMPLEX_TYPE))));
+
+        expect("the same list is returned for values of the same type");
+        var first = compiled.getCandidates(ACTION_READ, null, userValue());
+        var second = compiled.getCandidates(ACTION_READ, null, userValue());
+        assertThat(second).isSameAs(first);
+
+        and("all authorizations are returned if there is no criterion");
+        assertThat(compiled.getCandidates(null, null, null)).isSameAs(compiled.getAll());
+    }
+
+    /** The compiled authorizations are re-created when the principal's authorizations change. */
+    @Test
+    public void test200CacheInvalidationOnChange() {
+        given("a principal with an authorization");
+        MidPointPrincipal principal = MidPointPrincipal.create(
+                new UserType().oid("c0c010c0-d34d-b44f-f11d-111111111111").name("jack"));
+        Authorization readUsers = authorization(ACTION_READ, null, selector(UserType.COMPLEX_TYPE));
+        principal.addAuthorization(readUsers);
+        var cache = new CompiledAuthorizationsCache();
+
+        when("authorizations are compiled twice");
+        var compiled = cache.get(principal);
+
+        then("the second time the cached value is used");
+        assertThat(cache.get(principal)).isSameAs(compiled);
+        assertThat(candidates(compiled, ACTION_READ, null, roleValue())).isEmpty();
+
+        when("an authorization is added");
+        Authorization readRoles = authorization(ACTION_READ, null, selector(RoleType.COMPLEX_TYPE));
+        principal.addAuthorization(readRoles);
+        var afterAdd = cache.get(principal);
+
+        then("the authorizations are compiled again");
+        assertThat(afterAdd).isNotSameAs(compiled);
+        assertThat(candidates(afterAdd, ACTION_READ, null, roleValue())).containsExactly(readRoles);
+
+        when("the authorizations are replaced by equally many different ones (e.g. after principal refresh)");
+        principal.clearAuthorizations();
+        Authorization modifyUsers = authorization(ACTION_MODIFY, null, selector(UserType.COMPLEX_TYPE));
+        principal.addAuthorization(readUsers);
+        principal.addAuthorization(modifyUsers);
+        var afterReplace = cache.get(principal);
+
+        then("the authorizations are compiled again");
+        assertThat(afterReplace).isNotSameAs(afterAdd);
+        assertThat(candidates(afterReplace, ACTION_READ, null, roleValue())).isEmpty();
+        assertThat(candidates(afterReplace, ACTION_MODIFY, null, userValue())).containsExactly(modifyUsers);
+
+        and("another principal has its own compiled authorizations");
+        MidPointPrincipal other = MidPointPrincipal.create(
+                new UserType().oid("c0c010c0-d34d-b44f-f11d-222222222222").name("barbossa"));
+        assertThat(cache.get(other)).isNotSameAs(afterReplace);
+        assertThat(cache.get(other).getAll()).isEmpty();
+    }
+
+    private List<Authorization> candidates(
+            CompiledAuthorizations compiled, String action, AuthorizationPhaseType phase, PrismValue value) {
+        return compiled.getCandidates(action, phase, value).stream()
+                .map(IndexedAuthorization::authorization)
+                .toList();
+    }
+
+    private Authorization authorization(String action, AuthorizationPhaseType phase, OwnedObjectSelectorType... selectors) {
+        return new Authorization(authorizationBean(action, phase, selectors));
+    }
+
+    private Authorization deny(String action, OwnedObjectSelectorType... selectors) {
+        return new Authorization(
+                authorizationBean(action, null, selectors)
+                        .decision(AuthorizationDecisionType.DENY));
+    }
+
+    private AuthorizationType authorizationBean(
+            String action, AuthorizationPhaseType phase, OwnedObjectSelectorType... selectors) {
+        AuthorizationType bean = new AuthorizationType()
+                .action(action)
+                .phase(phase);
+        bean.getObject().addAll(List.of(selectors));
+        return bean;
+    }
+
+    private OwnedObjectSelectorType selector(QName type) {
+        return new OwnedObjectSelectorType().type(type);
+    }
+
+    private PrismValue userValue() {
+        return new UserType().asPrismObject().getValue();
+    }
+
+    private PrismValue roleValue() {
+        return new RoleType().asPrismObject().getValue();
+    }
+}
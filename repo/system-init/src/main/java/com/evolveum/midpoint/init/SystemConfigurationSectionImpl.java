@@ -17,6 +17,7 @@ public class SystemConfigurationSectionImpl implements SystemConfigurationSectio
     private static final String LOG_FILE_CONFIG_KEY = "logFile";
     private static final String JMAP_CONFIG_KEY = "jmap";
     private static final String JHSDB_CONFIG_KEY = "jhsdb";
+    private static final String PRECOMPILE_SCRIPTS_CONFIG_KEY = "precompileScripts";
 
     private final Configuration configuration;
 
@@ -52,6 +53,11 @@ public class SystemConfigurationSectionImpl implements SystemConfigurationSectio
         return getStringKey(LOG_FILE_CONFIG_KEY);
     }
 
+    @Override
+    public boolean isPrecompileScripts() {
+        return configuration != null && configuration.getBoolean(PRECOMPILE_SCRIPTS_CONFIG_KEY, false);
+    }
+
     private String getStringKey(String key) {
         if (configuration != null && configuration.containsKey(key)) {
             return (configuration.getString(key));
@@ -34,6 +34,13 @@ public interface RunningLightweightTask extends RunningTask {
      */
     void startLightweightHandler();
 
+    /**
+     * As {@link #startLightweightHandler()} but the handler is executed in a virtual thread.
+     * If virtual threads are not supported by the JVM, a platform thread is used.
+     */
+    @Experimental
+    void startLightweightHandlerInVirtualThread();
+
     /**
      * Was the task requested to start? (It may or may not actually started.)
      */
@@ -15,11 +15,14 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.RunningTask;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 
 /**
  * Manages lightweight asynchronous tasks.
@@ -29,12 +32,35 @@ import com.evolveum.midpoint.task.api.RunningTask;
 @Component
 public class LightweightTaskManager {
 
+    private static final Trace LOGGER = TraceManager.getTrace(LightweightTaskManager.class);
+
     @Autowired private LocalNodeState localNodeState;
 
     private final ExecutorService lightweightHandlersExecutor = Executors.newCachedThreadPool();
 
-    Future<?> submit(Runnable r) {
-        return lightweightHandlersExecutor.submit(r);
+    /** Executor starting a new virtual thread for each handler. Null if virtual threads are not supported by the JVM. */
+    @Nullable private final ExecutorService virtualThreadsExecutor = createVirtualThreadsExecutor();
+
+    Future<?> submit(Runnable r, boolean virtualThread) {
+        if (virtualThread && virtualThreadsExecutor != null) {
+            return virtualThreadsExecutor.submit(r);
+        } else {
+            return lightweightHandlersExecutor.submit(r);
+        }
+    }
+
+    /**
+     * The method is available since Java 21, but we are still compiled for Java 17. Hence the reflection.
+     */
+    private static @Nullable ExecutorService createVirtualThreadsExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Virtual threads are not available, platform threads will be used instead: {}", e.toString());
+            return null;
+        }
     }
 
     public void waitForTransientChildrenAndCloseThem(RunningTask task, OperationResult result) {
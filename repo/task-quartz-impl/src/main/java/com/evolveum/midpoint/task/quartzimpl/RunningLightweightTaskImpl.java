@@ -89,7 +89,16 @@ public class RunningLightweightTaskImpl extends RunningTaskQuartzImpl implements
     }
 
     @Override
-    public synchronized void startLightweightHandler() {
+    public void startLightweightHandler() {
+        startLightweightHandler(false);
+    }
+
+    @Override
+    public void startLightweightHandlerInVirtualThread() {
+        startLightweightHandler(true);
+    }
+
+    private synchronized void startLightweightHandler(boolean virtualThread) {
         stateCheck(isTransient(),
                 "An attempt to start LightweightTaskHandler in a persistent task %s", this);
         stateCheck(lightweightHandlerFuture == null,
@@ -126,7 +135,7 @@ public class RunningLightweightTaskImpl extends RunningTaskQuartzImpl implements
             LOGGER.debug("Lightweight task handler shell finishing; task = {}", this);
         };
 
-        lightweightHandlerFuture = beans.lightweightTaskManager.submit(r);
+        lightweightHandlerFuture = beans.lightweightTaskManager.submit(r, virtualThread);
         LOGGER.debug("Lightweight task handler submitted to start; task = {}", this);
     }
 
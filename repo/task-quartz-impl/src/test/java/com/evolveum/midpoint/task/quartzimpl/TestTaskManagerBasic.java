@@ -15,11 +15,17 @@ import static com.evolveum.midpoint.util.MiscUtil.extractSingleton;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import jakarta.annotation.PostConstruct;
 
+import com.evolveum.midpoint.schema.util.ExternalCallsLimiter;
 import com.evolveum.midpoint.schema.util.task.TaskTreeUtil;
 import com.evolveum.midpoint.task.api.RunningLightweightTask;
 
@@ -29,6 +35,7 @@ import org.jetbrains.annotations.NotNull;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobKey;
 import org.quartz.SchedulerException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.testng.AssertJUnit;
@@ -109,6 +116,8 @@ public class TestTaskManagerBasic extends AbstractTaskManagerTest {
 
     private static final ItemName ITEM_SHIP_STATE = new ItemName(NS_EXT, "shipState");
 
+    @Autowired private LightweightTaskManager lightweightTaskManager;
+
     @BeforeSuite
     public void setup() throws SchemaException, SAXException, IOException {
         super.setup();
@@ -878,6 +887,66 @@ public class TestTaskManagerBasic extends AbstractTaskManagerTest {
         }
     }
 
+    /**
+     * Handlers started in virtual threads (if supported by the JVM) with calls limited by {@link ExternalCallsLimiter}.
+     */
+    @Test
+    public void test270VirtualThreadsWithLimitedExternalCalls() throws Exception {
+        given();
+        int handlers = 20;
+        int permits = 2;
+        Semaphore semaphore = new Semaphore(permits);
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger maximum = new AtomicInteger();
+        AtomicInteger virtualThreads = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        when();
+        for (int i = 0; i < handlers; i++) {
+            futures.add(lightweightTaskManager.submit(() -> {
+                if (isVirtual(Thread.currentThread())) {
+                    virtualThreads.incrementAndGet();
+                }
+                ExternalCallsLimiter.setThreadLocal(semaphore);
+                try {
+                    ExternalCallsLimiter.enter();
+                    try {
+                        maximum.accumulateAndGet(current.incrementAndGet(), Math::max);
+                        Thread.sleep(20);
+                        current.decrementAndGet();
+                    } finally {
+                        ExternalCallsLimiter.exit();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    ExternalCallsLimiter.unsetThreadLocal();
+                }
+            }, true));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        then();
+        displayValue("Handlers run in virtual threads", virtualThreads.get());
+        displayValue("Maximal concurrency", maximum.get());
+        assertThat(virtualThreads.get())
+                .as("handlers in virtual threads")
+                .isEqualTo(Runtime.version().feature() >= 21 ? handlers : 0);
+        assertThat(maximum.get()).isBetween(1, permits);
+        assertThat(semaphore.availablePermits()).isEqualTo(permits);
+    }
+
+    /** Thread.isVirtual() is available since Java 21. */
+    private boolean isVirtual(Thread thread) {
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
     @NotNull
     private JobExecutionContext findJobForTask(TaskQuartzImpl task) throws SchedulerException {
         List<JobExecutionContext> jobExecutionContexts = localScheduler.getQuartzScheduler().getCurrentlyExecutingJobs();
@@ -6,6 +6,7 @@
  */
 package com.evolveum.midpoint.ninja.action.worker;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -41,18 +42,21 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
         ApplicationContext ctx = context.getApplicationContext();
         Protector protector = ctx.getBean(Protector.class);
 
+        RepoAddOptions opts = createRepoAddOptions(options);
+        List<PrismObject<? extends ObjectType>> batch = new ArrayList<>();
+
         try {
             while (!shouldConsumerStop()) {
                 ObjectType object = null;
                 try {
                     object = queue.poll(CONSUMER_POLL_TIMEOUT, TimeUnit.SECONDS);
                     if (object == null) {
+                        // nothing more for now, no need to keep the objects waiting
+                        addObjects(batch, opts);
                         continue;
                     }
                     PrismObject<? extends ObjectType> prismObject = object.asPrismObject();
 
-                    RepoAddOptions opts = createRepoAddOptions(options);
-
                     if (!opts.isAllowUnencryptedValues()) {
                         CryptoUtil.encryptValues(protector, prismObject);
                     }
@@ -67,6 +71,14 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
                         continue;
                     }
 
+                    if (options.getBatchSize() > 1) {
+                        batch.add(prismObject);
+                        if (batch.size() >= options.getBatchSize()) {
+                            addObjects(batch, opts);
+                        }
+                        continue;
+                    }
+
                     repository.addObject(prismObject, opts, new OperationResult("Import object"));
 
                     operation.incrementTotal();
@@ -75,6 +87,7 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
                     operation.incrementError();
                 }
             }
+            addObjects(batch, opts);
         } catch (Exception ex) {
             operation.finish();
 
@@ -88,6 +101,36 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
         }
     }
 
+    /**
+     * Adds the batch in a single repository call and clears it.
+     * If it fails, the objects are added one by one, so the failing ones are reported and the others are imported.
+     */
+    private void addObjects(List<PrismObject<? extends ObjectType>> batch, RepoAddOptions opts) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        RepositoryService repository = context.getRepository();
+        try {
+            repository.addObjects(batch, opts, new OperationResult("Import objects"));
+            batch.forEach(o -> operation.incrementTotal());
+        } catch (Exception ex) {
+            context.getLog().debug("Couldn't add batch of {} objects, adding them one by one, reason: {}",
+                    batch.size(), ex.getMessage());
+            for (PrismObject<? extends ObjectType> object : batch) {
+                try {
+                    repository.addObject(object, opts, new OperationResult("Import object"));
+                    operation.incrementTotal();
+                } catch (Exception e) {
+                    context.getLog().error("Couldn't add object {}, reason: {}", e, object, e.getMessage());
+                    operation.incrementError();
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
     private RepoAddOptions createRepoAddOptions(ImportOptions options) {
         RepoAddOptions opts = new RepoAddOptions();
         opts.setOverwrite(options.isOverwrite());